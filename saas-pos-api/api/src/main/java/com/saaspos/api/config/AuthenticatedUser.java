@@ -0,0 +1,47 @@
+package com.saaspos.api.config;
+
+import com.saaspos.api.model.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Identidad del usuario autenticado para la petición en curso.
+ * Se arma una sola vez en el filtro JWT (desde el usuario en caché, no desde los claims) y los controladores
+ * la leen vía {@link TenantContext}, sin volver a consultar la tabla users.
+ */
+@Getter
+@AllArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private final UUID id;
+    private final String email;
+    private final UUID tenantId; // NULL para usuarios globales (ej: VENDOR)
+    private final String role;
+    private final String fullName;
+
+    // Solo viene cargado cuando se construye desde la BD (login). Nunca en el principal del request.
+    private final String password;
+
+    public static AuthenticatedUser fromUser(User user) {
+        // getTenant().getId() no inicializa el proxy LAZY, así que no dispara un SELECT a tenants
+        UUID tenantId = user.getTenant() != null ? user.getTenant().getId() : null;
+        return new AuthenticatedUser(user.getId(), user.getEmail(), tenantId, user.getRole(),
+                user.getFullName(), user.getPassword());
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
+    }
+}
@@ -0,0 +1,22 @@
+package com.saaspos.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FolioDataSourceConfig {
+
+    // Pool propio para reservar bloques de folios (ver FolioService): misma BD que el pool principal,
+    // tamaño y nombre en app.folio.datasource.*. defaultCandidate = false: no reemplaza al DataSource
+    // autoconfigurado ni se inyecta por tipo; solo con @Qualifier("folioDataSource").
+    @Bean(defaultCandidate = false)
+    @Qualifier("folioDataSource")
+    @ConfigurationProperties("app.folio.datasource")
+    public HikariDataSource folioDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
@@ -2,10 +2,14 @@ package com.saaspos.api.config;
 
 import com.saaspos.api.service.CustomUserDetailsService;
 import com.saaspos.api.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -15,10 +19,15 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.UUID;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // Trazas por request: se muestrean en logback-spring.xml (categoría auth.trace)
+    private static final Logger AUTH_TRACE = LoggerFactory.getLogger("auth.trace");
+    private static final String REQUEST_ID_HEADER = "X-Request-Id";
+
     private final JwtUtil jwtUtil;
     private final CustomUserDetailsService userDetailsService;
 
@@ -33,6 +42,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain
     ) throws ServletException, IOException {
+        // Campos estructurados para todos los logs de este request (el tenantId se agrega al autenticar)
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        MDC.put("requestId", requestId != null && !requestId.isBlank() ? requestId : UUID.randomUUID().toString());
+        try {
+            authenticateAndContinue(request, response, filterChain);
+        } finally {
+            MDC.remove("requestId");
+            MDC.remove("tenantId");
+        }
+    }
+
+    private void authenticateAndContinue(HttpServletRequest request, HttpServletResponse response,
+                                         FilterChain filterChain) throws ServletException, IOException {
 
         // 1. Buscar el header "Authorization"
         final String authHeader = request.getHeader("Authorization");
@@ -48,41 +70,61 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         // 3. Extraer el token
         jwt = authHeader.substring(7);
 
-        // 4. Extraer el email del token
+        // 4. Verificar el token UNA sola vez y extraer sus claims (email, tenant, rol)
+        final Claims claims;
         try {
-            userEmail = jwtUtil.extractUsername(jwt);
-            System.out.println("JWT email: " + userEmail);
+            claims = jwtUtil.parseToken(jwt);
+            userEmail = claims.getSubject();
+            AUTH_TRACE.debug("JWT email: {}", userEmail);
         } catch (Exception e) {
             // Si el token está corrupto, seguimos sin autenticar
-            System.out.println("Error extrayendo username del JWT: " + e.getMessage());
+            AUTH_TRACE.info("Error extrayendo username del JWT: {}", e.getMessage());
             filterChain.doFilter(request, response);
             return;
         }
 
         // 5. Si hay email y el usuario no está autenticado todavía en el contexto
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            // Cargar detalles del usuario desde la DB
+            // Cargar detalles del usuario (caché del UserDetailsService; la DB solo si no está o expiró)
             UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
 
             // 6. Validar token
-            if (jwtUtil.validateToken(jwt, userDetails.getUsername())) {
-                // Crear objeto de autenticación
-                System.out.println("JWT válido para: " + userDetails.getUsername());
+            AuthenticatedUser principal = jwtUtil.validateToken(claims, userDetails.getUsername())
+                    ? buildPrincipal(claims, userDetails) : null;
+            if (principal != null) {
+                // Crear objeto de autenticación con la identidad completa (id, tenant, rol, nombre)
+                AUTH_TRACE.info("JWT válido para: {}", userDetails.getUsername());
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
+                        principal,
                         null,
-                        userDetails.getAuthorities()
+                        principal.getAuthorities()
                 );
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                 // 7. ESTABLECER LA SEGURIDAD (Aquí es donde Spring se entera de que estás logueado)
                 SecurityContextHolder.getContext().setAuthentication(authToken);
+                if (principal.getTenantId() != null) {
+                    MDC.put("tenantId", principal.getTenantId().toString());
+                }
             } else {
-                System.out.println("JWT inválido");
+                AUTH_TRACE.info("JWT inválido para: {}", userEmail);
             }
         }
 
         // 8. Continuar con la cadena de filtros
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    // Tenant y rol salen del usuario cargado por el UserDetailsService (caché con TTL que se invalida al
+    // modificar usuarios), no de los claims: un cambio de rol o de empresa rige a más tardar al expirar la caché,
+    // no al expirar el token. El password (hash) no viaja en el principal del request.
+    private AuthenticatedUser buildPrincipal(Claims claims, UserDetails userDetails) {
+        AuthenticatedUser user = (AuthenticatedUser) userDetails;
+        String userId = claims.get("user_id", String.class);
+        if (userId != null && !UUID.fromString(userId).equals(user.getId())) {
+            return null; // Token de un usuario que ya no existe (mismo email, otra cuenta)
+        }
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getTenantId(), user.getRole(),
+                user.getFullName(), null);
+    }
+}
@@ -0,0 +1,45 @@
+package com.saaspos.api.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Muestreo por categoría para logs de alto volumen (ej: trazas de auth por request).
+ * Al ser un TurboFilter decide ANTES de crear el evento, así que lo descartado no cuesta nada.
+ * WARN y ERROR siempre pasan. Se configura en logback-spring.xml (una instancia por categoría).
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private String loggerPrefix;
+    private long sampleEvery = 1;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (loggerPrefix == null || logger == null || !logger.getName().startsWith(loggerPrefix)) {
+            return FilterReply.NEUTRAL;
+        }
+        if (level != null && level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        // Solo contamos cuando el evento de verdad se va a emitir (evita sesgar el contador con logs apagados).
+        // Se compara con el nivel efectivo: logger.isEnabledFor vuelve a pasar por los TurboFilter (recursión infinita)
+        if (level != null && !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % sampleEvery == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerPrefix(String loggerPrefix) {
+        this.loggerPrefix = loggerPrefix;
+    }
+
+    public void setSampleEvery(long sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+}
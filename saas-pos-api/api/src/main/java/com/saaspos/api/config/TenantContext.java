@@ -0,0 +1,35 @@
+package com.saaspos.api.config;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.UUID;
+
+/**
+ * Acceso estático al usuario/tenant de la petición actual.
+ * Reemplaza los helpers privados getCurrentTenantId()/getCurrentUser() que cada controlador
+ * tenía duplicados (y que hacían un findByEmail por llamada).
+ */
+public final class TenantContext {
+
+    private TenantContext() {
+    }
+
+    public static AuthenticatedUser currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new RuntimeException("Usuario no encontrado");
+        }
+        return user;
+    }
+
+    public static UUID getTenantId() {
+        UUID tenantId = currentUser().getTenantId();
+        if (tenantId == null) throw new RuntimeException("Usuario sin Tenant asignado");
+        return tenantId;
+    }
+
+    public static UUID getUserId() {
+        return currentUser().getId();
+    }
+}
@@ -1,12 +1,9 @@
 package com.saaspos.api.controller;
 
-import com.saaspos.api.model.User;
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.model.ecommerce.ShopConfig;
 import com.saaspos.api.repository.ShopConfigRepository;
-import com.saaspos.api.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.UUID;
@@ -16,17 +13,15 @@ import java.util.UUID;
 public class AdminShopConfigController {
 
     private final ShopConfigRepository shopConfigRepository;
-    private final UserRepository userRepository;
 
-    public AdminShopConfigController(ShopConfigRepository shopConfigRepository, UserRepository userRepository) {
+    public AdminShopConfigController(ShopConfigRepository shopConfigRepository) {
         this.shopConfigRepository = shopConfigRepository;
-        this.userRepository = userRepository;
     }
 
     // 1. Obtener MI configuración
     @GetMapping
     public ResponseEntity<ShopConfig> getMyConfig() {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         ShopConfig config = shopConfigRepository.findByTenantId(tenantId)
                 .orElseGet(() -> createDefaultConfig(tenantId)); // Si no existe, crea una por defecto
@@ -37,7 +32,7 @@ public class AdminShopConfigController {
     // 2. Actualizar configuración (Logo, Color, Métodos)
     @PutMapping
     public ResponseEntity<ShopConfig> updateConfig(@RequestBody ShopConfig dto) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         ShopConfig config = shopConfigRepository.findByTenantId(tenantId)
                 .orElseThrow(() -> new RuntimeException("Configuración no encontrada"));
@@ -75,11 +70,4 @@ public class AdminShopConfigController {
         config.setActive(true); // Activa por defecto al crear
         return shopConfigRepository.save(config);
     }
-
-    private UUID getCurrentTenantId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName())
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-        return user.getTenant().getId();
-    }
 }
\ No newline at end of file
@@ -1,56 +1,76 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.dto.ecommerce.WebOrderItemRequest;
 import com.saaspos.api.dto.ecommerce.WebOrderRequest;
-import com.saaspos.api.model.BundleItem;
-import com.saaspos.api.model.InventoryLog;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.SaleCompleted;
+import com.saaspos.api.event.WebOrderStatusChanged;
 import com.saaspos.api.model.Product;
-import com.saaspos.api.model.User;
 import com.saaspos.api.model.ecommerce.WebOrder;
 import com.saaspos.api.model.ecommerce.WebOrderItem;
 import com.saaspos.api.model.Sale;
 import com.saaspos.api.model.SaleItem;
 import  com.saaspos.api.repository.SaleRepository;
-import com.saaspos.api.repository.InventoryLogRepository; // <--- NUEVO
 import com.saaspos.api.repository.ProductRepository;
-import com.saaspos.api.repository.UserRepository;
 import com.saaspos.api.repository.WebOrderRepository;
+import com.saaspos.api.service.InventoryLogOutbox;
+import com.saaspos.api.service.ItemEditEngine;
+import com.saaspos.api.service.StockService;
+import com.saaspos.api.service.StockService.StockMovement;
+import com.saaspos.api.service.StockService.StockPlan;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin/web-orders")
 public class AdminWebOrderController {
 
+    private static final Logger log = LoggerFactory.getLogger(AdminWebOrderController.class);
+
     private final WebOrderRepository webOrderRepository;
-    private final UserRepository userRepository;
     private final ProductRepository productRepository;
-    private final InventoryLogRepository inventoryLogRepository;
+    private final InventoryLogOutbox inventoryLogOutbox;
     private final SaleRepository saleRepository;
+    private final StockService stockService;
+    private final ItemEditEngine itemEditEngine;
+    private final DomainEventBus eventBus;
 
     public AdminWebOrderController(WebOrderRepository webOrderRepository,
-                                   UserRepository userRepository,
                                    ProductRepository productRepository,
-                                   InventoryLogRepository inventoryLogRepository,
-                                   SaleRepository saleRepository) {
+                                   InventoryLogOutbox inventoryLogOutbox,
+                                   SaleRepository saleRepository,
+                                   StockService stockService,
+                                   ItemEditEngine itemEditEngine,
+                                   DomainEventBus eventBus) {
         this.webOrderRepository = webOrderRepository;
-        this.userRepository = userRepository;
         this.productRepository = productRepository;
-        this.inventoryLogRepository = inventoryLogRepository;
+        this.inventoryLogOutbox = inventoryLogOutbox;
         this.saleRepository = saleRepository;
+        this.stockService = stockService;
+        this.itemEditEngine = itemEditEngine;
+        this.eventBus = eventBus;
     }
 
     @GetMapping("/{orderNumber}")
     public ResponseEntity<WebOrder> getOrder(@PathVariable String orderNumber) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         WebOrder order = webOrderRepository.findByOrderNumberAndTenantId(orderNumber, tenantId)
                 .orElseThrow(() -> new RuntimeException("Pedido no encontrado"));
         return ResponseEntity.ok(order);
@@ -60,7 +80,7 @@ public class AdminWebOrderController {
     @PatchMapping("/{orderNumber}/status")
     @Transactional
     public ResponseEntity<?> updateStatus(@PathVariable String orderNumber, @RequestBody String newStatusRaw) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         String newStatus = newStatusRaw.replace("\"", ""); // Limpiar comillas si vienen del JSON
 
         WebOrder order = webOrderRepository.findByOrderNumberAndTenantId(orderNumber, tenantId)
@@ -71,7 +91,7 @@ public class AdminWebOrderController {
             return ResponseEntity.ok(order);
         }
 
-        User currentUser = getCurrentUserEntity(); // Quién hace el cambio
+        AuthenticatedUser currentUser = TenantContext.currentUser(); // Quién hace el cambio
 
         boolean wasStockHeld = isStockHeld(oldStatus);
         boolean willStockBeHeld = isStockHeld(newStatus);
@@ -89,6 +109,7 @@ public class AdminWebOrderController {
             }
 
             order.setStatus(newStatus);
+            eventBus.publish(new WebOrderStatusChanged(tenantId, order.getId(), order.getOrderNumber(), oldStatus, newStatus));
             if (newStatus.equals("CANCELLED")) {
                 order.setEditReason("Cancelado manualmente por: " + currentUser.getFullName());
             }
@@ -103,6 +124,10 @@ public class AdminWebOrderController {
             return ResponseEntity.ok(webOrderRepository.save(order));
 
         } catch (RuntimeException e) {
+            // StockService.apply (transaccional) ya marcó la transacción para rollback al lanzar "Stock insuficiente".
+            // Marcarla aquí también hace que el commit de este método haga rollback limpio (sin
+            // UnexpectedRollbackException) y el cliente reciba el 400
+            TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
@@ -110,104 +135,85 @@ public class AdminWebOrderController {
     @PutMapping("/{orderNumber}/items")
     @Transactional
     public ResponseEntity<WebOrder> updateOrderItems(@PathVariable String orderNumber, @RequestBody WebOrderRequest request) {
-        UUID tenantId = getCurrentTenantId();
-        User currentUser = getCurrentUserEntity();
+        UUID tenantId = TenantContext.getTenantId();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
         WebOrder order = webOrderRepository.findByOrderNumberAndTenantId(orderNumber, tenantId).orElseThrow();
 
-        // 1. DEVOLVER STOCK DE ÍTEMS ANTIGUOS (Esto queda igual)
-        for (WebOrderItem oldItem : order.getItems()) {
-            Product p = oldItem.getProduct();
-            if (p != null) {
-                if ("BUNDLE".equals(p.getProductType())) {
-                    for (BundleItem childItem : p.getBundleItems()) {
-                        Product child = childItem.getComponentProduct();
-                        BigDecimal totalQty = childItem.getQuantity().multiply(oldItem.getQuantity());
-                        BigDecimal oldStk = child.getStockCurrent();
-                        child.setStockCurrent(oldStk.add(totalQty));
-                        productRepository.save(child);
-                        // Log simple de retorno
-                        createInventoryLog(child, currentUser, "WEB_ORDER_EDIT_RETURN", totalQty, oldStk, child.getStockCurrent(), "Edición Web (Re-cálculo)", order.getId());
-                    }
-                } else {
-                    BigDecimal oldStk = p.getStockCurrent();
-                    p.setStockCurrent(oldStk.add(oldItem.getQuantity()));
-                    productRepository.save(p);
-                    // Log simple de retorno
-                    createInventoryLog(p, currentUser, "WEB_ORDER_EDIT_RETURN", oldItem.getQuantity(), oldStk, p.getStockCurrent(), "Edición Web (Re-cálculo)", order.getId());
-                }
+        // 1. DIFERENCIA: productos actuales + pedidos (con componentes de packs) en una consulta
+        Set<UUID> productIds = new HashSet<>();
+        order.getItems().stream().filter(i -> i.getProduct() != null).forEach(i -> productIds.add(i.getProduct().getId()));
+        request.getItems().forEach(i -> productIds.add(i.getProductId()));
+        Map<UUID, Product> products = productRepository.findAllWithBundleItemsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+
+        List<ItemEditEngine.Line> lines = new ArrayList<>();
+        for (WebOrderItemRequest itemReq : request.getItems()) {
+            Product product = products.get(itemReq.getProductId());
+            if (product == null || !product.getTenantId().equals(tenantId)) {
+                throw new RuntimeException("Producto no encontrado: " + itemReq.getProductId());
             }
+            lines.add(new ItemEditEngine.Line(product, new BigDecimal(itemReq.getQuantity())));
         }
 
-        order.getItems().clear();
+        ItemEditEngine.Edit<WebOrderItem> edit = itemEditEngine.diff(order.getItems(), lines, products,
+                WebOrderItem::getProduct, WebOrderItem::getQuantity);
+        order.getItems().removeAll(edit.getRemoved());
 
-        // 2. PROCESAR NUEVOS ÍTEMS Y DESCONTAR STOCK (Aquí mejoramos el Log)
+        // Determinar si se usó PIN (Si es Cajero, asumimos que sí porque el front lo obligó)
+        String authLog = currentUser.getRole().equals("CASHIER") ? " (Autorizado PIN)" : "";
+
+        // 2. ACTUALIZAR ÍTEMS EN SU LUGAR (solo los nuevos se crean)
         BigDecimal newTotal = BigDecimal.ZERO;
 
-        for (WebOrderItemRequest itemReq : request.getItems()) {
-            Product product = productRepository.findById(itemReq.getProductId()).orElseThrow();
-            BigDecimal qty = new BigDecimal(itemReq.getQuantity());
+        for (int i = 0; i < lines.size(); i++) {
+            ItemEditEngine.Line line = lines.get(i);
+            WebOrderItemRequest itemReq = request.getItems().get(i);
+            Product product = line.product();
+            BigDecimal qty = line.quantity();
+
+            WebOrderItem item = edit.itemFor(line);
 
             // --- LÓGICA DE DETECCIÓN DE CAMBIOS Y PIN ---
-            BigDecimal priceToUse;
-            String priceLogDetail = "";
-
-            // Determinar si hubo cambio de precio
-            if (itemReq.getCustomPrice() != null) {
-                priceToUse = itemReq.getCustomPrice();
-                // Si el precio difiere del original, lo anotamos
-                if (priceToUse.compareTo(product.getPriceFinal()) != 0) {
-                    priceLogDetail = String.format(" [Precio: $%s -> $%s]", product.getPriceFinal(), priceToUse);
-                }
-            } else {
-                priceToUse = product.getPriceFinal();
+            // Al editar, toda línea se recotiza al precio actual del producto salvo que venga un precio manual
+            BigDecimal priceToUse = itemReq.getCustomPrice() != null ? itemReq.getCustomPrice() : product.getPriceFinal();
+            if (priceToUse.compareTo(product.getPriceFinal()) != 0) {
+                // Cambio de precio sin movimiento de stock: queda en la auditoría igual
+                inventoryLogOutbox.record(product, currentUser, "PRICE_OVERRIDE", BigDecimal.ZERO, product.getStockCurrent(), product.getStockCurrent(),
+                        String.format("Edición Web [Precio: $%s -> $%s]%s", product.getPriceFinal(), priceToUse, authLog), null, order.getId());
             }
-
-            // Determinar si se usó PIN (Si es Cajero, asumimos que sí porque el front lo obligó)
-            String authLog = currentUser.getRole().equals("CASHIER") ? " (Autorizado PIN)" : "";
-
-            // Construir el mensaje final del Log
-            String finalLogReason = "Edición Web" + priceLogDetail + authLog;
             // ---------------------------------------------
 
-            if ("BUNDLE".equals(product.getProductType())) {
-                for (BundleItem childItem : product.getBundleItems()) {
-                    Product child = childItem.getComponentProduct();
-                    BigDecimal totalQty = childItem.getQuantity().multiply(qty);
-
-                    if (child.getStockCurrent().compareTo(totalQty) < 0) throw new RuntimeException("Sin stock componente: " + child.getName());
-
-                    BigDecimal oldStk = child.getStockCurrent();
-                    child.setStockCurrent(oldStk.subtract(totalQty));
-                    productRepository.save(child);
-                    // Usamos el mensaje detallado
-                    createInventoryLog(child, currentUser, "WEB_ORDER_EDIT_OUT", totalQty.negate(), oldStk, child.getStockCurrent(), finalLogReason, order.getId());
-                }
-            } else {
-                if (product.getStockCurrent().compareTo(qty) < 0) throw new RuntimeException("Sin stock: " + product.getName());
-
-                BigDecimal oldStk = product.getStockCurrent();
-                product.setStockCurrent(oldStk.subtract(qty));
-                productRepository.save(product);
-                // Usamos el mensaje detallado
-                createInventoryLog(product, currentUser, "WEB_ORDER_EDIT_OUT", qty.negate(), oldStk, product.getStockCurrent(), finalLogReason, order.getId());
+            if (item == null) {
+                // Crear el Item en la Orden
+                item = new WebOrderItem();
+                item.setWebOrder(order);
+                item.setProduct(product);
+                item.setProductNameSnapshot(product.getName());
+                item.setSkuSnapshot(product.getSku());
+                order.getItems().add(item);
             }
-
-            // Crear el Item en la Orden
-            WebOrderItem newItem = new WebOrderItem();
-            newItem.setWebOrder(order);
-            newItem.setProduct(product);
-            newItem.setQuantity(qty);
-            newItem.setUnitPriceAtMoment(priceToUse); // Usamos el precio calculado
-            newItem.setCostPriceAtMoment(product.getCostPrice() != null ? product.getCostPrice() : BigDecimal.ZERO);
-            newItem.setProductNameSnapshot(product.getName());
-            newItem.setSkuSnapshot(product.getSku());
+            // El costo acompaña al precio recotizado (margen del pedido con valores de hoy)
+            item.setCostPriceAtMoment(product.getCostPrice() != null ? product.getCostPrice() : BigDecimal.ZERO);
+            item.setQuantity(qty);
+            item.setUnitPriceAtMoment(priceToUse); // Usamos el precio calculado
 
             BigDecimal subtotal = priceToUse.multiply(qty);
-            newItem.setSubtotal(subtotal);
-            order.getItems().add(newItem);
+            item.setSubtotal(subtotal);
             newTotal = newTotal.add(subtotal);
         }
 
+        // 3. STOCK: solo el cambio neto por producto, y solo si el pedido tiene stock reservado
+        // (un pedido cancelado ya lo devolvió). UPDATE condicional en orden de id; si algo no alcanza, rollback
+        if (isStockHeld(order.getStatus())) {
+            for (StockMovement m : itemEditEngine.applyStock(edit)) {
+                if (m.isTracked()) {
+                    String logReason = m.bundle() != null ? "Edición Web (Pack: " + m.bundle().getName() + ")" : "Edición Web";
+                    inventoryLogOutbox.record(m.product(), currentUser, "WEB_ORDER_EDIT", m.change(), m.oldStock(), m.newStock(),
+                            logReason + authLog, null, order.getId());
+                }
+            }
+        }
+
         order.setFinalTotal(newTotal.add(order.getShippingCost() != null ? order.getShippingCost() : BigDecimal.ZERO));
         order.setTotalItems(new BigDecimal(order.getItems().size()));
         order.setWasEdited(true);
@@ -227,81 +233,25 @@ public class AdminWebOrderController {
                 status.equals("PREPARING") || status.equals("SHIPPED") || status.equals("DELIVERED");
     }
 
-    private void modifyStock(WebOrder order, boolean isReturn, User user, String reason) {
+    private void modifyStock(WebOrder order, boolean isReturn, AuthenticatedUser user, String reason) {
+        StockPlan plan = new StockPlan();
         for (WebOrderItem item : order.getItems()) {
-            Product product = item.getProduct();
-            if (product != null) {
-                // Recargamos producto para tener datos frescos (y sus bundleItems)
-                Product dbProduct = productRepository.findById(product.getId()).orElse(product);
-                BigDecimal qtyOrder = item.getQuantity();
-
-                if ("BUNDLE".equals(dbProduct.getProductType())) {
-                    // SI ES PACK -> Afectamos a los HIJOS
-                    for (BundleItem bundleItem : dbProduct.getBundleItems()) {
-                        Product child = bundleItem.getComponentProduct();
-                        BigDecimal qtyChildTotal = bundleItem.getQuantity().multiply(qtyOrder);
-
-                        applyStockChange(child, isReturn, qtyChildTotal, user, reason + " (Pack: " + dbProduct.getName() + ")", order.getId());
-                    }
-                } else {
-                    // SI ES NORMAL -> Afectamos al PRODUCTO
-                    applyStockChange(dbProduct, isReturn, qtyOrder, user, reason, order.getId());
-                }
+            if (item.getProduct() != null) {
+                if (isReturn) plan.increase(item.getProduct(), item.getQuantity());
+                else plan.decrease(item.getProduct(), item.getQuantity());
             }
         }
+        applyStockChange(plan, isReturn, user, reason, order.getId());
     }
 
-    // Método refactorizado para aplicar el cambio a un producto individual (sea hijo o normal)
-    private void applyStockChange(Product p, boolean isReturn, BigDecimal quantity, User user, String reason, UUID orderId) {
-        BigDecimal oldStock = p.getStockCurrent();
-        BigDecimal newStock;
-        String action;
-        BigDecimal change;
-
-        if (isReturn) {
-            newStock = oldStock.add(quantity);
-            change = quantity;
-            action = "WEB_ORDER_RETURN";
-        } else {
-            if (oldStock.compareTo(quantity) < 0) {
-                throw new RuntimeException("No hay stock suficiente: " + p.getName());
-            }
-            newStock = oldStock.subtract(quantity);
-            change = quantity.negate();
-            action = "WEB_ORDER_REACTIVATE";
+    // Aplica el plan de forma atómica (ver StockService) y registra un log por producto afectado (sea hijo o normal)
+    private void applyStockChange(StockPlan plan, boolean isReturn, AuthenticatedUser user, String reason, UUID orderId) {
+        String action = isReturn ? "WEB_ORDER_RETURN" : "WEB_ORDER_REACTIVATE";
+        for (StockMovement m : stockService.apply(plan)) {
+            if (!m.isTracked()) continue;
+            String logReason = m.bundle() != null ? reason + " (Pack: " + m.bundle().getName() + ")" : reason;
+            inventoryLogOutbox.record(m.product(), user, action, m.change(), m.oldStock(), m.newStock(), logReason, null, orderId);
         }
-
-        p.setStockCurrent(newStock);
-        productRepository.save(p);
-        createInventoryLog(p, user, action, change, oldStock, newStock, reason, orderId);
-    }
-
-
-
-    private void createInventoryLog(Product p, User u, String action, BigDecimal change, BigDecimal oldStk, BigDecimal newStk, String reason, UUID webOrderId) {
-        InventoryLog log = new InventoryLog();
-        log.setTenantId(p.getTenantId());
-        log.setProductId(p.getId());
-        log.setProductNameSnapshot(p.getName());
-        log.setUserId(u.getId());
-        log.setUserNameSnapshot(u.getFullName());
-        log.setActionType(action);
-        log.setQuantityChange(change);
-        log.setOldStock(oldStk);
-        log.setNewStock(newStk);
-        log.setReason(reason);
-        log.setWebOrderId(webOrderId);
-        inventoryLogRepository.save(log);
-    }
-
-    private UUID getCurrentTenantId() {
-        return getCurrentUserEntity().getTenant().getId();
-    }
-
-    private User getCurrentUserEntity() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName())
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
     }
 
     // --- NUEVOS MÉTODOS PARA SINCRONIZAR CON DASHBOARD ---
@@ -313,11 +263,11 @@ public class AdminWebOrderController {
     private void createSaleFromWebOrder(WebOrder order, UUID tenantId) {
         // 1. Evitar duplicados: Verificamos si ya existe una venta con este número de orden web
         // Usaremos el campo saleNumber para guardar la referencia "WEB-1234"
-        if (saleRepository.existsBySaleNumber(order.getOrderNumber())) {
+        if (saleRepository.existsByTenantIdAndSaleNumber(tenantId, order.getOrderNumber())) {
             return; // Ya fue contabilizada
         }
 
-        System.out.println("Generando Venta contable para Orden Web: " + order.getOrderNumber());
+        log.info("Generando Venta contable para Orden Web: {}", order.getOrderNumber());
 
         Sale sale = new Sale();
         sale.setTenantId(tenantId);
@@ -328,9 +278,9 @@ public class AdminWebOrderController {
         sale.setTotalAmount(order.getFinalTotal());
 
         // Re-calcular netos e impuestos para que el reporte de ganancias funcione
-        // (Asumimos 19% IVA estándar de Chile para simplificar, o podrías sumar item por item)
+        // (Cabecera con IVA estándar sobre el total, que incluye el despacho; los ítems usan la tasa de su producto)
         BigDecimal total = order.getFinalTotal();
-        BigDecimal subtotal = total.divide(new BigDecimal("1.19"), 0, RoundingMode.HALF_UP);
+        BigDecimal subtotal = TaxCalculator.DEFAULT.netFromGross(Money.of(total)).toPesos();
         BigDecimal tax = total.subtract(subtotal);
 
         sale.setSubtotalAmount(subtotal);
@@ -345,24 +295,24 @@ public class AdminWebOrderController {
             saleItem.setProduct(webItem.getProduct());
             saleItem.setQuantity(webItem.getQuantity());
             saleItem.setUnitPrice(webItem.getUnitPriceAtMoment());
-            saleItem.setTotal(webItem.getSubtotal());
 
             // Costos e Impuestos del item
             saleItem.setCostPriceAtSale(webItem.getCostPriceAtMoment());
 
-            // Cálculos matemáticos del item
-            BigDecimal price = webItem.getUnitPriceAtMoment();
-            BigDecimal netPrice = price.divide(new BigDecimal("1.19"), 4, RoundingMode.HALF_UP);
-            BigDecimal unitTax = price.subtract(netPrice);
+            // Cálculos matemáticos del item (tasa del producto; IVA estándar si el producto ya no existe)
+            BigDecimal taxPercent = webItem.getProduct() != null ? webItem.getProduct().getTaxPercent() : null;
+            TaxCalculator.LinePrice line = TaxCalculator.priceLine(webItem.getUnitPriceAtMoment(), taxPercent, webItem.getQuantity());
 
-            saleItem.setNetPriceAtSale(netPrice);
-            saleItem.setUnitTax(unitTax);
-            saleItem.setTaxAmountAtSale(unitTax.multiply(webItem.getQuantity()));
+            saleItem.setTotal(line.total());
+            saleItem.setNetPriceAtSale(line.netUnitPrice());
+            saleItem.setUnitTax(line.unitTax());
+            saleItem.setTaxAmountAtSale(line.taxAmount());
 
             sale.addItem(saleItem);
         }
 
         // Guardar Venta completa
         saleRepository.save(sale);
+        eventBus.publish(new SaleCompleted(tenantId, sale.getId(), sale.getSaleNumber(), sale.getTotalAmount(), sale.getCreatedAt()));
     }
 }
\ No newline at end of file
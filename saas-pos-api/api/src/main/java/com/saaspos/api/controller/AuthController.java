@@ -1,45 +1,76 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
 import com.saaspos.api.dto.AuthResponse;
 import com.saaspos.api.dto.LoginRequest;
-import com.saaspos.api.model.User;
-import com.saaspos.api.repository.UserRepository;
 import com.saaspos.api.util.JwtUtil;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final ThreadPoolTaskExecutor loginExecutor;
+
+    @Value("${app.auth.retry-after-seconds:2}")
+    private int retryAfterSeconds;
 
-    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserRepository userRepository) {
+    public AuthController(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
+                          @Qualifier("loginExecutor") ThreadPoolTaskExecutor loginExecutor) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
-        this.userRepository = userRepository;
+        this.loginExecutor = loginExecutor;
     }
 
+    // Respuesta asíncrona: el hilo de Tomcat se libera mientras el BCrypt corre en el carril de login
     @PostMapping("/login")
-    public ResponseEntity<AuthResponse> login(@RequestBody @Valid LoginRequest request) {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody @Valid LoginRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(() -> authenticate(request), loginExecutor);
+        } catch (TaskRejectedException e) {
+            // Carril lleno (ej: inicio de turno): mejor un 503 inmediato que bloquear hilos de caja
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                    .body(Map.of("error", "Demasiados inicios de sesión simultáneos, reintenta en unos segundos")));
+        }
+    }
+
+    private ResponseEntity<?> authenticate(LoginRequest request) {
         // 1. Autenticar con Spring Security (esto verifica el password hash automáticamente)
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
-        );
+        Authentication auth;
+        try {
+            auth = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword())
+            );
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Credenciales inválidas"));
+        }
 
-        // 2. Si pasa la línea de arriba, las credenciales son válidas. Buscamos al usuario completo.
-        User user = userRepository.findByEmail(request.getEmail()).orElseThrow();
+        // 2. Si pasa la línea de arriba, las credenciales son válidas. El principal ya trae al usuario completo.
+        AuthenticatedUser user = (AuthenticatedUser) auth.getPrincipal();
 
         // 3. Generar el Token JWT
-        String tenantId = user.getTenant() != null ? user.getTenant().getId().toString() : "";
-        String token = jwtUtil.generateToken(user.getEmail(), user.getRole(), tenantId);
+        String tenantId = user.getTenantId() != null ? user.getTenantId().toString() : "";
+        String token = jwtUtil.generateToken(user);
 
         // 4. Devolver respuesta
         return ResponseEntity.ok(new AuthResponse(token, user.getEmail(), user.getRole(), tenantId, user.getFullName()));
     }
-}
\ No newline at end of file
+}
@@ -1,17 +1,14 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.dto.ChartDataDto;
 import com.saaspos.api.dto.DashboardStatsDto;
 import com.saaspos.api.dto.ProductRankingDto;
 import com.saaspos.api.model.Sale;
-import com.saaspos.api.model.User;
-import com.saaspos.api.repository.ProductRepository;
 import com.saaspos.api.repository.SaleRepository;
-import com.saaspos.api.repository.UserRepository;
+import com.saaspos.api.service.LowStockMonitor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
@@ -25,13 +22,11 @@ import java.util.UUID;
 public class DashboardController {
 
     private final SaleRepository saleRepository;
-    private final ProductRepository productRepository;
-    private final UserRepository userRepository;
+    private final LowStockMonitor lowStockMonitor;
 
-    public DashboardController(SaleRepository saleRepository, ProductRepository productRepository, UserRepository userRepository) {
+    public DashboardController(SaleRepository saleRepository, LowStockMonitor lowStockMonitor) {
         this.saleRepository = saleRepository;
-        this.productRepository = productRepository;
-        this.userRepository = userRepository;
+        this.lowStockMonitor = lowStockMonitor;
     }
 
     @GetMapping("/stats")
@@ -39,7 +34,7 @@ public class DashboardController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
     ) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         // Si no envían fechas, usamos HOY por defecto
         if (startDate == null || endDate == null) {
@@ -50,7 +45,7 @@ public class DashboardController {
 
         BigDecimal totalSales = saleRepository.sumTotalSalesByDateRange(tenantId, startDate, endDate);
         long transactions = saleRepository.countTransactionsByDateRange(tenantId, startDate, endDate);
-        long lowStock = productRepository.countLowStock(tenantId); // Este no depende de fechas
+        long lowStock = lowStockMonitor.count(tenantId); // Este no depende de fechas: contador en memoria
         BigDecimal totalProfit = saleRepository.calculateRealProfitByDateRange(tenantId, startDate, endDate);
 
         return ResponseEntity.ok(new DashboardStatsDto(totalSales, transactions, lowStock, totalProfit));
@@ -62,7 +57,7 @@ public class DashboardController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
 
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         List<Sale> sales = saleRepository.findSalesByDateRange(tenantId, startDate, endDate);
         return ResponseEntity.ok(sales);
     }
@@ -76,7 +71,7 @@ public class DashboardController {
             @RequestParam(defaultValue = "MOST_SOLD") String type // MOST_SOLD, LEAST_SOLD, UNSOLD
     ) {
 
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         List<ProductRankingDto> ranking;
 
         switch (type) {
@@ -102,7 +97,7 @@ public class DashboardController {
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @RequestParam String groupBy // "DAY" o "MONTH"
     ) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         List<ChartDataDto> data;
 
         if ("MONTH".equals(groupBy)) {
@@ -114,10 +109,4 @@ public class DashboardController {
 
         return ResponseEntity.ok(data);
     }
-
-    private UUID getCurrentTenantId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName()).orElseThrow();
-        return user.getTenant().getId();
-    }
 }
\ No newline at end of file
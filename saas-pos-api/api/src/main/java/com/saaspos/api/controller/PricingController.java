@@ -0,0 +1,92 @@
+package com.saaspos.api.controller;
+
+import com.saaspos.api.config.TenantContext;
+import com.saaspos.api.dto.PriceChangeRequest;
+import com.saaspos.api.dto.PriceHistoryDto;
+import com.saaspos.api.model.PriceChange;
+import com.saaspos.api.repository.PriceChangeRepository;
+import com.saaspos.api.repository.ProductPriceHistoryRepository;
+import com.saaspos.api.service.RepricingService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/pricing")
+public class PricingController {
+
+    private final RepricingService repricingService;
+    private final PriceChangeRepository priceChangeRepository;
+    private final ProductPriceHistoryRepository productPriceHistoryRepository;
+
+    public PricingController(RepricingService repricingService, PriceChangeRepository priceChangeRepository,
+                             ProductPriceHistoryRepository productPriceHistoryRepository) {
+        this.repricingService = repricingService;
+        this.priceChangeRepository = priceChangeRepository;
+        this.productPriceHistoryRepository = productPriceHistoryRepository;
+    }
+
+    // POST: Cambio de precio masivo (inmediato, o programado con effectiveAt futuro)
+    @PostMapping("/changes")
+    public ResponseEntity<?> submitChange(@RequestBody PriceChangeRequest request) {
+        try {
+            return ResponseEntity.ok(repricingService.submit(TenantContext.getTenantId(), TenantContext.currentUser(), request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // GET: Cambios masivos del tenant, más recientes primero (filtro opcional por estado)
+    @GetMapping("/changes")
+    public ResponseEntity<List<PriceChange>> getChanges(@RequestParam(required = false) String status,
+                                                        @RequestParam(defaultValue = "50") int limit) {
+        UUID tenantId = TenantContext.getTenantId();
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, 500)));
+        return ResponseEntity.ok(status != null
+                ? priceChangeRepository.findByTenantIdAndStatusOrderByIdDesc(tenantId, status.toUpperCase(), page)
+                : priceChangeRepository.findByTenantIdOrderByIdDesc(tenantId, page));
+    }
+
+    // POST: Cancelar un cambio programado que aún no se aplica
+    @PostMapping("/changes/{id}/cancel")
+    public ResponseEntity<?> cancelChange(@PathVariable Long id) {
+        try {
+            repricingService.cancel(TenantContext.getTenantId(), id);
+            return ResponseEntity.ok(Map.of("message", "Cambio cancelado"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // GET: Historial de precios de un producto, más recientes primero
+    @GetMapping("/products/{productId}/history")
+    public ResponseEntity<List<PriceHistoryDto>> getHistory(@PathVariable UUID productId,
+                                                            @RequestParam(defaultValue = "50") int limit) {
+        UUID tenantId = TenantContext.getTenantId();
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, 500)));
+        return ResponseEntity.ok(productPriceHistoryRepository
+                .findByTenantIdAndProductIdOrderByChangeDateDescIdDesc(tenantId, productId, page).stream()
+                .map(PriceHistoryDto::from)
+                .collect(Collectors.toList()));
+    }
+
+    // GET: Precio final vigente en una fecha (ej: ?at=2026-03-01T10:00:00)
+    @GetMapping("/products/{productId}/price")
+    public ResponseEntity<?> getPriceAt(@PathVariable UUID productId,
+                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            BigDecimal price = repricingService.priceAt(TenantContext.getTenantId(), productId, at);
+            return ResponseEntity.ok(Map.of("productId", productId, "at", at, "priceFinal", price));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
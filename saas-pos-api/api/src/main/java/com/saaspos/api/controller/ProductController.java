@@ -1,40 +1,73 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
+import com.saaspos.api.dto.CatalogChangesDto;
 import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.dto.ProductImportResult;
+import com.saaspos.api.dto.ProductSearchResultDto;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.ProductUpdated;
+import com.saaspos.api.event.StockChanged;
 import com.saaspos.api.model.*;
 import com.saaspos.api.repository.*;
+import com.saaspos.api.service.BundleAvailability;
+import com.saaspos.api.service.CatalogReplica;
+import com.saaspos.api.service.CatalogSnapshotService;
+import com.saaspos.api.service.CatalogSyncService;
+import com.saaspos.api.service.FolioService;
+import com.saaspos.api.service.HotStockLedger;
+import com.saaspos.api.service.InventoryLogOutbox;
+import com.saaspos.api.service.LowStockMonitor;
+import com.saaspos.api.service.ProductImportService;
+import com.saaspos.api.service.ProductListingService;
+import com.saaspos.api.service.RepricingService;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductController {
 
     private final ProductRepository productRepository;
-    private final UserRepository userRepository;
     private final TenantRepository tenantRepository;
     private final CategoryRepository categoryRepository;
     private final SupplierRepository supplierRepository;
     private final SaleItemRepository saleItemRepository;
     private final WebOrderRepository webOrderRepository;
     private final WebOrderItemRepository webOrderItemRepository;
-    private final InventoryLogRepository inventoryLogRepository;
+    private final InventoryLogOutbox inventoryLogOutbox;
     private final ProductPriceHistoryRepository productPriceHistoryRepository;
     // NUEVO REPOSITORIO
     private final BundleItemRepository bundleItemRepository;
-
-    public ProductController(ProductRepository productRepository, UserRepository userRepository, TenantRepository tenantRepository, CategoryRepository categoryRepository, SupplierRepository supplierRepository, SaleItemRepository saleItemRepository, WebOrderRepository webOrderRepository, WebOrderItemRepository webOrderItemRepository, ProductPriceHistoryRepository productPriceHistoryRepository, InventoryLogRepository inventoryLogRepository, BundleItemRepository bundleItemRepository) {
+    private final HotStockLedger hotStockLedger;
+    private final FolioService folioService;
+    private final DomainEventBus eventBus;
+    private final CatalogReplica catalogReplica;
+    private final ProductListingService productListingService;
+    private final BundleAvailability bundleAvailability;
+    private final LowStockMonitor lowStockMonitor;
+    private final StockAlertRepository stockAlertRepository;
+    private final ProductImportService productImportService;
+    private final RepricingService repricingService;
+    private final CatalogSyncService catalogSyncService;
+    private final CatalogSnapshotService catalogSnapshotService;
+
+    public ProductController(ProductRepository productRepository, TenantRepository tenantRepository, CategoryRepository categoryRepository, SupplierRepository supplierRepository, SaleItemRepository saleItemRepository, WebOrderRepository webOrderRepository, WebOrderItemRepository webOrderItemRepository, ProductPriceHistoryRepository productPriceHistoryRepository, InventoryLogOutbox inventoryLogOutbox, BundleItemRepository bundleItemRepository, HotStockLedger hotStockLedger, FolioService folioService, DomainEventBus eventBus, CatalogReplica catalogReplica, ProductListingService productListingService, BundleAvailability bundleAvailability, LowStockMonitor lowStockMonitor, StockAlertRepository stockAlertRepository, ProductImportService productImportService, RepricingService repricingService, CatalogSyncService catalogSyncService, CatalogSnapshotService catalogSnapshotService) {
         this.productRepository = productRepository;
-        this.userRepository = userRepository;
         this.tenantRepository = tenantRepository;
         this.categoryRepository = categoryRepository;
         this.supplierRepository = supplierRepository;
@@ -42,35 +75,136 @@ public class ProductController {
         this.webOrderRepository = webOrderRepository;
         this.webOrderItemRepository = webOrderItemRepository;
         this.productPriceHistoryRepository = productPriceHistoryRepository;
-        this.inventoryLogRepository = inventoryLogRepository;
+        this.inventoryLogOutbox = inventoryLogOutbox;
         this.bundleItemRepository = bundleItemRepository;
+        this.hotStockLedger = hotStockLedger;
+        this.folioService = folioService;
+        this.eventBus = eventBus;
+        this.catalogReplica = catalogReplica;
+        this.productListingService = productListingService;
+        this.bundleAvailability = bundleAvailability;
+        this.lowStockMonitor = lowStockMonitor;
+        this.stockAlertRepository = stockAlertRepository;
+        this.productImportService = productImportService;
+        this.repricingService = repricingService;
+        this.catalogSyncService = catalogSyncService;
+        this.catalogSnapshotService = catalogSnapshotService;
     }
 
     // ... (GET getAllProducts IGUAL) ...
+    // Sin "limit": catálogo completo desde la réplica en memoria (ver CatalogReplica), como siempre.
+    // Con "limit": una página por cursor con filtros y orden en el servidor (ver ProductListingService)
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        UUID tenantId = getCurrentTenantId();
-        List<Product> products = productRepository.findByTenantId(tenantId);
-        List<ProductDto> dtos = products.stream().map(this::mapToDto).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) Integer limit,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "NAME") String sort,
+                                            @RequestParam(defaultValue = "asc") String dir,
+                                            @RequestParam(required = false) UUID categoryId,
+                                            @RequestParam(required = false) UUID supplierId,
+                                            @RequestParam(required = false) String productType,
+                                            @RequestParam(required = false) Boolean active,
+                                            @RequestParam(required = false) Boolean isPublic) {
+        UUID tenantId = TenantContext.getTenantId();
+        if (limit == null) {
+            return ResponseEntity.ok(catalogReplica.findAll(tenantId));
+        }
+
+        try {
+            ProductListingService.Sort sortBy = ProductListingService.Sort.valueOf(sort.toUpperCase());
+            ProductListingService.Filter filter = new ProductListingService.Filter(categoryId, supplierId, productType, active, isPublic);
+            return ResponseEntity.ok(productListingService.page(tenantId, filter, sortBy, "desc".equalsIgnoreCase(dir),
+                    cursor, Math.max(1, Math.min(limit, 100))));
+        } catch (IllegalArgumentException e) {
+            // Orden desconocido o cursor inválido
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // GET: Cambios del catálogo desde la versión del terminal (since=0: catálogo completo). Ver CatalogSyncService
+    @GetMapping("/changes")
+    public ResponseEntity<CatalogChangesDto> getChanges(@RequestParam(defaultValue = "0") long since,
+                                                        @RequestParam(defaultValue = "1000") int limit) {
+        UUID tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(catalogSyncService.changes(tenantId, since, Math.max(1, Math.min(limit, 5000))));
     }
 
+    // GET: Catálogo completo en binario comprimido para el arranque del terminal (formato en CatalogSnapshotService).
+    // Después se sigue con /changes?since=X-Catalog-Version
+    @GetMapping("/snapshot")
+    public void getSnapshot(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CatalogSnapshotService.Snapshot snapshot = catalogSnapshotService.current(TenantContext.getTenantId());
+        response.setHeader("ETag", snapshot.etag());
+        response.setHeader("X-Catalog-Version", String.valueOf(snapshot.version()));
+        response.setHeader("Cache-Control", "private, no-cache");
+        if (snapshot.etag().equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        catalogSnapshotService.transfer(snapshot, request, response);
+    }
+
+    // Buscador del POS: resultados livianos y rankeados (SKU exacto > empieza con > parecido), de a "limit".
+    // Si hay más, el header X-Next-Cursor trae el cursor para pedir la página siguiente
     @GetMapping("/search")
-    public ResponseEntity<List<ProductDto>> searchProducts(@RequestParam String q) {
-        UUID tenantId = getCurrentTenantId();
-        List<Product> products = productRepository.searchByTerm(tenantId, q);
+    public ResponseEntity<?> searchProducts(@RequestParam String q,
+                                            @RequestParam(defaultValue = "20") int limit,
+                                            @RequestParam(required = false) String cursor) {
+        UUID tenantId = TenantContext.getTenantId();
+        String term = q.trim();
+        if (term.isEmpty()) return ResponseEntity.ok(List.of());
+
+        int pageSize = Math.max(1, Math.min(limit, 100));
+        int afterRank = -1;
+        double afterScore = 0;
+        UUID afterId = new UUID(0, 0);
+        if (cursor != null && !cursor.isBlank()) {
+            // Cursor = "rank_score_id" de la última fila entregada
+            try {
+                String[] parts = cursor.split("_");
+                afterRank = Integer.parseInt(parts[0]);
+                afterScore = Double.parseDouble(parts[1]);
+                afterId = UUID.fromString(parts[2]);
+            } catch (RuntimeException e) {
+                return ResponseEntity.badRequest().body("Cursor inválido");
+            }
+        }
+
+        String likeTerm = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        // Pedimos una fila extra para saber si hay página siguiente
+        List<ProductSearchResultDto> rows = productRepository.search(tenantId, term, likeTerm,
+                afterRank, afterScore, afterId, pageSize + 1);
+
+        if (rows.size() <= pageSize) return ResponseEntity.ok(rows);
+
+        List<ProductSearchResultDto> page = rows.subList(0, pageSize);
+        ProductSearchResultDto last = page.get(pageSize - 1);
+        return ResponseEntity.ok()
+                .header("X-Next-Cursor", last.getMatchRank() + "_" + last.getMatchScore() + "_" + last.getId())
+                .body(page);
+    }
 
-        // Convertimos a DTO para mostrar info linda en el front
-        List<ProductDto> dtos = products.stream().map(this::mapToDto).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+    // POST: Carga masiva desde CSV (encabezado + filas) o JSON (arreglo de objetos), leída en streaming.
+    // Sin @Transactional: cada bloque confirma por su cuenta y las filas con error vienen en la respuesta
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain", "application/json", "application/octet-stream"})
+    public ResponseEntity<?> importProducts(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        boolean json = contentType != null && contentType.toLowerCase().contains("json");
+        try {
+            ProductImportResult result = productImportService.importProducts(
+                    TenantContext.getTenantId(), TenantContext.currentUser(), request.getInputStream(), json);
+            return ResponseEntity.ok(result);
+        } catch (IOException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     // POST: Crear nuevo producto (Con validación de Stock Pack)
     @PostMapping
     @Transactional
     public ResponseEntity<?> createProduct(@RequestBody ProductDto dto) {
-        UUID tenantId = getCurrentTenantId();
-        User currentUser = getCurrentUserEntity();
+        UUID tenantId = TenantContext.getTenantId();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
+        catalogSyncService.lockTenant(tenantId);
 
         // 1. Validaciones básicas (Plan y SKU) - IGUAL QUE ANTES
         Tenant tenant = tenantRepository.findById(tenantId).orElseThrow(() -> new RuntimeException("Tenant no existe"));
@@ -85,8 +219,8 @@ public class ProductController {
 
         String finalSku = dto.getSku();
         if (finalSku == null || finalSku.trim().isEmpty()) {
-            // Generamos uno corto: GEN-173618293
-            finalSku = "GEN-" + System.currentTimeMillis();
+            // Generamos uno corto y correlativo por empresa: GEN-000042
+            finalSku = folioService.next(tenantId, FolioService.GENERATED_SKU);
         }
 
         // Validamos duplicados con el SKU final
@@ -161,38 +295,43 @@ public class ProductController {
             product.setStockCurrent(stockToSave);
         }
 
-        Product savedProduct = productRepository.save(product);
+        Product savedProduct = productRepository.saveAndFlush(product);
+        if ("BUNDLE".equals(savedProduct.getProductType())) {
+            // Unidades armables del pack nuevo (lo usa la respuesta y todas las lecturas siguientes)
+            savedProduct.setAvailableUnits(bundleAvailability.recompute(List.of(savedProduct.getId())).get(savedProduct.getId()));
+        }
 
         // LOG
         if (stockToSave != null && stockToSave.compareTo(BigDecimal.ZERO) > 0) {
-            createInventoryLog(savedProduct, currentUser, "CREATE", stockToSave, BigDecimal.ZERO, stockToSave, "Inventario inicial");
+            inventoryLogOutbox.record(savedProduct, currentUser, "CREATE", stockToSave, BigDecimal.ZERO, stockToSave, "Inventario inicial", null, null);
         }
+        eventBus.publish(new ProductUpdated(tenantId, savedProduct.getId(), ProductUpdated.Change.CREATED));
 
-        return ResponseEntity.ok(mapToDto(savedProduct));
+        return ResponseEntity.ok(ProductDto.from(savedProduct));
     }
 
     // ... (GET getProductById, getProductBySku IGUALES) ...
     @GetMapping("/{id}")
     public ResponseEntity<ProductDto> getProductById(@PathVariable UUID id) {
-        Product product = productRepository.findById(id).orElseThrow(() -> new RuntimeException("No encontrado"));
-        return ResponseEntity.ok(mapToDto(product));
+        UUID tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(catalogReplica.findById(tenantId, id).orElseThrow(() -> new RuntimeException("No encontrado")));
     }
 
     @GetMapping("/sku/{sku}")
     public ResponseEntity<ProductDto> getProductBySku(@PathVariable String sku) {
-        UUID tenantId = getCurrentTenantId();
-        Product product = productRepository.findByTenantId(tenantId).stream()
-                .filter(p -> p.getSku().equals(sku)).findFirst().orElse(null);
-        if (product == null) return ResponseEntity.notFound().build();
-        return ResponseEntity.ok(mapToDto(product));
+        UUID tenantId = TenantContext.getTenantId();
+        // Escaneo de código de barras: índice hash en memoria
+        return catalogReplica.findBySku(tenantId, sku)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     // 3. Actualizar Producto (PUT)
     @PutMapping("/{id}")
     @Transactional // Importante para consistencia
     public ResponseEntity<?> updateProduct(@PathVariable UUID id, @RequestBody ProductDto dto) {
-        UUID tenantId = getCurrentTenantId();
-        User currentUser = getCurrentUserEntity();
+        UUID tenantId = TenantContext.getTenantId();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
 
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
@@ -200,6 +339,7 @@ public class ProductController {
         if (!product.getTenantId().equals(tenantId)) {
             return ResponseEntity.status(403).body("No tienes permiso");
         }
+        catalogSyncService.lockTenant(tenantId);
 
         // --- 1. LÓGICA DE STOCK (0 -> NULL para Packs) ---
         BigDecimal oldStock = product.getStockCurrent();
@@ -223,7 +363,12 @@ public class ProductController {
 
         if (newSafe.compareTo(oldSafe) != 0) {
             BigDecimal diff = newSafe.subtract(oldSafe);
-            createInventoryLog(product, currentUser, "MANUAL_ADJUST", diff, oldSafe, newSafe, "Ajuste manual desde Catálogo");
+            inventoryLogOutbox.record(product, currentUser, "MANUAL_ADJUST", diff, oldSafe, newSafe, "Ajuste manual desde Catálogo", null, null);
+
+            // Si el producto vive en el ledger en memoria, el conteo manual reemplaza lo pendiente
+            if (hotStockLedger.handles(product)) {
+                hotStockLedger.reset(product.getId());
+            }
         }
 
         if (dto.getSku() != null && !dto.getSku().trim().isEmpty()) {
@@ -240,6 +385,7 @@ public class ProductController {
         product.setStockCurrent(newStock); // Guardamos el valor procesado (NULL o Número)
         product.setStockMin(dto.getStockMin());
         product.setMeasurementUnit(dto.getMeasurementUnit());
+        BigDecimal oldPrice = product.getPriceFinal();
         calculateProductPrices(product, dto);
         product.setImageUrl(dto.getImageUrl());
         product.setIsPublic(dto.getIsPublic() != null ? dto.getIsPublic() : false);
@@ -271,9 +417,19 @@ public class ProductController {
         }
         // ----------------------------------------------------
 
-        Product savedProduct = productRepository.save(product);
+        Product savedProduct = productRepository.saveAndFlush(product);
+        repricingService.recordManualChange(savedProduct, oldPrice, currentUser);
+        // Pack editado (límite o componentes) o componente con stock ajustado: se recalculan los packs afectados
+        Map<UUID, BigDecimal> units = bundleAvailability.recompute(List.of(savedProduct.getId()));
+        if (units.containsKey(savedProduct.getId())) {
+            savedProduct.setAvailableUnits(units.get(savedProduct.getId()));
+        }
 
-        return ResponseEntity.ok(mapToDto(savedProduct));
+        eventBus.publish(new ProductUpdated(tenantId, savedProduct.getId(), ProductUpdated.Change.UPDATED));
+        if (newSafe.compareTo(oldSafe) != 0 || (oldStock == null) != (newStock == null)) {
+            eventBus.publish(new StockChanged(tenantId, savedProduct.getId(), oldStock, newStock, savedProduct.getStockMin()));
+        }
+        return ResponseEntity.ok(ProductDto.from(savedProduct));
     }
 
     // 4. Eliminar Producto (CORREGIDO HARD DELETE)
@@ -281,9 +437,10 @@ public class ProductController {
     @Transactional
     public ResponseEntity<?> deleteProduct(@PathVariable UUID id,
                                            @RequestParam(defaultValue = "false") boolean force) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         Product product = productRepository.findById(id).orElseThrow(() -> new RuntimeException("No encontrado"));
         if (!product.getTenantId().equals(tenantId)) return ResponseEntity.status(403).body("Sin permiso");
+        catalogSyncService.lockTenant(tenantId);
 
         if (force) {
             try {
@@ -291,15 +448,19 @@ public class ProductController {
                 webOrderRepository.deleteByProductId(id);
                 webOrderItemRepository.deleteByProductId(id);
                 saleItemRepository.deleteByProductId(id);
+                productPriceHistoryRepository.deleteByProductId(id);
 
                 // 2. BORRAR RELACIONES DE PACKS (ESTO SOLUCIONA TU ERROR)
                 // A. Si soy un Pack, borra mis hijos de la tabla intermedia
                 bundleItemRepository.deleteByBundleProductId(id);
                 // B. Si soy un Componente, borra mis apariciones en otros packs
+                Set<UUID> affectedBundles = bundleAvailability.bundlesContaining(List.of(id));
                 bundleItemRepository.deleteByComponentProductId(id);
 
                 // 3. Borrar físicamente
                 productRepository.deleteHard(id);
+                bundleAvailability.recompute(affectedBundles);
+                eventBus.publish(new ProductUpdated(tenantId, id, ProductUpdated.Change.DELETED));
                 return ResponseEntity.ok().body("{\"message\": \"Eliminado definitivamente.\"}");
             } catch (Exception e) {
                 e.printStackTrace();
@@ -307,40 +468,47 @@ public class ProductController {
             }
         } else {
             productRepository.deleteById(id);
+            eventBus.publish(new ProductUpdated(tenantId, id, ProductUpdated.Change.ARCHIVED));
             return ResponseEntity.ok().body("{\"message\": \"Archivado correctamente.\"}");
         }
     }
 
-    // ... (activateProduct, getLowStockProducts, calculateProductPrices, createInventoryLog, getCurrentTenantId, getCurrentUserEntity IGUALES) ...
+    // ... (activateProduct, getLowStockProducts, calculateProductPrices, createInventoryLog IGUALES) ...
     // Solo asegurate de que estén en el archivo final.
 
     // PATCH /activate
     @PatchMapping("/{id}/activate")
     public ResponseEntity<?> activateProduct(@PathVariable UUID id) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         Product product = productRepository.findAnyStatusById(id).orElseThrow();
         if (!product.getTenantId().equals(tenantId)) return ResponseEntity.status(403).build();
         productRepository.activateProduct(id);
+        eventBus.publish(new ProductUpdated(tenantId, id, ProductUpdated.Change.ACTIVATED));
         return ResponseEntity.ok().body("{\"message\": \"Activado.\"}");
     }
 
     @GetMapping("/low-stock")
-    @Transactional(readOnly = true) // Mantenemos esto para evitar el error Lazy
     public ResponseEntity<List<ProductDto>> getLowStockProducts() {
-        UUID tenantId = getCurrentTenantId();
-        List<Product> all = productRepository.findByTenantId(tenantId);
-
-        return ResponseEntity.ok(all.stream()
-                // FIX: Verificamos que stockCurrent NO sea null antes de comparar
-                .filter(p -> p.getStockCurrent() != null && p.getStockCurrent().compareTo(p.getStockMin()) <= 0)
-                .map(this::mapToDto)
-                .collect(Collectors.toList()));
+        UUID tenantId = TenantContext.getTenantId();
+        // Los k productos bajo el mínimo que mantiene LowStockMonitor, armados desde la réplica
+        return ResponseEntity.ok(catalogReplica.findAllById(tenantId, lowStockMonitor.lowStockIds(tenantId)));
+    }
+
+    // Historial de cruces del stock mínimo (más recientes primero), de todo el tenant o de un producto
+    @GetMapping("/low-stock/alerts")
+    public ResponseEntity<List<StockAlert>> getStockAlerts(@RequestParam(required = false) UUID productId,
+                                                           @RequestParam(defaultValue = "50") int limit) {
+        UUID tenantId = TenantContext.getTenantId();
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, 500)));
+        return ResponseEntity.ok(productId != null
+                ? stockAlertRepository.findByTenantIdAndProductIdOrderByIdDesc(tenantId, productId, page)
+                : stockAlertRepository.findByTenantIdOrderByIdDesc(tenantId, page));
     }
 
     private void calculateProductPrices(Product product, ProductDto dto) {
         BigDecimal cost = dto.getCostPrice() != null ? dto.getCostPrice() : BigDecimal.ZERO;
         BigDecimal inputPrice = dto.getPriceFinal() != null ? dto.getPriceFinal() : BigDecimal.ZERO;
-        BigDecimal taxPct = dto.getTaxPercent() != null ? dto.getTaxPercent() : new BigDecimal("19.0");
+        BigDecimal taxPct = dto.getTaxPercent() != null ? dto.getTaxPercent() : TaxCalculator.DEFAULT_TAX_PERCENT;
         boolean hasTax = dto.getIsTaxIncluded() != null ? dto.getIsTaxIncluded() : true;
 
         product.setCostPrice(cost);
@@ -350,96 +518,10 @@ public class ProductController {
 
         BigDecimal priceNeto;
         if (hasTax) {
-            BigDecimal taxFactor = BigDecimal.ONE.add(taxPct.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP));
-            priceNeto = inputPrice.divide(taxFactor, 4, RoundingMode.HALF_UP);
+            priceNeto = TaxCalculator.rate(taxPct).netFromGross(Money.of(inputPrice)).toBigDecimal();
         } else {
             priceNeto = inputPrice;
         }
         product.setPriceNeto(priceNeto);
     }
-
-    private void createInventoryLog(Product p, User u, String action, BigDecimal change, BigDecimal oldStk, BigDecimal newStk, String reason) {
-        InventoryLog log = new InventoryLog();
-        log.setTenantId(p.getTenantId());
-        log.setProductId(p.getId());
-        log.setProductNameSnapshot(p.getName());
-        log.setUserId(u.getId());
-        log.setUserNameSnapshot(u.getFullName());
-        log.setActionType(action);
-        log.setQuantityChange(change);
-        log.setOldStock(oldStk);
-        log.setNewStock(newStk);
-        log.setReason(reason);
-        inventoryLogRepository.save(log);
-    }
-
-    private UUID getCurrentTenantId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName()).orElseThrow();
-        return user.getTenant().getId();
-    }
-
-    private User getCurrentUserEntity() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName()).orElseThrow();
-    }
-
-    // --- CORRECCIÓN EN EL MAPPER PARA VER LOS ITEMS ---
-    private ProductDto mapToDto(Product p) {
-        ProductDto dto = new ProductDto();
-        // ... Campos básicos (id, sku, name, description, prices...)
-        dto.setId(p.getId());
-        dto.setSku(p.getSku());
-        dto.setName(p.getName());
-        dto.setDescription(p.getDescription());
-        dto.setPriceNeto(p.getPriceNeto());
-        dto.setTaxPercent(p.getTaxPercent());
-        dto.setCostPrice(p.getCostPrice());
-        dto.setPriceFinal(p.getPriceFinal());
-        dto.setIsTaxIncluded(p.getIsTaxIncluded());
-
-        // Margen
-        if (p.getCostPrice() != null && p.getCostPrice().compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal ganancia = p.getPriceNeto().subtract(p.getCostPrice());
-            BigDecimal margen = ganancia.divide(p.getCostPrice(), 4, RoundingMode.HALF_UP).multiply(new BigDecimal("100"));
-            dto.setMarginPercent(margen.setScale(2, RoundingMode.HALF_UP));
-        } else {
-            dto.setMarginPercent(new BigDecimal("100"));
-        }
-
-        dto.setStockCurrent(p.getEffectiveStock());
-        dto.setStockMin(p.getStockMin());
-        dto.setAttributes(p.getAttributes());
-        dto.setMeasurementUnit(p.getMeasurementUnit());
-        dto.setImageUrl(p.getImageUrl());
-        dto.setIsActive(p.isActive());
-        dto.setIsPublic(p.getIsPublic());
-
-        if (p.getCategory() != null) {
-            dto.setCategoryId(p.getCategory().getId());
-            dto.setCategoryName(p.getCategory().getName());
-        }
-        if (p.getSupplier() != null) {
-            dto.setSupplierId(p.getSupplier().getId());
-            dto.setSupplierName(p.getSupplier().getName());
-        }
-
-        // --- MAPEO DEL PACK ---
-        dto.setProductType(p.getProductType());
-        if ("BUNDLE".equals(p.getProductType()) && p.getBundleItems() != null) {
-            List<ProductDto.BundleItemDto> itemsDto = p.getBundleItems().stream().map(bi -> {
-                ProductDto.BundleItemDto item = new ProductDto.BundleItemDto();
-                item.setComponentId(bi.getComponentProduct().getId());
-                item.setQuantity(bi.getQuantity());
-                // Datos visuales para el front
-                item.setComponentName(bi.getComponentProduct().getName());
-                item.setComponentSku(bi.getComponentProduct().getSku());
-                return item;
-            }).collect(Collectors.toList());
-            dto.setBundleItems(itemsDto);
-        }
-        // ----------------------
-
-        return dto;
-    }
 }
\ No newline at end of file
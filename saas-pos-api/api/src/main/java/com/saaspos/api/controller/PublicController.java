@@ -1,5 +1,6 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
 import com.saaspos.api.dto.AuthResponse;
 import com.saaspos.api.dto.RegisterRequest;
 import com.saaspos.api.model.User;
@@ -28,11 +29,7 @@ public class PublicController {
             User newUser = onboardingService.registerWithToken(request);
 
             // 2. Auto-Loguear (Generar token JWT para que entre directo al dashboard)
-            String token = jwtUtil.generateToken(
-                    newUser.getEmail(),
-                    newUser.getRole(),
-                    newUser.getTenant().getId().toString()
-            );
+            String token = jwtUtil.generateToken(AuthenticatedUser.fromUser(newUser));
 
             // 3. Responder con credenciales de acceso
             return ResponseEntity.ok(new AuthResponse(
@@ -1,13 +1,10 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.model.InventoryLog;
-import com.saaspos.api.model.User;
 import com.saaspos.api.repository.InventoryLogRepository;
-import com.saaspos.api.repository.UserRepository;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletResponse;
@@ -25,11 +22,9 @@ import java.util.UUID;
 public class ReportController {
 
     private final InventoryLogRepository inventoryLogRepository;
-    private final UserRepository userRepository;
 
-    public ReportController(InventoryLogRepository inventoryLogRepository, UserRepository userRepository) {
+    public ReportController(InventoryLogRepository inventoryLogRepository) {
         this.inventoryLogRepository = inventoryLogRepository;
-        this.userRepository = userRepository;
     }
 
     // 1. Endpoint para la Tabla del Dashboard (JSON)
@@ -39,7 +34,7 @@ public class ReportController {
             @RequestParam(required = false) String end,
             @RequestParam(required = false) UUID categoryId) {
 
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         // FIX: Usamos el método helper para parsear fechas con 'Z'
         LocalDateTime startDate = parseDate(start, true);
@@ -63,7 +58,7 @@ public class ReportController {
             @RequestParam(required = false) UUID categoryId,
             HttpServletResponse response) throws IOException {
 
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         // FIX: Usamos el mismo helper aquí
         LocalDateTime startDate = parseDate(start, true);
@@ -136,10 +131,4 @@ public class ReportController {
         if (data == null) return "";
         return "\"" + data.replace("\"", "\"\"") + "\"";
     }
-
-    private UUID getCurrentTenantId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName()).orElseThrow();
-        return user.getTenant().getId();
-    }
 }
\ No newline at end of file
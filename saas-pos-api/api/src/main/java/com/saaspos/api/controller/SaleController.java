@@ -1,42 +1,65 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
+import com.saaspos.api.dto.SaleBatchRequest;
 import com.saaspos.api.dto.SaleRequest;
 // Importamos la clase interna correctamente o la referenciamos directamente
 import com.saaspos.api.model.*;
 import com.saaspos.api.repository.*;
+import com.saaspos.api.service.InventoryLogOutbox;
+import com.saaspos.api.service.ItemEditEngine;
+import com.saaspos.api.service.OfflineSaleSyncService;
+import com.saaspos.api.service.SaleIdempotencyService;
 import com.saaspos.api.service.SaleService;
+import com.saaspos.api.service.StockService.StockMovement;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/sales")
 public class SaleController {
 
     private final SaleService saleService;
-    private final UserRepository userRepository;
 
     // Repositorios para la edición directa
     private final SaleRepository saleRepository;
     private final ProductRepository productRepository;
-    private final InventoryLogRepository inventoryLogRepository;
+    private final InventoryLogOutbox inventoryLogOutbox;
+    private final ItemEditEngine itemEditEngine;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final OfflineSaleSyncService offlineSaleSyncService;
+    private final int maxBatchTickets;
 
     public SaleController(SaleService saleService,
-                          UserRepository userRepository,
                           SaleRepository saleRepository,
                           ProductRepository productRepository,
-                          InventoryLogRepository inventoryLogRepository) {
+                          InventoryLogOutbox inventoryLogOutbox,
+                          ItemEditEngine itemEditEngine,
+                          SaleIdempotencyService saleIdempotencyService,
+                          OfflineSaleSyncService offlineSaleSyncService,
+                          @Value("${app.sales.batch.max-tickets:500}") int maxBatchTickets) {
         this.saleService = saleService;
-        this.userRepository = userRepository;
         this.saleRepository = saleRepository;
         this.productRepository = productRepository;
-        this.inventoryLogRepository = inventoryLogRepository;
+        this.inventoryLogOutbox = inventoryLogOutbox;
+        this.itemEditEngine = itemEditEngine;
+        this.saleIdempotencyService = saleIdempotencyService;
+        this.offlineSaleSyncService = offlineSaleSyncService;
+        this.maxBatchTickets = maxBatchTickets;
     }
 
     // 1. Obtener Historial de Ventas (Con filtro de fecha opcional)
@@ -45,7 +68,7 @@ public class SaleController {
             @RequestParam(required = false) String start,
             @RequestParam(required = false) String end) {
 
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         // Si no mandan fechas, traemos las de hoy por defecto para no cargar millones de registros
         // O podrías implementar paginación, pero por ahora usemos un rango seguro.
@@ -63,7 +86,7 @@ public class SaleController {
     @GetMapping("/{id}")
     @Transactional(readOnly = true) // Buena práctica para lectura
     public ResponseEntity<Sale> getSaleById(@PathVariable UUID id) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         // CAMBIO AQUÍ: Usamos findByIdWithItems
         Sale sale = saleRepository.findByIdWithItems(id)
@@ -76,23 +99,42 @@ public class SaleController {
     }
 
     @PostMapping
-    public ResponseEntity<?> createSale(@RequestBody SaleRequest request) {
+    public ResponseEntity<?> createSale(@RequestBody SaleRequest request,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            UUID tenantId = getCurrentTenantId();
-            Sale sale = saleService.processSale(request, tenantId);
-            Sale fullSale = saleRepository.findByIdWithItems(sale.getId()).orElse(sale);
-            return ResponseEntity.ok(fullSale);
+            UUID tenantId = TenantContext.getTenantId();
+            // La venta vuelve armada en memoria (ítems + productos con stock final): no hace falta re-consultarla.
+            // Si la caja reintenta con la misma Idempotency-Key, se devuelve la venta original sin volver a procesarla
+            SaleIdempotencyService.Result result = saleIdempotencyService.execute(tenantId, idempotencyKey,
+                    () -> saleService.processSale(request, tenantId, idempotencyKey));
+            return ResponseEntity.ok()
+                    .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                    .body(result.sale());
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
 
+    // Tickets que la caja acumuló sin conexión. Cada uno trae su idempotencyKey y la hora de venta.
+    // Devuelve un resultado por ticket: un ticket sin stock no hace fallar al resto
+    @PostMapping("/batch")
+    public ResponseEntity<?> createSalesBatch(@RequestBody SaleBatchRequest request) {
+        if (request.getTickets() == null || request.getTickets().isEmpty()) {
+            return ResponseEntity.badRequest().body("No hay tickets para sincronizar");
+        }
+        if (request.getTickets().size() > maxBatchTickets) {
+            return ResponseEntity.badRequest().body("Máximo " + maxBatchTickets + " tickets por envío");
+        }
+        UUID tenantId = TenantContext.getTenantId();
+        return ResponseEntity.ok(offlineSaleSyncService.sync(request, tenantId));
+    }
+
     // --- ENDPOINT: EDITAR VENTA ---
     @PutMapping("/{saleId}")
     @Transactional
     public ResponseEntity<?> updateSale(@PathVariable UUID saleId, @RequestBody SaleRequest request) {
-        UUID tenantId = getCurrentTenantId();
-        User currentUser = getCurrentUser();
+        UUID tenantId = TenantContext.getTenantId();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
 
         Sale sale = saleRepository.findById(saleId)
                 .orElseThrow(() -> new RuntimeException("Venta no encontrada"));
@@ -102,85 +144,77 @@ public class SaleController {
             return ResponseEntity.status(403).body("No autorizado");
         }
 
-        // 2. REVERSA: Devolver Stock Antiguo
-        for (SaleItem oldItem : sale.getItems()) {
-            Product p = oldItem.getProduct();
-            if (p != null) {
-                BigDecimal oldStock = p.getStockCurrent();
-                BigDecimal qtyToReturn = oldItem.getQuantity();
+        // 2. DIFERENCIA: productos actuales + pedidos (con componentes de packs) en una consulta
+        Set<UUID> productIds = new HashSet<>();
+        sale.getItems().stream().filter(i -> i.getProduct() != null).forEach(i -> productIds.add(i.getProduct().getId()));
+        request.getItems().forEach(i -> productIds.add(i.getProductId()));
+        Map<UUID, Product> products = productRepository.findAllWithBundleItemsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
 
-                // Devolver stock
-                p.setStockCurrent(oldStock.add(qtyToReturn));
-                productRepository.save(p);
-
-                // Auditoría
-                createLog(p, currentUser, "SALE_EDIT_RETURN", qtyToReturn, oldStock, p.getStockCurrent(),
-                        "Devolución por edición de Ticket #" + sale.getSaleNumber(), sale.getId(), null);
-            }
+        List<ItemEditEngine.Line> lines = new ArrayList<>();
+        for (SaleRequest.SaleItemRequest itemReq : request.getItems()) {
+            Product p = products.get(itemReq.getProductId());
+            if (p == null) throw new RuntimeException("Producto no encontrado: " + itemReq.getProductId());
+            if (!p.getTenantId().equals(tenantId)) return ResponseEntity.status(403).body("No autorizado");
+            lines.add(new ItemEditEngine.Line(p, itemReq.getQuantity()));
         }
 
-        // Limpiar items antiguos (orphanRemoval=true en entidad Sale se encarga del delete)
-        sale.getItems().clear();
+        ItemEditEngine.Edit<SaleItem> edit = itemEditEngine.diff(sale.getItems(), lines, products,
+                SaleItem::getProduct, SaleItem::getQuantity);
 
-        // 3. NUEVA VENTA: Descontar Stock Nuevo
-        BigDecimal newTotal = BigDecimal.ZERO;
-
-        // AQUÍ ESTABA EL ERROR: Referenciamos la clase interna correctamente
-        for (SaleRequest.SaleItemRequest itemReq : request.getItems()) {
-            Product p = productRepository.findById(itemReq.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Producto no encontrado: " + itemReq.getProductId()));
+        // Ítems que ya no vienen (orphanRemoval=true en entidad Sale se encarga del delete)
+        sale.getItems().removeAll(edit.getRemoved());
 
-            BigDecimal qty = itemReq.getQuantity();
-            BigDecimal oldStock = p.getStockCurrent();
+        // 3. ÍTEMS: los existentes se actualizan en su lugar, los nuevos se agregan
+        BigDecimal newTotal = BigDecimal.ZERO;
 
-            // Validar Stock
-            if (p.getStockCurrent().compareTo(qty) < 0) {
-                throw new RuntimeException("Stock insuficiente para: " + p.getName());
+        for (ItemEditEngine.Line line : lines) {
+            Product p = line.product();
+            BigDecimal qty = line.quantity();
+
+            SaleItem item = edit.itemFor(line);
+            if (item == null) {
+                // Crear Item
+                item = new SaleItem();
+                item.setSale(sale);
+                item.setProduct(p);
+                sale.getItems().add(item);
             }
-
-            // Descontar
-            p.setStockCurrent(oldStock.subtract(qty));
-            productRepository.save(p);
-
-            // Auditoría (Salida)
-            createLog(p, currentUser, "SALE_EDIT_OUT", qty.negate(), oldStock, p.getStockCurrent(),
-                    "Re-emisión de Ticket #" + sale.getSaleNumber(), sale.getId(), null);
-
-            // Crear Item
-            SaleItem newItem = new SaleItem();
-            newItem.setSale(sale);
-            newItem.setProduct(p);
-            newItem.setQuantity(qty);
-
             // Usamos precio actual del producto o el que viene en el request si lo permites
             // Por seguridad usamos el del producto, a menos que quieras permitir precio manual
-            newItem.setUnitPrice(p.getPriceFinal());
-            newItem.setTotal(newItem.getUnitPrice().multiply(qty));
+            // (toda línea se recotiza al editar, también las que ya estaban en el ticket)
+            item.setUnitPrice(p.getPriceFinal());
 
             // --- FIX: LLENAR CAMPOS DE COSTO E IMPUESTOS OBLIGATORIOS ---
             // 1. Costo (Si es null, usamos 0 para evitar el error de BD)
-            newItem.setCostPriceAtSale(p.getCostPrice() != null ? p.getCostPrice() : BigDecimal.ZERO);
-
-            // 2. Precio Neto (Base imponible)
-            // Si por alguna razón el producto no tiene neto calculado, usamos el precio final como fallback
-            BigDecimal netPrice = p.getPriceNeto() != null ? p.getPriceNeto() : p.getPriceFinal();
-            newItem.setNetPriceAtSale(netPrice);
-
-            // 3. Impuestos
-            // Impuesto Unitario = Precio Final - Neto
-            BigDecimal unitTax = p.getPriceFinal().subtract(netPrice);
-            newItem.setUnitTax(unitTax);
-
-            // Impuesto Total de la línea = Impuesto Unitario * Cantidad
-            newItem.setTaxAmountAtSale(unitTax.multiply(qty));
+            item.setCostPriceAtSale(p.getCostPrice() != null ? p.getCostPrice() : BigDecimal.ZERO);
+            item.setQuantity(qty);
+
+            // 2. Precio Neto (Base imponible), Impuestos y Total: mismo cálculo y redondeo que la venta POS
+            TaxCalculator.LinePrice price = TaxCalculator.priceLine(item.getUnitPrice(), p.getTaxPercent(), qty);
+            item.setNetPriceAtSale(price.netUnitPrice());
+            item.setUnitTax(price.unitTax());
+            item.setTaxAmountAtSale(price.taxAmount());
+            item.setTotal(price.total());
             // -------------------------------------------------------------
 
-            sale.getItems().add(newItem);
-            newTotal = newTotal.add(newItem.getTotal());
+            newTotal = newTotal.add(item.getTotal());
+        }
+
+        // Solo el cambio neto por producto (valida stock en el mismo UPDATE; si falta, rollback de toda la edición)
+        for (StockMovement m : itemEditEngine.applyStock(edit)) {
+            if (m.isTracked()) {
+                // Auditoría: un registro por producto que cambió
+                inventoryLogOutbox.record(m.product(), currentUser, "SALE_EDIT", m.change(), m.oldStock(), m.newStock(),
+                        "Edición de Ticket #" + sale.getSaleNumber(), sale.getId(), null);
+            }
         }
 
         // 4. Actualizar Cabecera
         sale.setTotalAmount(newTotal);
+        BigDecimal subtotal = TaxCalculator.DEFAULT.netFromGross(Money.of(newTotal)).toPesos();
+        sale.setSubtotalAmount(subtotal);
+        sale.setTotalTax(newTotal.subtract(subtotal));
         sale.setWasEdited(true);
         sale.setEditedByUserId(currentUser.getId());
 
@@ -195,33 +229,4 @@ public class SaleController {
         saleRepository.save(sale);
         return ResponseEntity.ok(sale);
     }
-
-    // --- MÉTODOS AUXILIARES ---
-
-    private void createLog(Product p, User u, String action, BigDecimal change, BigDecimal oldStk, BigDecimal newStk, String reason, UUID saleId, UUID webOrderId) {
-        InventoryLog log = new InventoryLog();
-        log.setTenantId(p.getTenantId());
-        log.setProductId(p.getId());
-        log.setProductNameSnapshot(p.getName());
-        log.setUserId(u.getId());
-        log.setUserNameSnapshot(u.getFullName());
-        log.setActionType(action);
-        log.setQuantityChange(change);
-        log.setOldStock(oldStk);
-        log.setNewStock(newStk);
-        log.setReason(reason);
-        log.setSaleId(saleId);
-        log.setWebOrderId(webOrderId);
-        inventoryLogRepository.save(log);
-    }
-
-    private UUID getCurrentTenantId() {
-        return getCurrentUser().getTenant().getId();
-    }
-
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName())
-                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
-    }
 }
\ No newline at end of file
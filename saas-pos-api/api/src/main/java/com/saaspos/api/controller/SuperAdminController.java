@@ -1,16 +1,16 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.dto.SubscriptionUpdateDto;
 import com.saaspos.api.dto.TenantSummaryDto;
+import com.saaspos.api.event.DomainEventBus;
 import com.saaspos.api.model.Plan;
 import com.saaspos.api.model.Tenant;
-import com.saaspos.api.model.User;
 import com.saaspos.api.repository.PlanRepository;
 import com.saaspos.api.repository.TenantRepository;
-import com.saaspos.api.repository.UserRepository;
+import com.saaspos.api.service.CustomUserDetailsService;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
@@ -22,19 +22,21 @@ import java.util.UUID;
 public class SuperAdminController {
 
     private final TenantRepository tenantRepository;
-    private final UserRepository userRepository;
     private final PlanRepository planRepository;
+    private final CustomUserDetailsService userDetailsService;
+    private final DomainEventBus eventBus;
 
-    public SuperAdminController(TenantRepository tenantRepository, UserRepository userRepository, PlanRepository planRepository) {
+    public SuperAdminController(TenantRepository tenantRepository, PlanRepository planRepository, CustomUserDetailsService userDetailsService, DomainEventBus eventBus) {
         this.tenantRepository = tenantRepository;
-        this.userRepository = userRepository;
         this.planRepository = planRepository;
+        this.userDetailsService = userDetailsService;
+        this.eventBus = eventBus;
     }
 
     @GetMapping("/tenants")
     public ResponseEntity<?> getAllTenants() {
         // 1. Validar Seguridad (Doble chequeo)
-        User currentUser = getCurrentUser();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
         if (!currentUser.getRole().equals("SUPER_ADMIN")) {
             return ResponseEntity.status(403).body("Acceso denegado. Zona restringida.");
         }
@@ -46,7 +48,7 @@ public class SuperAdminController {
 
     @PostMapping("/tenant/{id}/subscription")
     public ResponseEntity<?> updateSubscription(@PathVariable UUID id, @RequestBody SubscriptionUpdateDto dto) {
-        User currentUser = getCurrentUser();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
         if (!currentUser.getRole().equals("SUPER_ADMIN")) return ResponseEntity.status(403).build();
 
         Tenant tenant = tenantRepository.findById(id)
@@ -91,8 +93,19 @@ public class SuperAdminController {
         return ResponseEntity.ok().build();
     }
 
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName()).orElseThrow();
+    // Métricas de la caché de usuarios del filtro JWT (hits altos = casi no tocamos la tabla users)
+    @GetMapping("/user-cache/stats")
+    public ResponseEntity<?> getUserCacheStats() {
+        AuthenticatedUser currentUser = TenantContext.currentUser();
+        if (!currentUser.getRole().equals("SUPER_ADMIN")) return ResponseEntity.status(403).build();
+        return ResponseEntity.ok(userDetailsService.getCacheStats());
+    }
+
+    // Métricas del bus de eventos por listener (dropped > 0 = ese listener no da abasto)
+    @GetMapping("/events/stats")
+    public ResponseEntity<?> getEventStats() {
+        AuthenticatedUser currentUser = TenantContext.currentUser();
+        if (!currentUser.getRole().equals("SUPER_ADMIN")) return ResponseEntity.status(403).build();
+        return ResponseEntity.ok(eventBus.getStats());
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,10 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.model.Category;
 import com.saaspos.api.model.Supplier;
-import com.saaspos.api.model.User;
 import com.saaspos.api.repository.SupplierRepository;
-import com.saaspos.api.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -18,24 +15,22 @@ import java.util.UUID;
 public class SupplierController {
 
     private final SupplierRepository supplierRepository;
-    private final UserRepository userRepository;
 
-    public SupplierController(SupplierRepository supplierRepository, UserRepository userRepository) {
+    public SupplierController(SupplierRepository supplierRepository) {
         this.supplierRepository = supplierRepository;
-        this.userRepository = userRepository;
     }
 
     // GET: Listar mis proveedores
     @GetMapping
     public ResponseEntity<List<Supplier>> getAllSuppliers() {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
         return ResponseEntity.ok(supplierRepository.findByTenantId(tenantId));
     }
 
     // POST: Crear nuevo proveedor
     @PostMapping
     public ResponseEntity<Supplier> createSupplier(@RequestBody Supplier supplier) {
-        UUID tenantId = getCurrentTenantId();
+        UUID tenantId = TenantContext.getTenantId();
 
         supplier.setTenantId(tenantId);
         // Validaciones extra (como RUT único por tenant) podrían ir aquí
@@ -43,12 +38,4 @@ public class SupplierController {
         Supplier saved = supplierRepository.save(supplier);
         return ResponseEntity.ok(saved);
     }
-
-    // Helper privado para seguridad
-    private UUID getCurrentTenantId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        User user = userRepository.findByEmail(auth.getName()).orElseThrow();
-        if (user.getTenant() == null) throw new RuntimeException("Usuario sin Tenant asignado");
-        return user.getTenant().getId();
-    }
 }
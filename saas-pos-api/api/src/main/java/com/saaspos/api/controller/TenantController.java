@@ -1,12 +1,10 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.model.Tenant;
-import com.saaspos.api.model.User;
 import com.saaspos.api.repository.TenantRepository;
-import com.saaspos.api.repository.UserRepository;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
@@ -16,49 +14,45 @@ import java.util.Map;
 public class TenantController {
 
     private final TenantRepository tenantRepository;
-    private final UserRepository userRepository;
 
-    public TenantController(TenantRepository tenantRepository, UserRepository userRepository) {
+    public TenantController(TenantRepository tenantRepository) {
         this.tenantRepository = tenantRepository;
-        this.userRepository = userRepository;
     }
 
     // Obtener configuración
     @GetMapping
     public ResponseEntity<Map<String, String>> getSettings() {
-        User user = getCurrentUser();
-        return ResponseEntity.ok(user.getTenant().getSettings());
+        return ResponseEntity.ok(getCurrentTenant().getSettings());
     }
 
     // Guardar configuración (Solo Admin)
     @PostMapping
     public ResponseEntity<?> updateSettings(@RequestBody Map<String, String> newSettings) {
-        User user = getCurrentUser();
+        AuthenticatedUser user = TenantContext.currentUser();
 
         if (!user.getRole().contains("ADMIN")) {
             return ResponseEntity.status(403).body("Solo el administrador configura la tienda.");
         }
 
-        Tenant tenant = user.getTenant();
+        Tenant tenant = getCurrentTenant();
         tenant.setSettings(newSettings); // Reemplaza o fusiona según lógica
         tenantRepository.save(tenant);
 
         return ResponseEntity.ok(tenant.getSettings());
     }
 
-    private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName()).orElseThrow();
+    private Tenant getCurrentTenant() {
+        return tenantRepository.findById(TenantContext.getTenantId())
+                .orElseThrow(() -> new RuntimeException("Tenant no encontrado"));
     }
 
     // Verificar PIN de Administrador (Para autorizaciones en POS)
     @PostMapping("/verify-pin")
     public ResponseEntity<?> verifyPin(@RequestBody Map<String, String> body) {
-        User user = getCurrentUser();
         String inputPin = body.get("pin");
 
         // Obtenemos el PIN guardado en la configuración (key: "admin_pin")
-        String storedPin = user.getTenant().getSettings().get("admin_pin");
+        String storedPin = getCurrentTenant().getSettings().get("admin_pin");
 
         if (storedPin == null || storedPin.isEmpty()) {
             return ResponseEntity.badRequest().body("No se ha configurado un PIN maestro en el sistema.");
@@ -1,12 +1,16 @@
 package com.saaspos.api.controller;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.dto.CreateUserDto;
 import com.saaspos.api.dto.UserResponseDto;
 import com.saaspos.api.model.User;
+import com.saaspos.api.repository.TenantRepository;
 import com.saaspos.api.repository.UserRepository;
+import com.saaspos.api.service.CustomUserDetailsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,26 +22,32 @@ import java.util.UUID;
 @RequestMapping("/api/users")
 public class UserController {
 
+    private static final Logger log = LoggerFactory.getLogger(UserController.class);
+
     private final UserRepository userRepository;
+    private final TenantRepository tenantRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CustomUserDetailsService userDetailsService;
 
-    public UserController(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserController(UserRepository userRepository, TenantRepository tenantRepository, PasswordEncoder passwordEncoder, CustomUserDetailsService userDetailsService) {
         this.userRepository = userRepository;
+        this.tenantRepository = tenantRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
     }
 
     // --- LISTAR EMPLEADOS (CORREGIDO) ---
     // Ahora devuelve List<UserResponseDto> en lugar de List<User>
     @GetMapping
     public ResponseEntity<List<UserResponseDto>> getMyUsers() {
-        User currentUser = getCurrentUser();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
 
         // Si el usuario no tiene tenant (ej: Super Admin global), devolvemos lista vacía o manejamos error
-        if (currentUser.getTenant() == null) {
+        if (currentUser.getTenantId() == null) {
             return ResponseEntity.ok(List.of());
         }
 
-        List<User> users = userRepository.findByTenantId(currentUser.getTenant().getId());
+        List<User> users = userRepository.findByTenantId(currentUser.getTenantId());
 
         // Convertir Entidades a DTOs para evitar el error de "ByteBuddyInterceptor"
         List<UserResponseDto> dtos = users.stream().map(this::mapToDto).collect(Collectors.toList());
@@ -48,11 +58,10 @@ public class UserController {
     // --- CREAR EMPLEADO ---
     @PostMapping
     public ResponseEntity<?> createUser(@RequestBody CreateUserDto dto) {
-        User currentUser = getCurrentUser();
+        AuthenticatedUser currentUser = TenantContext.currentUser();
 
         // 1. Logs de depuración (útil para ver qué pasa)
-        System.out.println("Creando usuario con rol: " + dto.getRole());
-        System.out.println("Solicitante: " + currentUser.getRole());
+        log.debug("Creando usuario con rol: {} (solicitante: {})", dto.getRole(), currentUser.getRole());
 
         // 2. Validación General (Solo Admins pueden crear gente)
         if (!currentUser.getRole().contains("ADMIN")) {
@@ -83,17 +92,19 @@ public class UserController {
         }
         newUser.setRole(roleToAssign);
 
-        newUser.setTenant(currentUser.getTenant());
+        // Referencia sin SELECT: solo necesitamos la FK
+        newUser.setTenant(currentUser.getTenantId() != null ? tenantRepository.getReferenceById(currentUser.getTenantId()) : null);
         newUser.setActive(true);
 
         User savedUser = userRepository.save(newUser);
+        userDetailsService.evict(savedUser.getEmail());
 
         return ResponseEntity.ok(mapToDto(savedUser));
     }
 
     @GetMapping("/me")
     public ResponseEntity<UserResponseDto> getMe() {
-        User user = getCurrentUser(); // Ya tienes este método privado abajo
+        User user = getCurrentUser();
         return ResponseEntity.ok(mapToDto(user)); // Reusamos el mapper
     }
 
@@ -109,7 +120,6 @@ public class UserController {
     }
 
     private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName()).orElseThrow();
+        return userRepository.findById(TenantContext.getUserId()).orElseThrow();
     }
 }
\ No newline at end of file
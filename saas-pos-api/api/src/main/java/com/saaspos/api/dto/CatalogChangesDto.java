@@ -0,0 +1,21 @@
+package com.saaspos.api.dto;
+
+import com.saaspos.api.model.Category;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+// Cambios del catálogo desde la versión del terminal. La próxima vez se pide con since = version
+@Data
+@AllArgsConstructor
+public class CatalogChangesDto {
+    private long version;
+    private boolean hasMore;             // Quedan cambios: pedir de nuevo de inmediato con since = version
+    private boolean fullResync;          // since era muy antiguo (lápidas ya borradas): descartar el catálogo local
+    private List<ProductDto> products;   // Altas y ediciones
+    private List<Category> categories;
+    private List<UUID> deletedProducts;  // Archivados o borrados
+    private List<UUID> deletedCategories;
+}
@@ -0,0 +1,22 @@
+package com.saaspos.api.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Cambio de precio masivo (POST /api/pricing/changes). Filtros combinados con AND; al menos uno
+@Data
+public class PriceChangeRequest {
+    private String mode;                // 'PERCENT' (ej: 10 = +10%), 'AMOUNT' (ej: -500 = $500 menos) o 'TAX' (nueva tasa, ej: 19)
+    private BigDecimal value;
+
+    private UUID categoryId;
+    private UUID supplierId;
+    private List<UUID> productIds;
+
+    private String reason;
+    private LocalDateTime effectiveAt;  // NULL o pasado = se aplica ahora; futuro = lo aplica el job a esa hora
+}
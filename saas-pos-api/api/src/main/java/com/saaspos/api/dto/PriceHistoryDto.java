@@ -0,0 +1,32 @@
+package com.saaspos.api.dto;
+
+import com.saaspos.api.model.ProductPriceHistory;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class PriceHistoryDto {
+    private Long id;
+    private BigDecimal oldPrice;
+    private BigDecimal newPrice;
+    private LocalDateTime changeDate;
+    private String changeReason;
+    private UUID changedByUserId;
+    private Long priceChangeId;
+
+    // Sin tocar history.getProduct(): es LAZY y aquí no hace falta
+    public static PriceHistoryDto from(ProductPriceHistory history) {
+        PriceHistoryDto dto = new PriceHistoryDto();
+        dto.setId(history.getId());
+        dto.setOldPrice(history.getOldPrice());
+        dto.setNewPrice(history.getNewPrice());
+        dto.setChangeDate(history.getChangeDate());
+        dto.setChangeReason(history.getChangeReason());
+        dto.setChangedByUserId(history.getChangedByUserId());
+        dto.setPriceChangeId(history.getPriceChangeId());
+        return dto;
+    }
+}
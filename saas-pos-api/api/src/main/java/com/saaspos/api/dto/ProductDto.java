@@ -1,5 +1,7 @@
 package com.saaspos.api.dto;
 
+import com.saaspos.api.model.Product;
+import com.saaspos.api.util.Money;
 import jakarta.persistence.Column;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -10,6 +12,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Data
 public class ProductDto {
@@ -54,6 +57,61 @@ public class ProductDto {
         private String componentSku;
     }
 
+    // Entidad -> DTO (stock efectivo: en packs, cuántos se pueden armar). Lo usan ProductController y CatalogReplica
+    public static ProductDto from(Product p) {
+        ProductDto dto = new ProductDto();
+        // ... Campos básicos (id, sku, name, description, prices...)
+        dto.setId(p.getId());
+        dto.setSku(p.getSku());
+        dto.setName(p.getName());
+        dto.setDescription(p.getDescription());
+        dto.setPriceNeto(p.getPriceNeto());
+        dto.setTaxPercent(p.getTaxPercent());
+        dto.setCostPrice(p.getCostPrice());
+        dto.setPriceFinal(p.getPriceFinal());
+        dto.setIsTaxIncluded(p.getIsTaxIncluded());
 
+        // Margen
+        Money cost = Money.of(p.getCostPrice());
+        if (cost.isPositive()) {
+            dto.setMarginPercent(Money.of(p.getPriceNeto()).marginOver(cost));
+        } else {
+            dto.setMarginPercent(new BigDecimal("100"));
+        }
 
+        dto.setStockCurrent(p.getEffectiveStock());
+        dto.setStockMin(p.getStockMin());
+        dto.setAttributes(p.getAttributes());
+        dto.setMeasurementUnit(p.getMeasurementUnit());
+        dto.setImageUrl(p.getImageUrl());
+        dto.setIsActive(p.isActive());
+        dto.setIsPublic(p.getIsPublic());
+
+        if (p.getCategory() != null) {
+            dto.setCategoryId(p.getCategory().getId());
+            dto.setCategoryName(p.getCategory().getName());
+        }
+        if (p.getSupplier() != null) {
+            dto.setSupplierId(p.getSupplier().getId());
+            dto.setSupplierName(p.getSupplier().getName());
+        }
+
+        // --- MAPEO DEL PACK ---
+        dto.setProductType(p.getProductType());
+        if ("BUNDLE".equals(p.getProductType()) && p.getBundleItems() != null) {
+            List<BundleItemDto> itemsDto = p.getBundleItems().stream().map(bi -> {
+                BundleItemDto item = new BundleItemDto();
+                item.setComponentId(bi.getComponentProduct().getId());
+                item.setQuantity(bi.getQuantity());
+                // Datos visuales para el front
+                item.setComponentName(bi.getComponentProduct().getName());
+                item.setComponentSku(bi.getComponentProduct().getSku());
+                return item;
+            }).collect(Collectors.toList());
+            dto.setBundleItems(itemsDto);
+        }
+        // ----------------------
+
+        return dto;
+    }
 }
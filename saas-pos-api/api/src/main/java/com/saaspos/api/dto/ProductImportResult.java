@@ -0,0 +1,27 @@
+package com.saaspos.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resumen de la carga masiva: una fila con error no detiene el resto
+@Data
+public class ProductImportResult {
+    private int totalRows;
+    private int created;
+    private int updated;
+    private int failed;
+    private List<RowError> errors = new ArrayList<>(); // Primeros errores (ver app.products.import.max-errors)
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;           // Fila del archivo (1 = primera fila de datos)
+        private String sku;
+        private String error;
+    }
+}
@@ -0,0 +1,24 @@
+package com.saaspos.api.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+// Una fila de la carga masiva (columna CSV o propiedad JSON con el mismo nombre). Categoría y proveedor van por nombre
+@Data
+public class ProductImportRow {
+    private String sku;             // Vacío = se genera (GEN-000042)
+    private String name;
+    private String description;
+    private BigDecimal costPrice;
+    private BigDecimal priceFinal;
+    private Boolean isTaxIncluded;
+    private BigDecimal taxPercent;
+    private BigDecimal stockCurrent; // Solo para productos nuevos: el stock de los existentes se ajusta con auditoría
+    private BigDecimal stockMin;
+    private String measurementUnit;
+    private String category;        // Si no existe se crea
+    private String supplier;        // Debe existir
+    private Boolean isPublic;
+    private String imageUrl;
+}
@@ -0,0 +1,15 @@
+package com.saaspos.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// Una página del listado del catálogo. nextCursor se manda tal cual para pedir la siguiente (null si no hay más)
+@Data
+@AllArgsConstructor
+public class ProductPageDto {
+    private List<ProductDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,18 @@
+package com.saaspos.api.dto;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+// Proyección liviana para el buscador del POS: solo lo que muestra la lista de resultados
+public interface ProductSearchResultDto {
+    UUID getId();
+    String getSku();
+    String getName();
+    BigDecimal getPriceFinal();
+    BigDecimal getStockCurrent();
+    String getMeasurementUnit();
+    String getProductType();
+    String getCategoryName();
+    Integer getMatchRank();   // 0 = SKU exacto, 1 = empieza con, 2 = contiene / parecido
+    Double getMatchScore();   // Parecido del nombre (0..1), desempata dentro del mismo rank
+}
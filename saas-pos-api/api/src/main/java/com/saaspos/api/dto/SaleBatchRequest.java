@@ -0,0 +1,20 @@
+package com.saaspos.api.dto;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// POST /api/sales/batch: tickets que la caja guardó mientras estaba sin conexión
+@Data
+public class SaleBatchRequest {
+    private List<OfflineTicket> tickets;
+
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    public static class OfflineTicket extends SaleRequest {
+        private String idempotencyKey;          // Obligatoria: identifica el ticket si la caja vuelve a subirlo
+        private LocalDateTime clientCreatedAt;  // Hora en que se vendió en la caja
+    }
+}
@@ -0,0 +1,29 @@
+package com.saaspos.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Resultado por ticket, en el mismo orden en que llegaron
+@Data
+public class SaleBatchResponse {
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private List<TicketResult> results = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TicketResult {
+        private String idempotencyKey;
+        private String status;      // CREATED, DUPLICATE, REJECTED
+        private UUID saleId;
+        private String saleNumber;
+        private String error;       // Motivo del rechazo (ej: stock insuficiente)
+    }
+}
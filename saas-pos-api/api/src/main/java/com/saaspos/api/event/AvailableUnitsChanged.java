@@ -0,0 +1,11 @@
+package com.saaspos.api.event;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Cambió cuántas unidades de un pack se pueden armar (products.available_units, ver BundleAvailability).
+ * Es el "stock" que cuenta para las alertas de los packs; su stock propio solo es un límite.
+ */
+public record AvailableUnitsChanged(UUID tenantId, UUID bundleId, BigDecimal oldUnits, BigDecimal newUnits, BigDecimal stockMin) {
+}
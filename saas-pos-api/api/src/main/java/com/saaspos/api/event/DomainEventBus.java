@@ -0,0 +1,211 @@
+package com.saaspos.api.event;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bus de eventos de dominio en proceso (StockChanged, SaleCompleted, WebOrderStatusChanged, ProductUpdated).
+ * Los eventos publicados dentro de una transacción se entregan SOLO si hace commit, después del commit.
+ * Cada listener tiene su propio hilo y cola acotada: un listener lento no frena la venta ni a los demás;
+ * si su cola se llena, el evento se descarta para ese listener y queda contado en las métricas.
+ */
+@Service
+public class DomainEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(DomainEventBus.class);
+
+    private final int queueCapacity;
+
+    // tipo de evento -> listeners suscritos
+    private final Map<Class<?>, List<Listener<?>>> listeners = new ConcurrentHashMap<>();
+    private final List<Listener<?>> all = new CopyOnWriteArrayList<>();
+    // Listeners síncronos (write-through): corren en el hilo que hizo commit
+    private final Map<Class<?>, List<Consumer<Object>>> syncListeners = new ConcurrentHashMap<>();
+
+    public DomainEventBus(@Value("${app.events.queue-capacity:10000}") int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /** Registra un listener. name identifica su hilo y sus métricas. Los eventos le llegan en orden de publicación. */
+    public <E> void subscribe(Class<E> type, String name, Consumer<E> handler) {
+        subscribe(type, name, handler, event -> { });
+    }
+
+    /**
+     * Igual que subscribe, con aviso cuando un evento se descarta por cola llena (corre en el hilo que publica,
+     * debe ser inmediato). Sirve a las cachés incrementales para invalidarse en vez de quedar desfasadas.
+     */
+    public <E> void subscribe(Class<E> type, String name, Consumer<E> handler, Consumer<E> onDropped) {
+        Listener<E> listener = new Listener<>(name, handler, onDropped, queueCapacity);
+        listeners.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(listener);
+        all.add(listener);
+    }
+
+    /**
+     * Listener síncrono: corre en el mismo hilo, justo después del commit y antes de que responda el request.
+     * Solo para trabajo corto que no puede quedar desfasado respecto de la respuesta (ej: réplica del catálogo).
+     */
+    @SuppressWarnings("unchecked")
+    public <E> void onCommit(Class<E> type, Consumer<E> handler) {
+        syncListeners.computeIfAbsent(type, k -> new CopyOnWriteArrayList<>()).add(e -> handler.accept((E) e));
+    }
+
+    /**
+     * Publica el evento al confirmar la transacción en curso (o de inmediato si no hay). Con rollback se descarta.
+     * Si la transacción ya hizo commit (ej: un listener onCommit que publica otro evento) se entrega de inmediato.
+     */
+    public void publish(Object event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(event);
+            return;
+        }
+
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Pending buffer = new Pending();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // Desde aquí una sincronización nueva ya no correría: lo que se publique va directo
+                    buffer.committed = true;
+                    buffer.events.forEach(DomainEventBus.this::dispatch);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DomainEventBus.this);
+                }
+            });
+            pending = buffer;
+        }
+        if (pending.committed) {
+            dispatch(event);
+            return;
+        }
+        pending.events.add(event);
+    }
+
+    private void dispatch(Object event) {
+        for (Consumer<Object> handler : syncListeners.getOrDefault(event.getClass(), List.of())) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                // El commit ya ocurrió: no se propaga al request
+                log.warn("Listener síncrono falló con {}: {}", event.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+
+        List<Listener<?>> targets = listeners.get(event.getClass());
+        if (targets == null) return;
+        for (Listener<?> listener : targets) {
+            listener.offer(event);
+        }
+    }
+
+    // Métricas por listener: en cola, máximo visto, entregados, fallidos y descartados por cola llena
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        for (Listener<?> listener : all) {
+            stats.put(listener.name, listener.stats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        all.forEach(l -> l.executor.shutdown());
+    }
+
+    // Eventos de la transacción en curso, a la espera del commit
+    private static final class Pending {
+        private final List<Object> events = new ArrayList<>();
+        private boolean committed;
+    }
+
+    private static final class Listener<E> {
+        private final String name;
+        private final Consumer<E> handler;
+        private final Consumer<E> onDropped;
+        private final ThreadPoolExecutor executor;
+
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong maxQueued = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        Listener(String name, Consumer<E> handler, Consumer<E> onDropped, int queueCapacity) {
+            this.name = name;
+            this.handler = handler;
+            this.onDropped = onDropped;
+            // Un solo hilo por listener: respeta el orden de publicación (importante para cachés incrementales)
+            this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    r -> {
+                        Thread t = new Thread(r, "events-" + name);
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+
+        @SuppressWarnings("unchecked")
+        void offer(Object event) {
+            try {
+                executor.execute(() -> handle((E) event));
+                maxQueued.accumulateAndGet(executor.getQueue().size(), Math::max);
+            } catch (RejectedExecutionException e) {
+                // Backpressure: no bloqueamos al que publica (hilo de la venta)
+                long count = dropped.incrementAndGet();
+                if (count == 1 || count % 1000 == 0) {
+                    log.warn("Listener '{}' saturado: {} eventos descartados", name, count);
+                }
+                onDropped.accept((E) event);
+            }
+        }
+
+        private void handle(E event) {
+            long start = System.nanoTime();
+            try {
+                handler.accept(event);
+                delivered.incrementAndGet();
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.warn("Listener '{}' falló con {}: {}", name, event.getClass().getSimpleName(), e.getMessage());
+            } finally {
+                totalNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+
+        Map<String, Long> stats() {
+            long done = delivered.get() + failed.get();
+            Map<String, Long> stats = new LinkedHashMap<>();
+            stats.put("queued", (long) executor.getQueue().size());
+            stats.put("maxQueued", maxQueued.get());
+            stats.put("delivered", delivered.get());
+            stats.put("failed", failed.get());
+            stats.put("dropped", dropped.get());
+            stats.put("avgMicros", done > 0 ? totalNanos.get() / done / 1000 : 0);
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.saaspos.api.event;
+
+import java.util.UUID;
+
+/** Alta, edición, archivo, reactivación o borrado de un producto del catálogo. */
+public record ProductUpdated(UUID tenantId, UUID productId, Change change) {
+
+    public enum Change { CREATED, UPDATED, ARCHIVED, ACTIVATED, DELETED }
+}
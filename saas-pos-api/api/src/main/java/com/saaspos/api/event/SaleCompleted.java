@@ -0,0 +1,9 @@
+package com.saaspos.api.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/** Se registró una venta (POS, sincronización offline o pedido web pagado). */
+public record SaleCompleted(UUID tenantId, UUID saleId, String saleNumber, BigDecimal totalAmount, LocalDateTime soldAt) {
+}
@@ -0,0 +1,11 @@
+package com.saaspos.api.event;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * El stock de un producto cambió (venta, pedido web, edición, ajuste manual...).
+ * Stock NULL = ilimitado. stockMin viaja para que las alertas no tengan que volver a consultar el producto.
+ */
+public record StockChanged(UUID tenantId, UUID productId, BigDecimal oldStock, BigDecimal newStock, BigDecimal stockMin) {
+}
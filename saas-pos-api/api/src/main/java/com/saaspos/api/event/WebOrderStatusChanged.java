@@ -0,0 +1,7 @@
+package com.saaspos.api.event;
+
+import java.util.UUID;
+
+/** Cambio de estado de un pedido web. oldStatus es NULL cuando el pedido recién se crea. */
+public record WebOrderStatusChanged(UUID tenantId, UUID orderId, String orderNumber, String oldStatus, String newStatus) {
+}
@@ -20,7 +20,7 @@ public class BundleItem {
     @JsonIgnore // Evitar ciclo infinito al serializar
     private Product bundleProduct;
 
-    @ManyToOne(fetch = FetchType.EAGER) // Queremos ver los detalles del hijo al cargar el pack
+    @ManyToOne(fetch = FetchType.LAZY) // Se trae con el pack vía fetch join / entity graph
     @JoinColumn(name = "component_product_id", nullable = false)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler", "bundleItems"})
     private Product componentProduct;
@@ -0,0 +1,67 @@
+package com.saaspos.api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "price_changes")
+public class PriceChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tenant_id", nullable = false)
+    private UUID tenantId;
+
+    // Modos: 'PERCENT', 'AMOUNT', 'TAX' (ver RepricingService.Mode)
+    @Column(nullable = false)
+    private String mode;
+
+    @Column(nullable = false)
+    private BigDecimal value;
+
+    // Filtros: se combinan con AND
+    @Column(name = "category_id")
+    private UUID categoryId;
+
+    @Column(name = "supplier_id")
+    private UUID supplierId;
+
+    @JdbcTypeCode(SqlTypes.ARRAY)
+    @Column(name = "product_ids", columnDefinition = "uuid[]")
+    private List<UUID> productIds;
+
+    private String reason;
+
+    // Estados: 'PENDING', 'APPLIED', 'FAILED', 'CANCELLED'
+    @Column(nullable = false)
+    private String status;
+
+    @Column(name = "effective_at", nullable = false)
+    private LocalDateTime effectiveAt;
+
+    @Column(name = "applied_at")
+    private LocalDateTime appliedAt;
+
+    @Column(name = "affected_count")
+    private Integer affectedCount;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_by")
+    private UUID createdBy;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
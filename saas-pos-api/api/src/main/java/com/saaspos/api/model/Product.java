@@ -1,8 +1,10 @@
 package com.saaspos.api.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Data;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.SQLDelete;
 import org.hibernate.type.SqlTypes;
@@ -15,15 +17,20 @@ import java.util.*;
 @Data
 @Entity
 @Table(name = "products")
+// Un UPDATE escribe solo las columnas que cambiaron: el stock lo maneja StockService por SQL y no se pisa
+@DynamicUpdate
 @SQLDelete(sql = "UPDATE products SET is_active = false WHERE id = ?")
 public class Product {
 
-    @ManyToOne(fetch = FetchType.EAGER) // Eager para mostrar el nombre de la categoría en la tabla
+    // Lazy: cada lectura pide lo que necesita con su plan de carga (ver @EntityGraph en ProductRepository)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id")
+    @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     private Category category;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "supplier_id")
+    @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     private Supplier supplier;
 
     @Id
@@ -60,6 +67,10 @@ public class Product {
     @Column(name = "stock_current")
     private BigDecimal stockCurrent = BigDecimal.ZERO;
 
+    // Packs: unidades que se pueden armar hoy. Lo mantiene BundleAvailability por SQL, JPA nunca lo escribe
+    @Column(name = "available_units", insertable = false, updatable = false)
+    private BigDecimal availableUnits;
+
     @Column(name = "stock_min")
     private BigDecimal stockMin = new BigDecimal("5.0");
 
@@ -119,12 +130,16 @@ public class Product {
     /**
      * Calcula el stock REAL disponible para la venta.
      * Si es ESTÁNDAR: Devuelve el stock físico.
-     * Si es PACK: Calcula cuántos se pueden armar según los componentes y el límite manual.
+     * Si es PACK: Devuelve available_units (ya calculado); si aún no existe (pack recién creado),
+     * calcula cuántos se pueden armar según los componentes y el límite manual.
      */
     public BigDecimal getEffectiveStock() {
         if (!"BUNDLE".equals(this.productType)) {
             return this.stockCurrent != null ? this.stockCurrent : BigDecimal.ZERO;
         }
+        if (this.availableUnits != null) {
+            return this.availableUnits;
+        }
 
         // CAMBIO CLAVE:
         // Si es NULL -> Es "Infinito" (Pack Virtual).
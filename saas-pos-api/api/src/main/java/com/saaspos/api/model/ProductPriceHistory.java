@@ -45,7 +45,11 @@ public class ProductPriceHistory {
 
     // Usuario que realizó el cambio (Auditoría básica)
     @Column(name = "changed_by_user_id")
-    private Long changedByUserId;
+    private UUID changedByUserId;
+
+    // Cambio masivo que lo originó (price_changes); NULL = edición manual
+    @Column(name = "price_change_id")
+    private Long priceChangeId;
 
     // -------------------------------------------------
     // CRÍTICO PARA SAAS MULTI-TENANT
@@ -2,7 +2,6 @@ package com.saaspos.api.model;
 
 import jakarta.persistence.*;
 import lombok.Data;
-import org.hibernate.annotations.CreationTimestamp;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -48,10 +47,15 @@ public class Sale {
     @OneToMany(mappedBy = "sale", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<SaleItem> items = new ArrayList<>();
 
-    @CreationTimestamp
+    // Fecha de la venta. Los tickets offline traen la hora de la caja; si no viene, se usa la del servidor
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
 
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) createdAt = LocalDateTime.now();
+    }
+
     // Helper para agregar ítems y mantener la relación bidireccional
     public void addItem(SaleItem item) {
         items.add(item);
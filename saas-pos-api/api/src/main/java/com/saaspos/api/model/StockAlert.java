@@ -0,0 +1,40 @@
+package com.saaspos.api.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@Entity
+@Table(name = "stock_alerts")
+public class StockAlert {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tenant_id", nullable = false)
+    private UUID tenantId;
+
+    @Column(name = "product_id", nullable = false)
+    private UUID productId;
+
+    @Column(name = "product_name_snapshot")
+    private String productNameSnapshot;
+
+    // Tipos: 'LOW_STOCK', 'RECOVERED'
+    @Column(name = "alert_type", nullable = false)
+    private String alertType;
+
+    private BigDecimal stock;
+
+    @Column(name = "stock_min")
+    private BigDecimal stockMin;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
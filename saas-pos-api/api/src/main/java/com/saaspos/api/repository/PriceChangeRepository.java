@@ -0,0 +1,19 @@
+package com.saaspos.api.repository;
+
+import com.saaspos.api.model.PriceChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PriceChangeRepository extends JpaRepository<PriceChange, Long> {
+
+    // Más recientes primero (índice idx_price_changes_tenant)
+    List<PriceChange> findByTenantIdOrderByIdDesc(UUID tenantId, Pageable pageable);
+
+    List<PriceChange> findByTenantIdAndStatusOrderByIdDesc(UUID tenantId, String status, Pageable pageable);
+
+    Optional<PriceChange> findByIdAndTenantId(Long id, UUID tenantId);
+}
@@ -1,15 +1,31 @@
 package com.saaspos.api.repository;
 
-import com.saaspos.api.model.ProductPriceHistory; // Asumiendo que existe
+import com.saaspos.api.model.ProductPriceHistory;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ProductPriceHistoryRepository extends JpaRepository<ProductPriceHistory, UUID> {
+public interface ProductPriceHistoryRepository extends JpaRepository<ProductPriceHistory, Long> {
     @Modifying
     @Transactional
     void deleteByProductId(UUID productId);
-}
\ No newline at end of file
+
+    // Más recientes primero (índice idx_pph_product_date)
+    List<ProductPriceHistory> findByTenantIdAndProductIdOrderByChangeDateDescIdDesc(UUID tenantId, UUID productId, Pageable pageable);
+
+    // Último cambio hasta la fecha: el precio vigente en ese momento
+    Optional<ProductPriceHistory> findFirstByTenantIdAndProductIdAndChangeDateLessThanEqualOrderByChangeDateDescIdDesc(
+            UUID tenantId, UUID productId, LocalDateTime at);
+
+    // Primer cambio después de la fecha: su old_price era el precio vigente (si no hay cambios anteriores)
+    Optional<ProductPriceHistory> findFirstByTenantIdAndProductIdAndChangeDateAfterOrderByChangeDateAscIdAsc(
+            UUID tenantId, UUID productId, LocalDateTime at);
+}
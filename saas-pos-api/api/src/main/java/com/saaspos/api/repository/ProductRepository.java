@@ -1,12 +1,15 @@
 package com.saaspos.api.repository;
 
+import com.saaspos.api.dto.ProductSearchResultDto;
 import com.saaspos.api.model.Product;
 import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -14,6 +17,8 @@ import java.util.UUID;
 public interface ProductRepository extends JpaRepository<Product, UUID> {
 
     //Buscar todos los productos de una empresa especifica
+    // Catálogo completo (carga de CatalogReplica): categoría, proveedor y componentes de packs en la misma consulta
+    @EntityGraph(attributePaths = {"category", "supplier", "bundleItems", "bundleItems.componentProduct"})
     List<Product> findByTenantId(UUID tenantId);
 
     //Buscar por SKU dentro de una empresa (el SKU puede repetirse en empresas distintas)
@@ -21,10 +26,9 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
 
     long countByTenantId(UUID tenantId);
 
-    @Query("SELECT COUNT(p) FROM Product p WHERE p.tenantId = :tenantId AND p.stockCurrent <= p.stockMin")
-    long countLowStock(@Param("tenantId") UUID tenantId);
-
     // Buscar solo productos marcados como públicos para un tenant específico
+    // Tienda web: solo lo que usa PublicProductDto (el stock de packs ya viene en available_units)
+    @EntityGraph(attributePaths = {"category"})
     List<Product> findByTenantIdAndIsPublicTrue(UUID tenantId);
 
     // Método personalizado para BORRADO FÍSICO (Hard Delete)
@@ -42,16 +46,58 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
     @Query("UPDATE Product p SET p.isActive = true WHERE p.id = :id")
     void activateProduct(@Param("id") UUID id);
 
+    /**
+     * Buscador del POS sobre los índices de trigramas (V30): nombre, SKU o categoría, sin tildes ni mayúsculas.
+     * Orden: SKU exacto, luego "empieza con", luego por parecido del nombre. Paginado por cursor
+     * (afterRank, afterScore, afterId) = última fila de la página anterior; la primera página usa (-1, 0, cualquier id).
+     * likeTerm es el mismo término con %, _ y \ escapados.
+     */
+    @Query(value = """
+        SELECT * FROM (
+            SELECT p.id, p.sku, p.name,
+                   p.price_final AS priceFinal,
+                   p.stock_current AS stockCurrent,
+                   p.measurement_unit AS measurementUnit,
+                   p.product_type AS productType,
+                   c.name AS categoryName,
+                   CASE WHEN lower(p.sku) = lower(:term) THEN 0
+                        WHEN lower(p.sku) LIKE lower(:likeTerm) || '%' OR search_norm(p.name) LIKE search_norm(:likeTerm) || '%' THEN 1
+                        ELSE 2 END AS matchRank,
+                   CAST(word_similarity(search_norm(:term), search_norm(p.name)) AS double precision) AS matchScore
+            FROM products p
+            LEFT JOIN categories c ON c.id = p.category_id
+            WHERE p.tenant_id = :tenantId
+            AND p.is_active = true
+            AND (
+                search_norm(p.name) LIKE '%' || search_norm(:likeTerm) || '%'
+                OR search_norm(:term) <% search_norm(p.name)
+                OR lower(p.sku) LIKE '%' || lower(:likeTerm) || '%'
+                OR p.category_id = ANY (ARRAY(
+                    SELECT cat.id FROM categories cat
+                    WHERE cat.tenant_id = :tenantId AND search_norm(cat.name) LIKE '%' || search_norm(:likeTerm) || '%'))
+            )
+        ) r
+        WHERE (r.matchRank, -r.matchScore, r.id) > (:afterRank, -:afterScore, :afterId)
+        ORDER BY r.matchRank, r.matchScore DESC, r.id
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<ProductSearchResultDto> search(@Param("tenantId") UUID tenantId,
+                                        @Param("term") String term,
+                                        @Param("likeTerm") String likeTerm,
+                                        @Param("afterRank") int afterRank,
+                                        @Param("afterScore") double afterScore,
+                                        @Param("afterId") UUID afterId,
+                                        @Param("limit") int limit);
+
+    // Checkout y páginas del listado: productos + categoría, proveedor y componentes de packs en una sola consulta
+    // (de los componentes solo se usan id, nombre, SKU y stock: su categoría y proveedor quedan lazy)
     @Query("""
-        SELECT p FROM Product p
-        LEFT JOIN p.category c
-        WHERE p.tenantId = :tenantId
-        AND p.isActive = true
-        AND (
-            LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))
-            OR LOWER(p.sku) LIKE LOWER(CONCAT('%', :query, '%'))
-            OR LOWER(c.name) LIKE LOWER(CONCAT('%', :query, '%'))
-        )
+        SELECT DISTINCT p FROM Product p
+        LEFT JOIN FETCH p.category
+        LEFT JOIN FETCH p.supplier
+        LEFT JOIN FETCH p.bundleItems bi
+        LEFT JOIN FETCH bi.componentProduct
+        WHERE p.id IN :ids
     """)
-    List<Product> searchByTerm(@Param("tenantId") UUID tenantId, @Param("query") String query);
+    List<Product> findAllWithBundleItemsByIdIn(@Param("ids") Collection<UUID> ids);
 }
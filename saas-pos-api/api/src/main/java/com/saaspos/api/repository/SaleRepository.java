@@ -14,7 +14,8 @@ import java.util.Optional;
 import java.util.UUID;
 
 public interface SaleRepository extends JpaRepository<Sale, UUID> {
-    boolean existsBySaleNumber(String saleNumber);
+    // Folio único por empresa (índice uq_sales_tenant_sale_number)
+    boolean existsByTenantIdAndSaleNumber(UUID tenantId, String saleNumber);
     // 1. SUMA TOTAL (Por Rango)
     @Query(value = "SELECT COALESCE(SUM(total_amount), 0) FROM sales WHERE tenant_id = :tenantId " +
             "AND CAST(created_at AT TIME ZONE 'America/Santiago' AS DATE) BETWEEN :startDate AND :endDate", nativeQuery = true)
@@ -0,0 +1,16 @@
+package com.saaspos.api.repository;
+
+import com.saaspos.api.model.StockAlert;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface StockAlertRepository extends JpaRepository<StockAlert, Long> {
+
+    // Más recientes primero (índice idx_stock_alerts_tenant)
+    List<StockAlert> findByTenantIdOrderByIdDesc(UUID tenantId, Pageable pageable);
+
+    List<StockAlert> findByTenantIdAndProductIdOrderByIdDesc(UUID tenantId, UUID productId, Pageable pageable);
+}
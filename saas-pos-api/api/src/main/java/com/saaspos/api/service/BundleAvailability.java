@@ -0,0 +1,133 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.event.AvailableUnitsChanged;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.StockChanged;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantiene products.available_units de los packs (V32): así leer el stock de un pack es leer una columna.
+ * Cuando cambia el stock de un producto se recalculan solo los packs que lo incluyen (índice inverso
+ * idx_bundle_component) y el propio producto si es pack, con un solo UPDATE.
+ * Las ventas lo disparan después del commit vía StockChanged (fuera de la transacción de la venta, para no sumar
+ * locks de packs al checkout); las ediciones del admin lo hacen en su propia transacción con recompute.
+ */
+@Service
+public class BundleAvailability {
+
+    private static final Logger log = LoggerFactory.getLogger(BundleAvailability.class);
+
+    // Mismo cálculo que Product.getEffectiveStock. Los packs se bloquean en orden de id (como StockService)
+    private static final String RECOMPUTE_SQL = """
+            WITH targets AS (
+                SELECT b.id, b.available_units AS old_units FROM products b
+                WHERE b.product_type = 'BUNDLE'
+                AND (b.id IN (:ids)
+                     OR b.id IN (SELECT bi.bundle_product_id FROM bundle_items bi WHERE bi.component_product_id IN (:ids)))
+                ORDER BY b.id
+                FOR UPDATE
+            )
+            UPDATE products b
+            SET available_units = LEAST(COALESCE(b.stock_current, 999999), COALESCE((
+                    SELECT MIN(FLOOR(COALESCE(c.stock_current, 0) / bi.quantity))
+                    FROM bundle_items bi
+                    JOIN products c ON c.id = bi.component_product_id
+                    WHERE bi.bundle_product_id = b.id AND bi.quantity > 0), 999999))
+            FROM targets t
+            WHERE b.id = t.id
+            RETURNING b.id, b.tenant_id, b.stock_min, t.old_units, b.available_units
+            """;
+
+    private static final String BUNDLES_OF_SQL =
+            "SELECT DISTINCT bundle_product_id FROM bundle_items WHERE component_product_id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DomainEventBus eventBus;
+
+    // Productos cuyo stock cambió y falta recalcular sus packs
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    public BundleAvailability(NamedParameterJdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              DomainEventBus eventBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventBus = eventBus;
+        // Si la cola del listener se llena, el producto queda pendiente y lo toma la siguiente pasada
+        eventBus.subscribe(StockChanged.class, "bundle-availability",
+                event -> {
+                    pending.add(event.productId());
+                    recomputePending();
+                },
+                event -> pending.add(event.productId()));
+    }
+
+    /**
+     * Recalcula ya, en la transacción en curso, los packs afectados por estos productos (y ellos mismos si son packs).
+     * Devuelve pack -> unidades disponibles. Los cambios pendientes de JPA deben estar en la BD (flush) antes.
+     * Los packs cuyo valor cambió se publican como AvailableUnitsChanged (al confirmar).
+     */
+    @Transactional
+    public Map<UUID, BigDecimal> recompute(Collection<UUID> productIds) {
+        Map<UUID, BigDecimal> units = new HashMap<>();
+        if (productIds.isEmpty()) return units;
+        jdbcTemplate.query(RECOMPUTE_SQL, Map.of("ids", productIds), rs -> {
+            UUID id = rs.getObject("id", UUID.class);
+            BigDecimal oldUnits = rs.getBigDecimal("old_units");
+            BigDecimal newUnits = rs.getBigDecimal("available_units");
+            units.put(id, newUnits);
+            if (oldUnits == null || oldUnits.compareTo(newUnits) != 0) {
+                eventBus.publish(new AvailableUnitsChanged(rs.getObject("tenant_id", UUID.class), id,
+                        oldUnits, newUnits, rs.getBigDecimal("stock_min")));
+            }
+        });
+        return units;
+    }
+
+    /** Packs que incluyen a estos productos (para recalcularlos después de quitar el componente). */
+    public Set<UUID> bundlesContaining(Collection<UUID> productIds) {
+        if (productIds.isEmpty()) return Set.of();
+        return new HashSet<>(jdbcTemplate.queryForList(BUNDLES_OF_SQL, Map.of("ids", productIds), UUID.class));
+    }
+
+    /** Stock cambiado por fuera de StockService (ej: volcado del ledger): se recalcula en segundo plano. */
+    public void markChanged(Collection<UUID> productIds) {
+        pending.addAll(productIds);
+    }
+
+    @Scheduled(fixedDelayString = "${app.bundles.recompute-ms:2000}")
+    public synchronized void recomputePending() {
+        if (pending.isEmpty()) return;
+        List<UUID> ids = new ArrayList<>(pending);
+        pending.removeAll(ids);
+        try {
+            Map<UUID, BigDecimal> units = transactionTemplate.execute(status -> recompute(ids));
+            if (units != null && !units.isEmpty()) {
+                log.debug("Packs recalculados: {}", units.size());
+            }
+        } catch (RuntimeException e) {
+            // Se reintenta en la próxima pasada
+            pending.addAll(ids);
+            log.warn("No se pudo recalcular el stock de packs ({} productos): {}", ids.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.ProductUpdated;
+import com.saaspos.api.event.StockChanged;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Réplica en memoria del catálogo por tenant para las lecturas del POS (escaneo por SKU, listado, fichas por id).
+ * Guarda los ProductDto ya armados y un índice por SKU. Qué productos tienen stock bajo lo lleva LowStockMonitor.
+ * Se carga al primer uso del tenant y se descarta por LRU cuando hay demasiados tenants en memoria.
+ * Se mantiene al día con los eventos después del commit: ProductUpdated en el mismo hilo (write-through) y
+ * StockChanged en su listener asíncrono; si uno de estos se pierde por cola llena, el tenant se descarta y se recarga
+ * en la siguiente lectura. Además se recarga completo cada ttl-minutes.
+ * Con varias instancias los eventos son locales: cada catálogo guarda la versión de V35 con la que se cargó y cada
+ * check-ms se compara con catalog_versions; si otra instancia editó productos, categorías o packs, se descarta.
+ * Las ventas no avanzan la versión, así que el stock vendido en otra instancia se ve recién con la recarga por ttl
+ * (la venta igual valida el stock en la BD).
+ */
+@Service
+public class CatalogReplica {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogReplica.class);
+
+    // Mismo tope que Product.getEffectiveStock para packs sin límite propio
+    private static final BigDecimal UNLIMITED = new BigDecimal("999999");
+
+    private static final String VERSION_SQL = "SELECT version FROM catalog_versions WHERE tenant_id = :tenantId";
+
+    private static final String VERSIONS_SQL = "SELECT tenant_id, version FROM catalog_versions WHERE tenant_id IN (:ids)";
+
+    private final ProductRepository productRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final int maxTenants;
+    private final long ttlMillis;
+
+    // LRU tenant -> catálogo. Acceso sincronizado (solo se toca al entrar a una lectura)
+    private final Map<UUID, TenantCatalog> tenants;
+    // Cargas en curso: lecturas concurrentes del mismo tenant esperan la misma carga
+    private final Map<UUID, LoadTicket> loading = new ConcurrentHashMap<>();
+
+    public CatalogReplica(ProductRepository productRepository,
+                          NamedParameterJdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          DomainEventBus eventBus,
+                          @Value("${app.catalog.replica.max-tenants:100}") int maxTenants,
+                          @Value("${app.catalog.replica.ttl-minutes:10}") long ttlMinutes) {
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Transacción propia: el write-through corre en afterCommit, cuando la del request ya terminó
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxTenants = maxTenants;
+        this.ttlMillis = ttlMinutes * 60_000;
+        this.tenants = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, TenantCatalog> eldest) {
+                return size() > CatalogReplica.this.maxTenants;
+            }
+        };
+
+        // Ediciones del catálogo: write-through (la respuesta del PUT ya ve el cambio). Stock de ventas: asíncrono
+        eventBus.onCommit(ProductUpdated.class, this::onProductUpdated);
+        eventBus.subscribe(StockChanged.class, "catalog-replica-stock", this::onStockChanged, e -> evict(e.tenantId()));
+    }
+
+    // --- LECTURAS ---
+
+    public List<ProductDto> findAll(UUID tenantId) {
+        return catalog(tenantId).byId.values().stream().map(Entry::dto).collect(Collectors.toList());
+    }
+
+    public Optional<ProductDto> findById(UUID tenantId, UUID productId) {
+        Entry entry = catalog(tenantId).byId.get(productId);
+        return Optional.ofNullable(entry != null ? entry.dto() : null);
+    }
+
+    // Escaneo de código de barras: lookup en el índice hash, sin tocar Postgres
+    public Optional<ProductDto> findBySku(UUID tenantId, String sku) {
+        TenantCatalog catalog = catalog(tenantId);
+        UUID id = catalog.bySku.get(sku);
+        Entry entry = id != null ? catalog.byId.get(id) : null;
+        return Optional.ofNullable(entry != null ? entry.dto() : null);
+    }
+
+    // Solo los productos pedidos (ej: los k de stock bajo), sin recorrer el catálogo
+    public List<ProductDto> findAllById(UUID tenantId, Collection<UUID> ids) {
+        TenantCatalog catalog = catalog(tenantId);
+        List<ProductDto> result = new ArrayList<>();
+        for (UUID id : ids) {
+            Entry entry = catalog.byId.get(id);
+            if (entry != null) result.add(entry.dto());
+        }
+        return result;
+    }
+
+    public void evict(UUID tenantId) {
+        synchronized (tenants) {
+            TenantCatalog catalog = tenants.remove(tenantId);
+            if (catalog != null) catalog.stale = true;
+        }
+        // Una carga en curso puede haber leído datos anteriores al cambio: que no quede publicada
+        LoadTicket inFlight = loading.get(tenantId);
+        if (inFlight != null) inFlight.future.thenAccept(c -> c.stale = true);
+    }
+
+    private TenantCatalog catalog(UUID tenantId) {
+        TenantCatalog catalog;
+        synchronized (tenants) {
+            catalog = tenants.get(tenantId);
+        }
+        if (catalog != null && !catalog.stale && catalog.loadedAt + ttlMillis > System.currentTimeMillis()) {
+            return catalog;
+        }
+
+        LoadTicket mine = new LoadTicket();
+        LoadTicket inFlight = loading.putIfAbsent(tenantId, mine);
+        if (inFlight != null) return inFlight.future.join();
+
+        try {
+            TenantCatalog loaded = load(tenantId);
+            synchronized (tenants) {
+                tenants.put(tenantId, loaded);
+            }
+            loading.remove(tenantId, mine);
+            // Lo que cambió mientras leíamos el catálogo se vuelve a leer (ya publicado, los eventos nuevos aplican directo)
+            refresh(loaded, mine.touched);
+            mine.future.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            loading.remove(tenantId, mine);
+            mine.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private TenantCatalog load(UUID tenantId) {
+        long start = System.currentTimeMillis();
+        TenantCatalog catalog = readOnlyTransaction.execute(status -> {
+            // La versión antes que los productos: lo que se confirme entre medio queda con versión mayor y se recarga
+            long version = jdbcTemplate.queryForList(VERSION_SQL, Map.of("tenantId", tenantId), Long.class)
+                    .stream().findFirst().orElse(0L);
+            TenantCatalog loaded = new TenantCatalog(version);
+            for (Product p : productRepository.findByTenantId(tenantId)) {
+                loaded.put(toEntry(p));
+            }
+            return loaded;
+        });
+        log.debug("Réplica de catálogo: tenant {} cargado ({} productos, {} ms)",
+                tenantId, catalog.byId.size(), System.currentTimeMillis() - start);
+        return catalog;
+    }
+
+    // Cambios de catálogo hechos en otras instancias (o por SQL directo). Las ediciones propias también avanzan la
+    // versión: el tenant se recarga una vez más, a lo sumo una por revisión
+    @Scheduled(fixedDelayString = "${app.catalog.replica.check-ms:5000}")
+    public void checkVersions() {
+        Map<UUID, TenantCatalog> cached;
+        synchronized (tenants) {
+            if (tenants.isEmpty()) return;
+            cached = new HashMap<>(tenants);
+        }
+
+        Map<UUID, Long> versions = new HashMap<>();
+        jdbcTemplate.query(VERSIONS_SQL, Map.of("ids", List.copyOf(cached.keySet())),
+                rs -> { versions.put(rs.getObject("tenant_id", UUID.class), rs.getLong("version")); });
+
+        cached.forEach((tenantId, catalog) -> {
+            if (versions.getOrDefault(tenantId, 0L) > catalog.version) {
+                log.debug("Réplica de catálogo: tenant {} cambió en otra instancia (versión {} -> {})",
+                        tenantId, catalog.version, versions.get(tenantId));
+                evict(tenantId);
+            }
+        });
+    }
+
+    // --- ESCRITURAS (desde los eventos) ---
+
+    private void onProductUpdated(ProductUpdated event) {
+        TenantCatalog catalog = loaded(event.tenantId(), event.productId());
+        if (catalog == null) return;
+
+        if (event.change() == ProductUpdated.Change.DELETED) {
+            // Se relee igual: si no existe queda fuera, y los packs que lo usaban se actualizan
+            catalog.remove(event.productId());
+        }
+        refresh(catalog, Set.of(event.productId()));
+    }
+
+    // Relee desde la BD los productos indicados y los packs que los usan (muestran su nombre/SKU y dependen de su stock)
+    private void refresh(TenantCatalog catalog, Set<UUID> productIds) {
+        if (productIds.isEmpty()) return;
+        Set<UUID> withBundles = new HashSet<>(productIds);
+        productIds.forEach(id -> withBundles.addAll(catalog.bundlesByComponent.getOrDefault(id, Set.of())));
+        List<UUID> ids = List.copyOf(withBundles);
+        readOnlyTransaction.executeWithoutResult(status ->
+                productRepository.findAllWithBundleItemsByIdIn(ids).forEach(p -> catalog.put(toEntry(p))));
+    }
+
+    private void onStockChanged(StockChanged event) {
+        TenantCatalog catalog = loaded(event.tenantId(), event.productId());
+        if (catalog == null) return;
+
+        Entry entry = catalog.byId.get(event.productId());
+        if (entry == null) return;
+        catalog.put(entry.withStock(event.newStock(), catalog));
+
+        Set<UUID> bundles = catalog.bundlesByComponent.get(event.productId());
+        if (bundles != null) {
+            for (UUID bundleId : List.copyOf(bundles)) {
+                Entry bundle = catalog.byId.get(bundleId);
+                if (bundle != null) catalog.put(bundle.withStock(bundle.rawStock(), catalog));
+            }
+        }
+    }
+
+    // Catálogo en memoria del tenant, o null si no está cargado (si se está cargando, se anota el producto para releerlo)
+    private TenantCatalog loaded(UUID tenantId, UUID productId) {
+        synchronized (tenants) {
+            TenantCatalog catalog = tenants.get(tenantId);
+            if (catalog != null) return catalog;
+        }
+        LoadTicket inFlight = loading.get(tenantId);
+        if (inFlight != null) inFlight.touched.add(productId);
+        return null;
+    }
+
+    private static Entry toEntry(Product p) {
+        Map<UUID, BigDecimal> components = new LinkedHashMap<>();
+        if ("BUNDLE".equals(p.getProductType()) && p.getBundleItems() != null) {
+            p.getBundleItems().forEach(bi -> components.put(bi.getComponentProduct().getId(), bi.getQuantity()));
+        }
+        return new Entry(ProductDto.from(p), p.getStockCurrent(), components);
+    }
+
+    /** Producto en la réplica: DTO listo para responder + stock crudo (NULL = ilimitado) + componentes si es pack. */
+    private record Entry(ProductDto dto, BigDecimal rawStock, Map<UUID, BigDecimal> components) {
+
+        // Nueva versión con otro stock (los DTO publicados no se modifican: se reemplazan)
+        Entry withStock(BigDecimal newRawStock, TenantCatalog catalog) {
+            ProductDto copy = new ProductDto();
+            BeanUtils.copyProperties(dto, copy);
+            copy.setStockCurrent(effectiveStock(newRawStock, catalog));
+            return new Entry(copy, newRawStock, components);
+        }
+
+        // Mismo cálculo que Product.getEffectiveStock, con el stock de los componentes que tiene la réplica
+        private BigDecimal effectiveStock(BigDecimal raw, TenantCatalog catalog) {
+            if (!"BUNDLE".equals(dto.getProductType())) {
+                return raw != null ? raw : BigDecimal.ZERO;
+            }
+            BigDecimal limit = raw == null ? UNLIMITED : raw;
+            for (Map.Entry<UUID, BigDecimal> component : components.entrySet()) {
+                Entry c = catalog.byId.get(component.getKey());
+                BigDecimal componentStock = c != null && c.rawStock() != null ? c.rawStock() : BigDecimal.ZERO;
+                if (component.getValue().signum() > 0) {
+                    BigDecimal maxPacks = componentStock.divide(component.getValue(), 0, RoundingMode.FLOOR);
+                    if (maxPacks.compareTo(limit) < 0) limit = maxPacks;
+                }
+            }
+            return limit;
+        }
+    }
+
+    private static final class LoadTicket {
+        private final CompletableFuture<TenantCatalog> future = new CompletableFuture<>();
+        private final Set<UUID> touched = ConcurrentHashMap.newKeySet();
+    }
+
+    private static final class TenantCatalog {
+        private final Map<UUID, Entry> byId = new ConcurrentHashMap<>();
+        private final Map<String, UUID> bySku = new ConcurrentHashMap<>();
+        // componente -> packs que lo incluyen
+        private final Map<UUID, Set<UUID>> bundlesByComponent = new ConcurrentHashMap<>();
+        private final long loadedAt = System.currentTimeMillis();
+        // Versión del catálogo (catalog_versions) leída al cargar
+        private final long version;
+        private volatile boolean stale = false;
+
+        TenantCatalog(long version) {
+            this.version = version;
+        }
+
+        synchronized void put(Entry entry) {
+            UUID id = entry.dto().getId();
+            Entry previous = byId.put(id, entry);
+            if (previous != null) unindex(id, previous);
+
+            bySku.put(entry.dto().getSku(), id);
+            entry.components().keySet().forEach(c -> bundlesByComponent.computeIfAbsent(c, k -> ConcurrentHashMap.newKeySet()).add(id));
+        }
+
+        synchronized void remove(UUID id) {
+            Entry previous = byId.remove(id);
+            if (previous != null) unindex(id, previous);
+        }
+
+        private void unindex(UUID id, Entry previous) {
+            bySku.remove(previous.dto().getSku(), id);
+            previous.components().keySet().forEach(c -> {
+                Set<UUID> bundles = bundlesByComponent.get(c);
+                if (bundles != null) bundles.remove(id);
+            });
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.util.Money;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Catálogo completo por tenant en un archivo binario columnar ya comprimido (gzip), para el arranque de los POS
+ * (GET /api/products/snapshot): una sola descarga chica, sin armar un DTO por producto en cada pedido.
+ * Lleva la versión del catálogo (V35) con la que se generó; el terminal sigue desde ahí con
+ * /api/products/changes?since=version, así un snapshot algo atrasado sigue siendo correcto.
+ * Se genera al primer pedido del tenant y después en segundo plano cuando cambia la versión (o envejece el stock).
+ * Vive en disco local y se envía con sendfile de Tomcat (cero copia) cuando está disponible.
+ *
+ * Formato (big-endian; texto = int largo en bytes UTF-8, -1 = null; uuid = 2 long; número = long escalado,
+ * Long.MIN_VALUE = null):
+ * <pre>
+ * "SPCS" int formato(1) uuid tenant, long versión, long generado (epoch ms)
+ * int nCategorías; uuid[n] id; texto[n] nombre
+ * int nProductos; y por columna: uuid[n] id; texto[n] sku; texto[n] nombre; uuid-o-null[n] categoría (byte 0/1 + uuid);
+ *   byte[n] tipo (0 STANDARD, 1 BUNDLE); texto[n] unidad; long[n] precio final y long[n] neto (diez-milésimos, Money);
+ *   int[n] IVA (puntos base); byte[n] IVA incluido; long[n] stock y long[n] stock mínimo (milésimas; stock null = ilimitado;
+ *   en packs, lo que se puede armar); texto[n] imagen
+ * int nComponentes; uuid[n] pack; uuid[n] componente; long[n] cantidad (milésimas)
+ * </pre>
+ */
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    public static final String CONTENT_TYPE = "application/vnd.saaspos.catalog";
+    private static final int FORMAT_VERSION = 1;
+    private static final long NULL = Long.MIN_VALUE;
+
+    private static final String VERSION_SQL = "SELECT version FROM catalog_versions WHERE tenant_id = :tenantId";
+
+    private static final String VERSIONS_SQL = "SELECT tenant_id, version FROM catalog_versions WHERE tenant_id IN (:ids)";
+
+    private static final String CATEGORIES_SQL = """
+            SELECT id, name FROM categories
+            WHERE tenant_id = :tenantId AND COALESCE(is_active, true)
+            ORDER BY name
+            """;
+
+    // Lo mismo que ve el POS: activos, con el stock efectivo (packs = available_units)
+    private static final String PRODUCTS_SQL = """
+            SELECT id, sku, name, category_id, product_type, measurement_unit, price_final, price_neto, tax_percent,
+                   is_tax_included, stock_min, image_url,
+                   CASE WHEN product_type = 'BUNDLE' THEN available_units ELSE stock_current END AS stock
+            FROM products
+            WHERE tenant_id = :tenantId AND is_active = true
+            ORDER BY name, id
+            """;
+
+    private static final String COMPONENTS_SQL = """
+            SELECT bi.bundle_product_id, bi.component_product_id, bi.quantity
+            FROM bundle_items bi
+            JOIN products b ON b.id = bi.bundle_product_id
+            WHERE b.tenant_id = :tenantId AND b.is_active = true
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final Path directory;
+    private final long maxAgeMillis;
+    private final long keepMillis;
+
+    private final Map<UUID, Snapshot> snapshots = new ConcurrentHashMap<>();
+    // Generaciones en curso: los terminales que arrancan juntos esperan la misma
+    private final Map<UUID, CompletableFuture<Snapshot>> building = new ConcurrentHashMap<>();
+
+    public CatalogSnapshotService(NamedParameterJdbcTemplate jdbcTemplate,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.catalog.snapshot.dir:${java.io.tmpdir}/saaspos-catalog}") String directory,
+                                  @Value("${app.catalog.snapshot.max-age-minutes:30}") long maxAgeMinutes,
+                                  @Value("${app.catalog.snapshot.keep-hours:24}") long keepHours) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        // Versión y filas del mismo snapshot de la BD: el archivo es exactamente el catálogo de esa versión
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.directory = Paths.get(directory);
+        this.maxAgeMillis = maxAgeMinutes * 60_000;
+        this.keepMillis = keepHours * 3_600_000;
+
+        // Archivos de una ejecución anterior: no hay forma de saber si siguen al día
+        Files.createDirectories(this.directory);
+        try (Stream<Path> old = Files.list(this.directory)) {
+            old.filter(f -> f.getFileName().toString().matches(".*\\.bin\\.gz(\\.tmp)?"))
+                    .forEach(CatalogSnapshotService::deleteQuietly);
+        }
+    }
+
+    /** Snapshot vigente del tenant; si todavía no hay uno se genera ahora (el resto se renueva en segundo plano). */
+    public Snapshot current(UUID tenantId) {
+        Snapshot snapshot = snapshots.get(tenantId);
+        if (snapshot == null) {
+            snapshot = build(tenantId);
+        }
+        snapshot.lastServed = System.currentTimeMillis();
+        return snapshot;
+    }
+
+    /**
+     * Envía el archivo: con sendfile de Tomcat (el kernel copia del disco al socket, sin pasar por la JVM) o, si el
+     * conector no lo soporta, con transferTo sobre el stream de la respuesta.
+     */
+    public void transfer(Snapshot snapshot, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setHeader("Content-Encoding", "gzip");
+        response.setContentLengthLong(snapshot.size());
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            request.setAttribute("org.apache.tomcat.sendfile.filename", snapshot.file().toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", snapshot.size());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot.file())) {
+            channel.transferTo(0, snapshot.size(), Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    // Renovación en segundo plano: catálogo con otra versión o stock demasiado viejo. Tenants sin pedidos se sueltan
+    @Scheduled(fixedDelayString = "${app.catalog.snapshot.check-ms:30000}")
+    public void refresh() {
+        if (snapshots.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        snapshots.values().removeIf(s -> {
+            if (s.lastServed + keepMillis > now) return false;
+            deleteQuietly(s.file());
+            if (s.replaced != null) deleteQuietly(s.replaced);
+            return true;
+        });
+        if (snapshots.isEmpty()) return;
+
+        Map<UUID, Long> versions = new ConcurrentHashMap<>();
+        jdbcTemplate.query(VERSIONS_SQL, Map.of("ids", List.copyOf(snapshots.keySet())),
+                rs -> { versions.put(rs.getObject("tenant_id", UUID.class), rs.getLong("version")); });
+
+        for (Snapshot s : List.copyOf(snapshots.values())) {
+            long version = versions.getOrDefault(s.tenantId(), 0L);
+            if (version == s.version() && s.generatedAt() + maxAgeMillis > now) continue;
+            try {
+                build(s.tenantId());
+            } catch (RuntimeException e) {
+                // Se sigue sirviendo el anterior (el terminal se pone al día con /changes)
+                log.warn("No se pudo regenerar el snapshot del catálogo del tenant {}: {}", s.tenantId(), e.getMessage());
+            }
+        }
+    }
+
+    private Snapshot build(UUID tenantId) {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> inFlight = building.putIfAbsent(tenantId, mine);
+        if (inFlight != null) return inFlight.join();
+
+        try {
+            Snapshot built = snapshotTransaction.execute(status -> write(tenantId));
+            Snapshot previous = snapshots.put(tenantId, built);
+            if (previous != null) {
+                built.lastServed = previous.lastServed;
+                // El anterior puede estar en pleno envío: se borra recién en la próxima generación
+                if (previous.replaced != null) deleteQuietly(previous.replaced);
+                built.replaced = previous.file();
+            }
+            building.remove(tenantId, mine);
+            mine.complete(built);
+            return built;
+        } catch (RuntimeException e) {
+            building.remove(tenantId, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Snapshot write(UUID tenantId) {
+        long start = System.currentTimeMillis();
+        Map<String, Object> params = Map.of("tenantId", tenantId);
+        long version = jdbcTemplate.queryForList(VERSION_SQL, params, Long.class).stream().findFirst().orElse(0L);
+
+        List<UUID> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+        jdbcTemplate.query(CATEGORIES_SQL, params, rs -> {
+            categoryIds.add(rs.getObject("id", UUID.class));
+            categoryNames.add(rs.getString("name"));
+        });
+
+        Columns products = new Columns();
+        jdbcTemplate.query(PRODUCTS_SQL, params, rs -> {
+            products.ids.add(rs.getObject("id", UUID.class));
+            products.skus.add(rs.getString("sku"));
+            products.names.add(rs.getString("name"));
+            products.categories.add(rs.getObject("category_id", UUID.class));
+            products.types.add("BUNDLE".equals(rs.getString("product_type")));
+            products.units.add(rs.getString("measurement_unit"));
+            products.prices.add(Money.of(rs.getBigDecimal("price_final")).units());
+            products.netPrices.add(Money.of(rs.getBigDecimal("price_neto")).units());
+            BigDecimal tax = rs.getBigDecimal("tax_percent");
+            products.taxes.add(tax != null ? tax.movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact() : 1900);
+            products.taxIncluded.add(rs.getBoolean("is_tax_included"));
+            products.stocks.add(milli(rs.getBigDecimal("stock")));
+            products.stockMins.add(milli(rs.getBigDecimal("stock_min")));
+            products.images.add(rs.getString("image_url"));
+        });
+
+        List<UUID> bundles = new ArrayList<>();
+        List<UUID> components = new ArrayList<>();
+        List<Long> quantities = new ArrayList<>();
+        jdbcTemplate.query(COMPONENTS_SQL, params, rs -> {
+            bundles.add(rs.getObject("bundle_product_id", UUID.class));
+            components.add(rs.getObject("component_product_id", UUID.class));
+            quantities.add(milli(rs.getBigDecimal("quantity")));
+        });
+
+        long generatedAt = System.currentTimeMillis();
+        Path file = directory.resolve(tenantId + "-" + version + "-" + generatedAt + ".bin.gz");
+        Path tmp = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)))) {
+                out.writeBytes("SPCS");
+                out.writeInt(FORMAT_VERSION);
+                writeUuid(out, tenantId);
+                out.writeLong(version);
+                out.writeLong(generatedAt);
+
+                out.writeInt(categoryIds.size());
+                for (UUID id : categoryIds) writeUuid(out, id);
+                for (String name : categoryNames) writeString(out, name);
+
+                // Columna por columna: valores parecidos quedan juntos y gzip los comprime mucho mejor
+                int n = products.ids.size();
+                out.writeInt(n);
+                for (UUID id : products.ids) writeUuid(out, id);
+                for (String sku : products.skus) writeString(out, sku);
+                for (String name : products.names) writeString(out, name);
+                for (UUID categoryId : products.categories) {
+                    out.writeBoolean(categoryId != null);
+                    if (categoryId != null) writeUuid(out, categoryId);
+                }
+                for (boolean bundle : products.types) out.writeByte(bundle ? 1 : 0);
+                for (String unit : products.units) writeString(out, unit);
+                for (long price : products.prices) out.writeLong(price);
+                for (long price : products.netPrices) out.writeLong(price);
+                for (int tax : products.taxes) out.writeInt(tax);
+                for (boolean included : products.taxIncluded) out.writeBoolean(included);
+                for (long stock : products.stocks) out.writeLong(stock);
+                for (long stockMin : products.stockMins) out.writeLong(stockMin);
+                for (String image : products.images) writeString(out, image);
+
+                out.writeInt(bundles.size());
+                for (UUID id : bundles) writeUuid(out, id);
+                for (UUID id : components) writeUuid(out, id);
+                for (long quantity : quantities) out.writeLong(quantity);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Snapshot snapshot = new Snapshot(tenantId, version, file, Files.size(file), generatedAt);
+            log.info("Snapshot del catálogo: tenant {} versión {} ({} productos, {} bytes, {} ms)", tenantId, version,
+                    products.ids.size(), snapshot.size(), System.currentTimeMillis() - start);
+            return snapshot;
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new UncheckedIOException("No se pudo escribir el snapshot del catálogo", e);
+        }
+    }
+
+    private static long milli(BigDecimal value) {
+        return value != null ? value.setScale(3, RoundingMode.HALF_UP).unscaledValue().longValueExact() : NULL;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("No se pudo borrar {}: {}", file, e.getMessage());
+        }
+    }
+
+    /** Archivo generado de un tenant. ETag = versión + momento de generación (cambia también al renovar el stock). */
+    public static final class Snapshot {
+        private final UUID tenantId;
+        private final long version;
+        private final Path file;
+        private final long size;
+        private final long generatedAt;
+        private volatile long lastServed = System.currentTimeMillis();
+        private volatile Path replaced;
+
+        Snapshot(UUID tenantId, long version, Path file, long size, long generatedAt) {
+            this.tenantId = tenantId;
+            this.version = version;
+            this.file = file;
+            this.size = size;
+            this.generatedAt = generatedAt;
+        }
+
+        public UUID tenantId() { return tenantId; }
+        public long version() { return version; }
+        public Path file() { return file; }
+        public long size() { return size; }
+        public long generatedAt() { return generatedAt; }
+
+        public String etag() {
+            return "\"" + version + "-" + generatedAt + "\"";
+        }
+    }
+
+    // Valores del catálogo agrupados por columna, en el orden de PRODUCTS_SQL
+    private static final class Columns {
+        private final List<UUID> ids = new ArrayList<>();
+        private final List<String> skus = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<UUID> categories = new ArrayList<>();
+        private final List<Boolean> types = new ArrayList<>();
+        private final List<String> units = new ArrayList<>();
+        private final List<Long> prices = new ArrayList<>();
+        private final List<Long> netPrices = new ArrayList<>();
+        private final List<Integer> taxes = new ArrayList<>();
+        private final List<Boolean> taxIncluded = new ArrayList<>();
+        private final List<Long> stocks = new ArrayList<>();
+        private final List<Long> stockMins = new ArrayList<>();
+        private final List<String> images = new ArrayList<>();
+    }
+}
@@ -0,0 +1,151 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.CatalogChangesDto;
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.model.Category;
+import com.saaspos.api.repository.CategoryRepository;
+import com.saaspos.api.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Sincronización incremental del catálogo para los POS (GET /api/products/changes?since=). La versión por tenant
+ * la mantienen los triggers de V35 en products, categories y bundle_items; aquí solo se lee lo que tiene versión
+ * mayor a la del terminal (índices por tenant y versión), en páginas ordenadas por versión.
+ * since = 0 entrega el catálogo completo (carga inicial del terminal).
+ */
+@Service
+public class CatalogSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogSyncService.class);
+
+    // Las versiones son únicas por tenant (cada cambio toma la siguiente), así que la versión sola es el cursor
+    private static final String CHANGES_SQL = """
+            SELECT kind, id, version, deleted FROM (
+                SELECT 'PRODUCT' AS kind, id, catalog_version AS version, NOT is_active AS deleted
+                FROM products WHERE tenant_id = ? AND catalog_version > ?
+                UNION ALL
+                SELECT 'CATEGORY', id, catalog_version, NOT COALESCE(is_active, true)
+                FROM categories WHERE tenant_id = ? AND catalog_version > ?
+                UNION ALL
+                SELECT entity_type, entity_id, catalog_version, true
+                FROM catalog_tombstones WHERE tenant_id = ? AND catalog_version > ?
+            ) c
+            ORDER BY version
+            LIMIT ?
+            """;
+
+    private static final String VERSION_SQL = "SELECT version, pruned_before FROM catalog_versions WHERE tenant_id = ?";
+
+    // Fila del contador bloqueada sin avanzar la versión (ver lockTenant)
+    private static final String LOCK_SQL = """
+            INSERT INTO catalog_versions (tenant_id) VALUES (?)
+            ON CONFLICT (tenant_id) DO UPDATE SET version = catalog_versions.version
+            RETURNING version
+            """;
+
+    // Lápidas vencidas; el tenant recuerda hasta qué versión se borraron
+    private static final String PRUNE_SQL = """
+            WITH pruned AS (
+                DELETE FROM catalog_tombstones WHERE deleted_at < ?
+                RETURNING tenant_id, catalog_version
+            )
+            UPDATE catalog_versions cv SET pruned_before = GREATEST(cv.pruned_before, m.max_version)
+            FROM (SELECT tenant_id, MAX(catalog_version) AS max_version FROM pruned GROUP BY tenant_id) m
+            WHERE cv.tenant_id = m.tenant_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final int tombstoneRetentionDays;
+
+    public CatalogSyncService(JdbcTemplate jdbcTemplate, ProductRepository productRepository,
+                              CategoryRepository categoryRepository,
+                              @Value("${app.catalog.sync.tombstone-retention-days:90}") int tombstoneRetentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.tombstoneRetentionDays = tombstoneRetentionDays;
+    }
+
+    /**
+     * Cambios con versión mayor a since, hasta limit. REPEATABLE READ: filas y versión del mismo snapshot, así la
+     * versión devuelta nunca queda por delante de lo entregado.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public CatalogChangesDto changes(UUID tenantId, long since, int limit) {
+        long current = 0;
+        long prunedBefore = 0;
+        List<Map<String, Object>> counter = jdbcTemplate.queryForList(VERSION_SQL, tenantId);
+        if (!counter.isEmpty()) {
+            current = ((Number) counter.get(0).get("version")).longValue();
+            prunedBefore = ((Number) counter.get(0).get("pruned_before")).longValue();
+        }
+
+        // Las lápidas de lo que el terminal podría tener ya no están: se recarga todo
+        boolean fullResync = since > 0 && since < prunedBefore;
+        long from = fullResync ? 0 : Math.max(since, 0);
+
+        List<UUID> productIds = new ArrayList<>();
+        List<UUID> categoryIds = new ArrayList<>();
+        List<UUID> deletedProducts = new ArrayList<>();
+        List<UUID> deletedCategories = new ArrayList<>();
+        long[] last = {from};
+        int[] rows = {0};
+        jdbcTemplate.query(CHANGES_SQL, rs -> {
+            rows[0]++;
+            if (rows[0] > limit) return; // Fila extra: solo indica que hay más
+            last[0] = rs.getLong("version");
+            UUID id = rs.getObject("id", UUID.class);
+            boolean product = "PRODUCT".equals(rs.getString("kind"));
+            if (rs.getBoolean("deleted")) {
+                // En la carga inicial el terminal no tiene nada que borrar
+                if (from > 0) (product ? deletedProducts : deletedCategories).add(id);
+            } else {
+                (product ? productIds : categoryIds).add(id);
+            }
+        }, tenantId, from, tenantId, from, tenantId, from, limit + 1);
+
+        boolean hasMore = rows[0] > limit;
+        long version = hasMore ? last[0] : Math.max(current, from);
+
+        List<ProductDto> products = productIds.isEmpty() ? List.of()
+                : productRepository.findAllWithBundleItemsByIdIn(productIds).stream()
+                        .map(ProductDto::from)
+                        .collect(Collectors.toList());
+        List<Category> categories = categoryIds.isEmpty() ? List.of() : categoryRepository.findAllById(categoryIds);
+
+        return new CatalogChangesDto(version, hasMore, fullResync, products, categories, deletedProducts, deletedCategories);
+    }
+
+    /**
+     * Toma la fila del contador del tenant al inicio de una transacción que edita varias filas del catálogo.
+     * Los triggers la toman igual en el primer cambio; tomarla antes que cualquier producto deja un solo orden de
+     * locks (contador -> productos) entre ediciones, cargas masivas y cambios de precio, y evita deadlocks.
+     */
+    public void lockTenant(UUID tenantId) {
+        jdbcTemplate.queryForObject(LOCK_SQL, Long.class, tenantId);
+    }
+
+    @Scheduled(cron = "${app.catalog.sync.prune-cron:0 30 3 * * *}")
+    public void pruneTombstones() {
+        int tenants = jdbcTemplate.update(PRUNE_SQL, LocalDateTime.now().minusDays(tombstoneRetentionDays));
+        if (tenants > 0) {
+            log.info("Lápidas del catálogo depuradas en {} tenants", tenants);
+        }
+    }
+}
@@ -1,33 +1,89 @@
 package com.saaspos.api.service;
 
+import com.saaspos.api.config.AuthenticatedUser;
 import com.saaspos.api.model.User;
 import com.saaspos.api.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    // Caché LRU email -> UserDetails. Se invalida explícitamente al crear/modificar usuarios (ver evict)
+    private final Map<String, CachedDetails> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${app.security.user-cache.ttl-seconds:300}") long ttlSeconds,
+                                    @Value("${app.security.user-cache.max-entries:5000}") int maxEntries) {
         this.userRepository = userRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxEntries = maxEntries;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedDetails> eldest) {
+                return size() > CustomUserDetailsService.this.maxEntries;
+            }
+        };
     }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            CachedDetails cached = cache.get(email);
+            if (cached != null && cached.expiresAt > now) {
+                hits.incrementAndGet();
+                return cached.details;
+            }
+        }
+        misses.incrementAndGet();
+
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + email));
 
-        //Convertimos nuestro usuario 'User' al usuario que entiende nuestro Spring Security
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                new ArrayList<>()
-        );
+        //Convertimos nuestro usuario 'User' al principal que entiende nuestro Spring Security
+        UserDetails details = AuthenticatedUser.fromUser(user);
+        synchronized (cache) {
+            cache.put(email, new CachedDetails(details, now + ttlMillis));
+        }
+        return details;
+    }
+
+    // Llamar siempre que cambie password, rol o estado activo de un usuario
+    public void evict(String email) {
+        synchronized (cache) {
+            cache.remove(email);
+        }
+    }
+
+    public void evictAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public Map<String, Long> getCacheStats() {
+        long size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return Map.of("hits", hits.get(), "misses", misses.get(), "size", size);
+    }
+
+    private record CachedDetails(UserDetails details, long expiresAt) {
     }
 }
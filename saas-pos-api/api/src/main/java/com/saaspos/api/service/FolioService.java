@@ -0,0 +1,68 @@
+package com.saaspos.api.service;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Correlativos por empresa y serie (hi/lo): cada nodo reserva en la BD un bloque de N números y los
+ * entrega desde memoria. Únicos entre nodos; puede haber saltos (bloques no usados al reiniciar).
+ * La reserva usa un pool propio y pequeño (folioDataSource, ver FolioDataSourceConfig): se pide en medio de la
+ * transacción de la venta, y tomarla del pool principal dejaría a cada venta con dos conexiones (con el pool
+ * lleno, todas esperando la segunda).
+ */
+@Service
+public class FolioService {
+
+    public static final String TICKET = "TCK";
+    public static final String WEB_ORDER = "WEB";
+    public static final String GENERATED_SKU = "GEN";
+
+    // Reserva el siguiente bloque (crea la serie si no existe) y devuelve dónde termina
+    private static final String RESERVE_SQL =
+            "INSERT INTO folio_sequences (tenant_id, series, next_value) VALUES (?, ?, 1 + ?) " +
+            "ON CONFLICT (tenant_id, series) DO UPDATE SET next_value = folio_sequences.next_value + EXCLUDED.next_value - 1 " +
+            "RETURNING next_value";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+
+    // tenant:serie -> bloque vigente en este nodo
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public FolioService(@Qualifier("folioDataSource") DataSource folioDataSource,
+                        @Value("${app.folio.block-size:50}") int blockSize) {
+        // Fuera de la transacción de Spring: la reserva es un solo statement en autocommit, así que si la venta
+        // hace rollback el bloque igual queda reservado (nunca se reparte dos veces)
+        this.jdbcTemplate = new JdbcTemplate(folioDataSource);
+        this.blockSize = blockSize;
+    }
+
+    // Ej: next(tenant, TICKET) -> "TCK-000123"
+    public String next(UUID tenantId, String series) {
+        return String.format("%s-%06d", series, nextValue(tenantId, series));
+    }
+
+    public long nextValue(UUID tenantId, String series) {
+        Block block = blocks.computeIfAbsent(tenantId + ":" + series, k -> new Block());
+        synchronized (block) {
+            if (block.next >= block.end) {
+                Long end = jdbcTemplate.queryForObject(RESERVE_SQL, Long.class, tenantId, series, blockSize);
+                block.next = end - blockSize;
+                block.end = end;
+            }
+            return block.next++;
+        }
+    }
+
+    private static class Block {
+        private long next;
+        private long end; // exclusivo
+    }
+}
@@ -0,0 +1,229 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * Ledger de stock en memoria para productos "calientes" (promos donde todas las cajas venden el mismo SKU).
+ * Acepta o rechaza cada descuento con un CAS en memoria, sin tomar el lock de la fila en products.
+ * El delta se anota en stock_ledger_journal dentro de la transacción de la venta y un proceso en segundo
+ * plano lo lleva a products.stock_current en lotes (write-behind). Si la app se cae, el diario sobrevive.
+ * Se activa por tenant o por producto (app.stock.ledger.*). Supone UNA instancia atendiendo a ese tenant.
+ * Un ajuste manual (reset) espera a que terminen las ventas en curso del producto y bloquea las nuevas hasta su commit.
+ */
+@Service
+public class HotStockLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStockLedger.class);
+
+    // Stock real = lo que dice products + lo que aún no se vuelca desde el diario
+    private static final String SEED_SQL =
+            "SELECT p.stock_current + COALESCE((SELECT SUM(j.delta) FROM stock_ledger_journal j WHERE j.product_id = p.id), 0) " +
+            "FROM products p WHERE p.id = ?";
+
+    // Cuánto espera un ajuste manual a que terminen las ventas en curso del producto
+    private static final long RESET_WAIT_SECONDS = 10;
+
+    private static final String JOURNAL_SQL =
+            "INSERT INTO stock_ledger_journal (tenant_id, product_id, delta) VALUES (?, ?, ?)";
+
+    // Vuelca un lote del diario en un solo statement (borrar + sumar es atómico)
+    private static final String FLUSH_SQL = """
+            WITH moved AS (
+                DELETE FROM stock_ledger_journal
+                WHERE id IN (SELECT id FROM stock_ledger_journal ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+                RETURNING product_id, delta
+            )
+            UPDATE products p SET stock_current = p.stock_current + m.delta
+            FROM (SELECT product_id, SUM(delta) AS delta FROM moved GROUP BY product_id) m
+            WHERE p.id = m.product_id
+            RETURNING p.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BundleAvailability bundleAvailability;
+    private final Set<UUID> enabledTenants;
+    private final Set<UUID> enabledProducts;
+    private final int flushBatchSize;
+
+    private volatile boolean drained = false;
+
+    // productId -> stock disponible. Valor NULL = producto ilimitado
+    private final Map<UUID, AtomicReference<BigDecimal>> available = new ConcurrentHashMap<>();
+
+    // productId -> lectura = venta en curso (hasta su commit/rollback), escritura = ajuste manual (reset)
+    private final Map<UUID, ReentrantReadWriteLock> locks = new ConcurrentHashMap<>();
+
+    public HotStockLedger(JdbcTemplate jdbcTemplate,
+                          BundleAvailability bundleAvailability,
+                          @Value("${app.stock.ledger.tenants:}") String tenants,
+                          @Value("${app.stock.ledger.products:}") String products,
+                          @Value("${app.stock.ledger.flush-batch-size:500}") int flushBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bundleAvailability = bundleAvailability;
+        this.enabledTenants = parseIds(tenants);
+        this.enabledProducts = parseIds(products);
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    public boolean handles(Product product) {
+        return enabledProducts.contains(product.getId()) || enabledTenants.contains(product.getTenantId());
+    }
+
+    /**
+     * Intenta aplicar el delta en memoria. Devuelve {stockAnterior, stockNuevo} (ambos NULL si es ilimitado)
+     * o null si no alcanza. Si la transacción hace rollback, el delta se revierte solo.
+     * Un delta aceptado deja tomado el lock de lectura del producto hasta que la transacción termina.
+     */
+    public BigDecimal[] tryApply(UUID productId, BigDecimal delta) {
+        Lock lock = lockFor(productId).readLock();
+        lock.lock();
+        boolean held = false;
+        try {
+            AtomicReference<BigDecimal> ref = available.computeIfAbsent(productId, this::seed);
+            while (true) {
+                BigDecimal current = ref.get();
+                if (current == null) return new BigDecimal[]{null, null};
+
+                BigDecimal next = current.add(delta);
+                if (delta.signum() < 0 && next.signum() < 0) return null;
+
+                if (ref.compareAndSet(current, next)) {
+                    held = revertOnRollback(ref, delta, lock);
+                    return new BigDecimal[]{current, next};
+                }
+            }
+        } finally {
+            if (!held) lock.unlock();
+        }
+    }
+
+    /** Anota los deltas ya aceptados en el diario (mismo batch y transacción que la venta). */
+    public void journal(List<Product> products, List<BigDecimal> deltas) {
+        jdbcTemplate.batchUpdate(JOURNAL_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setObject(1, products.get(i).getTenantId());
+                ps.setObject(2, products.get(i).getId());
+                ps.setBigDecimal(3, deltas.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return products.size();
+            }
+        });
+    }
+
+    /**
+     * Ajuste manual de stock (edición de producto): el valor ingresado manda sobre lo pendiente.
+     * Debe llamarse dentro de la transacción que guarda el nuevo stock. Espera a que las ventas en curso del
+     * producto terminen (sus deltas quedan en el diario y se borran aquí) y no deja pasar otras hasta el commit;
+     * después la próxima venta vuelve a sembrar desde la BD con el stock ya guardado.
+     */
+    public void reset(UUID productId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El ajuste de stock del ledger debe hacerse dentro de una transacción");
+        }
+        Lock lock = lockFor(productId).writeLock();
+        try {
+            if (!lock.tryLock(RESET_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("El producto tiene ventas en curso, intente nuevamente");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Ajuste de stock interrumpido");
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM stock_ledger_journal WHERE product_id = ?", productId);
+            available.remove(productId);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    // Con commit se siembra el stock nuevo; con rollback vuelve el diario borrado. En ambos casos, de la BD
+                    available.remove(productId);
+                    lock.unlock();
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    // Write-behind: también recupera al arrancar lo que quedó pendiente si la app se cayó
+    @Scheduled(fixedDelayString = "${app.stock.ledger.flush-ms:500}")
+    @Transactional
+    public void flush() {
+        // Sin productos habilitados solo hace falta vaciar una vez lo que haya quedado de antes
+        if (drained && enabledTenants.isEmpty() && enabledProducts.isEmpty()) return;
+
+        List<UUID> products = jdbcTemplate.queryForList(FLUSH_SQL, UUID.class, flushBatchSize);
+        if (!products.isEmpty()) {
+            // Los packs que usan estos productos se recalculan con el stock ya volcado
+            bundleAvailability.markChanged(products);
+            log.debug("Ledger de stock: {} productos actualizados en BD", products.size());
+        } else {
+            drained = true;
+        }
+    }
+
+    private AtomicReference<BigDecimal> seed(UUID productId) {
+        List<BigDecimal> rows = jdbcTemplate.queryForList(SEED_SQL, BigDecimal.class, productId);
+        return new AtomicReference<>(rows.isEmpty() ? null : rows.get(0));
+    }
+
+    private ReentrantReadWriteLock lockFor(UUID productId) {
+        return locks.computeIfAbsent(productId, id -> new ReentrantReadWriteLock());
+    }
+
+    // Devuelve true si el lock queda tomado hasta el fin de la transacción
+    private boolean revertOnRollback(AtomicReference<BigDecimal> ref, BigDecimal delta, Lock lock) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return false;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        ref.accumulateAndGet(delta.negate(), (cur, d) -> cur != null ? cur.add(d) : null);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        return true;
+    }
+
+    private static Set<UUID> parseIds(String csv) {
+        return Arrays.stream(csv.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .map(UUID::fromString)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
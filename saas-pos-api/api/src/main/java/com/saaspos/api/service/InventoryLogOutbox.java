@@ -0,0 +1,166 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.model.InventoryLog;
+import com.saaspos.api.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Auditoría de inventario (inventory_logs) fuera del camino crítico de la venta.
+ * Los logs de una transacción se juntan en memoria y se anotan en inventory_log_outbox con UN batch justo
+ * antes del commit (tabla sin índices secundarios). Un proceso en segundo plano los traspasa a inventory_logs
+ * en lotes grandes y en el orden en que se generaron. Si la app se cae, lo pendiente se traspasa al volver.
+ * Los reportes ven el log con un desfase de app.inventory-log.flush-ms.
+ */
+@Service
+public class InventoryLogOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLogOutbox.class);
+
+    private static final String APPEND_SQL = """
+            INSERT INTO inventory_log_outbox (log_id, tenant_id, product_id, product_name_snapshot, user_id, user_name_snapshot,
+                                              action_type, quantity_change, old_stock, new_stock, reason, sale_id, web_order_id, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // Mueve un lote en un solo statement (borrar + insertar es atómico). log_id hace que un reintento no duplique
+    private static final String DRAIN_SQL = """
+            WITH moved AS (
+                DELETE FROM inventory_log_outbox
+                WHERE id IN (SELECT id FROM inventory_log_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED)
+                RETURNING *
+            )
+            INSERT INTO inventory_logs (id, tenant_id, product_id, product_name_snapshot, user_id, user_name_snapshot,
+                                        action_type, quantity_change, old_stock, new_stock, reason, sale_id, web_order_id, created_at)
+            SELECT log_id, tenant_id, product_id, product_name_snapshot, user_id, user_name_snapshot,
+                   action_type, quantity_change, old_stock, new_stock, reason, sale_id, web_order_id, created_at
+            FROM moved ORDER BY id
+            ON CONFLICT (id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int drainBatchSize;
+    private final int maxBatchesPerRun;
+
+    public InventoryLogOutbox(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.inventory-log.drain-batch-size:1000}") int drainBatchSize,
+                              @Value("${app.inventory-log.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.drainBatchSize = drainBatchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /** Registra un movimiento de inventario. Se escribe al confirmar la transacción en curso (o de inmediato si no hay). */
+    public void record(Product p, AuthenticatedUser u, String action, BigDecimal change, BigDecimal oldStk, BigDecimal newStk,
+                       String reason, UUID saleId, UUID webOrderId) {
+        InventoryLog entry = new InventoryLog();
+        entry.setId(UUID.randomUUID());
+        entry.setTenantId(p.getTenantId());
+        entry.setProductId(p.getId());
+        entry.setProductNameSnapshot(p.getName());
+        entry.setUserId(u != null ? u.getId() : null);
+        entry.setUserNameSnapshot(u != null ? u.getFullName() : null);
+        entry.setActionType(action);
+        entry.setQuantityChange(change);
+        entry.setOldStock(oldStk);
+        entry.setNewStock(newStk);
+        entry.setReason(reason);
+        entry.setSaleId(saleId);
+        entry.setWebOrderId(webOrderId);
+        entry.setCreatedAt(LocalDateTime.now());
+        append(entry);
+    }
+
+    private void append(InventoryLog entry) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.of(entry));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<InventoryLog> pending = (List<InventoryLog>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<InventoryLog> buffer = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    // Todos los logs de la transacción en un solo batch (mismo commit que el stock)
+                    insert(buffer);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(InventoryLogOutbox.this);
+                }
+            });
+            pending = buffer;
+        }
+        pending.add(entry);
+    }
+
+    private void insert(List<InventoryLog> entries) {
+        if (entries.isEmpty()) return;
+        jdbcTemplate.batchUpdate(APPEND_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                InventoryLog e = entries.get(i);
+                ps.setObject(1, e.getId());
+                ps.setObject(2, e.getTenantId());
+                ps.setObject(3, e.getProductId());
+                ps.setString(4, e.getProductNameSnapshot());
+                ps.setObject(5, e.getUserId());
+                ps.setString(6, e.getUserNameSnapshot());
+                ps.setString(7, e.getActionType());
+                ps.setBigDecimal(8, e.getQuantityChange());
+                ps.setBigDecimal(9, e.getOldStock());
+                ps.setBigDecimal(10, e.getNewStock());
+                ps.setString(11, e.getReason());
+                ps.setObject(12, e.getSaleId());
+                ps.setObject(13, e.getWebOrderId());
+                ps.setTimestamp(14, Timestamp.valueOf(e.getCreatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entries.size();
+            }
+        });
+    }
+
+    // Traspaso en lotes (cada lote en su transacción); también recupera al arrancar lo que quedó pendiente
+    @Scheduled(fixedDelayString = "${app.inventory-log.flush-ms:1000}")
+    public void drain() {
+        int total = 0;
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            Integer moved = transactionTemplate.execute(status -> jdbcTemplate.update(DRAIN_SQL, drainBatchSize));
+            total += moved != null ? moved : 0;
+            if (moved == null || moved < drainBatchSize) break;
+        }
+        if (total > 0) {
+            log.debug("Outbox de inventario: {} logs traspasados", total);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.StockService.StockMovement;
+import com.saaspos.api.service.StockService.StockPlan;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Motor de edición de tickets POS y pedidos web.
+ * Compara los ítems actuales con los pedidos y calcula el delta NETO por producto (packs expandidos a
+ * componentes), así solo se mueve el stock que realmente cambió: un log por producto modificado y
+ * los ítems existentes se actualizan en su lugar en vez de borrar y recrear todos.
+ */
+@Service
+public class ItemEditEngine {
+
+    private final StockService stockService;
+
+    public ItemEditEngine(StockService stockService) {
+        this.stockService = stockService;
+    }
+
+    /**
+     * @param current    ítems actuales (SaleItem, WebOrderItem...)
+     * @param requested  líneas pedidas, en orden (producto ya cargado con sus componentes)
+     * @param products   productos cargados por id (para resolver los proxies LAZY de los ítems actuales)
+     */
+    public <T> Edit<T> diff(List<T> current, List<Line> requested, Map<UUID, Product> products,
+                            Function<T, Product> productOf, Function<T, BigDecimal> quantityOf) {
+        Edit<T> edit = new Edit<>();
+
+        // Ítems actuales por producto (puede haber más de una línea del mismo producto)
+        Map<UUID, Deque<T>> available = new HashMap<>();
+        for (T item : current) {
+            Product product = productOf.apply(item);
+            UUID productId = product != null ? product.getId() : null;
+            available.computeIfAbsent(productId, k -> new ArrayDeque<>()).add(item);
+
+            // Lo que tenía reservado vuelve... (se compensa abajo con lo nuevo)
+            if (product != null) {
+                edit.stockPlan.increase(products.getOrDefault(productId, product), quantityOf.apply(item));
+            }
+        }
+
+        for (Line line : requested) {
+            // ...y lo pedido se descuenta: en el plan queda solo la diferencia por producto
+            edit.stockPlan.decrease(line.product(), line.quantity());
+
+            Deque<T> candidates = available.get(line.product().getId());
+            T match = candidates != null ? candidates.poll() : null;
+            if (match != null) {
+                edit.matched.put(line, match);
+            }
+        }
+
+        available.values().forEach(edit.removed::addAll);
+        return edit;
+    }
+
+    /** Aplica solo los cambios netos de stock (atómico, ver StockService). */
+    public List<StockMovement> applyStock(Edit<?> edit) {
+        return stockService.apply(edit.stockPlan);
+    }
+
+    public record Line(Product product, BigDecimal quantity) {
+    }
+
+    public static class Edit<T> {
+        private final Map<Line, T> matched = new IdentityHashMap<>();
+        private final List<T> removed = new ArrayList<>();
+        private final StockPlan stockPlan = new StockPlan();
+
+        // Ítem existente que corresponde a la línea, o null si la línea es nueva
+        public T itemFor(Line line) {
+            return matched.get(line);
+        }
+
+        public List<T> getRemoved() {
+            return removed;
+        }
+    }
+}
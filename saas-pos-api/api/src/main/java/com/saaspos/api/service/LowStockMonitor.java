@@ -0,0 +1,174 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.event.AvailableUnitsChanged;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.ProductUpdated;
+import com.saaspos.api.event.StockChanged;
+import com.saaspos.api.model.StockAlert;
+import com.saaspos.api.repository.StockAlertRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estado de stock bajo por tenant, mantenido de forma incremental: cada cambio de stock solo revisa si el producto
+ * cruzó su stock mínimo (en cualquier dirección) y actualiza el conjunto del tenant. El contador del dashboard es el
+ * tamaño del conjunto y la lista son esos k ids. Cada cruce queda como alerta en stock_alerts.
+ * En packs cuenta lo que se puede armar (AvailableUnitsChanged), no su límite propio.
+ * El conjunto de un tenant se arma con una consulta la primera vez que se usa; si un evento se pierde por cola
+ * llena, el tenant se descarta y se vuelve a armar en el siguiente uso.
+ */
+@Service
+public class LowStockMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(LowStockMonitor.class);
+
+    public static final String LOW_STOCK = "LOW_STOCK";
+    public static final String RECOVERED = "RECOVERED";
+
+    // Stock bajo = stock <= mínimo; en packs, lo que se puede armar. Stock NULL = ilimitado, nunca es bajo
+    private static final String SEED_SQL = """
+            SELECT id, product_type = 'BUNDLE' AS bundle,
+                   COALESCE((CASE WHEN product_type = 'BUNDLE' THEN available_units ELSE stock_current END) <= stock_min, false) AS low
+            FROM products
+            WHERE tenant_id = ?
+            AND (product_type = 'BUNDLE' OR stock_current <= stock_min)
+            """;
+
+    private static final String PRODUCT_SQL = """
+            SELECT tenant_id, product_type = 'BUNDLE' AS bundle, stock_min,
+                   CASE WHEN product_type = 'BUNDLE' THEN available_units ELSE stock_current END AS stock
+            FROM products WHERE id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockAlertRepository stockAlertRepository;
+    // Transacción propia: onProductUpdated corre después del commit de otra transacción
+    private final TransactionTemplate newTransaction;
+
+    private final Map<UUID, TenantState> tenants = new ConcurrentHashMap<>();
+
+    public LowStockMonitor(JdbcTemplate jdbcTemplate, StockAlertRepository stockAlertRepository,
+                           PlatformTransactionManager transactionManager, DomainEventBus eventBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.stockAlertRepository = stockAlertRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        eventBus.subscribe(StockChanged.class, "low-stock", this::onStockChanged, e -> tenants.remove(e.tenantId()));
+        eventBus.subscribe(AvailableUnitsChanged.class, "low-stock-bundles", this::onAvailableUnitsChanged,
+                e -> tenants.remove(e.tenantId()));
+        // Mínimo editado, pack nuevo, producto archivado o borrado: se relee esa fila (en el hilo del commit, así un
+        // pack nuevo ya está marcado como pack cuando lleguen sus cambios de stock)
+        eventBus.onCommit(ProductUpdated.class, this::onProductUpdated);
+    }
+
+    /** Cantidad de productos con stock bajo del tenant (dashboard). */
+    public long count(UUID tenantId) {
+        return state(tenantId).low.size();
+    }
+
+    /** Ids de los productos con stock bajo del tenant. */
+    public Set<UUID> lowStockIds(UUID tenantId) {
+        return Set.copyOf(state(tenantId).low);
+    }
+
+    /** Descarta el estado del tenant; se vuelve a armar en el próximo uso (ej: después de una carga masiva). */
+    public void evict(UUID tenantId) {
+        tenants.remove(tenantId);
+    }
+
+    // --- EVENTOS ---
+
+    private void onStockChanged(StockChanged event) {
+        TenantState state = state(event.tenantId());
+        // Los packs se evalúan por lo que se puede armar (llega como AvailableUnitsChanged)
+        if (state.bundles.contains(event.productId())) return;
+        evaluate(state, event.tenantId(), event.productId(), event.newStock(), event.stockMin());
+    }
+
+    private void onAvailableUnitsChanged(AvailableUnitsChanged event) {
+        evaluate(state(event.tenantId()), event.tenantId(), event.bundleId(), event.newUnits(), event.stockMin());
+    }
+
+    private void onProductUpdated(ProductUpdated event) {
+        TenantState state = tenants.get(event.tenantId());
+        if (state == null) return; // Se arma completo en el próximo uso
+
+        List<Map<String, Object>> rows = newTransaction.execute(status -> jdbcTemplate.queryForList(PRODUCT_SQL, event.productId()));
+        if (rows.isEmpty()) {
+            // Borrado definitivo
+            state.bundles.remove(event.productId());
+            state.low.remove(event.productId());
+            return;
+        }
+        Map<String, Object> row = rows.get(0);
+        if (Boolean.TRUE.equals(row.get("bundle"))) {
+            state.bundles.add(event.productId());
+        } else {
+            state.bundles.remove(event.productId());
+        }
+        evaluate(state, event.tenantId(), event.productId(), (BigDecimal) row.get("stock"), (BigDecimal) row.get("stock_min"));
+    }
+
+    // Solo hay trabajo si el producto cruzó el mínimo: actualiza el conjunto y deja la alerta
+    private void evaluate(TenantState state, UUID tenantId, UUID productId, BigDecimal stock, BigDecimal stockMin) {
+        boolean low = stock != null && stockMin != null && stock.compareTo(stockMin) <= 0;
+        boolean changed;
+        synchronized (state) {
+            changed = low ? state.low.add(productId) : state.low.remove(productId);
+        }
+        if (changed) {
+            record(tenantId, productId, low ? LOW_STOCK : RECOVERED, stock, stockMin);
+        }
+    }
+
+    private void record(UUID tenantId, UUID productId, String type, BigDecimal stock, BigDecimal stockMin) {
+        try {
+            newTransaction.executeWithoutResult(status -> {
+                StockAlert alert = new StockAlert();
+                alert.setTenantId(tenantId);
+                alert.setProductId(productId);
+                alert.setProductNameSnapshot(jdbcTemplate.queryForList("SELECT name FROM products WHERE id = ?", String.class, productId)
+                        .stream().findFirst().orElse(null));
+                alert.setAlertType(type);
+                alert.setStock(stock);
+                alert.setStockMin(stockMin);
+                stockAlertRepository.save(alert);
+            });
+        } catch (RuntimeException e) {
+            // El conjunto ya quedó al día; perder la fila de historial no debe frenar al listener
+            log.warn("No se pudo registrar la alerta de stock de {}: {}", productId, e.getMessage());
+        }
+    }
+
+    private TenantState state(UUID tenantId) {
+        return tenants.computeIfAbsent(tenantId, this::seed);
+    }
+
+    private TenantState seed(UUID tenantId) {
+        TenantState state = new TenantState();
+        jdbcTemplate.query(SEED_SQL, rs -> {
+            UUID id = rs.getObject("id", UUID.class);
+            if (rs.getBoolean("bundle")) state.bundles.add(id);
+            if (rs.getBoolean("low")) state.low.add(id);
+        }, tenantId);
+        return state;
+    }
+
+    private static final class TenantState {
+        private final Set<UUID> low = ConcurrentHashMap.newKeySet();
+        private final Set<UUID> bundles = ConcurrentHashMap.newKeySet();
+    }
+}
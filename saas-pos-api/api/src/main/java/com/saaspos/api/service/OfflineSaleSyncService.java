@@ -0,0 +1,112 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.SaleBatchRequest;
+import com.saaspos.api.dto.SaleBatchResponse;
+import com.saaspos.api.dto.SaleBatchResponse.TicketResult;
+import com.saaspos.api.model.Sale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Sincronización de tickets offline (POST /api/sales/batch).
+ * Los tickets nuevos se procesan en bloques, cada bloque en una transacción (ver SaleService.processOfflineChunk).
+ * Si un bloque falla (ej: un producto sin stock), se reintenta ticket por ticket para que solo se
+ * rechacen los tickets con conflicto y el resto quede registrado.
+ */
+@Service
+public class OfflineSaleSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(OfflineSaleSyncService.class);
+
+    private final SaleService saleService;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final int chunkSize;
+
+    public OfflineSaleSyncService(SaleService saleService,
+                                  SaleIdempotencyService saleIdempotencyService,
+                                  @Value("${app.sales.batch.chunk-size:50}") int chunkSize) {
+        this.saleService = saleService;
+        this.saleIdempotencyService = saleIdempotencyService;
+        this.chunkSize = chunkSize;
+    }
+
+    public SaleBatchResponse sync(SaleBatchRequest request, UUID tenantId) {
+        List<SaleBatchRequest.OfflineTicket> tickets = request.getTickets();
+        TicketResult[] results = new TicketResult[tickets.size()];
+
+        // 1. Descartar lo que ya está registrado (reintentos de la caja) o repetido dentro del mismo envío
+        List<Integer> pending = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < tickets.size(); i++) {
+            String key = tickets.get(i).getIdempotencyKey();
+            if (key == null || key.isBlank() || key.length() > 100) {
+                results[i] = new TicketResult(key, "REJECTED", null, null, "idempotencyKey obligatoria (máximo 100 caracteres)");
+            } else if (tickets.get(i).getItems() == null || tickets.get(i).getItems().isEmpty()) {
+                results[i] = new TicketResult(key, "REJECTED", null, null, "Ticket sin ítems");
+            } else if (!seen.add(key)) {
+                results[i] = new TicketResult(key, "DUPLICATE", null, null, null);
+            } else {
+                Optional<UUID> existing = saleIdempotencyService.findSaleId(tenantId, key);
+                if (existing.isPresent()) {
+                    results[i] = new TicketResult(key, "DUPLICATE", existing.get(), null, null);
+                } else {
+                    pending.add(i);
+                }
+            }
+        }
+
+        // 2. Tickets nuevos por bloques
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            List<SaleBatchRequest.OfflineTicket> chunkTickets = chunk.stream().map(tickets::get).toList();
+            try {
+                List<Sale> sales = saleService.processOfflineChunk(chunkTickets, tenantId);
+                for (int j = 0; j < chunk.size(); j++) {
+                    results[chunk.get(j)] = created(chunkTickets.get(j), sales.get(j));
+                }
+            } catch (RuntimeException e) {
+                log.info("Bloque offline de {} tickets rechazado ({}), procesando uno por uno", chunk.size(), e.getMessage());
+                for (int index : chunk) {
+                    results[index] = processOne(tickets.get(index), tenantId);
+                }
+            }
+        }
+
+        SaleBatchResponse response = new SaleBatchResponse();
+        for (TicketResult result : results) {
+            response.getResults().add(result);
+            switch (result.getStatus()) {
+                case "CREATED" -> response.setCreated(response.getCreated() + 1);
+                case "DUPLICATE" -> response.setDuplicates(response.getDuplicates() + 1);
+                default -> response.setRejected(response.getRejected() + 1);
+            }
+        }
+        return response;
+    }
+
+    private TicketResult processOne(SaleBatchRequest.OfflineTicket ticket, UUID tenantId) {
+        try {
+            SaleIdempotencyService.Result result = saleIdempotencyService.execute(tenantId, ticket.getIdempotencyKey(),
+                    () -> saleService.processOfflineChunk(List.of(ticket), tenantId).get(0));
+            if (result.replayed()) {
+                return new TicketResult(ticket.getIdempotencyKey(), "DUPLICATE", result.sale().getId(), result.sale().getSaleNumber(), null);
+            }
+            return created(ticket, result.sale());
+        } catch (RuntimeException e) {
+            return new TicketResult(ticket.getIdempotencyKey(), "REJECTED", null, null, e.getMessage());
+        }
+    }
+
+    private TicketResult created(SaleBatchRequest.OfflineTicket ticket, Sale sale) {
+        return new TicketResult(ticket.getIdempotencyKey(), "CREATED", sale.getId(), sale.getSaleNumber(), null);
+    }
+}
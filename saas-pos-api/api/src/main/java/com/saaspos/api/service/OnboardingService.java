@@ -24,18 +24,21 @@ public class OnboardingService {
     private final PlanRepository planRepository;
     private final DemoLinkRepository demoLinkRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CustomUserDetailsService userDetailsService;
 
     public OnboardingService(
             TenantRepository tenantRepository,
             UserRepository userRepository,
             PlanRepository planRepository,
             DemoLinkRepository demoLinkRepository,
-            PasswordEncoder passwordEncoder) {
+            PasswordEncoder passwordEncoder,
+            CustomUserDetailsService userDetailsService) {
         this.tenantRepository = tenantRepository;
         this.userRepository = userRepository;
         this.planRepository = planRepository;
         this.demoLinkRepository = demoLinkRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
     }
 
     @Transactional
@@ -90,6 +93,7 @@ public class OnboardingService {
         admin.setActive(true);
 
         User savedUser = userRepository.save(admin);
+        userDetailsService.evict(savedUser.getEmail());
 
         // 6. QUEMAR EL TOKEN (Marcar como usado)
         link.setUsed(true);
@@ -1,10 +1,15 @@
 package com.saaspos.api.service;
 
-import com.saaspos.api.model.Product;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.WebOrderStatusChanged;
 import com.saaspos.api.model.ecommerce.WebOrder;
 import com.saaspos.api.model.ecommerce.WebOrderItem;
-import com.saaspos.api.repository.ProductRepository;
 import com.saaspos.api.repository.WebOrderRepository;
+import com.saaspos.api.service.StockService.StockMovement;
+import com.saaspos.api.service.StockService.StockPlan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,12 +20,16 @@ import java.util.List;
 @Service
 public class OrderCleanupService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderCleanupService.class);
+
     private final WebOrderRepository webOrderRepository;
-    private final ProductRepository productRepository;
+    private final StockService stockService;
+    private final DomainEventBus eventBus;
 
-    public OrderCleanupService(WebOrderRepository webOrderRepository, ProductRepository productRepository) {
+    public OrderCleanupService(WebOrderRepository webOrderRepository, StockService stockService, DomainEventBus eventBus) {
         this.webOrderRepository = webOrderRepository;
-        this.productRepository = productRepository;
+        this.stockService = stockService;
+        this.eventBus = eventBus;
     }
 
     // Se ejecuta cada 60.000 ms = 1 minuto
@@ -32,33 +41,30 @@ public class OrderCleanupService {
         List<WebOrder> expiredOrders = webOrderRepository.findByStatusAndExpiresAtBefore("PENDING", now);
 
         if (!expiredOrders.isEmpty()) {
-            System.out.println("--- 🧹 LIMPIEZA DE PEDIDOS: " + now + " ---");
-            System.out.println("Se encontraron " + expiredOrders.size() + " pedidos vencidos.");
+            log.info("Limpieza de pedidos: {} pedidos vencidos", expiredOrders.size());
         }
 
         for (WebOrder order : expiredOrders) {
-            System.out.println(">> Expirando orden: " + order.getOrderNumber());
+            MDC.put("tenantId", order.getTenantId().toString());
+            log.info("Expirando orden: {}", order.getOrderNumber());
 
-            // 2. Devolver Stock al Inventario
+            // 2. Devolver Stock al Inventario (mismo desglose de packs que al reservar, ver StockService)
+            StockPlan releasePlan = new StockPlan();
             for (WebOrderItem item : order.getItems()) {
-                Product product = item.getProduct();
-
-                if (product != null) {
-                    // Obtenemos producto actualizado
-                    Product dbProduct = productRepository.findById(product.getId()).orElse(product);
-
-                    // Sumamos la cantidad reservada de vuelta al stock
-                    dbProduct.setStockCurrent(dbProduct.getStockCurrent().add(item.getQuantity()));
-                    productRepository.save(dbProduct);
-
-                    System.out.println("   + Stock liberado: " + item.getQuantity() + " unidades de '" + dbProduct.getName() + "'");
+                if (item.getProduct() != null) {
+                    releasePlan.increase(item.getProduct(), item.getQuantity());
                 }
             }
+            for (StockMovement m : stockService.apply(releasePlan)) {
+                log.debug("Stock liberado: {} unidades de '{}'", m.change(), m.product().getName());
+            }
 
             // 3. Cambiar estado a EXPIRED
             order.setStatus("EXPIRED");
             order.setEditReason("Expirado automáticamente por tiempo de reserva");
             webOrderRepository.save(order);
+            eventBus.publish(new WebOrderStatusChanged(order.getTenantId(), order.getId(), order.getOrderNumber(), "PENDING", "EXPIRED"));
         }
+        MDC.remove("tenantId");
     }
 }
\ No newline at end of file
@@ -0,0 +1,677 @@
+package com.saaspos.api.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.ProductImportResult;
+import com.saaspos.api.dto.ProductImportRow;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.model.Tenant;
+import com.saaspos.api.repository.ProductRepository;
+import com.saaspos.api.repository.TenantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Carga masiva del catálogo (POST /api/products/import) desde CSV o JSON, leída en streaming: en memoria solo
+ * hay un bloque de app.products.import.batch-size filas. Cada bloque se valida en paralelo, resuelve categoría y
+ * proveedor contra mapas armados una sola vez por carga, revisa el límite del plan con una consulta y se escribe
+ * por (tenant_id, sku) con un INSERT de los nuevos y un UPDATE de los existentes (arreglos + unnest), en su propia
+ * transacción. Una fila inválida se reporta y no frena al resto.
+ * En productos existentes solo se actualizan las columnas que vienen en el archivo; su stock no se toca
+ * (los ajustes de stock van con auditoría desde el catálogo).
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    // Todo el bloque como filas de un unnest: un arreglo por columna. NULL = "no viene en el archivo"
+    private static final String ROWS_CTE = """
+            WITH r AS (
+                SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::varchar[], ?::text[], ?::numeric[], ?::numeric[],
+                                     ?::boolean[], ?::numeric[], ?::numeric[], ?::numeric[], ?::varchar[], ?::uuid[], ?::uuid[],
+                                     ?::boolean[], ?::varchar[])
+                     AS r(id, sku, name, description, cost_price, price_final, is_tax_included, tax_percent,
+                          stock_current, stock_min, measurement_unit, category_id, supplier_id, is_public, image_url)
+            )
+            """;
+
+    // SKUs nuevos: mismos valores por defecto que el alta manual (precio con IVA 19% salvo que el archivo diga otra cosa).
+    // Neto con el mismo redondeo que TaxCalculator (y que RepricingService). Si otro proceso creó el SKU entre medio, no se pisa
+    private static final String INSERT_SQL = ROWS_CTE + """
+            INSERT INTO products (id, tenant_id, sku, name, description, cost_price, price_neto, price_final, is_tax_included,
+                                  tax_percent, stock_current, stock_min, measurement_unit, category_id, supplier_id, is_public,
+                                  image_url, product_type, is_active, attributes, created_at)
+            SELECT r.id, ?, r.sku, r.name, r.description, COALESCE(r.cost_price, 0),
+                   CASE WHEN COALESCE(r.is_tax_included, true)
+                        THEN ROUND(COALESCE(r.price_final, 0) / (1 + ROUND(COALESCE(r.tax_percent, 19.0), 2) / 100), 4)
+                        ELSE COALESCE(r.price_final, 0) END,
+                   COALESCE(r.price_final, 0), COALESCE(r.is_tax_included, true), COALESCE(r.tax_percent, 19.0),
+                   COALESCE(r.stock_current, 0), COALESCE(r.stock_min, 5.0), COALESCE(r.measurement_unit, 'UNIT'),
+                   r.category_id, r.supplier_id, COALESCE(r.is_public, false), r.image_url,
+                   'STANDARD', true, '{}'::jsonb, NOW()
+            FROM r
+            ON CONFLICT (tenant_id, sku) DO NOTHING
+            RETURNING id, sku
+            """;
+
+    // SKUs existentes: solo las columnas que vienen en el archivo (el stock no se toca). Si llega precio, IVA o
+    // "incluye IVA", el neto se recalcula con los valores efectivos (lo del archivo o, si no viene, lo que ya tenía).
+    // Un cambio de precio queda en product_price_histories en la misma sentencia, igual que RepricingService.APPLY_SQL
+    private static final String UPDATE_SQL = ROWS_CTE + """
+            , targets AS (
+                SELECT b.id, b.price_final AS old_price
+                FROM products b
+                JOIN r ON r.sku = b.sku
+                WHERE b.tenant_id = ?
+                ORDER BY b.id
+                FOR UPDATE OF b
+            ),
+            updated AS (
+                UPDATE products p SET
+                    name = r.name,
+                    description = COALESCE(r.description, p.description),
+                    cost_price = COALESCE(r.cost_price, p.cost_price),
+                    price_neto = CASE
+                        WHEN r.price_final IS NULL AND r.tax_percent IS NULL AND r.is_tax_included IS NULL THEN p.price_neto
+                        WHEN COALESCE(r.is_tax_included, p.is_tax_included, true)
+                            THEN ROUND(COALESCE(r.price_final, p.price_final) / (1 + ROUND(COALESCE(r.tax_percent, p.tax_percent, 19.0), 2) / 100), 4)
+                        ELSE COALESCE(r.price_final, p.price_final) END,
+                    price_final = COALESCE(r.price_final, p.price_final),
+                    is_tax_included = COALESCE(r.is_tax_included, p.is_tax_included),
+                    tax_percent = COALESCE(r.tax_percent, p.tax_percent),
+                    stock_min = COALESCE(r.stock_min, p.stock_min),
+                    measurement_unit = COALESCE(r.measurement_unit, p.measurement_unit),
+                    category_id = COALESCE(r.category_id, p.category_id),
+                    supplier_id = COALESCE(r.supplier_id, p.supplier_id),
+                    is_public = COALESCE(r.is_public, p.is_public),
+                    image_url = COALESCE(r.image_url, p.image_url)
+                FROM r, targets t
+                WHERE p.id = t.id AND p.sku = r.sku
+                RETURNING p.id, p.sku, t.old_price, p.price_final
+            ),
+            history AS (
+                INSERT INTO product_price_histories (product_id, old_price, new_price, change_date, change_reason,
+                                                     changed_by_user_id, tenant_id)
+                SELECT u.id, u.old_price, u.price_final, NOW(), 'Carga masiva', CAST(? AS uuid), CAST(? AS uuid)
+                FROM updated u
+                WHERE u.old_price IS DISTINCT FROM u.price_final
+            )
+            SELECT id, sku FROM updated
+            """;
+
+    private static final String EXISTING_SKUS_SQL = "SELECT sku FROM products WHERE tenant_id = ? AND sku = ANY (?)";
+
+    // Categoría nueva (o la existente si otro la creó entre medio)
+    private static final String CATEGORY_SQL = """
+            INSERT INTO categories (tenant_id, name) VALUES (?, ?)
+            ON CONFLICT (tenant_id, name) DO UPDATE SET name = EXCLUDED.name
+            RETURNING id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ProductRepository productRepository;
+    private final TenantRepository tenantRepository;
+    private final FolioService folioService;
+    private final InventoryLogOutbox inventoryLogOutbox;
+    private final CatalogReplica catalogReplica;
+    private final CatalogSyncService catalogSyncService;
+    private final LowStockMonitor lowStockMonitor;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxErrors;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ProductRepository productRepository,
+                                TenantRepository tenantRepository,
+                                FolioService folioService,
+                                InventoryLogOutbox inventoryLogOutbox,
+                                CatalogReplica catalogReplica,
+                                CatalogSyncService catalogSyncService,
+                                LowStockMonitor lowStockMonitor,
+                                ObjectMapper objectMapper,
+                                @Value("${app.products.import.batch-size:500}") int batchSize,
+                                @Value("${app.products.import.max-errors:1000}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.productRepository = productRepository;
+        this.tenantRepository = tenantRepository;
+        this.folioService = folioService;
+        this.inventoryLogOutbox = inventoryLogOutbox;
+        this.catalogReplica = catalogReplica;
+        this.catalogSyncService = catalogSyncService;
+        this.lowStockMonitor = lowStockMonitor;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Importa el archivo completo. json = arreglo de objetos; si no, CSV con encabezado (separador , o ; detectado).
+     * Los bloques ya escritos quedan aunque el archivo venga cortado más adelante (se informa como error de esa fila).
+     */
+    public ProductImportResult importProducts(UUID tenantId, AuthenticatedUser user, InputStream in, boolean json) {
+        Tenant tenant = tenantRepository.findById(tenantId).orElseThrow(() -> new RuntimeException("Tenant no existe"));
+        Integer maxProducts = tenant.getPlan() != null ? tenant.getPlan().getMaxProducts() : null;
+
+        ImportRun run = new ImportRun(tenantId, user, maxProducts, productRepository.countByTenantId(tenantId));
+        loadLookups(run);
+
+        long start = System.currentTimeMillis();
+        try (RowReader reader = json ? new JsonRowReader(in, objectMapper) : new CsvRowReader(in)) {
+            List<RawRow> batch = new ArrayList<>(batchSize);
+            while (true) {
+                RawRow row;
+                try {
+                    row = reader.next();
+                } catch (IOException | RuntimeException e) {
+                    error(run, reader.position(), null, "Archivo inválido, se detuvo la carga: " + e.getMessage());
+                    break;
+                }
+                if (row == null) break;
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    processBatch(run, batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) processBatch(run, batch);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("No se pudo leer el archivo: " + e.getMessage());
+        } finally {
+            // Los productos cambiaron sin eventos uno a uno: las vistas en memoria del tenant se rearman al próximo uso
+            catalogReplica.evict(tenantId);
+            lowStockMonitor.evict(tenantId);
+        }
+
+        ProductImportResult result = run.result;
+        log.info("Carga masiva tenant {}: {} filas, {} nuevos, {} actualizados, {} con error ({} ms)", tenantId,
+                result.getTotalRows(), result.getCreated(), result.getUpdated(), result.getFailed(),
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    // Categorías y proveedores del tenant, una sola vez por carga (nombre en minúsculas -> id)
+    private void loadLookups(ImportRun run) {
+        jdbcTemplate.query("SELECT id, name FROM categories WHERE tenant_id = ?",
+                rs -> { run.categories.put(key(rs.getString("name")), rs.getObject("id", UUID.class)); }, run.tenantId);
+        jdbcTemplate.query("SELECT id, name FROM suppliers WHERE tenant_id = ?",
+                rs -> { run.suppliers.put(key(rs.getString("name")), rs.getObject("id", UUID.class)); }, run.tenantId);
+    }
+
+    private void processBatch(ImportRun run, List<RawRow> batch) {
+        run.result.setTotalRows(run.result.getTotalRows() + batch.size());
+
+        // 1. Validación y conversión (sin BD): en paralelo, conservando el orden del archivo
+        List<Prepared> validated = batch.parallelStream().map(ProductImportService::validate).toList();
+
+        // 2. Lo que depende del estado de la carga, en orden: SKU generado, repetidos, categoría y proveedor
+        List<Prepared> ready = new ArrayList<>();
+        for (Prepared p : validated) {
+            if (p.error != null) {
+                error(run, p.row, p.data.getSku(), p.error);
+                continue;
+            }
+            ProductImportRow d = p.data;
+            if (d.getSku() == null) {
+                d.setSku(folioService.next(run.tenantId, FolioService.GENERATED_SKU));
+            }
+            if (!run.seenSkus.add(d.getSku())) {
+                error(run, p.row, d.getSku(), "SKU repetido en el archivo");
+                continue;
+            }
+            if (d.getCategory() != null) {
+                p.categoryId = run.categories.computeIfAbsent(key(d.getCategory()),
+                        k -> jdbcTemplate.queryForObject(CATEGORY_SQL, UUID.class, run.tenantId, d.getCategory()));
+            }
+            if (d.getSupplier() != null) {
+                p.supplierId = run.suppliers.get(key(d.getSupplier()));
+                if (p.supplierId == null) {
+                    error(run, p.row, d.getSku(), "Proveedor no encontrado: " + d.getSupplier());
+                    continue;
+                }
+            }
+            ready.add(p);
+        }
+        if (ready.isEmpty()) return;
+
+        // 3. Límite del plan: una consulta por bloque para saber cuáles son nuevos
+        Set<String> existing = existingSkus(run.tenantId, ready);
+        List<Prepared> toWrite = new ArrayList<>();
+        long newRows = 0;
+        for (Prepared p : ready) {
+            if (!existing.contains(p.data.getSku())) {
+                if (run.maxProducts != null && run.productCount + newRows >= run.maxProducts) {
+                    error(run, p.row, p.data.getSku(), "Límite de productos del plan alcanzado (" + run.maxProducts + ")");
+                    continue;
+                }
+                newRows++;
+            }
+            toWrite.add(p);
+        }
+        if (toWrite.isEmpty()) return;
+
+        // 4. Upsert del bloque; si falla (ej: un valor que la BD rechaza) se reintenta fila por fila
+        try {
+            upsert(run, toWrite, existing);
+        } catch (RuntimeException e) {
+            log.info("Bloque de carga masiva de {} filas rechazado ({}), procesando una por una", toWrite.size(), e.getMessage());
+            for (Prepared p : toWrite) {
+                try {
+                    upsert(run, List.of(p), existing);
+                } catch (RuntimeException rowError) {
+                    error(run, p.row, p.data.getSku(), "No se pudo guardar: " + rootMessage(rowError));
+                }
+            }
+        }
+    }
+
+    // Nuevos con INSERT y existentes con UPDATE, los dos set-based y en la misma transacción
+    private void upsert(ImportRun run, List<Prepared> rows, Set<String> existing) {
+        List<Prepared> inserts = rows.stream().filter(p -> !existing.contains(p.data.getSku())).toList();
+        List<Prepared> updates = rows.stream().filter(p -> existing.contains(p.data.getSku())).toList();
+
+        int[] counts = transactionTemplate.execute(status -> {
+            catalogSyncService.lockTenant(run.tenantId);
+            int[] c = new int[2];
+            Set<String> inserted = new HashSet<>();
+            if (!inserts.isEmpty()) {
+                Map<String, Prepared> bySku = new HashMap<>();
+                inserts.forEach(p -> bySku.put(p.data.getSku(), p));
+                jdbcTemplate.query(con -> rowsStatement(con, INSERT_SQL, run.tenantId, inserts), rs -> {
+                    Prepared p = bySku.get(rs.getString("sku"));
+                    inserted.add(p.data.getSku());
+                    c[0]++;
+                    BigDecimal stock = p.data.getStockCurrent();
+                    if (stock != null && stock.signum() > 0) {
+                        // Mismo registro que el alta manual; viaja en el batch del outbox de esta transacción
+                        Product product = new Product();
+                        product.setId(rs.getObject("id", UUID.class));
+                        product.setTenantId(run.tenantId);
+                        product.setName(p.data.getName());
+                        inventoryLogOutbox.record(product, run.user, "CREATE", stock, BigDecimal.ZERO, stock,
+                                "Inventario inicial (carga masiva)", null, null);
+                    }
+                });
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.query(con -> {
+                    // 17-18 = autor y tenant del historial de precios
+                    PreparedStatement ps = rowsStatement(con, UPDATE_SQL, run.tenantId, updates);
+                    ps.setObject(17, run.user != null ? run.user.getId() : null, Types.OTHER);
+                    ps.setObject(18, run.tenantId);
+                    return ps;
+                }, rs -> { c[1]++; });
+            }
+            // Creado por otro proceso mientras tanto: no se pisa
+            for (Prepared p : inserts) {
+                if (!inserted.contains(p.data.getSku())) {
+                    error(run, p.row, p.data.getSku(), "El SKU se creó al mismo tiempo por otro proceso, vuelva a importarlo");
+                }
+            }
+            return c;
+        });
+        run.productCount += counts[0];
+        run.result.setCreated(run.result.getCreated() + counts[0]);
+        run.result.setUpdated(run.result.getUpdated() + counts[1]);
+    }
+
+    // Arreglos 1..15 = columnas del unnest (ROWS_CTE), 16 = tenant
+    private static PreparedStatement rowsStatement(Connection con, String sql, UUID tenantId, List<Prepared> rows) throws SQLException {
+        int n = rows.size();
+        UUID[] ids = new UUID[n];
+        String[] skus = new String[n], names = new String[n], descriptions = new String[n], units = new String[n], images = new String[n];
+        BigDecimal[] costs = new BigDecimal[n], finals = new BigDecimal[n], taxes = new BigDecimal[n],
+                stocks = new BigDecimal[n], mins = new BigDecimal[n];
+        Boolean[] taxIncluded = new Boolean[n], publics = new Boolean[n];
+        UUID[] categories = new UUID[n], suppliers = new UUID[n];
+
+        for (int i = 0; i < n; i++) {
+            Prepared p = rows.get(i);
+            ProductImportRow d = p.data;
+            ids[i] = UUID.randomUUID();
+            skus[i] = d.getSku();
+            names[i] = d.getName();
+            descriptions[i] = d.getDescription();
+            costs[i] = d.getCostPrice();
+            finals[i] = d.getPriceFinal();
+            taxIncluded[i] = d.getIsTaxIncluded();
+            taxes[i] = d.getTaxPercent();
+            stocks[i] = d.getStockCurrent();
+            mins[i] = d.getStockMin();
+            units[i] = d.getMeasurementUnit();
+            categories[i] = p.categoryId;
+            suppliers[i] = p.supplierId;
+            publics[i] = d.getIsPublic();
+            images[i] = d.getImageUrl();
+        }
+
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setArray(1, con.createArrayOf("uuid", ids));
+        ps.setArray(2, con.createArrayOf("varchar", skus));
+        ps.setArray(3, con.createArrayOf("varchar", names));
+        ps.setArray(4, con.createArrayOf("text", descriptions));
+        ps.setArray(5, con.createArrayOf("numeric", costs));
+        ps.setArray(6, con.createArrayOf("numeric", finals));
+        ps.setArray(7, con.createArrayOf("boolean", taxIncluded));
+        ps.setArray(8, con.createArrayOf("numeric", taxes));
+        ps.setArray(9, con.createArrayOf("numeric", stocks));
+        ps.setArray(10, con.createArrayOf("numeric", mins));
+        ps.setArray(11, con.createArrayOf("varchar", units));
+        ps.setArray(12, con.createArrayOf("uuid", categories));
+        ps.setArray(13, con.createArrayOf("uuid", suppliers));
+        ps.setArray(14, con.createArrayOf("boolean", publics));
+        ps.setArray(15, con.createArrayOf("varchar", images));
+        ps.setObject(16, tenantId);
+        return ps;
+    }
+
+    private Set<String> existingSkus(UUID tenantId, List<Prepared> rows) {
+        String[] skus = rows.stream().map(p -> p.data.getSku()).toArray(String[]::new);
+        return new HashSet<>(jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(EXISTING_SKUS_SQL);
+            ps.setObject(1, tenantId);
+            ps.setArray(2, con.createArrayOf("varchar", skus));
+            return ps;
+        }, (rs, i) -> rs.getString("sku")));
+    }
+
+    // --- VALIDACIÓN (sin estado compartido: corre en paralelo) ---
+
+    private static Prepared validate(RawRow raw) {
+        ProductImportRow d = new ProductImportRow();
+        Prepared p = new Prepared(raw.number(), d);
+        try {
+            Map<String, String> v = raw.values();
+            d.setSku(text(v, "sku"));
+            d.setName(text(v, "name"));
+            d.setDescription(text(v, "description"));
+            d.setCostPrice(number(v, "costprice"));
+            d.setPriceFinal(number(v, "pricefinal"));
+            d.setIsTaxIncluded(bool(v, "istaxincluded"));
+            d.setTaxPercent(number(v, "taxpercent"));
+            d.setStockCurrent(number(v, "stockcurrent"));
+            d.setStockMin(number(v, "stockmin"));
+            d.setMeasurementUnit(text(v, "measurementunit"));
+            d.setCategory(text(v, "category"));
+            d.setSupplier(text(v, "supplier"));
+            d.setIsPublic(bool(v, "ispublic"));
+            d.setImageUrl(text(v, "imageurl"));
+        } catch (IllegalArgumentException e) {
+            p.error = e.getMessage();
+            return p;
+        }
+
+        if (d.getName() == null) p.error = "El nombre es obligatorio";
+        else if (d.getName().length() > 150) p.error = "Nombre demasiado largo (máximo 150)";
+        else if (d.getSku() != null && d.getSku().length() > 50) p.error = "SKU demasiado largo (máximo 50)";
+        else if (d.getCategory() != null && d.getCategory().length() > 100) p.error = "Categoría demasiado larga (máximo 100)";
+        else if (negative(d.getCostPrice()) || negative(d.getPriceFinal()) || negative(d.getStockCurrent()) || negative(d.getStockMin())) {
+            p.error = "Precios y stock no pueden ser negativos";
+        } else if (d.getTaxPercent() != null && d.getTaxPercent().compareTo(new BigDecimal("100")) > 0) {
+            p.error = "IVA fuera de rango";
+        }
+        // IVA e "incluye IVA" quedan NULL si no vienen: el valor por defecto solo aplica a SKUs nuevos (INSERT_SQL)
+        return p;
+    }
+
+    private static String text(Map<String, String> v, String column) {
+        String value = v.get(column);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static BigDecimal number(Map<String, String> v, String column) {
+        String value = text(v, column);
+        if (value == null) return null;
+        try {
+            return new BigDecimal(value.replace(" ", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido en '" + column + "': " + value);
+        }
+    }
+
+    private static Boolean bool(Map<String, String> v, String column) {
+        String value = text(v, column);
+        if (value == null) return null;
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "si", "sí", "s", "yes", "y", "x" -> true;
+            case "false", "0", "no", "n" -> false;
+            default -> throw new IllegalArgumentException("Valor sí/no inválido en '" + column + "': " + value);
+        };
+    }
+
+    private static boolean negative(BigDecimal value) {
+        return value != null && value.signum() < 0;
+    }
+
+    private void error(ImportRun run, long row, String sku, String message) {
+        run.result.setFailed(run.result.getFailed() + 1);
+        if (run.result.getErrors().size() < maxErrors) {
+            run.result.getErrors().add(new ProductImportResult.RowError(row, sku, message));
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        while (e.getCause() != null) e = e.getCause();
+        return e.getMessage();
+    }
+
+    // Nombres de columna / categoría comparables: "Cost Price", "cost_price" y "costPrice" son lo mismo
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String column(String name) {
+        return name.replaceAll("[^A-Za-z0-9]", "").toLowerCase(Locale.ROOT);
+    }
+
+    // --- ESTADO DE UNA CARGA ---
+
+    private static final class ImportRun {
+        private final UUID tenantId;
+        private final AuthenticatedUser user;
+        private final Integer maxProducts;
+        private long productCount;
+        private final Map<String, UUID> categories = new HashMap<>();
+        private final Map<String, UUID> suppliers = new HashMap<>();
+        private final Set<String> seenSkus = new HashSet<>();
+        private final ProductImportResult result = new ProductImportResult();
+
+        ImportRun(UUID tenantId, AuthenticatedUser user, Integer maxProducts, long productCount) {
+            this.tenantId = tenantId;
+            this.user = user;
+            this.maxProducts = maxProducts;
+            this.productCount = productCount;
+        }
+    }
+
+    private static final class Prepared {
+        private final long row;
+        private final ProductImportRow data;
+        private String error;
+        private UUID categoryId;
+        private UUID supplierId;
+
+        Prepared(long row, ProductImportRow data) {
+            this.row = row;
+            this.data = data;
+        }
+    }
+
+    // Fila tal como viene en el archivo: columna normalizada -> texto
+    private record RawRow(long number, Map<String, String> values) {
+    }
+
+    // --- LECTORES (una fila a la vez) ---
+
+    private interface RowReader extends Closeable {
+        RawRow next() throws IOException; // null = fin del archivo
+
+        long position(); // Fila en curso, para informar errores de formato
+    }
+
+    // CSV con encabezado. Soporta comillas ("a, b" y "" escapadas) y saltos de línea dentro de comillas
+    private static final class CsvRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final List<String> header;
+        private final char delimiter;
+        private long row = 0;
+
+        CsvRowReader(InputStream in) throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String first = reader.readLine();
+            if (first == null) throw new IllegalArgumentException("El archivo está vacío");
+            if (first.startsWith("\uFEFF")) first = first.substring(1); // BOM de Excel
+            // Excel en español exporta con ';'
+            this.delimiter = first.chars().filter(c -> c == ';').count() > first.chars().filter(c -> c == ',').count() ? ';' : ',';
+            this.header = parse(first).stream().map(ProductImportService::column).toList();
+        }
+
+        @Override
+        public RawRow next() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) return null;
+            } while (line.isBlank());
+
+            // Un campo entre comillas puede seguir en la línea siguiente
+            StringBuilder record = new StringBuilder(line);
+            while (openQuotes(record)) {
+                String more = reader.readLine();
+                if (more == null) throw new IllegalArgumentException("Comillas sin cerrar");
+                record.append('\n').append(more);
+            }
+            row++;
+
+            List<String> fields = parse(record.toString());
+            Map<String, String> values = new HashMap<>();
+            for (int i = 0; i < header.size() && i < fields.size(); i++) {
+                values.put(header.get(i), fields.get(i));
+            }
+            return new RawRow(row, values);
+        }
+
+        @Override
+        public long position() {
+            return row + 1;
+        }
+
+        private static boolean openQuotes(CharSequence s) {
+            int quotes = 0;
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) == '"') quotes++;
+            }
+            return quotes % 2 != 0;
+        }
+
+        private List<String> parse(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == delimiter) {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Arreglo JSON de objetos, leído elemento por elemento (nunca el arreglo completo en memoria)
+    private static final class JsonRowReader implements RowReader {
+        private final JsonParser parser;
+        private final ObjectMapper objectMapper;
+        private long row = 0;
+
+        JsonRowReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+            this.objectMapper = objectMapper;
+            this.parser = objectMapper.getFactory().createParser(in);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Se esperaba un arreglo JSON de productos");
+            }
+        }
+
+        @Override
+        public RawRow next() throws IOException {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) return null;
+            row++;
+
+            JsonNode node = objectMapper.readTree(parser);
+            Map<String, String> values = new HashMap<>();
+            if (node != null && node.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (!field.getValue().isNull()) {
+                        values.put(column(field.getKey()), field.getValue().asText());
+                    }
+                }
+            }
+            return new RawRow(row, values);
+        }
+
+        @Override
+        public long position() {
+            return row + 1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
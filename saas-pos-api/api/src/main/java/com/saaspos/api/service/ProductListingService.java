@@ -0,0 +1,135 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.dto.ProductPageDto;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.repository.ProductRepository;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Listado paginado del catálogo por cursor (keyset): cada página es un rango de un índice (tenant, clave, id) de V31,
+ * así el tiempo de respuesta no crece con el tamaño del catálogo. Sin OFFSET ni COUNT: se pide una fila extra
+ * para saber si hay más. Primero se obtienen los ids de la página y luego las entidades completas de solo esos ids.
+ */
+@Service
+public class ProductListingService {
+
+    public enum Sort {
+        // Expresión SQL de la clave de orden (debe coincidir con la del índice) y cómo leer el valor del cursor
+        NAME("p.name", s -> s),
+        SKU("p.sku", s -> s),
+        STOCK("COALESCE(p.stock_current, 999999999)", BigDecimal::new),
+        CREATED("p.created_at", OffsetDateTime::parse);
+
+        private final String expression;
+        private final Function<String, Object> parser;
+
+        Sort(String expression, Function<String, Object> parser) {
+            this.expression = expression;
+            this.parser = parser;
+        }
+    }
+
+    /** Filtros opcionales (null = sin filtrar). */
+    public record Filter(UUID categoryId, UUID supplierId, String productType, Boolean active, Boolean isPublic) {
+    }
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+
+    public ProductListingService(NamedParameterJdbcTemplate jdbcTemplate, ProductRepository productRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+    }
+
+    @Transactional(readOnly = true)
+    public ProductPageDto page(UUID tenantId, Filter filter, Sort sort, boolean descending, String cursor, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("tenantId", tenantId);
+        StringBuilder sql = new StringBuilder("SELECT p.id, ")
+                .append(sort.expression).append(" AS sort_key FROM products p WHERE p.tenant_id = :tenantId");
+
+        if (filter.categoryId() != null) {
+            sql.append(" AND p.category_id = :categoryId");
+            params.addValue("categoryId", filter.categoryId());
+        }
+        if (filter.supplierId() != null) {
+            sql.append(" AND p.supplier_id = :supplierId");
+            params.addValue("supplierId", filter.supplierId());
+        }
+        if (filter.productType() != null) {
+            sql.append(" AND p.product_type = :productType");
+            params.addValue("productType", filter.productType());
+        }
+        if (filter.active() != null) {
+            sql.append(" AND p.is_active = :active");
+            params.addValue("active", filter.active());
+        }
+        if (filter.isPublic() != null) {
+            sql.append(" AND p.is_public = :isPublic");
+            params.addValue("isPublic", filter.isPublic());
+        }
+
+        // Cursor = última fila de la página anterior; la comparación de filas usa el mismo orden que el índice
+        if (cursor != null && !cursor.isBlank()) {
+            sql.append(" AND (").append(sort.expression).append(", p.id) ")
+                    .append(descending ? "<" : ">").append(" (:afterKey, :afterId)");
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int split = raw.lastIndexOf('\n');
+                params.addValue("afterKey", sort.parser.apply(raw.substring(0, split)));
+                params.addValue("afterId", UUID.fromString(raw.substring(split + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor inválido");
+            }
+        }
+
+        String direction = descending ? " DESC" : " ASC";
+        sql.append(" ORDER BY ").append(sort.expression).append(direction).append(", p.id").append(direction)
+                .append(" LIMIT :limit");
+        params.addValue("limit", limit + 1);
+
+        List<UUID> ids = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), params, rs -> {
+            ids.add(rs.getObject("id", UUID.class));
+            keys.add(sort == Sort.CREATED
+                    ? rs.getObject("sort_key", OffsetDateTime.class).toString()
+                    : rs.getString("sort_key"));
+        });
+
+        boolean hasMore = ids.size() > limit;
+        List<UUID> pageIds = hasMore ? ids.subList(0, limit) : ids;
+        String nextCursor = hasMore ? encodeCursor(keys.get(limit - 1), pageIds.get(limit - 1)) : null;
+
+        // Entidades completas (categoría, proveedor y packs) de solo esta página, en el orden del listado
+        Map<UUID, Product> products = productRepository.findAllWithBundleItemsByIdIn(pageIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+        List<ProductDto> items = pageIds.stream()
+                .map(products::get)
+                .filter(p -> p != null)
+                .map(ProductDto::from)
+                .collect(Collectors.toList());
+
+        return new ProductPageDto(items, nextCursor, hasMore);
+    }
+
+    // El valor de orden puede traer cualquier carácter (nombres): va en Base64 URL-safe
+    private static String encodeCursor(String key, UUID id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((key + "\n" + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,296 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.PriceChangeRequest;
+import com.saaspos.api.model.PriceChange;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.model.ProductPriceHistory;
+import com.saaspos.api.repository.PriceChangeRepository;
+import com.saaspos.api.repository.ProductPriceHistoryRepository;
+import com.saaspos.api.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cambios de precio masivos: porcentaje, monto fijo o nueva tasa de IVA sobre los productos de una categoría,
+ * un proveedor y/o una lista de ids. Cada cambio es UN statement: bloquea los productos, recalcula price_final y
+ * price_neto (mismo redondeo que TaxCalculator) y escribe su historial en product_price_histories, todo en SQL.
+ * Con effective_at futuro el cambio queda PENDING y lo aplica applyDue cuando llega la hora.
+ */
+@Service
+public class RepricingService {
+
+    private static final Logger log = LoggerFactory.getLogger(RepricingService.class);
+
+    public static final String PENDING = "PENDING";
+    public static final String APPLIED = "APPLIED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    public enum Mode {
+        // Nuevo precio final y nueva tasa, sobre la fila actual (b). CLP: precio final en pesos enteros
+        PERCENT("ROUND(b.price_final * (1 + CAST(:value AS numeric) / 100), 0)", "b.tax_percent"),
+        AMOUNT("GREATEST(ROUND(b.price_final + CAST(:value AS numeric), 0), 0)", "b.tax_percent"),
+        // Cambio de IVA: se mantiene el neto y se recalcula el bruto (sin IVA incluido, el precio no cambia)
+        TAX("CASE WHEN b.is_tax_included THEN ROUND(b.price_neto * (1 + CAST(:value AS numeric) / 100), 0) ELSE b.price_final END",
+                "CAST(:value AS numeric)");
+
+        private final String priceExpression;
+        private final String taxExpression;
+
+        Mode(String priceExpression, String taxExpression) {
+            this.priceExpression = priceExpression;
+            this.taxExpression = taxExpression;
+        }
+    }
+
+    // %1$s = nuevo precio, %2$s = nueva tasa, %3$s = filtros. Productos bloqueados en orden de id (como StockService)
+    private static final String APPLY_SQL = """
+            WITH targets AS (
+                SELECT b.id, b.price_final AS old_price, %1$s AS new_price, %2$s AS new_tax
+                FROM products b
+                WHERE b.tenant_id = :tenantId%3$s
+                ORDER BY b.id
+                FOR UPDATE
+            ),
+            updated AS (
+                UPDATE products p
+                SET price_final = t.new_price,
+                    tax_percent = t.new_tax,
+                    price_neto = CASE WHEN p.is_tax_included THEN ROUND(t.new_price / (1 + ROUND(t.new_tax, 2) / 100), 4)
+                                      ELSE t.new_price END
+                FROM targets t
+                WHERE p.id = t.id
+                RETURNING p.id, t.old_price, p.price_final
+            ),
+            history AS (
+                INSERT INTO product_price_histories (product_id, old_price, new_price, change_date, change_reason,
+                                                     changed_by_user_id, tenant_id, price_change_id)
+                SELECT u.id, u.old_price, u.price_final, CAST(:changeDate AS timestamp), CAST(:reason AS varchar),
+                       CAST(:userId AS uuid), CAST(:tenantId AS uuid), CAST(:changeId AS bigint)
+                FROM updated u
+                WHERE u.old_price IS DISTINCT FROM u.price_final
+                RETURNING 1
+            )
+            SELECT (SELECT COUNT(*) FROM updated) AS affected, (SELECT COUNT(*) FROM history) AS recorded
+            """;
+
+    // Un cambio vencido por vuelta; SKIP LOCKED para que dos nodos no apliquen el mismo
+    private static final String NEXT_DUE_SQL = """
+            SELECT id FROM price_changes
+            WHERE status = 'PENDING' AND effective_at <= :now
+            ORDER BY effective_at, id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String CANCEL_SQL =
+            "UPDATE price_changes SET status = 'CANCELLED' WHERE id = :id AND tenant_id = :tenantId AND status = 'PENDING'";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PriceChangeRepository priceChangeRepository;
+    private final ProductPriceHistoryRepository productPriceHistoryRepository;
+    private final ProductRepository productRepository;
+    private final CatalogReplica catalogReplica;
+    private final CatalogSyncService catalogSyncService;
+    private final int maxPerRun;
+
+    public RepricingService(NamedParameterJdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            PriceChangeRepository priceChangeRepository,
+                            ProductPriceHistoryRepository productPriceHistoryRepository,
+                            ProductRepository productRepository,
+                            CatalogReplica catalogReplica,
+                            CatalogSyncService catalogSyncService,
+                            @Value("${app.pricing.max-changes-per-run:100}") int maxPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.priceChangeRepository = priceChangeRepository;
+        this.productPriceHistoryRepository = productPriceHistoryRepository;
+        this.productRepository = productRepository;
+        this.catalogReplica = catalogReplica;
+        this.catalogSyncService = catalogSyncService;
+        this.maxPerRun = maxPerRun;
+    }
+
+    /**
+     * Registra el cambio. Si effectiveAt es NULL o ya pasó se aplica ahora (y vuelve APPLIED con los afectados);
+     * si es futuro queda PENDING.
+     */
+    public PriceChange submit(UUID tenantId, AuthenticatedUser user, PriceChangeRequest request) {
+        Mode mode = parseMode(request.getMode());
+        validate(mode, request);
+
+        PriceChange change = new PriceChange();
+        change.setTenantId(tenantId);
+        change.setMode(mode.name());
+        change.setValue(request.getValue());
+        change.setCategoryId(request.getCategoryId());
+        change.setSupplierId(request.getSupplierId());
+        change.setProductIds(request.getProductIds() != null && !request.getProductIds().isEmpty() ? request.getProductIds() : null);
+        change.setReason(request.getReason());
+        change.setCreatedBy(user != null ? user.getId() : null);
+        change.setStatus(PENDING);
+
+        LocalDateTime now = LocalDateTime.now();
+        boolean immediate = request.getEffectiveAt() == null || !request.getEffectiveAt().isAfter(now);
+        change.setEffectiveAt(immediate ? now : request.getEffectiveAt());
+
+        if (!immediate) {
+            return priceChangeRepository.save(change);
+        }
+        PriceChange applied = transactionTemplate.execute(status -> apply(priceChangeRepository.save(change)));
+        catalogReplica.evict(tenantId);
+        return applied;
+    }
+
+    /** Cancela un cambio programado que aún no se aplica. */
+    public void cancel(UUID tenantId, Long id) {
+        int rows = jdbcTemplate.update(CANCEL_SQL, Map.of("id", id, "tenantId", tenantId));
+        if (rows == 0) {
+            throw new IllegalArgumentException("Solo se pueden cancelar cambios pendientes");
+        }
+    }
+
+    /** Precio final vigente del producto en ese momento, según el historial (sin cambios registrados: el actual). */
+    public BigDecimal priceAt(UUID tenantId, UUID productId, LocalDateTime at) {
+        return productPriceHistoryRepository
+                .findFirstByTenantIdAndProductIdAndChangeDateLessThanEqualOrderByChangeDateDescIdDesc(tenantId, productId, at)
+                .map(ProductPriceHistory::getNewPrice)
+                // Antes del primer cambio registrado regía el precio anterior a ese cambio
+                .or(() -> productPriceHistoryRepository
+                        .findFirstByTenantIdAndProductIdAndChangeDateAfterOrderByChangeDateAscIdAsc(tenantId, productId, at)
+                        .map(ProductPriceHistory::getOldPrice))
+                .or(() -> productRepository.findById(productId)
+                        .filter(p -> p.getTenantId().equals(tenantId))
+                        .map(Product::getPriceFinal))
+                .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado"));
+    }
+
+    /** Historial de una edición manual (se llama dentro de la transacción de la edición). */
+    public void recordManualChange(Product product, BigDecimal oldPrice, AuthenticatedUser user) {
+        if (oldPrice != null && product.getPriceFinal() != null && oldPrice.compareTo(product.getPriceFinal()) == 0) return;
+        productPriceHistoryRepository.save(ProductPriceHistory.builder()
+                .product(product)
+                .tenantId(product.getTenantId())
+                .oldPrice(oldPrice)
+                .newPrice(product.getPriceFinal())
+                .changeReason("Actualización manual")
+                .changedByUserId(user != null ? user.getId() : null)
+                .build());
+    }
+
+    // Cambios programados que ya vencieron: cada uno en su propia transacción
+    @Scheduled(fixedDelayString = "${app.pricing.scheduler-ms:30000}")
+    public void applyDue() {
+        for (int i = 0; i < maxPerRun; i++) {
+            Long[] current = new Long[1];
+            try {
+                PriceChange applied = transactionTemplate.execute(status -> {
+                    List<Long> ids = jdbcTemplate.queryForList(NEXT_DUE_SQL, Map.of("now", LocalDateTime.now()), Long.class);
+                    if (ids.isEmpty()) return null;
+                    current[0] = ids.get(0);
+                    return apply(priceChangeRepository.findById(current[0]).orElseThrow());
+                });
+                if (applied == null) return;
+                catalogReplica.evict(applied.getTenantId());
+                log.info("Cambio de precio {} aplicado: {} productos", applied.getId(), applied.getAffectedCount());
+            } catch (RuntimeException e) {
+                if (current[0] == null) {
+                    log.warn("No se pudieron revisar los cambios de precio programados: {}", e.getMessage());
+                    return;
+                }
+                markFailed(current[0], e);
+            }
+        }
+    }
+
+    // Dentro de una transacción: un statement para productos + historial, y el cambio queda APPLIED
+    private PriceChange apply(PriceChange change) {
+        Mode mode = Mode.valueOf(change.getMode());
+        catalogSyncService.lockTenant(change.getTenantId());
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("tenantId", change.getTenantId())
+                .addValue("value", change.getValue())
+                .addValue("changeDate", LocalDateTime.now())
+                .addValue("reason", change.getReason() != null ? change.getReason() : "Cambio masivo #" + change.getId())
+                .addValue("userId", change.getCreatedBy())
+                .addValue("changeId", change.getId());
+
+        StringBuilder filters = new StringBuilder();
+        if (change.getCategoryId() != null) {
+            filters.append(" AND b.category_id = :categoryId");
+            params.addValue("categoryId", change.getCategoryId());
+        }
+        if (change.getSupplierId() != null) {
+            filters.append(" AND b.supplier_id = :supplierId");
+            params.addValue("supplierId", change.getSupplierId());
+        }
+        if (change.getProductIds() != null && !change.getProductIds().isEmpty()) {
+            filters.append(" AND b.id IN (:productIds)");
+            params.addValue("productIds", change.getProductIds());
+        }
+
+        String sql = APPLY_SQL.formatted(mode.priceExpression, mode.taxExpression, filters);
+        Map<String, Object> counts = jdbcTemplate.queryForMap(sql, params);
+
+        change.setStatus(APPLIED);
+        change.setAppliedAt(LocalDateTime.now());
+        change.setAffectedCount(((Number) counts.get("affected")).intValue());
+        change.setErrorMessage(null);
+        return priceChangeRepository.save(change);
+    }
+
+    private void markFailed(Long id, RuntimeException e) {
+        log.warn("No se pudo aplicar el cambio de precio {}: {}", id, e.getMessage());
+        try {
+            transactionTemplate.executeWithoutResult(status -> priceChangeRepository.findById(id).ifPresent(change -> {
+                change.setStatus(FAILED);
+                String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                change.setErrorMessage(message.length() > 500 ? message.substring(0, 500) : message);
+                priceChangeRepository.save(change);
+            }));
+        } catch (RuntimeException ignored) {
+            // Queda PENDING y se reintenta en la próxima vuelta
+        }
+    }
+
+    private static Mode parseMode(String mode) {
+        if (mode == null) throw new IllegalArgumentException("Debe indicar el tipo de cambio (PERCENT, AMOUNT o TAX)");
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo de cambio inválido: " + mode);
+        }
+    }
+
+    private static void validate(Mode mode, PriceChangeRequest request) {
+        BigDecimal value = request.getValue();
+        if (value == null) throw new IllegalArgumentException("Debe indicar el valor del cambio");
+        if (request.getCategoryId() == null && request.getSupplierId() == null
+                && (request.getProductIds() == null || request.getProductIds().isEmpty())) {
+            throw new IllegalArgumentException("Debe indicar categoría, proveedor o productos");
+        }
+        if (mode == Mode.PERCENT && value.compareTo(new BigDecimal("-100")) <= 0) {
+            throw new IllegalArgumentException("El porcentaje debe ser mayor a -100");
+        }
+        if (mode == Mode.TAX && (value.signum() < 0 || value.compareTo(new BigDecimal("100")) >= 0)) {
+            throw new IllegalArgumentException("La tasa de impuesto debe estar entre 0 y 100");
+        }
+    }
+}
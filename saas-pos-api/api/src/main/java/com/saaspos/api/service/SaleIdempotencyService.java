@@ -0,0 +1,194 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Sale;
+import com.saaspos.api.repository.SaleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicación de ventas por Idempotency-Key (cajas con Wi-Fi inestable que reintentan el POST).
+ * Capas: caché LRU en memoria -> tabla sale_idempotency_keys (persistente, con TTL).
+ * Duplicados concurrentes en esta instancia esperan a la petición en curso; entre instancias,
+ * la PK de la tabla bloquea el segundo INSERT hasta que el primero confirme (ver claim).
+ */
+@Service
+public class SaleIdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleIdempotencyService.class);
+
+    private final SaleRepository saleRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final int ttlHours;
+    private final int maxEntries;
+    private final long waitSeconds;
+
+    // tenant:llave -> id de la venta ya registrada
+    private final Map<String, UUID> completed;
+    // tenant:llave -> venta en curso (los duplicados esperan este resultado)
+    private final Map<String, CompletableFuture<UUID>> inFlight = new ConcurrentHashMap<>();
+
+    public SaleIdempotencyService(SaleRepository saleRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  @Value("${app.sales.idempotency.ttl-hours:24}") int ttlHours,
+                                  @Value("${app.sales.idempotency.cache-size:10000}") int maxEntries,
+                                  @Value("${app.sales.idempotency.wait-seconds:30}") long waitSeconds) {
+        this.saleRepository = saleRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlHours = ttlHours;
+        this.maxEntries = maxEntries;
+        this.waitSeconds = waitSeconds;
+        this.completed = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+                return size() > SaleIdempotencyService.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Ejecuta la venta una sola vez por llave. Si la llave ya tiene venta, la devuelve (replayed = true).
+     * Una venta fallida NO deja la llave tomada: el reintento vuelve a ejecutarse.
+     */
+    public Result execute(UUID tenantId, String idempotencyKey, Supplier<Sale> action) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return new Result(action.get(), false);
+        }
+        if (idempotencyKey.length() > 100) {
+            throw new RuntimeException("Idempotency-Key inválida (máximo 100 caracteres)");
+        }
+
+        String cacheKey = tenantId + ":" + idempotencyKey;
+        while (true) {
+            Optional<UUID> existing = findCompleted(tenantId, idempotencyKey, cacheKey);
+            if (existing.isPresent()) return replay(existing.get());
+
+            CompletableFuture<UUID> mine = new CompletableFuture<>();
+            CompletableFuture<UUID> running = inFlight.putIfAbsent(cacheKey, mine);
+            if (running != null) {
+                // Duplicado concurrente: esperamos a la primera petición
+                UUID saleId = await(running);
+                if (saleId != null) return replay(saleId);
+                continue; // La primera falló: lo intentamos nosotros
+            }
+
+            try {
+                Sale sale = action.get();
+                remember(cacheKey, sale.getId());
+                mine.complete(sale.getId());
+                return new Result(sale, false);
+            } catch (DuplicateSaleException e) {
+                // Otra instancia ganó la llave (ya confirmada): devolvemos su venta
+                mine.complete(null);
+                continue;
+            } catch (RuntimeException e) {
+                mine.complete(null);
+                throw e;
+            } finally {
+                inFlight.remove(cacheKey, mine);
+            }
+        }
+    }
+
+    /**
+     * Reserva las llaves (llave -> venta) dentro de la transacción de la venta, ANTES de tocar stock, en un batch.
+     * Si otra transacción tiene la misma llave sin confirmar, el INSERT espera su commit/rollback.
+     */
+    public void claimAll(UUID tenantId, Map<String, UUID> saleIdsByKey) {
+        List<Object[]> rows = saleIdsByKey.entrySet().stream()
+                .filter(e -> e.getKey() != null && !e.getKey().isBlank())
+                .map(e -> new Object[]{tenantId, e.getKey(), e.getValue()})
+                .toList();
+        if (rows.isEmpty()) return;
+
+        int[] inserted = jdbcTemplate.batchUpdate(
+                "INSERT INTO sale_idempotency_keys (tenant_id, idempotency_key, sale_id) VALUES (?, ?, ?) " +
+                        "ON CONFLICT (tenant_id, idempotency_key) DO NOTHING",
+                rows);
+        for (int count : inserted) {
+            if (count == 0) throw new DuplicateSaleException();
+        }
+    }
+
+    // Venta ya registrada con esta llave (memoria o tabla), sin ejecutar nada
+    public Optional<UUID> findSaleId(UUID tenantId, String idempotencyKey) {
+        return findCompleted(tenantId, idempotencyKey, tenantId + ":" + idempotencyKey);
+    }
+
+    // Limpieza TTL: una vez por hora
+    @Scheduled(fixedRate = 3600000)
+    public void purgeExpired() {
+        int deleted = jdbcTemplate.update("DELETE FROM sale_idempotency_keys WHERE created_at < ?",
+                LocalDateTime.now().minusHours(ttlHours));
+        if (deleted > 0) {
+            log.info("Llaves de idempotencia vencidas eliminadas: {}", deleted);
+        }
+        synchronized (completed) {
+            completed.clear();
+        }
+    }
+
+    private Optional<UUID> findCompleted(UUID tenantId, String idempotencyKey, String cacheKey) {
+        synchronized (completed) {
+            UUID cached = completed.get(cacheKey);
+            if (cached != null) return Optional.of(cached);
+        }
+        List<UUID> rows = jdbcTemplate.queryForList(
+                "SELECT sale_id FROM sale_idempotency_keys WHERE tenant_id = ? AND idempotency_key = ?",
+                UUID.class, tenantId, idempotencyKey);
+        if (rows.isEmpty()) return Optional.empty();
+        remember(cacheKey, rows.get(0));
+        return Optional.of(rows.get(0));
+    }
+
+    private void remember(String cacheKey, UUID saleId) {
+        synchronized (completed) {
+            completed.put(cacheKey, saleId);
+        }
+    }
+
+    private UUID await(CompletableFuture<UUID> running) {
+        try {
+            return running.get(waitSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new RuntimeException("La venta con esta Idempotency-Key sigue en proceso, reintente");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Espera interrumpida");
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private Result replay(UUID saleId) {
+        Sale sale = saleRepository.findByIdWithItems(saleId)
+                .orElseThrow(() -> new RuntimeException("Venta no encontrada"));
+        return new Result(sale, true);
+    }
+
+    public record Result(Sale sale, boolean replayed) {
+    }
+
+    // La llave ya pertenece a otra venta confirmada (se lanza dentro de la transacción para hacer rollback)
+    public static class DuplicateSaleException extends RuntimeException {
+        public DuplicateSaleException() {
+            super("Venta duplicada (Idempotency-Key ya usada)");
+        }
+    }
+}
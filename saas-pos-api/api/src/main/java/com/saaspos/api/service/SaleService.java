@@ -1,69 +1,174 @@
 package com.saaspos.api.service;
 
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.config.TenantContext;
+import com.saaspos.api.dto.SaleBatchRequest;
 import com.saaspos.api.dto.SaleRequest;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.SaleCompleted;
 import com.saaspos.api.model.*;
-import com.saaspos.api.repository.InventoryLogRepository;
 import com.saaspos.api.repository.ProductRepository;
 import com.saaspos.api.repository.SaleRepository;
-import com.saaspos.api.repository.UserRepository;
+import com.saaspos.api.service.StockService.StockMovement;
+import com.saaspos.api.service.StockService.StockPlan;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
 import jakarta.transaction.Transactional;
-import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 public class SaleService {
 
     private final SaleRepository saleRepository;
     private final ProductRepository productRepository;
-    private final InventoryLogRepository inventoryLogRepository;
-    private final UserRepository userRepository;
+    private final InventoryLogOutbox inventoryLogOutbox;
+    private final StockService stockService;
+    private final SaleIdempotencyService saleIdempotencyService;
+    private final FolioService folioService;
+    private final DomainEventBus eventBus;
 
     public SaleService(SaleRepository saleRepository,
                        ProductRepository productRepository,
-                       InventoryLogRepository inventoryLogRepository,
-                       UserRepository userRepository) {
+                       InventoryLogOutbox inventoryLogOutbox,
+                       StockService stockService,
+                       SaleIdempotencyService saleIdempotencyService,
+                       FolioService folioService,
+                       DomainEventBus eventBus) {
         this.saleRepository = saleRepository;
         this.productRepository = productRepository;
-        this.inventoryLogRepository = inventoryLogRepository;
-        this.userRepository = userRepository;
+        this.inventoryLogOutbox = inventoryLogOutbox;
+        this.stockService = stockService;
+        this.saleIdempotencyService = saleIdempotencyService;
+        this.folioService = folioService;
+        this.eventBus = eventBus;
     }
 
     @Transactional
     public Sale processSale(SaleRequest request, UUID tenantId) {
+        return processSale(request, tenantId, null);
+    }
+
+    // idempotencyKey: header Idempotency-Key de la caja (puede ser null). Ver SaleIdempotencyService
+    @Transactional
+    public Sale processSale(SaleRequest request, UUID tenantId, String idempotencyKey) {
+        AuthenticatedUser currentUser = TenantContext.currentUser();
+
+        // Todos los productos del ticket (y componentes de packs) en UNA consulta, en vez de un findById por línea
+        Map<UUID, Product> products = loadProducts(request.getItems());
+
+        // El stock se descuenta al final en un solo plan: agregado por producto y en orden de id (ver StockService)
+        StockPlan stockPlan = new StockPlan();
+        Sale sale = buildSale(request, tenantId, null, products, stockPlan, currentUser);
+
+        // Tomamos la llave antes de tocar stock: un reintento concurrente queda esperando aquí
+        if (idempotencyKey != null) {
+            saleIdempotencyService.claimAll(tenantId, Map.of(idempotencyKey, sale.getId()));
+        }
+
+        // Descuento atómico: si algún producto no alcanza, se lanza excepción y se revierte toda la venta
+        logStockMovements(List.of(sale), List.of(stockPlan), stockService.apply(stockPlan), currentUser);
+        publishCompleted(List.of(sale));
+        return sale;
+    }
+
+    /**
+     * Sube un bloque de tickets offline en UNA transacción: una consulta de productos, un solo descuento
+     * agregado por producto y los INSERT de ventas/ítems/logs en batch. Si un ticket falla (stock, llave
+     * duplicada) falla el bloque completo; OfflineSaleSyncService reintenta entonces ticket por ticket.
+     */
+    @Transactional
+    public List<Sale> processOfflineChunk(List<SaleBatchRequest.OfflineTicket> tickets, UUID tenantId) {
+        AuthenticatedUser currentUser = TenantContext.currentUser();
+
+        Map<UUID, Product> products = loadProducts(tickets.stream()
+                .flatMap(t -> t.getItems().stream())
+                .toList());
+
+        List<Sale> sales = new ArrayList<>();
+        List<StockPlan> plans = new ArrayList<>();
+        StockPlan chunkPlan = new StockPlan();
+        Map<String, UUID> keys = new LinkedHashMap<>();
+
+        for (SaleBatchRequest.OfflineTicket ticket : tickets) {
+            StockPlan ticketPlan = new StockPlan();
+            Sale sale = buildSale(ticket, tenantId, ticket.getClientCreatedAt(), products, ticketPlan, currentUser);
+            sales.add(sale);
+            plans.add(ticketPlan);
+            chunkPlan.merge(ticketPlan);
+            keys.put(ticket.getIdempotencyKey(), sale.getId());
+        }
+
+        saleIdempotencyService.claimAll(tenantId, keys);
+        logStockMovements(sales, plans, stockService.apply(chunkPlan), currentUser);
+        publishCompleted(sales);
+        return sales;
+    }
+
+    // Se entregan después del commit (si el bloque hace rollback no sale ninguno)
+    private void publishCompleted(List<Sale> sales) {
+        for (Sale sale : sales) {
+            eventBus.publish(new SaleCompleted(sale.getTenantId(), sale.getId(), sale.getSaleNumber(),
+                    sale.getTotalAmount(), sale.getCreatedAt()));
+        }
+    }
+
+    private Map<UUID, Product> loadProducts(List<SaleRequest.SaleItemRequest> items) {
+        Set<UUID> productIds = items.stream()
+                .map(SaleRequest.SaleItemRequest::getProductId)
+                .collect(Collectors.toSet());
+        return productRepository.findAllWithBundleItemsByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, p -> p));
+    }
+
+    // Arma cabecera + ítems en memoria y anota en stockPlan lo que hay que descontar (sin tocar stock todavía)
+    private Sale buildSale(SaleRequest request, UUID tenantId, LocalDateTime soldAt, Map<UUID, Product> products,
+                           StockPlan stockPlan, AuthenticatedUser currentUser) {
         Sale sale = new Sale();
         // ELIMINADO: sale.setId(...) -> Dejamos que Hibernate/DB genere el UUID
         sale.setTenantId(tenantId);
 
-        String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        User currentUser = userRepository.findByEmail(email).orElseThrow();
-
         // 1. Configurar Cabecera
         BigDecimal total = request.getTotalAmount();
         sale.setTotalAmount(total);
 
-        // Cálculos aproximados de cabecera
-        BigDecimal subtotal = total.divide(new BigDecimal("1.19"), 0, RoundingMode.HALF_UP);
+        // Cálculos aproximados de cabecera (IVA estándar sobre el total, en pesos enteros)
+        BigDecimal subtotal = TaxCalculator.DEFAULT.netFromGross(Money.of(total)).toPesos();
         BigDecimal tax = total.subtract(subtotal);
         sale.setSubtotalAmount(subtotal);
         sale.setTotalTax(tax);
 
-        sale.setSaleNumber("TCK-" + System.currentTimeMillis());
+        sale.setSaleNumber(folioService.next(tenantId, FolioService.TICKET)); // Correlativo por empresa
         sale.setStatus("COMPLETED");
 
+        // Ticket offline: cuenta para el día en que se vendió (nunca en el futuro, por si el reloj de la caja adelanta)
+        if (soldAt != null) {
+            LocalDateTime now = LocalDateTime.now();
+            sale.setCreatedAt(soldAt.isAfter(now) ? now : soldAt);
+        }
+
         // --- CORRECCIÓN CRÍTICA ---
-        // Guardamos la venta "vacía" primero. Esto hace el INSERT en la BD.
-        // Hibernate genera el ID y lo asigna al objeto 'sale'.
+        // Registramos la venta primero para que Hibernate le asigne el ID (UUID generado en memoria).
+        // El INSERT real sale en el flush del commit, en batch junto a ítems y logs (hibernate.jdbc.batch_size)
         sale = saleRepository.save(sale);
         // --------------------------
 
-        // 2. Procesar Ítems (Ahora sale.getId() es válido y existe en BD)
+        // 2. Procesar Ítems (Ahora sale.getId() es válido)
         for (SaleRequest.SaleItemRequest itemDto : request.getItems()) {
-            Product product = productRepository.findById(itemDto.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Producto no existe"));
+            Product product = products.get(itemDto.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Producto no existe");
+            }
 
             if (!product.getTenantId().equals(tenantId)) {
                 throw new RuntimeException("Error de seguridad");
@@ -72,44 +177,9 @@ public class SaleService {
             BigDecimal qtyToSell = itemDto.getQuantity() != null ? itemDto.getQuantity() : BigDecimal.ZERO;
 
             // --- LÓGICA DE STOCK (Packs vs Normal) ---
-            if ("BUNDLE".equals(product.getProductType())) {
-                BigDecimal packStock = product.getStockCurrent();
-
-                // Caso 1: Pack Limitado
-                if (packStock != null) {
-                    if (packStock.compareTo(qtyToSell) < 0) throw new RuntimeException("Pack Agotado");
-                    product.setStockCurrent(packStock.subtract(qtyToSell));
-                    productRepository.save(product);
-                }
-
-                // Caso 2: Pack Ilimitado (NULL) -> Solo descontamos hijos
-                for (BundleItem bundleItem : product.getBundleItems()) {
-                    Product child = bundleItem.getComponentProduct();
-                    BigDecimal totalChildQty = bundleItem.getQuantity().multiply(qtyToSell);
-
-                    if (child.getStockCurrent().compareTo(totalChildQty) < 0) throw new RuntimeException("Sin stock componente: " + child.getName());
-
-                    BigDecimal oldStock = child.getStockCurrent();
-                    child.setStockCurrent(oldStock.subtract(totalChildQty));
-                    productRepository.save(child);
-
-                    // Log del componente hijo (Usando el ID generado)
-                    createLog(child, currentUser, "BUNDLE_SALE", totalChildQty.negate(), oldStock, child.getStockCurrent(),
-                            "Venta Pack POS: " + product.getName(), sale.getId());
-                }
-            } else {
-                // Caso 3: Producto Normal
-                BigDecimal currentStock = product.getStockCurrent();
-                if (currentStock.compareTo(qtyToSell) < 0) throw new RuntimeException("Sin stock: " + product.getName());
-
-                BigDecimal oldStock = currentStock; // Guardamos stock antes de restar
-                product.setStockCurrent(currentStock.subtract(qtyToSell));
-                productRepository.save(product);
-
-                // Log de venta normal (Usando el ID generado)
-                createLog(product, currentUser, "SALE", qtyToSell.negate(), oldStock, product.getStockCurrent(),
-                        "Venta POS", sale.getId());
-            }
+            // Pack limitado: descuenta el pack y sus hijos. Pack ilimitado (NULL): solo los hijos.
+            // No se aplica aquí: el llamador aplica el plan (de uno o varios tickets) de una sola vez
+            stockPlan.decrease(product, qtyToSell);
 
             // --- LÓGICA DE PRECIOS FLEXIBLES ---
             SaleItem saleItem = new SaleItem();
@@ -130,27 +200,14 @@ public class SaleService {
             BigDecimal costAtMoment = product.getCostPrice() != null ? product.getCostPrice() : BigDecimal.ZERO;
             saleItem.setCostPriceAtSale(costAtMoment);
 
-            // Cálculo inverso de impuestos (asumiendo precio BRUTO)
-            BigDecimal taxPercent = product.getTaxPercent() != null ? product.getTaxPercent() : new BigDecimal("19.0");
-            BigDecimal taxFactor = taxPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-            BigDecimal divisor = BigDecimal.ONE.add(taxFactor);
-
-            BigDecimal netPrice;
-            BigDecimal unitTaxCalc;
-
-            if (product.getIsTaxIncluded()) {
-                netPrice = finalUnitPrice.divide(divisor, 4, RoundingMode.HALF_UP);
-                unitTaxCalc = finalUnitPrice.subtract(netPrice);
-            } else {
-                netPrice = finalUnitPrice.divide(divisor, 4, RoundingMode.HALF_UP); // Ajuste estándar POS
-                unitTaxCalc = finalUnitPrice.subtract(netPrice);
-            }
+            // Cálculo inverso de impuestos (el precio de caja siempre es BRUTO)
+            TaxCalculator.LinePrice line = TaxCalculator.priceLine(finalUnitPrice, product.getTaxPercent(), qtyToSell);
 
-            saleItem.setNetPriceAtSale(netPrice);
-            saleItem.setUnitTax(unitTaxCalc);
-            saleItem.setTaxAmountAtSale(unitTaxCalc.multiply(qtyToSell));
+            saleItem.setNetPriceAtSale(line.netUnitPrice());
+            saleItem.setUnitTax(line.unitTax());
+            saleItem.setTaxAmountAtSale(line.taxAmount());
             saleItem.setUnitPrice(finalUnitPrice);
-            saleItem.setTotal(finalUnitPrice.multiply(qtyToSell));
+            saleItem.setTotal(line.total());
 
             // Agregamos a la lista de la entidad (Cascade se encargará de guardar esto al final)
             sale.addItem(saleItem);
@@ -158,29 +215,44 @@ public class SaleService {
             // Log de Cambio de Precio (Usando el ID generado)
             if (priceChanged) {
                 String logMsg = String.format("Precio modificado en caja: $%s -> $%s", product.getPriceFinal(), finalUnitPrice);
-                createLog(product, currentUser, "PRICE_OVERRIDE", BigDecimal.ZERO, product.getStockCurrent(), product.getStockCurrent(),
-                        logMsg, sale.getId());
+                inventoryLogOutbox.record(product, currentUser, "PRICE_OVERRIDE", BigDecimal.ZERO, product.getStockCurrent(), product.getStockCurrent(),
+                        logMsg, sale.getId(), null);
             }
         }
 
-        // 3. GUARDADO FINAL (UPDATE)
-        // Esto guarda los SaleItems gracias a CascadeType.ALL en la entidad Sale
-        return saleRepository.save(sale);
+        return sale;
     }
 
-    private void createLog(Product p, User u, String action, BigDecimal change, BigDecimal oldStk, BigDecimal newStk, String reason, UUID saleId) {
-        InventoryLog log = new InventoryLog();
-        log.setTenantId(p.getTenantId());
-        log.setProductId(p.getId());
-        log.setProductNameSnapshot(p.getName());
-        log.setUserId(u.getId());
-        log.setUserNameSnapshot(u.getFullName());
-        log.setActionType(action);
-        log.setQuantityChange(change);
-        log.setOldStock(oldStk);
-        log.setNewStock(newStk);
-        log.setReason(reason);
-        log.setSaleId(saleId);
-        inventoryLogRepository.save(log);
+    /**
+     * Un log por producto y ticket. Con varios tickets el movimiento en BD es agregado, así que
+     * reconstruimos el stock antes/después de cada ticket en el orden en que vinieron.
+     */
+    private void logStockMovements(List<Sale> sales, List<StockPlan> plans, List<StockMovement> movements, AuthenticatedUser currentUser) {
+        Map<UUID, BigDecimal> running = new HashMap<>();
+        for (StockMovement m : movements) {
+            if (m.isTracked()) running.put(m.product().getId(), m.oldStock());
+        }
+
+        for (int i = 0; i < sales.size(); i++) {
+            StockPlan plan = plans.get(i);
+            for (Map.Entry<UUID, BigDecimal> delta : plan.getDeltas().entrySet()) {
+                BigDecimal before = running.get(delta.getKey());
+                if (before == null || delta.getValue().signum() == 0) continue;
+                BigDecimal after = before.add(delta.getValue());
+                running.put(delta.getKey(), after);
+
+                Product product = plan.getProduct(delta.getKey());
+                Product bundle = plan.getBundle(delta.getKey());
+                if (bundle != null) {
+                    // Log del componente hijo (Usando el ID generado)
+                    inventoryLogOutbox.record(product, currentUser, "BUNDLE_SALE", delta.getValue(), before, after,
+                            "Venta Pack POS: " + bundle.getName(), sales.get(i).getId(), null);
+                } else {
+                    // Log de venta normal (Usando el ID generado)
+                    inventoryLogOutbox.record(product, currentUser, "SALE", delta.getValue(), before, after,
+                            "Venta POS", sales.get(i).getId(), null);
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,12 +1,11 @@
 package com.saaspos.api.service;
 
+import com.saaspos.api.config.TenantContext;
 import com.saaspos.api.model.DemoLink;
 import com.saaspos.api.model.User;
 import com.saaspos.api.repository.DemoLinkRepository;
 import com.saaspos.api.repository.UserRepository;
 import org.springframework.stereotype.Service;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -57,7 +56,6 @@ public class SalesAgentService {
     }
 
     private User getCurrentUser() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        return userRepository.findByEmail(auth.getName()).orElseThrow();
+        return userRepository.findById(TenantContext.getUserId()).orElseThrow();
     }
 }
\ No newline at end of file
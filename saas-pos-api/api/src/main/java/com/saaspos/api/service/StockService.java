@@ -0,0 +1,253 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.StockChanged;
+import com.saaspos.api.model.BundleItem;
+import com.saaspos.api.model.Product;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Único punto que modifica stock_current.
+ * Cada movimiento es un UPDATE condicional atómico (sin leer-modificar-guardar en Java), y los productos
+ * de una misma operación se actualizan SIEMPRE en orden de id para que dos transacciones no se bloqueen
+ * mutuamente (deadlock) al tocar los mismos productos en distinto orden.
+ * Usa JDBC directo (mismo Connection/transacción que JPA) para poder mandar todos los UPDATE en un batch.
+ */
+@Service
+public class StockService {
+
+    // Un solo UPDATE condicional para salidas (delta < 0) y devoluciones (delta > 0).
+    // Salida: solo si alcanza (o si el stock es NULL = ilimitado). Devolución: siempre.
+    static final String APPLY_SQL =
+            "UPDATE products SET stock_current = stock_current + ? " +
+            "WHERE id = ? AND (? >= 0 OR stock_current IS NULL OR stock_current >= -?)";
+
+    private static final String READ_SQL = "SELECT id, stock_current FROM products WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final HotStockLedger hotStockLedger;
+    private final DomainEventBus eventBus;
+
+    public StockService(NamedParameterJdbcTemplate jdbcTemplate, EntityManager entityManager, HotStockLedger hotStockLedger,
+                        DomainEventBus eventBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.hotStockLedger = hotStockLedger;
+        this.eventBus = eventBus;
+    }
+
+    /**
+     * Aplica todos los cambios del plan. Si algún producto no tiene stock suficiente lanza RuntimeException
+     * (la transacción del llamador hace rollback de lo ya aplicado).
+     * Productos "calientes" habilitados en HotStockLedger se resuelven en memoria; el resto va a la BD.
+     * Las entidades administradas del plan quedan con el stock nuevo y se pueden seguir modificando en la misma
+     * transacción; JPA nunca vuelve a escribir su stock_current (ver markStockAsLoaded).
+     */
+    @Transactional
+    public List<StockMovement> apply(StockPlan plan) {
+        List<Map.Entry<UUID, BigDecimal>> dbChanges = new ArrayList<>();
+        List<Map.Entry<UUID, BigDecimal>> ledgerChanges = new ArrayList<>();
+        for (Map.Entry<UUID, BigDecimal> change : plan.deltas.entrySet()) {
+            if (change.getValue().signum() == 0) continue;
+            (hotStockLedger.handles(plan.products.get(change.getKey())) ? ledgerChanges : dbChanges).add(change);
+        }
+
+        List<StockMovement> movements = new ArrayList<>();
+        applyInLedger(plan, ledgerChanges, movements);
+        applyInDatabase(plan, dbChanges, movements);
+
+        // Refrescamos las entidades en memoria (para la respuesta) sin que Hibernate genere otro UPDATE
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        for (StockMovement m : movements) {
+            if (Hibernate.isInitialized(m.product()) && session.contains(m.product())) {
+                Product product = (Product) Hibernate.unproxy(m.product());
+                product.setStockCurrent(m.newStock());
+                markStockAsLoaded(session, product);
+            }
+            // Se entrega después del commit (con rollback no sale nada)
+            if (m.isTracked()) {
+                eventBus.publish(new StockChanged(m.product().getTenantId(), m.product().getId(),
+                        m.oldStock(), m.newStock(), m.product().getStockMin()));
+            }
+        }
+        return movements;
+    }
+
+    /**
+     * Costo fijo de 2 viajes a la BD sin importar cuántos productos toque: un batch JDBC con los UPDATE
+     * (enviados en orden de id, así los locks de fila se toman siempre en el mismo orden) y un SELECT del stock final.
+     */
+    private void applyInDatabase(StockPlan plan, List<Map.Entry<UUID, BigDecimal>> changes, List<StockMovement> movements) {
+        if (changes.isEmpty()) return;
+
+        int[] updated = jdbcTemplate.getJdbcTemplate().batchUpdate(APPLY_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BigDecimal delta = changes.get(i).getValue();
+                ps.setBigDecimal(1, delta);
+                ps.setObject(2, changes.get(i).getKey());
+                ps.setBigDecimal(3, delta);
+                ps.setBigDecimal(4, delta);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return changes.size();
+            }
+        });
+
+        for (int i = 0; i < changes.size(); i++) {
+            if (updated[i] == 0 && changes.get(i).getValue().signum() < 0) {
+                throw insufficientStock(plan, changes.get(i).getKey());
+            }
+        }
+
+        // Stock final (las filas quedan bloqueadas por nuestra transacción, así que nadie lo cambia hasta el commit)
+        Map<UUID, BigDecimal> finalStock = new HashMap<>();
+        jdbcTemplate.query(READ_SQL, Map.of("ids", changes.stream().map(Map.Entry::getKey).toList()),
+                rs -> { finalStock.put(rs.getObject("id", UUID.class), rs.getBigDecimal("stock_current")); });
+
+        for (int i = 0; i < changes.size(); i++) {
+            UUID productId = changes.get(i).getKey();
+            BigDecimal delta = changes.get(i).getValue();
+            if (updated[i] == 0 || !finalStock.containsKey(productId)) continue; // Producto eliminado: no hay a dónde devolver
+
+            BigDecimal newStock = finalStock.get(productId);
+            BigDecimal oldStock = newStock != null ? newStock.subtract(delta) : null;
+            movements.add(new StockMovement(plan.products.get(productId), plan.bundles.get(productId), delta, oldStock, newStock));
+        }
+    }
+
+    // Decide en memoria (CAS) y deja el delta anotado en el diario, en un solo batch
+    private void applyInLedger(StockPlan plan, List<Map.Entry<UUID, BigDecimal>> changes, List<StockMovement> movements) {
+        if (changes.isEmpty()) return;
+
+        List<Product> journalProducts = new ArrayList<>();
+        List<BigDecimal> journalDeltas = new ArrayList<>();
+        for (Map.Entry<UUID, BigDecimal> change : changes) {
+            UUID productId = change.getKey();
+            BigDecimal delta = change.getValue();
+            BigDecimal[] result = hotStockLedger.tryApply(productId, delta);
+            if (result == null) throw insufficientStock(plan, productId);
+
+            Product product = plan.products.get(productId);
+            movements.add(new StockMovement(product, plan.bundles.get(productId), delta, result[0], result[1]));
+            if (result[1] != null) {
+                journalProducts.add(product);
+                journalDeltas.add(delta);
+            }
+        }
+        if (!journalProducts.isEmpty()) {
+            hotStockLedger.journal(journalProducts, journalDeltas);
+        }
+    }
+
+    /**
+     * Deja el stock nuevo también como "estado cargado" de la entidad: para Hibernate no hay cambio pendiente
+     * en stock_current, y con @DynamicUpdate en Product un cambio posterior (precio, nombre) escribe solo sus
+     * columnas. Sin esto, un UPDATE de fila completa pisaría el stock con el valor en memoria, que en productos
+     * del ledger todavía no incluye lo pendiente del diario. (Antes se marcaba read-only, lo que descartaba
+     * en silencio cualquier otro cambio a la entidad en la misma transacción.)
+     */
+    private static void markStockAsLoaded(SessionImplementor session, Product product) {
+        EntityEntry entry = session.getPersistenceContextInternal().getEntry(product);
+        if (entry == null || entry.getLoadedState() == null) return;
+        entry.getLoadedState()[entry.getPersister().getPropertyIndex("stockCurrent")] = product.getStockCurrent();
+    }
+
+    private RuntimeException insufficientStock(StockPlan plan, UUID productId) {
+        return new RuntimeException("Stock insuficiente para: " + plan.products.get(productId).getName());
+    }
+
+    /**
+     * Cambios de stock pendientes, agregados por producto (ordenados por id).
+     * Un PACK se expande a su propia fila (si es limitado) + sus componentes.
+     */
+    public static class StockPlan {
+        // Mismo orden que usa PostgreSQL para uuid (bytes sin signo); UUID.compareTo compara con signo
+        private final Map<UUID, BigDecimal> deltas = new TreeMap<>(
+                Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                        .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned));
+        private final Map<UUID, Product> products = new HashMap<>();
+        private final Map<UUID, Product> bundles = new HashMap<>(); // componente -> pack que lo arrastró
+
+        public StockPlan decrease(Product product, BigDecimal qty) {
+            return add(product, qty.negate());
+        }
+
+        public StockPlan increase(Product product, BigDecimal qty) {
+            return add(product, qty);
+        }
+
+        private StockPlan add(Product product, BigDecimal delta) {
+            put(product, delta, null);
+            if ("BUNDLE".equals(product.getProductType()) && product.getBundleItems() != null) {
+                for (BundleItem bundleItem : product.getBundleItems()) {
+                    put(bundleItem.getComponentProduct(), bundleItem.getQuantity().multiply(delta), product);
+                }
+            }
+            return this;
+        }
+
+        private void put(Product product, BigDecimal delta, Product bundle) {
+            deltas.merge(product.getId(), delta, BigDecimal::add);
+            products.putIfAbsent(product.getId(), product);
+            if (bundle != null) bundles.putIfAbsent(product.getId(), bundle);
+        }
+
+        // Suma otro plan a este (ej: todos los tickets de un bloque offline)
+        public StockPlan merge(StockPlan other) {
+            other.deltas.forEach((id, delta) -> deltas.merge(id, delta, BigDecimal::add));
+            other.products.forEach(products::putIfAbsent);
+            other.bundles.forEach(bundles::putIfAbsent);
+            return this;
+        }
+
+        public Map<UUID, BigDecimal> getDeltas() {
+            return Collections.unmodifiableMap(deltas);
+        }
+
+        public Product getProduct(UUID productId) {
+            return products.get(productId);
+        }
+
+        public Product getBundle(UUID productId) {
+            return bundles.get(productId);
+        }
+
+        public boolean isEmpty() {
+            return deltas.values().stream().allMatch(d -> d.signum() == 0);
+        }
+    }
+
+    /**
+     * Resultado de un movimiento ya aplicado en la BD.
+     * change es con signo (negativo = salida). oldStock/newStock son NULL si el producto es ilimitado.
+     * bundle != null cuando el producto se movió como componente de un pack.
+     */
+    public record StockMovement(Product product, Product bundle, BigDecimal change, BigDecimal oldStock, BigDecimal newStock) {
+        public boolean isTracked() {
+            return newStock != null;
+        }
+    }
+}
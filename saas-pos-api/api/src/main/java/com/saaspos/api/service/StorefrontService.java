@@ -4,7 +4,8 @@ import com.saaspos.api.dto.ecommerce.PublicProductDto;
 import com.saaspos.api.dto.ecommerce.PublicShopDto;
 import com.saaspos.api.dto.ecommerce.WebOrderItemRequest;
 import com.saaspos.api.dto.ecommerce.WebOrderRequest;
-import com.saaspos.api.model.BundleItem;
+import com.saaspos.api.event.DomainEventBus;
+import com.saaspos.api.event.WebOrderStatusChanged;
 import com.saaspos.api.model.Product;
 import com.saaspos.api.model.ecommerce.ShopConfig;
 import com.saaspos.api.model.ecommerce.WebOrder;
@@ -12,12 +13,14 @@ import com.saaspos.api.model.ecommerce.WebOrderItem;
 import com.saaspos.api.repository.ProductRepository;
 import com.saaspos.api.repository.ShopConfigRepository;
 import com.saaspos.api.repository.WebOrderRepository;
+import com.saaspos.api.service.StockService.StockPlan;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,11 +32,19 @@ public class StorefrontService {
     private final ShopConfigRepository shopConfigRepository;
     private final ProductRepository productRepository;
     private final WebOrderRepository webOrderRepository;
+    private final StockService stockService;
+    private final FolioService folioService;
+    private final DomainEventBus eventBus;
 
-    public StorefrontService(ShopConfigRepository shopConfigRepository, ProductRepository productRepository, WebOrderRepository webOrderRepository) {
+    public StorefrontService(ShopConfigRepository shopConfigRepository, ProductRepository productRepository,
+                             WebOrderRepository webOrderRepository, StockService stockService, FolioService folioService,
+                             DomainEventBus eventBus) {
         this.shopConfigRepository = shopConfigRepository;
         this.productRepository = productRepository;
         this.webOrderRepository = webOrderRepository;
+        this.stockService = stockService;
+        this.folioService = folioService;
+        this.eventBus = eventBus;
     }
 
     // 1. Obtener Info de la Tienda
@@ -79,7 +90,7 @@ public class StorefrontService {
         // 2. Crear la cabecera del pedido
         WebOrder order = new WebOrder();
         order.setTenantId(config.getTenantId());
-        order.setOrderNumber("WEB-" + System.currentTimeMillis() % 10000); // Generador simple temporal
+        order.setOrderNumber(folioService.next(config.getTenantId(), FolioService.WEB_ORDER)); // Correlativo por tienda
         order.setCustomerName(request.getCustomerName());
         order.setCustomerPhone(request.getCustomerPhone());
         order.setCustomerEmail(request.getCustomerEmail());
@@ -105,6 +116,8 @@ public class StorefrontService {
         BigDecimal totalOrder = BigDecimal.ZERO;
         List<WebOrderItem> orderItems = new ArrayList<>();
 
+        StockPlan stockPlan = new StockPlan();
+
         // 3. Procesar Items y STOCK (LÓGICA BLINDADA CONTRA NULLS)
         for (WebOrderItemRequest itemReq : request.getItems()) {
             Product product = productRepository.findById(itemReq.getProductId())
@@ -116,46 +129,9 @@ public class StorefrontService {
 
             BigDecimal qty = new BigDecimal(itemReq.getQuantity());
 
-            // --- A. LÓGICA DE STOCK PARA PACKS (BUNDLE) ---
-            if ("BUNDLE".equals(product.getProductType())) {
-                // 1. Validar Parent (Solo si tiene stock fijo asignado)
-                if (product.getStockCurrent() != null) {
-                    if (product.getStockCurrent().compareTo(qty) < 0) {
-                        throw new RuntimeException("Stock insuficiente para Pack: " + product.getName());
-                    }
-                    product.setStockCurrent(product.getStockCurrent().subtract(qty));
-                    productRepository.save(product);
-                }
-
-                // 2. Validar y Descontar Hijos (Componentes)
-                if (product.getBundleItems() != null) {
-                    for (BundleItem bundleItem : product.getBundleItems()) {
-                        Product child = bundleItem.getComponentProduct();
-                        BigDecimal totalChildQty = bundleItem.getQuantity().multiply(qty);
-
-                        // Validar hijo (Asumimos que los hijos SI deben tener stock controlado, o ser también infinitos)
-                        if (child.getStockCurrent() != null) {
-                            if (child.getStockCurrent().compareTo(totalChildQty) < 0) {
-                                throw new RuntimeException("Stock insuficiente en componente: " + child.getName());
-                            }
-                            // Descontar hijo
-                            child.setStockCurrent(child.getStockCurrent().subtract(totalChildQty));
-                            productRepository.save(child);
-                        }
-                    }
-                }
-            }
-            // --- B. LÓGICA DE STOCK PARA PRODUCTO NORMAL ---
-            else {
-                if (product.getStockCurrent() != null) {
-                    if (product.getStockCurrent().compareTo(qty) < 0) {
-                        throw new RuntimeException("Stock insuficiente para: " + product.getName());
-                    }
-                    product.setStockCurrent(product.getStockCurrent().subtract(qty));
-                    productRepository.save(product);
-                }
-                // Si es NULL (infinito), pasa sin descontar nada.
-            }
+            // Reserva de stock: packs descuentan pack (si es limitado) + hijos; NULL = infinito, no descuenta.
+            // Se aplica todo junto al final con UPDATE condicional (sin sobreventa bajo concurrencia)
+            stockPlan.decrease(product, qty);
 
             // Crear Detalle de Orden
             WebOrderItem detail = new WebOrderItem();
@@ -163,7 +139,7 @@ public class StorefrontService {
             detail.setProduct(product);
             detail.setQuantity(qty);
 
-            BigDecimal finalPrice = product.getPublicPrice() != null ? product.getPublicPrice() : calculatePriceWithTax(product);
+            BigDecimal finalPrice = publicPrice(product); // Mismo precio (y redondeo) que se muestra en la tienda
             detail.setUnitPriceAtMoment(finalPrice);
             detail.setCostPriceAtMoment(product.getCostPrice());
             detail.setProductNameSnapshot(product.getName());
@@ -176,17 +152,29 @@ public class StorefrontService {
             totalOrder = totalOrder.add(subtotal);
         }
 
+        // Reserva atómica (si un producto no alcanza, se lanza excepción y no se crea la orden)
+        stockService.apply(stockPlan);
+
         order.setItems(orderItems);
         order.setFinalTotal(totalOrder);
         order.setTotalItems(new BigDecimal(orderItems.size()));
 
-        return webOrderRepository.save(order);
+        WebOrder saved = webOrderRepository.save(order);
+        eventBus.publish(new WebOrderStatusChanged(saved.getTenantId(), saved.getId(), saved.getOrderNumber(), null, saved.getStatus()));
+        return saved;
+    }
+
+    // Precio web en pesos enteros: precio público especial o, si no hay, neto + IVA
+    private BigDecimal publicPrice(Product p) {
+        if (p.getPublicPrice() != null && p.getPublicPrice().compareTo(BigDecimal.ZERO) > 0) {
+            return Money.of(p.getPublicPrice()).toPesos();
+        }
+        return calculatePriceWithTax(p);
     }
 
     // Auxiliar para calcular precio normal con IVA si no hay precio público especial
     private BigDecimal calculatePriceWithTax(Product p) {
-        BigDecimal taxFactor = BigDecimal.ONE.add(p.getTaxPercent().divide(new BigDecimal("100")));
-        return p.getPriceNeto().multiply(taxFactor); // Ajustar redondeo si es necesario
+        return TaxCalculator.rate(p.getTaxPercent()).grossFromNet(Money.of(p.getPriceNeto())).toPesos();
     }
 
     private PublicProductDto mapToPublicDto(Product p) {
@@ -198,14 +186,7 @@ public class StorefrontService {
         dto.setImageUrl(p.getImageUrl());
 
         // Lógica de Precio Público
-        BigDecimal finalPrice;
-        if (p.getPublicPrice() != null && p.getPublicPrice().compareTo(BigDecimal.ZERO) > 0) {
-            finalPrice = p.getPublicPrice();
-        } else {
-            BigDecimal taxFactor = BigDecimal.ONE.add(p.getTaxPercent().divide(new BigDecimal("100")));
-            finalPrice = p.getPriceNeto().multiply(taxFactor);
-        }
-        dto.setPrice(finalPrice.setScale(0, RoundingMode.HALF_UP));
+        dto.setPrice(publicPrice(p));
 
         // --- FIX DE STOCK (BLINDADO CONTRA NULLS) ---
 
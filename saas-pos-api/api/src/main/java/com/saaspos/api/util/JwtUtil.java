@@ -1,18 +1,26 @@
 package com.saaspos.api.util;
 
+import com.saaspos.api.config.AuthenticatedUser;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.SimpleTimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 @Component
@@ -24,12 +32,34 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    // Máximo de tokens ya verificados que mantenemos en memoria
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    // Llave HMAC y parser se construyen UNA vez (el parser de jjwt es inmutable y thread-safe)
+    private Key signingKey;
+    private JwtParser parser;
+
+    // Tokens verificados: hash(token) -> claims. Cada entrada muere cuando expira el token.
+    // Sin lock en la lectura (cada request pasa por aquí); el tope es aproximado, ver evict()
+    private final Map<String, CachedClaims> verifiedTokens = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     //Generar token para usuario
-    public String generateToken(String email, String role, String tenantId) {
+    public String generateToken(AuthenticatedUser user) {
         Map<String, Object> claims = new HashMap<>();
-        claims.put("role", role);
-        claims.put("tenant_id", tenantId); //Guardamos el tenant en el token
-        return createToken(claims, email);
+        claims.put("role", user.getRole());
+        claims.put("tenant_id", user.getTenantId() != null ? user.getTenantId().toString() : ""); //Guardamos el tenant en el token
+        // Identidad completa en el token: el filtro arma el principal sin volver a consultar la BD
+        claims.put("user_id", user.getId().toString());
+        claims.put("full_name", user.getFullName());
+        return createToken(claims, user.getEmail());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
@@ -38,14 +68,41 @@ public class JwtUtil {
                 .setSubject(subject)
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration ))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    //Validar token
-    public boolean validateToken(String token, String userEmail) {
-        final String username = extractUsername(token);
-        return (username.equals(userEmail) && !isTokenExpirated(token));
+    /**
+     * Verifica firma y expiración del token y devuelve sus claims.
+     * Un token ya verificado se sirve desde la caché hasta su expiración, sin volver a calcular el HMAC
+     * ni a parsear el JSON. Lanza la excepción de jjwt si el token es inválido o está vencido.
+     */
+    public Claims parseToken(String token) {
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+
+        CachedClaims cached = verifiedTokens.get(key);
+        if (cached != null) {
+            if (cached.expiresAt > now) {
+                return cached.claims;
+            }
+            verifiedTokens.remove(key, cached);
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        Date exp = claims.getExpiration();
+        if (exp != null) {
+            if (verifiedTokens.size() >= cacheMaxEntries) {
+                evict(now);
+            }
+            verifiedTokens.put(key, new CachedClaims(claims, exp.getTime()));
+        }
+        return claims;
+    }
+
+    //Validar token (sobre claims ya verificados: no vuelve a parsear)
+    public boolean validateToken(Claims claims, String userEmail) {
+        return claims.getSubject().equals(userEmail) && !isTokenExpirated(claims);
     }
 
     //Extraer Username (Email)
@@ -55,34 +112,47 @@ public class JwtUtil {
 
     //Extraer Tenant ID (Para el filtro multi-tenant futuro)
     public String extractTenantId(String token) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseToken(token);
         return claims.get("tenant_id", String.class);
     }
 
     //Utilitarios privados
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
+        final Claims claims = parseToken(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private boolean isTokenExpirated(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpirated(String token) {
-        return extractExpiration(token).before(new Date());
+    // Caché llena: se van los vencidos y, si no alcanza, entradas cualquiera hasta bajar a 3/4 del tope.
+    // Un solo hilo poda a la vez; los demás siguen sin esperar (el tope puede pasarse por unas pocas entradas)
+    private void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) return;
+        try {
+            verifiedTokens.values().removeIf(c -> c.expiresAt <= now);
+            int excess = verifiedTokens.size() - cacheMaxEntries * 3 / 4;
+            Iterator<String> keys = verifiedTokens.keySet().iterator();
+            while (excess-- > 0 && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        } finally {
+            evicting.set(false);
+        }
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // SHA-256 del token: no guardamos el JWT en claro como llave de la caché
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
 
-    private Key getSigningKey() {
-        byte[] keyBytes = secret.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    private record CachedClaims(Claims claims, long expiresAt) {
     }
 }
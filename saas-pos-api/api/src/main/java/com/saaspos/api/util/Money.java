@@ -0,0 +1,101 @@
+package com.saaspos.api.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Monto en pesos chilenos como entero de punto fijo (diez-milésimos de peso), inmutable.
+ * CLP no tiene centavos: lo que se cobra se redondea a peso entero (toPesos); los 4 decimales
+ * solo existen para netos e impuestos intermedios (igual que price_neto NUMERIC(15,4)).
+ * Política única de redondeo: HALF_UP.
+ */
+public record Money(long units) implements Comparable<Money> {
+
+    public static final int SCALE = 4;
+    static final long ONE = 10_000L;
+
+    public static final Money ZERO = new Money(0);
+
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000};
+
+    public static Money of(BigDecimal amount) {
+        if (amount == null) return ZERO;
+        // Hasta 4 decimales (precios y netos de la BD) no hay nada que redondear
+        if (amount.scale() >= 0 && amount.scale() <= SCALE) return new Money(unscaled(amount, SCALE));
+        return new Money(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static Money ofPesos(long pesos) {
+        return new Money(Math.multiplyExact(pesos, ONE));
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(units, other.units));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(units, other.units));
+    }
+
+    // Cantidad con hasta 3 decimales (ej: 0.125 kg), como sale_items.quantity
+    public Money times(BigDecimal quantity) {
+        return timesMilli(milli(quantity));
+    }
+
+    // Cantidad ya pasada a milésimos (milli), para multiplicar varios montos por la misma cantidad
+    Money timesMilli(long milli) {
+        return new Money(divideHalfUp(Math.multiplyExact(units, milli), 1000));
+    }
+
+    static long milli(BigDecimal quantity) {
+        if (quantity.scale() >= 0 && quantity.scale() <= 3) return unscaled(quantity, 3);
+        return quantity.setScale(3, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * El valor en unidades de 10^-scale, exacto (0 <= amount.scale() <= scale <= 4). Con escala 0 no crea objetos;
+     * si no, solo el BigInteger del valor sin escala (setScale crearía además otro BigDecimal).
+     */
+    static long unscaled(BigDecimal amount, int scale) {
+        long value = amount.scale() == 0 ? amount.longValueExact() : amount.unscaledValue().longValueExact();
+        return Math.multiplyExact(value, POW10[scale - amount.scale()]);
+    }
+
+    // Redondeado a peso entero: lo que se cobra / muestra al cliente
+    public Money roundToPeso() {
+        return new Money(divideHalfUp(units, ONE) * ONE);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    public BigDecimal toPesos() {
+        return BigDecimal.valueOf(divideHalfUp(units, ONE));
+    }
+
+    public boolean isPositive() {
+        return units > 0;
+    }
+
+    /** (this - cost) / cost en porcentaje con 2 decimales (margen sobre costo). */
+    public BigDecimal marginOver(Money cost) {
+        long basisPoints = divideHalfUp(Math.multiplyExact(units - cost.units, ONE), cost.units);
+        return BigDecimal.valueOf(basisPoints, 2);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    // División entera con HALF_UP (divisor positivo)
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= divisor) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,70 @@
+package com.saaspos.api.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Cálculo de IVA sobre Money. Cada tasa se precalcula una vez (en puntos base) y se reutiliza.
+ * Todos los precios, netos e impuestos del sistema deben pasar por aquí para redondear igual en todos lados.
+ */
+public final class TaxCalculator {
+
+    // IVA Chile. Se usa cuando el producto no trae tasa propia
+    public static final BigDecimal DEFAULT_TAX_PERCENT = new BigDecimal("19.0");
+
+    // Tasas de 0% a 100% por puntos base, se llenan al primer uso. Una carrera solo crea dos TaxRate iguales
+    private static final TaxRate[] RATES = new TaxRate[10_001];
+
+    public static final TaxRate DEFAULT = rate(DEFAULT_TAX_PERCENT);
+
+    private TaxCalculator() {
+    }
+
+    // Ej: 19.0 -> TaxRate(1900)
+    public static TaxRate rate(BigDecimal taxPercent) {
+        if (taxPercent == null) return DEFAULT;
+        // tax_percent es NUMERIC(5,2): con hasta 2 decimales no se redondea
+        int basisPoints = taxPercent.scale() >= 0 && taxPercent.scale() <= 2
+                ? Math.toIntExact(Money.unscaled(taxPercent, 2))
+                : taxPercent.movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+        if (basisPoints < 0 || basisPoints >= RATES.length) return new TaxRate(basisPoints);
+        TaxRate rate = RATES[basisPoints];
+        if (rate == null) {
+            rate = new TaxRate(basisPoints);
+            RATES[basisPoints] = rate;
+        }
+        return rate;
+    }
+
+    /**
+     * Desglose de una línea de venta a partir del precio unitario BRUTO (con IVA).
+     * Neto con 4 decimales; impuesto y total en pesos enteros (columnas NUMERIC(12,0)).
+     */
+    public static LinePrice priceLine(BigDecimal grossUnitPrice, BigDecimal taxPercent, BigDecimal quantity) {
+        Money gross = Money.of(grossUnitPrice);
+        Money net = rate(taxPercent).netFromGross(gross);
+        Money unitTax = gross.minus(net);
+        long milli = Money.milli(quantity);
+        return new LinePrice(net.toBigDecimal(), unitTax.toPesos(),
+                unitTax.timesMilli(milli).toPesos(), gross.timesMilli(milli).toPesos());
+    }
+
+    public record LinePrice(BigDecimal netUnitPrice, BigDecimal unitTax, BigDecimal taxAmount, BigDecimal total) {
+    }
+
+    public record TaxRate(int basisPoints) {
+
+        // Factor (1 + tasa) en puntos base: 19% -> 11900
+        private long factor() {
+            return Money.ONE + basisPoints;
+        }
+
+        public Money netFromGross(Money gross) {
+            return new Money(Money.divideHalfUp(Math.multiplyExact(gross.units(), Money.ONE), factor()));
+        }
+
+        public Money grossFromNet(Money net) {
+            return new Money(Money.divideHalfUp(Math.multiplyExact(net.units(), factor()), Money.ONE));
+        }
+    }
+}
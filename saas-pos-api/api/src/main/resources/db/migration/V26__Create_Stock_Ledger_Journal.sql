@@ -0,0 +1,15 @@
+-- V26__Create_Stock_Ledger_Journal.sql
+
+-- Diario del ledger de stock en memoria (productos "calientes").
+-- Cada venta inserta aquí su delta EN LA MISMA TRANSACCIÓN (no toca la fila de products).
+-- Un proceso en segundo plano suma los deltas pendientes a products.stock_current y borra las filas.
+-- Si la app se cae, lo pendiente sigue aquí y se aplica al volver a levantar.
+CREATE TABLE stock_ledger_journal (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id UUID NOT NULL,
+    product_id UUID NOT NULL,
+    delta DECIMAL(10,3) NOT NULL,       -- Negativo = salida, positivo = devolución
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_stock_ledger_journal_product ON stock_ledger_journal(product_id);
@@ -0,0 +1,15 @@
+-- V27__Create_Sale_Idempotency_Keys.sql
+
+-- Llaves de idempotencia de POST /api/sales (header Idempotency-Key que manda la caja).
+-- La fila se inserta en la MISMA transacción que la venta: si la venta hace rollback, la llave también.
+-- Un reintento con la misma llave devuelve la venta ya registrada en vez de descontar stock otra vez.
+CREATE TABLE sale_idempotency_keys (
+    tenant_id UUID NOT NULL,
+    idempotency_key VARCHAR(100) NOT NULL,
+    sale_id UUID NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (tenant_id, idempotency_key)
+);
+
+-- Para la limpieza por antigüedad (TTL)
+CREATE INDEX idx_sale_idempotency_created_at ON sale_idempotency_keys(created_at);
@@ -0,0 +1,30 @@
+-- V28__Folio_Sequences_And_Unique_Numbers.sql
+
+-- Correlativos por empresa y serie (TCK = tickets POS, WEB = pedidos web, GEN = SKUs generados).
+-- next_value = primer número aún no entregado a ningún nodo. Cada nodo reserva bloques (ver FolioService).
+CREATE TABLE folio_sequences (
+    tenant_id UUID NOT NULL,
+    series VARCHAR(10) NOT NULL,
+    next_value BIGINT NOT NULL,
+    PRIMARY KEY (tenant_id, series)
+);
+
+-- Los folios antiguos ("WEB-" + millis % 10000) pueden repetirse: renombramos los duplicados antes del índice único
+UPDATE web_orders w SET order_number = w.order_number || '-' || d.rn
+FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY tenant_id, order_number ORDER BY created_at, id) AS rn
+    FROM web_orders
+) d
+WHERE w.id = d.id AND d.rn > 1;
+
+UPDATE sales s SET sale_number = s.sale_number || '-' || d.rn
+FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY tenant_id, sale_number ORDER BY created_at, id) AS rn
+    FROM sales
+    WHERE sale_number IS NOT NULL
+) d
+WHERE s.id = d.id AND d.rn > 1;
+
+-- Folio único por empresa (también sirve de índice para existsByTenantIdAndSaleNumber)
+CREATE UNIQUE INDEX uq_sales_tenant_sale_number ON sales(tenant_id, sale_number);
+CREATE UNIQUE INDEX uq_web_orders_tenant_order_number ON web_orders(tenant_id, order_number);
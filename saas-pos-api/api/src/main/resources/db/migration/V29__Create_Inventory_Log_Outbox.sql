@@ -0,0 +1,23 @@
+-- V29__Create_Inventory_Log_Outbox.sql
+
+-- Outbox de la auditoría de inventario.
+-- La venta anota aquí sus logs EN LA MISMA TRANSACCIÓN (un solo INSERT por lotes, sin los índices de inventory_logs).
+-- Un proceso en segundo plano los mueve a inventory_logs en lotes grandes, en orden de id.
+-- Si la app se cae, lo pendiente sigue aquí y se traspasa al volver a levantar.
+CREATE TABLE inventory_log_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    log_id UUID NOT NULL,               -- Id definitivo en inventory_logs (reintentos idempotentes)
+    tenant_id UUID NOT NULL,
+    product_id UUID,
+    product_name_snapshot VARCHAR(255),
+    user_id UUID,
+    user_name_snapshot VARCHAR(255),
+    action_type VARCHAR(50),
+    quantity_change DECIMAL(10,3),
+    old_stock DECIMAL(10,3),
+    new_stock DECIMAL(10,3),
+    reason TEXT,
+    sale_id UUID,
+    web_order_id UUID,
+    created_at TIMESTAMP NOT NULL       -- Hora real del movimiento (no la del traspaso)
+);
@@ -0,0 +1,21 @@
+-- V30__Product_Search_Trigram_Indexes.sql
+
+-- Búsqueda de productos del POS con índices de trigramas (pg_trgm) e insensible a tildes (unaccent).
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() no es IMMUTABLE (depende del search_path), así que no sirve en un índice.
+-- Fijamos el diccionario y lo envolvemos: "Plátano Ñuñoa" -> "platano nunoa"
+CREATE OR REPLACE FUNCTION search_norm(text) RETURNS text
+    LANGUAGE sql IMMUTABLE STRICT PARALLEL SAFE
+AS $$ SELECT lower(public.unaccent('public.unaccent'::regdictionary, $1)) $$;
+
+-- Nombre: contiene / parecido (LIKE '%q%' y word_similarity usan el mismo índice GIN)
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm ON products USING GIN (search_norm(name) gin_trgm_ops) WHERE is_active = true;
+
+-- SKU: contiene (trigramas) y exacto / prefijo (btree con text_pattern_ops)
+CREATE INDEX IF NOT EXISTS idx_products_sku_trgm ON products USING GIN (lower(sku) gin_trgm_ops) WHERE is_active = true;
+CREATE INDEX IF NOT EXISTS idx_products_tenant_sku_lower ON products (tenant_id, lower(sku) text_pattern_ops) WHERE is_active = true;
+
+-- Categoría por nombre (tabla chica, pero evitamos el seq scan por tenant)
+CREATE INDEX IF NOT EXISTS idx_categories_name_trgm ON categories USING GIN (search_norm(name) gin_trgm_ops);
@@ -0,0 +1,17 @@
+-- V31__Product_Listing_Keyset_Indexes.sql
+
+-- Listado paginado del catálogo (GET /api/products?limit=...) por cursor: (clave de orden, id).
+-- Un índice por orden soportado, con el tenant adelante: cada página es un rango del índice, sin OFFSET ni COUNT.
+
+-- created_at entra en el cursor: no puede ser NULL
+UPDATE products SET created_at = NOW() WHERE created_at IS NULL;
+ALTER TABLE products ALTER COLUMN created_at SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_products_list_name ON products (tenant_id, name, id);
+CREATE INDEX IF NOT EXISTS idx_products_list_sku ON products (tenant_id, sku, id);
+CREATE INDEX IF NOT EXISTS idx_products_list_created ON products (tenant_id, created_at, id);
+-- Stock NULL (ilimitado) se ordena como el mayor: misma expresión que usa ProductListingService
+CREATE INDEX IF NOT EXISTS idx_products_list_stock ON products (tenant_id, (COALESCE(stock_current, 999999999)), id);
+
+-- Filtro más común del listado: una categoría ordenada por nombre
+CREATE INDEX IF NOT EXISTS idx_products_list_category_name ON products (tenant_id, category_id, name, id);
@@ -0,0 +1,17 @@
+-- V32__Bundle_Available_Units.sql
+
+-- Packs: cuántas unidades se pueden armar hoy (mínimo entre su límite propio y lo que alcanzan sus componentes).
+-- Lo mantiene BundleAvailability al cambiar el stock de un componente; en productos estándar queda NULL.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS available_units NUMERIC(12,3);
+
+-- Índice inverso: de un componente a los packs que lo incluyen (solo esos se recalculan)
+CREATE INDEX IF NOT EXISTS idx_bundle_component ON bundle_items(component_product_id);
+
+-- Valor inicial. Mismo cálculo que Product.getEffectiveStock: pack sin límite propio = 999999, componente sin stock = 0
+UPDATE products b
+SET available_units = LEAST(COALESCE(b.stock_current, 999999), COALESCE((
+        SELECT MIN(FLOOR(COALESCE(c.stock_current, 0) / bi.quantity))
+        FROM bundle_items bi
+        JOIN products c ON c.id = bi.component_product_id
+        WHERE bi.bundle_product_id = b.id AND bi.quantity > 0), 999999))
+WHERE b.product_type = 'BUNDLE';
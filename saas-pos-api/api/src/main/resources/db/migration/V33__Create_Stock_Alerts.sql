@@ -0,0 +1,21 @@
+-- V33__Create_Stock_Alerts.sql
+
+-- Alertas de stock: una fila cada vez que un producto cruza su stock mínimo (en cualquier dirección).
+-- La escribe LowStockMonitor; en packs se evalúa lo que se puede armar (available_units).
+CREATE TABLE stock_alerts (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id UUID NOT NULL,
+
+    product_id UUID NOT NULL,
+    product_name_snapshot VARCHAR(255),
+
+    alert_type VARCHAR(20) NOT NULL,    -- 'LOW_STOCK' (bajó al mínimo) o 'RECOVERED' (volvió a estar sobre el mínimo)
+    stock DECIMAL(12,3),                -- Stock (o unidades armables del pack) al cruzar
+    stock_min DECIMAL(12,3),
+
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Consulta típica: las últimas alertas del tenant (o de un producto)
+CREATE INDEX idx_stock_alerts_tenant ON stock_alerts(tenant_id, id DESC);
+CREATE INDEX idx_stock_alerts_product ON stock_alerts(product_id, id DESC);
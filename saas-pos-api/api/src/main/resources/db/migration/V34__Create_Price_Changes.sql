@@ -0,0 +1,36 @@
+-- V34__Create_Price_Changes.sql
+
+-- Cambios de precio masivos (RepricingService): por categoría, proveedor y/o lista de productos.
+-- Con effective_at futuro quedan PENDING y los aplica el job cuando llega la hora.
+CREATE TABLE price_changes (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id UUID NOT NULL,
+
+    mode VARCHAR(20) NOT NULL,          -- 'PERCENT' (+/- %), 'AMOUNT' (+/- pesos) o 'TAX' (nueva tasa de IVA)
+    value DECIMAL(15,4) NOT NULL,
+
+    category_id UUID,                   -- Filtros (se combinan con AND; al menos uno)
+    supplier_id UUID,
+    product_ids UUID[],
+
+    reason VARCHAR(255),
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING', -- 'PENDING', 'APPLIED', 'FAILED', 'CANCELLED'
+    effective_at TIMESTAMP NOT NULL,
+    applied_at TIMESTAMP,
+    affected_count INTEGER,
+    error_message VARCHAR(500),
+
+    created_by UUID,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_price_changes_tenant ON price_changes(tenant_id, id DESC);
+-- Job: solo recorre los pendientes por hora de aplicación
+CREATE INDEX idx_price_changes_due ON price_changes(effective_at) WHERE status = 'PENDING';
+
+-- Historial: de qué cambio masivo viene cada fila (NULL = edición manual)
+ALTER TABLE product_price_histories ADD COLUMN price_change_id BIGINT;
+
+-- Precio a una fecha: último cambio del producto hasta ese momento
+CREATE INDEX idx_pph_product_date ON product_price_histories(product_id, change_date DESC, id DESC);
+DROP INDEX IF EXISTS idx_pph_product_id;
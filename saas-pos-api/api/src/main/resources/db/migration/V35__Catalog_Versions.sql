@@ -0,0 +1,101 @@
+-- V35__Catalog_Versions.sql
+
+-- Versión del catálogo por tenant para la sincronización incremental de los POS (GET /api/products/changes).
+-- Cada cambio de producto, categoría o composición de pack toma el siguiente número del tenant. El número se
+-- toma con la fila del contador bloqueada hasta el commit: las versiones se confirman en orden, así un terminal
+-- que leyó hasta N no puede perderse un N-1 que confirme después.
+-- Los cambios solo de stock (ventas, ajustes, available_units) NO cambian la versión: no serializan el checkout.
+CREATE TABLE catalog_versions (
+    tenant_id UUID PRIMARY KEY,
+    version BIGINT NOT NULL DEFAULT 0,
+    pruned_before BIGINT NOT NULL DEFAULT 0   -- Lápidas hasta esta versión ya se borraron: desde antes hay que recargar todo
+);
+
+ALTER TABLE products ADD COLUMN catalog_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE categories ADD COLUMN catalog_version BIGINT NOT NULL DEFAULT 0;
+
+-- Borrados definitivos (los archivados siguen en products con is_active = false)
+CREATE TABLE catalog_tombstones (
+    id BIGSERIAL PRIMARY KEY,
+    tenant_id UUID NOT NULL,
+    entity_type VARCHAR(20) NOT NULL,   -- 'PRODUCT' o 'CATEGORY'
+    entity_id UUID NOT NULL,
+    catalog_version BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Catálogo actual = versión 1 (un terminal que parte desde 0 lo recibe completo)
+UPDATE products SET catalog_version = 1;
+UPDATE categories SET catalog_version = 1;
+INSERT INTO catalog_versions (tenant_id, version)
+SELECT tenant_id, 1 FROM (SELECT tenant_id FROM products UNION SELECT tenant_id FROM categories) t;
+
+-- Consulta típica: lo cambiado desde la versión del terminal
+CREATE INDEX idx_products_catalog_version ON products(tenant_id, catalog_version);
+CREATE INDEX idx_categories_catalog_version ON categories(tenant_id, catalog_version);
+CREATE INDEX idx_catalog_tombstones_version ON catalog_tombstones(tenant_id, catalog_version);
+CREATE INDEX idx_catalog_tombstones_date ON catalog_tombstones(deleted_at);
+
+CREATE OR REPLACE FUNCTION next_catalog_version(p_tenant_id UUID) RETURNS BIGINT AS $$
+    INSERT INTO catalog_versions (tenant_id, version) VALUES (p_tenant_id, 1)
+    ON CONFLICT (tenant_id) DO UPDATE SET version = catalog_versions.version + 1
+    RETURNING version;
+$$ LANGUAGE sql;
+
+-- Productos y categorías: la fila nueva o editada lleva la versión
+CREATE OR REPLACE FUNCTION stamp_catalog_version() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.catalog_version := next_catalog_version(NEW.tenant_id);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION record_catalog_tombstone() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO catalog_tombstones (tenant_id, entity_type, entity_id, catalog_version)
+    VALUES (OLD.tenant_id, TG_ARGV[0], OLD.id, next_catalog_version(OLD.tenant_id));
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_products_catalog_insert BEFORE INSERT ON products
+    FOR EACH ROW EXECUTE FUNCTION stamp_catalog_version();
+
+-- Solo columnas que ve el terminal: stock_current y available_units quedan fuera (ventas, ledger, packs)
+CREATE TRIGGER trg_products_catalog_update BEFORE UPDATE ON products
+    FOR EACH ROW
+    WHEN ((OLD.sku, OLD.name, OLD.description, OLD.cost_price, OLD.price_neto, OLD.price_final, OLD.is_tax_included,
+           OLD.tax_percent, OLD.stock_min, OLD.measurement_unit, OLD.attributes, OLD.is_active, OLD.is_public,
+           OLD.public_price, OLD.image_url, OLD.description_web, OLD.product_type, OLD.category_id, OLD.supplier_id)
+          IS DISTINCT FROM
+          (NEW.sku, NEW.name, NEW.description, NEW.cost_price, NEW.price_neto, NEW.price_final, NEW.is_tax_included,
+           NEW.tax_percent, NEW.stock_min, NEW.measurement_unit, NEW.attributes, NEW.is_active, NEW.is_public,
+           NEW.public_price, NEW.image_url, NEW.description_web, NEW.product_type, NEW.category_id, NEW.supplier_id))
+    EXECUTE FUNCTION stamp_catalog_version();
+
+CREATE TRIGGER trg_products_catalog_delete AFTER DELETE ON products
+    FOR EACH ROW EXECUTE FUNCTION record_catalog_tombstone('PRODUCT');
+
+CREATE TRIGGER trg_categories_catalog_insert BEFORE INSERT ON categories
+    FOR EACH ROW EXECUTE FUNCTION stamp_catalog_version();
+
+CREATE TRIGGER trg_categories_catalog_update BEFORE UPDATE ON categories
+    FOR EACH ROW
+    WHEN ((OLD.name, OLD.description, OLD.is_active) IS DISTINCT FROM (NEW.name, NEW.description, NEW.is_active))
+    EXECUTE FUNCTION stamp_catalog_version();
+
+CREATE TRIGGER trg_categories_catalog_delete AFTER DELETE ON categories
+    FOR EACH ROW EXECUTE FUNCTION record_catalog_tombstone('CATEGORY');
+
+-- Componentes de un pack: cambia la versión del pack (AFTER: si el pack ya se borró, no hay fila que tocar)
+CREATE OR REPLACE FUNCTION stamp_bundle_catalog_version() RETURNS TRIGGER AS $$
+DECLARE
+    v_bundle_id UUID := CASE WHEN TG_OP = 'DELETE' THEN OLD.bundle_product_id ELSE NEW.bundle_product_id END;
+BEGIN
+    UPDATE products SET catalog_version = next_catalog_version(tenant_id) WHERE id = v_bundle_id;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_bundle_items_catalog AFTER INSERT OR UPDATE OR DELETE ON bundle_items
+    FOR EACH ROW EXECUTE FUNCTION stamp_bundle_catalog_version();
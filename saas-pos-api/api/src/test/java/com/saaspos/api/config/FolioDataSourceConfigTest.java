@@ -0,0 +1,41 @@
+package com.saaspos.api.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FolioDataSourceConfigTest {
+
+    // Los pools de Hikari no conectan hasta la primera getConnection: no hace falta una BD
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+            .withUserConfiguration(FolioDataSourceConfig.class)
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:postgresql://localhost:5432/saas_pos",
+                    "spring.datasource.username=pos",
+                    "spring.datasource.hikari.maximum-pool-size=10",
+                    "app.folio.datasource.pool-name=folio-pool",
+                    "app.folio.datasource.maximum-pool-size=2");
+
+    @Test
+    void folioPoolDoesNotReplaceTheMainDataSource() {
+        runner.run(context -> {
+            HikariDataSource main = (HikariDataSource) context.getBean(DataSource.class);
+            HikariDataSource folio = context.getBean("folioDataSource", HikariDataSource.class);
+
+            assertThat(main).isNotSameAs(folio);
+            assertThat(main.getMaximumPoolSize()).isEqualTo(10);
+            assertThat(folio.getPoolName()).isEqualTo("folio-pool");
+            assertThat(folio.getMaximumPoolSize()).isEqualTo(2);
+            // Misma BD que el pool principal
+            assertThat(folio.getJdbcUrl()).isEqualTo(main.getJdbcUrl());
+            assertThat(folio.getUsername()).isEqualTo("pos");
+        });
+    }
+}
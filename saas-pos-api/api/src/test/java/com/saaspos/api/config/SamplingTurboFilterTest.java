@@ -0,0 +1,76 @@
+package com.saaspos.api.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SamplingTurboFilterTest {
+
+    private LoggerContext context;
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void setUp() {
+        // Contexto propio con el filtro como en logback-spring.xml (auth.trace, 1 de cada 3)
+        context = new LoggerContext();
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setLoggerPrefix("auth.trace");
+        filter.setSampleEvery(3);
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+
+        appender = new ListAppender<>();
+        appender.setContext(context);
+        appender.start();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+
+    @Test
+    void samplesInfoThroughAuthTraceLogger() {
+        Logger authTrace = context.getLogger("auth.trace");
+        for (int i = 0; i < 9; i++) {
+            authTrace.info("request {}", i);
+        }
+        assertThat(appender.list).hasSize(3);
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("request 0", "request 3", "request 6");
+    }
+
+    @Test
+    void warnAndErrorAlwaysPass() {
+        Logger authTrace = context.getLogger("auth.trace");
+        for (int i = 0; i < 4; i++) {
+            authTrace.warn("warn {}", i);
+            authTrace.error("error {}", i);
+        }
+        assertThat(appender.list).hasSize(8);
+    }
+
+    @Test
+    void disabledLevelsDoNotAdvanceTheCounter() {
+        Logger authTrace = context.getLogger("auth.trace");
+        authTrace.debug("apagado");
+        authTrace.debug("apagado");
+        authTrace.info("primero");
+        authTrace.info("segundo");
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage).containsExactly("primero");
+    }
+
+    @Test
+    void otherLoggersAreNotSampled() {
+        Logger other = context.getLogger("com.saaspos.api");
+        for (int i = 0; i < 5; i++) {
+            other.info("otro {}", i);
+        }
+        assertThat(appender.list).hasSize(5);
+    }
+}
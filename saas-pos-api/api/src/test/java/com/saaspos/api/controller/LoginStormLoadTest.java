@@ -0,0 +1,221 @@
+package com.saaspos.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.LoginRequest;
+import com.saaspos.api.dto.SaleRequest;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import com.saaspos.api.util.JwtUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inicio de turno contra el servidor real (Tomcat con pocos hilos): cientos de logins a la vez mientras las cajas
+ * venden. El BCrypt corre en el carril de login, así que el p99 de POST /api/sales se mantiene cerca del de
+ * referencia sin tormenta, y los logins que no caben reciben 503 con Retry-After sin esperar. El control es la
+ * misma tormenta con el carril abierto a todos los logins a la vez. Prueba de carga (~2 min): mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=16",
+        "app.auth.login-threads=" + LoginStormLoadTest.LOGIN_THREADS,
+        "app.auth.login-queue-capacity=20"})
+class LoginStormLoadTest extends PostgresTestBase {
+
+    static final int LOGIN_THREADS = 1;
+    private static final int CASHIERS = 8;
+    private static final int SALES_PER_CASHIER = 40;
+    private static final int LOGINS_PER_WAVE = 200;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("loginExecutor")
+    private ThreadPoolTaskExecutor loginExecutor;
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    @Test
+    void salesP99StaysFlatDuringALoginStorm() throws Exception {
+        UUID tenantId = createTenant();
+        AuthenticatedUser cashier = createUser(tenantId, "CASHIER");
+        AuthenticatedUser loginUser = createUser(tenantId, "CASHIER");
+        Product product = createProduct(tenantId, "CAFE", "1500", null);
+        String token = jwtUtil.generateToken(cashier);
+        String sale = objectMapper.writeValueAsString(ticket(product));
+        String login = objectMapper.writeValueAsString(credentials(loginUser));
+
+        // Calienta Tomcat, Hibernate y el carril de login
+        sell(token, sale, 20);
+        assertThat(post("/auth/login", login, null).statusCode()).isEqualTo(200);
+
+        double baseline = p99(sell(token, sale, SALES_PER_CASHIER));
+        Storm bounded = storm(token, sale, login);
+
+        // Control: el mismo inicio de turno con el carril abierto, todos los BCrypt a la vez como antes
+        loginExecutor.setMaxPoolSize(LOGINS_PER_WAVE);
+        loginExecutor.setCorePoolSize(LOGINS_PER_WAVE);
+        Storm open;
+        try {
+            open = storm(token, sale, login);
+        } finally {
+            loginExecutor.setCorePoolSize(LOGIN_THREADS);
+            loginExecutor.setMaxPoolSize(LOGIN_THREADS);
+        }
+
+        System.out.printf("%nPOST /api/sales p99: %.0f ms sin tormenta, %.0f ms con carril acotado (%d logins, %d con 503), " +
+                        "%.0f ms con carril abierto (%d logins)%n",
+                baseline, bounded.salesP99, bounded.logins, bounded.rejected.size(), open.salesP99, open.logins);
+
+        // Los logins de más se rechazan sin esperar su turno de BCrypt
+        assertThat(bounded.rejected).isNotEmpty();
+        assertThat(median(bounded.rejected)).isLessThan(median(bounded.accepted));
+        // Las ventas siguen en el mismo orden de magnitud (el carril y las conexiones de la tormenta igual usan CPU,
+        // y en una máquina de un núcleo se nota); con todos los BCrypt a la vez quedan detrás de ellos
+        assertThat(bounded.salesP99).isLessThan(Math.max(baseline * 5, baseline + 500));
+        assertThat(bounded.salesP99 * 4).isLessThan(open.salesP99);
+    }
+
+    // Olas de logins simultáneos mientras las cajas venden
+    private Storm storm(String token, String sale, String login) throws Exception {
+        AtomicBoolean storming = new AtomicBoolean(true);
+        Storm result = new Storm();
+        CompletableFuture<Void> storm = CompletableFuture.runAsync(() -> {
+            while (storming.get()) {
+                List<CompletableFuture<?>> wave = new ArrayList<>();
+                for (int i = 0; i < LOGINS_PER_WAVE; i++) {
+                    long began = System.nanoTime();
+                    wave.add(http.sendAsync(request("/auth/login", login, null), HttpResponse.BodyHandlers.discarding())
+                            .thenAccept(response -> result.record(response, (System.nanoTime() - began) / 1_000_000)));
+                }
+                CompletableFuture.allOf(wave.toArray(CompletableFuture[]::new)).join();
+            }
+        });
+        List<Long> during;
+        try {
+            during = sell(token, sale, SALES_PER_CASHIER);
+        } finally {
+            storming.set(false);
+        }
+        storm.get(2, TimeUnit.MINUTES);
+        result.salesP99 = p99(during);
+        assertThat(result.unexpected).isEmpty();
+        return result;
+    }
+
+    // Cada caja vende n veces seguidas; devuelve la latencia de cada venta en ms
+    private List<Long> sell(String token, String sale, int n) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(CASHIERS);
+        List<Future<?>> results = new ArrayList<>();
+        for (int c = 0; c < CASHIERS; c++) {
+            results.add(pool.submit(() -> {
+                for (int i = 0; i < n; i++) {
+                    long began = System.nanoTime();
+                    HttpResponse<Void> response = post("/api/sales", sale, token);
+                    latencies.add((System.nanoTime() - began) / 1_000_000);
+                    assertThat(response.statusCode()).isEqualTo(200);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(2, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return latencies;
+    }
+
+    private HttpResponse<Void> post(String path, String body, String token) throws Exception {
+        return http.send(request(path, body, token), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpRequest request(String path, String body, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) builder.header("Authorization", "Bearer " + token);
+        return builder.build();
+    }
+
+    private static long median(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+
+    private static double p99(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+    }
+
+    private static SaleRequest ticket(Product product) {
+        SaleRequest.SaleItemRequest item = new SaleRequest.SaleItemRequest();
+        item.setProductId(product.getId());
+        item.setQuantity(BigDecimal.ONE);
+        SaleRequest request = new SaleRequest();
+        request.setItems(List.of(item));
+        request.setTotalAmount(product.getPriceFinal());
+        return request;
+    }
+
+    private static final class Storm {
+        private final List<Long> accepted = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> rejected = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> unexpected = Collections.synchronizedList(new ArrayList<>());
+        private int logins;
+        private double salesP99;
+
+        synchronized void record(HttpResponse<Void> response, long millis) {
+            logins++;
+            if (response.statusCode() == 200) {
+                accepted.add(millis);
+            } else if (response.statusCode() == 503 && response.headers().firstValue("Retry-After").isPresent()) {
+                rejected.add(millis);
+            } else {
+                unexpected.add(response.statusCode() + " " + response.headers().map());
+            }
+        }
+    }
+
+    private static LoginRequest credentials(AuthenticatedUser user) {
+        LoginRequest request = new LoginRequest();
+        request.setEmail(user.getEmail());
+        request.setPassword(PASSWORD);
+        return request;
+    }
+}
@@ -0,0 +1,188 @@
+package com.saaspos.api.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.CatalogReplica;
+import com.saaspos.api.service.LowStockMonitor;
+import com.saaspos.api.service.StorefrontService;
+import com.saaspos.api.support.PostgresTestBase;
+import com.saaspos.api.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Lecturas del catálogo con un número de consultas que no depende del tamaño del catálogo (sin N+1 por
+ * categoría, proveedor o componentes de pack): cada endpoint se mide contra un tenant chico y uno grande
+ * con la misma forma, y con la réplica ya cargada no va a la BD.
+ */
+@AutoConfigureMockMvc
+class ProductReadStatementsTest extends PostgresTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CatalogReplica catalogReplica;
+
+    @Autowired
+    private LowStockMonitor lowStockMonitor;
+
+    @Autowired
+    private StorefrontService storefrontService;
+
+    private Catalog small;
+    private Catalog large;
+
+    @BeforeEach
+    void setUp() {
+        small = catalog(10);
+        large = catalog(60);
+        // Calienta Hibernate y Spring MVC con otro tenant: la primera llamada arma caches que no se miden aquí
+        Catalog warmUp = catalog(2);
+        count(() -> warmUp.fetch("/api/products"));
+        count(() -> warmUp.fetch("/api/products?limit=10"));
+        count(() -> warmUp.fetch("/api/products/low-stock"));
+        count(() -> storefrontService.getShopProducts(warmUp.slug));
+    }
+
+    @Test
+    void fullCatalogLoadsTheReplicaWithConstantStatements() {
+        long smallCold = count(() -> small.fetch("/api/products"));
+        long largeCold = count(() -> large.fetch("/api/products"));
+
+        assertThat(largeCold).isEqualTo(smallCold);
+        assertThat(count(() -> large.fetch("/api/products"))).isZero();
+    }
+
+    @Test
+    void skuLookupIsServedFromTheReplica() {
+        long smallCold = count(() -> small.fetch("/api/products/sku/" + small.products.get(0).getSku()));
+        long largeCold = count(() -> large.fetch("/api/products/sku/" + large.products.get(0).getSku()));
+
+        assertThat(largeCold).isEqualTo(smallCold);
+        assertThat(count(() -> large.fetch("/api/products/sku/" + large.products.get(59).getSku()))).isZero();
+    }
+
+    @Test
+    void listingPagesCostTheSameWhateverThePageAndCatalogSize() throws Exception {
+        long smallFirst = count(() -> small.fetch("/api/products?limit=10&sort=NAME"));
+        long largeFirst = count(() -> large.fetch("/api/products?limit=10&sort=NAME"));
+        String cursor = nextCursor(large.fetch("/api/products?limit=10&sort=NAME"));
+        long largeSecond = count(() -> large.fetch("/api/products?limit=10&sort=NAME&cursor=" + cursor));
+
+        assertThat(largeFirst).isEqualTo(smallFirst);
+        assertThat(largeSecond).isEqualTo(largeFirst);
+    }
+
+    @Test
+    void lowStockListCostsTheSameWhateverTheCatalogSize() {
+        long smallCold = count(() -> small.fetch("/api/products/low-stock"));
+        long largeCold = count(() -> large.fetch("/api/products/low-stock"));
+
+        assertThat(largeCold).isEqualTo(smallCold);
+        assertThat(count(() -> large.fetch("/api/products/low-stock"))).isZero();
+    }
+
+    @Test
+    void storefrontListingLoadsRelationsInConstantStatements() {
+        // Packs recién creados aún sin available_units: sus componentes llegan en un solo batch (default_batch_fetch_size)
+        long smallCount = count(() -> storefrontService.getShopProducts(small.slug));
+        long largeCount = count(() -> storefrontService.getShopProducts(large.slug));
+
+        assertThat(largeCount).isEqualTo(smallCount);
+        assertThat(storefrontService.getShopProducts(large.slug)).hasSize(large.products.size());
+    }
+
+    private long count(ThrowingRunnable call) {
+        StatementCounter.start();
+        try {
+            call.run();
+        } catch (Exception e) {
+            StatementCounter.stop();
+            throw new IllegalStateException(e);
+        }
+        return StatementCounter.stop();
+    }
+
+    private String nextCursor(String body) throws Exception {
+        JsonNode page = objectMapper.readTree(body);
+        return page.get("nextCursor").asText();
+    }
+
+    /**
+     * Tenant con n productos públicos: dos categorías, un proveedor, uno de cada cinco bajo el mínimo y
+     * un pack cada diez productos (con dos componentes). La réplica y el monitor parten fríos.
+     */
+    private Catalog catalog(int n) {
+        UUID tenantId = createTenant();
+        AuthenticatedUser admin = createUser(tenantId, "TENANT_ADMIN");
+        UUID[] categories = {category(tenantId, "Bebidas"), category(tenantId, "Snacks")};
+        UUID supplier = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO suppliers (id, tenant_id, name) VALUES (?, ?, ?)", supplier, tenantId, "Proveedor");
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Product product = i % 10 == 9
+                    ? createBundle(tenantId, "PACK-" + i, "2500", null, products.get(i - 1), 2, products.get(i - 2), 1)
+                    : createProduct(tenantId, "P-" + i, "1000", i % 5 == 0 ? "2" : "50");
+            jdbcTemplate.update("UPDATE products SET category_id = ?, supplier_id = ?, is_public = true WHERE id = ?",
+                    categories[i % 2], supplier, product.getId());
+            products.add(product);
+        }
+
+        String slug = "tienda-" + tenantId;
+        jdbcTemplate.update("INSERT INTO shop_configs (id, tenant_id, url_slug, shop_name) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), tenantId, slug, "Tienda");
+        catalogReplica.evict(tenantId);
+        lowStockMonitor.evict(tenantId);
+        return new Catalog(admin, products, slug);
+    }
+
+    private UUID category(UUID tenantId, String name) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO categories (id, tenant_id, name) VALUES (?, ?, ?)", id, tenantId, name);
+        return id;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    private final class Catalog {
+        private final AuthenticatedUser user;
+        private final List<Product> products;
+        private final String slug;
+
+        Catalog(AuthenticatedUser user, List<Product> products, String slug) {
+            this.user = user;
+            this.products = products;
+            this.slug = slug;
+        }
+
+        String fetch(String url) throws Exception {
+            MockHttpServletRequestBuilder request = get(url)
+                    .with(authentication(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())));
+            return mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.saaspos.api.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.ecommerce.WebOrderItemRequest;
+import com.saaspos.api.dto.ecommerce.WebOrderRequest;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.model.ecommerce.WebOrder;
+import com.saaspos.api.service.StorefrontService;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.authentication;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Al editar un pedido web cada línea sin precio manual se recotiza al precio actual del producto,
+ * también las que ya estaban en el pedido.
+ */
+@AutoConfigureMockMvc
+class WebOrderEditPricingTest extends PostgresTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StorefrontService storefrontService;
+
+    @Test
+    void editRepricesLinesWithoutCustomPrice() throws Exception {
+        UUID tenantId = createTenant();
+        AuthenticatedUser admin = createUser(tenantId, "TENANT_ADMIN");
+        Product cola = createProduct(tenantId, "COLA", "1000", "50");
+        Product chips = createProduct(tenantId, "PAPAS", "500", "50");
+        String slug = "tienda-" + tenantId;
+        jdbcTemplate.update("INSERT INTO shop_configs (id, tenant_id, url_slug, shop_name) VALUES (?, ?, ?, ?)",
+                UUID.randomUUID(), tenantId, slug, "Tienda");
+
+        WebOrder order = storefrontService.createOrder(slug, request(item(cola, 2, null)));
+        // Sube el precio después de tomado el pedido
+        jdbcTemplate.update("UPDATE products SET price_final = 1200, price_neto = 1008.4034 WHERE id = ?", cola.getId());
+
+        mockMvc.perform(put("/api/admin/web-orders/" + order.getOrderNumber() + "/items")
+                        .with(authentication(new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request(item(cola, 3, null), item(chips, 1, new BigDecimal("450"))))))
+                .andExpect(status().isOk());
+
+        Map<String, Object> colaLine = line(order.getId(), cola.getId());
+        assertThat((BigDecimal) colaLine.get("unit_price_at_moment")).isEqualByComparingTo("1200");
+        assertThat((BigDecimal) colaLine.get("subtotal")).isEqualByComparingTo("3600");
+        assertThat((BigDecimal) line(order.getId(), chips.getId()).get("unit_price_at_moment")).isEqualByComparingTo("450");
+        assertThat(jdbcTemplate.queryForObject("SELECT final_total FROM web_orders WHERE id = ?", BigDecimal.class, order.getId()))
+                .isEqualByComparingTo("4050");
+    }
+
+    private Map<String, Object> line(UUID orderId, UUID productId) {
+        return jdbcTemplate.queryForMap("SELECT unit_price_at_moment, subtotal FROM web_order_items WHERE web_order_id = ? AND product_id = ?",
+                orderId, productId);
+    }
+
+    private static WebOrderRequest request(WebOrderItemRequest... items) {
+        WebOrderRequest request = new WebOrderRequest();
+        request.setCustomerName("Cliente");
+        request.setCustomerPhone("+56911111111");
+        request.setDeliveryMethod("PICKUP");
+        request.setPaymentMethod("CASH");
+        request.setItems(List.of(items));
+        return request;
+    }
+
+    private static WebOrderItemRequest item(Product product, int quantity, BigDecimal customPrice) {
+        WebOrderItemRequest item = new WebOrderItemRequest();
+        item.setProductId(product.getId());
+        item.setQuantity(quantity);
+        item.setCustomPrice(customPrice);
+        return item;
+    }
+}
@@ -0,0 +1,106 @@
+package com.saaspos.api.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainEventBusTest {
+
+    private final DomainEventBus bus = new DomainEventBus(100);
+    private final List<Object> delivered = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        // Simula la transacción de Spring sin BD: se disparan a mano los callbacks del commit
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        bus.shutdown();
+    }
+
+    @Test
+    void deliversOnlyAfterCommit() {
+        bus.onCommit(ProductUpdated.class, delivered::add);
+        ProductUpdated event = productUpdated();
+
+        bus.publish(event);
+        assertThat(delivered).isEmpty();
+
+        commit();
+        assertThat(delivered).containsExactly(event);
+    }
+
+    @Test
+    void discardsOnRollback() {
+        bus.onCommit(ProductUpdated.class, delivered::add);
+
+        bus.publish(productUpdated());
+        rollback();
+
+        assertThat(delivered).isEmpty();
+    }
+
+    @Test
+    void eventPublishedFromOnCommitListenerIsNotLost() {
+        StockChanged follow = new StockChanged(UUID.randomUUID(), UUID.randomUUID(),
+                BigDecimal.valueOf(5), BigDecimal.ZERO, BigDecimal.valueOf(2));
+        bus.onCommit(ProductUpdated.class, e -> bus.publish(follow));
+        bus.onCommit(StockChanged.class, delivered::add);
+
+        bus.publish(productUpdated());
+        commit();
+
+        assertThat(delivered).containsExactly(follow);
+    }
+
+    @Test
+    void eventPublishedAfterOwnCommitCallbackIsDeliveredDirectly() {
+        bus.onCommit(ProductUpdated.class, delivered::add);
+        ProductUpdated first = productUpdated();
+        ProductUpdated late = productUpdated();
+
+        bus.publish(first);
+        // Otra sincronización registrada después de la del bus publica en su afterCommit
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bus.publish(late);
+            }
+        });
+        commit();
+
+        assertThat(delivered).containsExactly(first, late);
+    }
+
+    private void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCommit(synchronizations);
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private void rollback() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationUtils.invokeAfterCompletion(synchronizations, TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private static ProductUpdated productUpdated() {
+        return new ProductUpdated(UUID.randomUUID(), UUID.randomUUID(), ProductUpdated.Change.UPDATED);
+    }
+}
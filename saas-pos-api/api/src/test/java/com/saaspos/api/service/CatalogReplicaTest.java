@@ -0,0 +1,67 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Réplica con varias instancias: los cambios hechos por otra instancia no llegan por eventos (acá, SQL directo
+ * sin publicar nada) y se detectan comparando la versión del catálogo.
+ */
+class CatalogReplicaTest extends PostgresTestBase {
+
+    @Autowired
+    private CatalogReplica catalogReplica;
+
+    private UUID tenantId;
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+    }
+
+    @Test
+    void catalogEditFromAnotherInstanceIsPickedUpOnTheNextCheck() {
+        Product product = createProduct(tenantId, "COLA", "1000", "50");
+        assertThat(scan("COLA").getPriceFinal()).isEqualByComparingTo("1000");
+
+        jdbcTemplate.update("UPDATE products SET price_final = 1200 WHERE id = ?", product.getId());
+        catalogReplica.checkVersions();
+
+        assertThat(scan("COLA").getPriceFinal()).isEqualByComparingTo("1200");
+    }
+
+    @Test
+    void newProductFromAnotherInstanceIsPickedUpOnTheNextCheck() {
+        createProduct(tenantId, "COLA", "1000", "50");
+        assertThat(catalogReplica.findAll(tenantId)).hasSize(1);
+
+        createProduct(tenantId, "PAPAS", "800", "20");
+        catalogReplica.checkVersions();
+
+        assertThat(catalogReplica.findBySku(tenantId, "PAPAS")).isPresent();
+    }
+
+    @Test
+    void stockSoldInAnotherInstanceDoesNotEvictTheCatalog() {
+        Product product = createProduct(tenantId, "COLA", "1000", "50");
+        assertThat(scan("COLA").getStockCurrent()).isEqualByComparingTo("50");
+
+        // Las ventas no avanzan la versión: ese stock espera la recarga por ttl
+        jdbcTemplate.update("UPDATE products SET stock_current = 47 WHERE id = ?", product.getId());
+        catalogReplica.checkVersions();
+
+        assertThat(scan("COLA").getStockCurrent()).isEqualByComparingTo("50");
+    }
+
+    private ProductDto scan(String sku) {
+        return catalogReplica.findBySku(tenantId, sku).orElseThrow();
+    }
+}
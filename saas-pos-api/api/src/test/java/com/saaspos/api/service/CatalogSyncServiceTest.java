@@ -0,0 +1,187 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.CatalogChangesDto;
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.model.Category;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Versionado del catálogo de V35 contra el esquema real: qué cambios avanzan la versión (y cuáles no), lápidas
+ * de archivados y borrados, packs que cambian por sus componentes, paginado con hasMore y recarga completa
+ * cuando las lápidas ya se depuraron.
+ */
+class CatalogSyncServiceTest extends PostgresTestBase {
+
+    @Autowired
+    private CatalogSyncService catalogSyncService;
+
+    private UUID tenantId;
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+    }
+
+    @Test
+    void insertAndCatalogUpdatesBumpTheVersionButStockOnlyUpdatesDoNot() {
+        Product product = createProduct(tenantId, "COLA", "1000", "50");
+        long created = versionOf(product.getId());
+        assertThat(productIds(catalogSyncService.changes(tenantId, 0, 100))).containsExactly(product.getId());
+
+        jdbcTemplate.update("UPDATE products SET price_final = 1200 WHERE id = ?", product.getId());
+        long repriced = versionOf(product.getId());
+        assertThat(repriced).isGreaterThan(created);
+        CatalogChangesDto sinceCreated = catalogSyncService.changes(tenantId, created, 100);
+        assertThat(productIds(sinceCreated)).containsExactly(product.getId());
+        assertThat(sinceCreated.getVersion()).isEqualTo(repriced);
+
+        // Ventas, ledger y packs solo tocan stock: no le cambian nada al terminal
+        jdbcTemplate.update("UPDATE products SET stock_current = stock_current - 3, available_units = 7 WHERE id = ?",
+                product.getId());
+        assertThat(versionOf(product.getId())).isEqualTo(repriced);
+        CatalogChangesDto afterStock = catalogSyncService.changes(tenantId, repriced, 100);
+        assertThat(afterStock.getProducts()).isEmpty();
+        assertThat(afterStock.getVersion()).isEqualTo(repriced);
+        assertThat(afterStock.isHasMore()).isFalse();
+    }
+
+    @Test
+    void archivedAndDeletedRowsComeBackAsTombstones() {
+        Product archived = createProduct(tenantId, "ARCHIVADO", "1000", "5");
+        Product deleted = createProduct(tenantId, "BORRADO", "1000", "5");
+        Product kept = createProduct(tenantId, "VIGENTE", "1000", "5");
+        UUID category = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO categories (id, tenant_id, name) VALUES (?, ?, ?)", category, tenantId, "Temporada");
+        CatalogChangesDto initial = catalogSyncService.changes(tenantId, 0, 100);
+        assertThat(categoryIds(initial)).containsExactly(category);
+        long before = initial.getVersion();
+
+        jdbcTemplate.update("UPDATE products SET is_active = false WHERE id = ?", archived.getId());
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", deleted.getId());
+        jdbcTemplate.update("DELETE FROM categories WHERE id = ?", category);
+
+        CatalogChangesDto changes = catalogSyncService.changes(tenantId, before, 100);
+        assertThat(changes.getDeletedProducts()).containsExactlyInAnyOrder(archived.getId(), deleted.getId());
+        assertThat(changes.getDeletedCategories()).containsExactly(category);
+        assertThat(changes.getProducts()).isEmpty();
+
+        // Carga inicial: solo lo vigente, sin lápidas
+        CatalogChangesDto full = catalogSyncService.changes(tenantId, 0, 100);
+        assertThat(productIds(full)).containsExactly(kept.getId());
+        assertThat(full.getDeletedProducts()).isEmpty();
+        assertThat(full.getDeletedCategories()).isEmpty();
+    }
+
+    @Test
+    void bundleItemChangesStampTheBundleOnly() {
+        Product cola = createProduct(tenantId, "COLA", "1000", "50");
+        Product chips = createProduct(tenantId, "PAPAS", "800", "50");
+        Product combo = createBundle(tenantId, "COMBO", "1500", null, cola, 1);
+        long colaVersion = versionOf(cola.getId());
+        long chipsVersion = versionOf(chips.getId());
+
+        long before = versionOf(combo.getId());
+        jdbcTemplate.update("UPDATE bundle_items SET quantity = 2 WHERE bundle_product_id = ?", combo.getId());
+        long updated = assertBundleStamped(combo, before);
+
+        jdbcTemplate.update("INSERT INTO bundle_items (id, bundle_product_id, component_product_id, quantity) VALUES (?, ?, ?, 1)",
+                UUID.randomUUID(), combo.getId(), chips.getId());
+        long added = assertBundleStamped(combo, updated);
+
+        jdbcTemplate.update("DELETE FROM bundle_items WHERE bundle_product_id = ? AND component_product_id = ?",
+                combo.getId(), cola.getId());
+        assertBundleStamped(combo, added);
+
+        // Los componentes no cambiaron
+        assertThat(versionOf(cola.getId())).isEqualTo(colaVersion);
+        assertThat(versionOf(chips.getId())).isEqualTo(chipsVersion);
+    }
+
+    @Test
+    void pagesWithHasMoreDeliverEveryChangeExactlyOnce() {
+        List<UUID> expected = new ArrayList<>();
+        for (int i = 0; i < 23; i++) {
+            expected.add(createProduct(tenantId, "P-" + i, "1000", "5").getId());
+        }
+        // Editados después de creados: van al final, una sola vez
+        jdbcTemplate.update("UPDATE products SET name = name || ' (editado)' WHERE id IN (?, ?)", expected.get(0), expected.get(5));
+
+        List<UUID> delivered = new ArrayList<>();
+        long since = 0;
+        int pages = 0;
+        CatalogChangesDto page;
+        do {
+            page = catalogSyncService.changes(tenantId, since, 10);
+            assertThat(page.getVersion()).isGreaterThan(since);
+            delivered.addAll(productIds(page));
+            since = page.getVersion();
+            pages++;
+        } while (page.isHasMore());
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(delivered).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(expected);
+        // 10 + 10 + 3: los dos editados cierran la última página junto al último creado
+        assertThat(productIds(page)).containsExactlyInAnyOrder(expected.get(22), expected.get(0), expected.get(5));
+        assertThat(since).isEqualTo(currentVersion());
+        assertThat(catalogSyncService.changes(tenantId, since, 10).getProducts()).isEmpty();
+    }
+
+    @Test
+    void prunedTombstonesForceAFullResync() {
+        Product kept = createProduct(tenantId, "VIGENTE", "1000", "5");
+        Product gone = createProduct(tenantId, "BORRADO", "1000", "5");
+        long terminal = currentVersion();
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", gone.getId());
+        long afterDelete = currentVersion();
+
+        jdbcTemplate.update("UPDATE catalog_tombstones SET deleted_at = ? WHERE tenant_id = ?",
+                LocalDateTime.now().minusDays(365), tenantId);
+        catalogSyncService.pruneTombstones();
+
+        // El terminal quedó antes de la lápida depurada: no puede saber qué borrar, recarga todo
+        CatalogChangesDto stale = catalogSyncService.changes(tenantId, terminal, 100);
+        assertThat(stale.isFullResync()).isTrue();
+        assertThat(productIds(stale)).containsExactly(kept.getId());
+        assertThat(stale.getDeletedProducts()).isEmpty();
+        assertThat(stale.getVersion()).isEqualTo(afterDelete);
+
+        // Al día: sigue incremental
+        CatalogChangesDto current = catalogSyncService.changes(tenantId, afterDelete, 100);
+        assertThat(current.isFullResync()).isFalse();
+        assertThat(current.getProducts()).isEmpty();
+    }
+
+    private long assertBundleStamped(Product bundle, long before) {
+        long after = versionOf(bundle.getId());
+        assertThat(after).isGreaterThan(before);
+        assertThat(productIds(catalogSyncService.changes(tenantId, before, 100))).containsExactly(bundle.getId());
+        return after;
+    }
+
+    private long versionOf(UUID productId) {
+        return jdbcTemplate.queryForObject("SELECT catalog_version FROM products WHERE id = ?", Long.class, productId);
+    }
+
+    private long currentVersion() {
+        return jdbcTemplate.queryForObject("SELECT version FROM catalog_versions WHERE tenant_id = ?", Long.class, tenantId);
+    }
+
+    private static List<UUID> productIds(CatalogChangesDto changes) {
+        return changes.getProducts().stream().map(ProductDto::getId).toList();
+    }
+
+    private static List<UUID> categoryIds(CatalogChangesDto changes) {
+        return changes.getCategories().stream().map(Category::getId).toList();
+    }
+}
@@ -0,0 +1,216 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotStockLedgerTest {
+
+    private static final UUID TENANT = UUID.fromString("00000000-0000-0000-0000-0000000000aa");
+    private static final UUID HOT = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID UNLIMITED = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private JdbcTemplate jdbc;
+    private HotStockLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = mock(JdbcTemplate.class);
+        // Stock sembrado desde products + diario pendiente (SEED_SQL)
+        when(jdbc.queryForList(anyString(), eq(BigDecimal.class), eq(HOT))).thenReturn(List.of(new BigDecimal("100")));
+        when(jdbc.queryForList(anyString(), eq(BigDecimal.class), eq(UNLIMITED))).thenReturn(Collections.singletonList(null));
+        ledger = new HotStockLedger(jdbc, null, TENANT.toString(), HOT.toString(), 500);
+    }
+
+    @Test
+    void handlesEnabledTenantsAndProducts() {
+        Product byProduct = new Product();
+        byProduct.setId(HOT);
+        Product byTenant = new Product();
+        byTenant.setId(UUID.randomUUID());
+        byTenant.setTenantId(TENANT);
+        Product other = new Product();
+        other.setId(UUID.randomUUID());
+        other.setTenantId(UUID.randomUUID());
+
+        assertThat(ledger.handles(byProduct)).isTrue();
+        assertThat(ledger.handles(byTenant)).isTrue();
+        assertThat(ledger.handles(other)).isFalse();
+    }
+
+    @Test
+    void concurrentTransactionsWithRollbacksKeepOnlyCommittedDeltas() throws Exception {
+        // Cada hilo es una "transacción": salidas de 1 a 3 unidades y devoluciones; una de cada tres hace rollback
+        int transactions = 400;
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<BigDecimal> committed = new AtomicReference<>(BigDecimal.ZERO);
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < transactions; i++) {
+            BigDecimal delta = i % 7 == 0 ? new BigDecimal("2") : BigDecimal.valueOf(-(i % 3 + 1));
+            boolean rollback = i % 3 == 0;
+            results.add(pool.submit(() -> {
+                start.await();
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    BigDecimal[] result = ledger.tryApply(HOT, delta);
+                    if (result == null) {
+                        rejected.incrementAndGet();
+                        return null;
+                    }
+                    assertThat(result[1].signum()).isGreaterThanOrEqualTo(0);
+                    TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                            rollback ? TransactionSynchronization.STATUS_ROLLED_BACK : TransactionSynchronization.STATUS_COMMITTED);
+                    if (!rollback) committed.accumulateAndGet(delta, BigDecimal::add);
+                } finally {
+                    TransactionSynchronizationManager.clearSynchronization();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        // Lo que queda es el stock inicial más lo confirmado: los rollbacks no dejan rastro
+        BigDecimal remaining = new BigDecimal("100").add(committed.get());
+        assertThat(rejected.get()).isPositive();
+        assertThat(remaining.signum()).isGreaterThanOrEqualTo(0);
+        assertThat(ledger.tryApply(HOT, remaining.negate())).containsExactly(remaining, BigDecimal.ZERO);
+        assertThat(ledger.tryApply(HOT, new BigDecimal("-1"))).isNull();
+        // Se siembra una sola vez desde la BD
+        verify(jdbc, times(1)).queryForList(anyString(), eq(BigDecimal.class), eq(HOT));
+    }
+
+    @Test
+    void rollbackRevertsTheDelta() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(ledger.tryApply(HOT, new BigDecimal("-30"))).containsExactly(new BigDecimal("100"), new BigDecimal("70"));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(ledger.tryApply(HOT, new BigDecimal("-100"))).containsExactly(new BigDecimal("100"), BigDecimal.ZERO);
+    }
+
+    @Test
+    void resetWaitsForInFlightSalesAndReseedsAfterCommit() throws Exception {
+        // Conteo manual: en BD queda 40 y el diario vacío
+        when(jdbc.queryForList(anyString(), eq(BigDecimal.class), eq(HOT)))
+                .thenReturn(List.of(new BigDecimal("100")), List.of(new BigDecimal("40")));
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch resetDone = new CountDownLatch(1);
+        CountDownLatch commitReset = new CountDownLatch(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertThat(ledger.tryApply(HOT, new BigDecimal("-10"))).containsExactly(new BigDecimal("100"), new BigDecimal("90"));
+
+            Future<?> reset = pool.submit(() -> inTransaction(() -> {
+                ledger.reset(HOT);
+                resetDone.countDown();
+                commitReset.await();
+            }));
+            // La venta sigue abierta: el ajuste no puede borrar el diario todavía
+            assertThat(resetDone.await(300, TimeUnit.MILLISECONDS)).isFalse();
+
+            commitSale();
+            assertThat(resetDone.await(5, TimeUnit.SECONDS)).isTrue();
+            verify(jdbc).update(anyString(), eq(HOT));
+
+            // Una venta nueva espera el commit del ajuste y luego siembra el stock guardado
+            Future<BigDecimal[]> sale = pool.submit(() -> ledger.tryApply(HOT, new BigDecimal("-40")));
+            Thread.sleep(200);
+            assertThat(sale.isDone()).isFalse();
+            commitReset.countDown();
+            reset.get(5, TimeUnit.SECONDS);
+            assertThat(sale.get(5, TimeUnit.SECONDS)).containsExactly(new BigDecimal("40"), BigDecimal.ZERO);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            pool.shutdown();
+        }
+        verify(jdbc, times(2)).queryForList(anyString(), eq(BigDecimal.class), eq(HOT));
+    }
+
+    @Test
+    void rolledBackResetReseedsFromTheRestoredJournal() throws Exception {
+        assertThat(ledger.tryApply(HOT, new BigDecimal("-10"))).containsExactly(new BigDecimal("100"), new BigDecimal("90"));
+        // Sin commit del ajuste, la BD vuelve a dar products + diario
+        when(jdbc.queryForList(anyString(), eq(BigDecimal.class), eq(HOT))).thenReturn(List.of(new BigDecimal("90")));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            ledger.reset(HOT);
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(ledger.tryApply(HOT, new BigDecimal("-90"))).containsExactly(new BigDecimal("90"), BigDecimal.ZERO);
+    }
+
+    @Test
+    void resetOutsideATransactionIsRejected() {
+        assertThatThrownBy(() -> ledger.reset(HOT)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void unlimitedProductAlwaysPasses() {
+        assertThat(ledger.tryApply(UNLIMITED, new BigDecimal("-1000"))).containsExactly(null, null);
+    }
+
+    private static void commitSale() {
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static Void inTransaction(ThrowingRunnable body) throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            body.run();
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
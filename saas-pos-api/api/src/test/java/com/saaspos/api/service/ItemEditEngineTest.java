@@ -0,0 +1,110 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.ItemEditEngine.Edit;
+import com.saaspos.api.service.ItemEditEngine.Line;
+import com.saaspos.api.service.StockService.StockPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.saaspos.api.service.StockPlanTest.product;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ItemEditEngineTest {
+
+    private StockService stockService;
+    private ItemEditEngine engine;
+
+    private final Product cola = product("00000000-0000-0000-0000-000000000001");
+    private final Product bread = product("00000000-0000-0000-0000-000000000002");
+    private final Product cheese = product("00000000-0000-0000-0000-000000000003");
+
+    // Ítem actual de un ticket (SaleItem / WebOrderItem)
+    private record Item(Product product, BigDecimal quantity) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        stockService = mock(StockService.class);
+        engine = new ItemEditEngine(stockService);
+    }
+
+    @Test
+    void matchesExistingItemsAndListsRemoved() {
+        Item colaItem = new Item(cola, new BigDecimal("2"));
+        Item breadItem = new Item(bread, new BigDecimal("1"));
+        Line colaLine = new Line(cola, new BigDecimal("3"));
+        Line cheeseLine = new Line(cheese, new BigDecimal("1"));
+
+        Edit<Item> edit = diff(List.of(colaItem, breadItem), List.of(colaLine, cheeseLine));
+
+        assertThat(edit.itemFor(colaLine)).isSameAs(colaItem);
+        assertThat(edit.itemFor(cheeseLine)).isNull();
+        assertThat(edit.getRemoved()).containsExactly(breadItem);
+    }
+
+    @Test
+    void repeatedProductMatchesOneItemPerLine() {
+        Item first = new Item(cola, new BigDecimal("1"));
+        Item second = new Item(cola, new BigDecimal("1"));
+        Line only = new Line(cola, new BigDecimal("2"));
+
+        Edit<Item> edit = diff(List.of(first, second), List.of(only));
+
+        assertThat(edit.itemFor(only)).isSameAs(first);
+        assertThat(edit.getRemoved()).containsExactly(second);
+    }
+
+    @Test
+    void stockPlanCarriesOnlyNetChanges() {
+        // cola 2 -> 3 (sale 1), pan 1 -> 0 (vuelve 1), queso nuevo (sale 1), nada cambia para el resto
+        Edit<Item> edit = diff(
+                List.of(new Item(cola, new BigDecimal("2")), new Item(bread, new BigDecimal("1"))),
+                List.of(new Line(cola, new BigDecimal("3")), new Line(cheese, new BigDecimal("1"))));
+
+        Map<UUID, BigDecimal> deltas = appliedPlan(edit).getDeltas();
+        assertThat(deltas.get(cola.getId())).isEqualByComparingTo("-1");
+        assertThat(deltas.get(bread.getId())).isEqualByComparingTo("1");
+        assertThat(deltas.get(cheese.getId())).isEqualByComparingTo("-1");
+    }
+
+    @Test
+    void unchangedTicketProducesEmptyPlan() {
+        Edit<Item> edit = diff(
+                List.of(new Item(cola, new BigDecimal("2"))),
+                List.of(new Line(cola, new BigDecimal("2.000"))));
+
+        assertThat(appliedPlan(edit).isEmpty()).isTrue();
+    }
+
+    @Test
+    void currentItemsResolveToLoadedProducts() {
+        // El ítem trae un proxy/copia del producto; el plan debe usar la instancia cargada (con sus componentes)
+        Product staleCola = product(cola.getId().toString());
+        Edit<Item> edit = diff(List.of(new Item(staleCola, BigDecimal.ONE)), List.of());
+
+        StockPlan plan = appliedPlan(edit);
+        assertThat(plan.getProduct(cola.getId())).isSameAs(cola);
+        assertThat(plan.getDeltas().get(cola.getId())).isEqualByComparingTo("1");
+    }
+
+    private Edit<Item> diff(List<Item> current, List<Line> requested) {
+        Map<UUID, Product> products = Map.of(cola.getId(), cola, bread.getId(), bread, cheese.getId(), cheese);
+        return engine.diff(current, requested, products, Item::product, Item::quantity);
+    }
+
+    private StockPlan appliedPlan(Edit<?> edit) {
+        engine.applyStock(edit);
+        ArgumentCaptor<StockPlan> captor = ArgumentCaptor.forClass(StockPlan.class);
+        verify(stockService).apply(captor.capture());
+        return captor.getValue();
+    }
+}
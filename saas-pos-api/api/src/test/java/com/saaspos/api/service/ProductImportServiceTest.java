@@ -0,0 +1,298 @@
+package com.saaspos.api.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saaspos.api.dto.ProductImportResult;
+import com.saaspos.api.model.Plan;
+import com.saaspos.api.model.Tenant;
+import com.saaspos.api.repository.ProductRepository;
+import com.saaspos.api.repository.TenantRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Lectura del CSV, validación, repetidos y límite del plan sin BD: el JdbcTemplate simulado devuelve los SKU
+ * existentes y guarda los arreglos del unnest de cada INSERT/UPDATE para revisar qué se habría escrito.
+ */
+class ProductImportServiceTest {
+
+    private static final UUID TENANT_ID = UUID.randomUUID();
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final TenantRepository tenantRepository = mock(TenantRepository.class);
+    private final FolioService folioService = mock(FolioService.class);
+    private final ProductImportService service = new ProductImportService(jdbcTemplate, mock(PlatformTransactionManager.class),
+            productRepository, tenantRepository, folioService, mock(InventoryLogOutbox.class), mock(CatalogReplica.class),
+            mock(CatalogSyncService.class), mock(LowStockMonitor.class), new ObjectMapper(), 500, 1000);
+
+    private final Plan plan = new Plan();
+    private final Set<String> existing = new HashSet<>();
+    private final List<Map<String, Object>> written = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Tenant tenant = new Tenant();
+        tenant.setPlan(plan);
+        when(tenantRepository.findById(TENANT_ID)).thenReturn(Optional.of(tenant));
+
+        AtomicLong folio = new AtomicLong();
+        when(folioService.next(eq(TENANT_ID), anyString())).thenAnswer(inv -> "GEN-" + folio.incrementAndGet());
+
+        // SKU ya existentes en el tenant (consulta del límite del plan)
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class)))
+                .thenAnswer(inv -> {
+                    List<Object[]> arrays = statementArrays(inv.getArgument(0));
+                    List<String> found = new ArrayList<>();
+                    for (Object sku : arrays.get(0)) {
+                        if (existing.contains(sku)) found.add((String) sku);
+                    }
+                    return found;
+                });
+
+        // INSERT y UPDATE: se guardan las filas del unnest y se devuelve una fila por SKU, como el RETURNING
+        doAnswer(inv -> {
+            List<Object[]> arrays = statementArrays(inv.getArgument(0));
+            RowCallbackHandler handler = inv.getArgument(1);
+            for (int i = 0; i < arrays.get(1).length; i++) {
+                Map<String, Object> row = new HashMap<>();
+                row.put("sku", arrays.get(1)[i]);
+                row.put("name", arrays.get(2)[i]);
+                row.put("description", arrays.get(3)[i]);
+                row.put("price_final", arrays.get(5)[i]);
+                row.put("is_tax_included", arrays.get(6)[i]);
+                row.put("tax_percent", arrays.get(7)[i]);
+                written.add(row);
+
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("sku")).thenReturn((String) arrays.get(1)[i]);
+                when(rs.getObject("id", UUID.class)).thenReturn((UUID) arrays.get(0)[i]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void detectsSemicolonDelimiterFromSpanishExcel() {
+        ProductImportResult result = importCsv("""
+                sku;name;price_final
+                A-1;Bebida, 1 litro;1.190,5
+                """);
+
+        // Con ';' la coma queda dentro del nombre; "1.190,5" no se interpreta como número
+        assertThat(result.getFailed()).isEqualTo(1);
+        assertThat(result.getErrors().get(0).getError()).isEqualTo("Valor numérico inválido en 'pricefinal': 1.190,5");
+
+        ProductImportResult ok = importCsv("""
+                sku;name;price_final
+                A-2;Bebida, 1 litro;1190
+                """);
+        assertThat(ok.getCreated()).isEqualTo(1);
+        assertThat(written).singleElement().satisfies(row -> {
+            assertThat(row).containsEntry("name", "Bebida, 1 litro");
+            assertThat((BigDecimal) row.get("price_final")).isEqualByComparingTo("1190");
+        });
+    }
+
+    @Test
+    void commaDelimiterWinsWhenItIsTheMajority() {
+        ProductImportResult result = importCsv("""
+                sku,name,description
+                B-1,Galletas,dulce;salado
+                """);
+
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(written).singleElement().satisfies(row -> assertThat(row).containsEntry("description", "dulce;salado"));
+    }
+
+    @Test
+    void stripsExcelBomFromFirstHeader() {
+        ProductImportResult result = importCsv("\uFEFFsku,name\nC-1,Café\n");
+
+        assertThat(result.getFailed()).isZero();
+        assertThat(written).singleElement().satisfies(row -> assertThat(row).containsEntry("sku", "C-1"));
+    }
+
+    @Test
+    void quotedFieldsKeepDelimitersEscapedQuotesAndLineBreaks() {
+        ProductImportResult result = importCsv("""
+                sku,name,description
+                D-1,"Vino ""Reserva"", 750cc","Línea uno
+                línea dos, con coma"
+                D-2,Pan,simple
+                """);
+
+        assertThat(result.getTotalRows()).isEqualTo(2);
+        assertThat(result.getCreated()).isEqualTo(2);
+        assertThat(written.get(0))
+                .containsEntry("name", "Vino \"Reserva\", 750cc")
+                .containsEntry("description", "Línea uno\nlínea dos, con coma");
+        assertThat(written.get(1)).containsEntry("sku", "D-2");
+    }
+
+    @Test
+    void unclosedQuoteStopsTheLoadAndReportsTheRow() {
+        ProductImportResult result = importCsv("""
+                sku,name
+                E-1,Primero
+                E-2,"Sin cerrar
+                """);
+
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getErrors()).singleElement().satisfies(e -> {
+            assertThat(e.getRow()).isEqualTo(2);
+            assertThat(e.getError()).contains("Comillas sin cerrar");
+        });
+    }
+
+    @Test
+    void invalidNumbersBooleansAndRangesAreRowErrors() {
+        ProductImportResult result = importCsv("""
+                sku,name,price_final,is_tax_included,tax_percent,stock_current
+                F-1,Malo número,12abc,,,
+                F-2,Malo booleano,100,quizás,,
+                F-3,Negativo,-1,,,
+                F-4,IVA alto,100,,150,
+                F-5,,100,,,
+                F-6,Bueno,1 190,sí,19,3
+                """);
+
+        assertThat(result.getTotalRows()).isEqualTo(6);
+        assertThat(result.getFailed()).isEqualTo(5);
+        assertThat(result.getErrors()).extracting(ProductImportResult.RowError::getError).containsExactly(
+                "Valor numérico inválido en 'pricefinal': 12abc",
+                "Valor sí/no inválido en 'istaxincluded': quizás",
+                "Precios y stock no pueden ser negativos",
+                "IVA fuera de rango",
+                "El nombre es obligatorio");
+        assertThat(written).singleElement().satisfies(row -> {
+            assertThat((BigDecimal) row.get("price_final")).isEqualByComparingTo("1190");
+            assertThat(row).containsEntry("is_tax_included", true);
+        });
+    }
+
+    @Test
+    void missingTaxColumnsStayNullSoExistingProductsKeepTheirs() {
+        importCsv("""
+                sku,name,price_final
+                G-1,Solo precio,990
+                """);
+
+        assertThat(written).singleElement().satisfies(row -> assertThat(row)
+                .containsEntry("is_tax_included", null)
+                .containsEntry("tax_percent", null));
+    }
+
+    @Test
+    void repeatedSkuInTheFileKeepsTheFirstRow() {
+        ProductImportResult result = importCsv("""
+                sku,name
+                H-1,Primero
+                H-2,Otro
+                H-1,Repetido
+                ,Generado
+                """);
+
+        assertThat(result.getCreated()).isEqualTo(3);
+        assertThat(result.getErrors()).singleElement().satisfies(e -> {
+            assertThat(e.getRow()).isEqualTo(3);
+            assertThat(e.getSku()).isEqualTo("H-1");
+            assertThat(e.getError()).isEqualTo("SKU repetido en el archivo");
+        });
+        assertThat(written).extracting(row -> row.get("name")).containsExactly("Primero", "Otro", "Generado");
+        assertThat(written).extracting(row -> row.get("sku")).contains("GEN-1");
+    }
+
+    @Test
+    void planLimitCutsOffOnlyNewSkus() {
+        plan.setMaxProducts(3);
+        when(productRepository.countByTenantId(TENANT_ID)).thenReturn(2L);
+        existing.add("I-OLD");
+
+        ProductImportResult result = importCsv("""
+                sku,name
+                I-1,Entra
+                I-OLD,Existente
+                I-2,Fuera
+                I-3,Fuera
+                """);
+
+        // Queda un cupo: entra el primer nuevo, el existente se actualiza igual y los demás nuevos se rechazan
+        assertThat(result.getCreated()).isEqualTo(1);
+        assertThat(result.getUpdated()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ProductImportResult.RowError::getSku).containsExactly("I-2", "I-3");
+        assertThat(result.getErrors()).allSatisfy(e -> assertThat(e.getError()).isEqualTo("Límite de productos del plan alcanzado (3)"));
+    }
+
+    @Test
+    void planLimitCountsProductsCreatedByEarlierBatches() {
+        ProductImportService smallBatches = new ProductImportService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                productRepository, tenantRepository, folioService, mock(InventoryLogOutbox.class), mock(CatalogReplica.class),
+                mock(CatalogSyncService.class), mock(LowStockMonitor.class), new ObjectMapper(), 2, 1000);
+        plan.setMaxProducts(3);
+
+        ProductImportResult result = smallBatches.importProducts(TENANT_ID, null, csv("""
+                sku,name
+                J-1,a
+                J-2,b
+                J-3,c
+                J-4,d
+                J-5,e
+                """), false);
+
+        assertThat(result.getCreated()).isEqualTo(3);
+        assertThat(result.getErrors()).extracting(ProductImportResult.RowError::getSku).containsExactly("J-4", "J-5");
+    }
+
+    private ProductImportResult importCsv(String content) {
+        written.clear();
+        return service.importProducts(TENANT_ID, null, csv(content), false);
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Ejecuta el PreparedStatementCreator contra una conexión simulada y devuelve los arreglos en orden de parámetro
+    private static List<Object[]> statementArrays(PreparedStatementCreator creator) throws Exception {
+        List<Object[]> arrays = new ArrayList<>();
+        Connection con = mock(Connection.class);
+        when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(con.createArrayOf(anyString(), any(Object[].class))).thenAnswer(inv -> {
+            arrays.add(inv.getArgument(1));
+            return mock(Array.class);
+        });
+        creator.createPreparedStatement(con);
+        return arrays;
+    }
+}
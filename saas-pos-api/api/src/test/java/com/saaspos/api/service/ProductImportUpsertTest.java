@@ -0,0 +1,132 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.ProductImportResult;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProductImportUpsertTest extends PostgresTestBase {
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    private UUID tenantId;
+    private AuthenticatedUser admin;
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+        admin = createUser(tenantId, "TENANT_ADMIN");
+    }
+
+    @Test
+    void priceOnlyFileKeepsTaxSettingsOfExistingProducts() {
+        Product exempt = createProduct(tenantId, "EXENTO", "1000", "10");
+        setTax(exempt.getId(), "0", false, "1000");
+        Product net = createProduct(tenantId, "NETO", "1000", "10");
+        setTax(net.getId(), "19", false, "1000");
+        createProduct(tenantId, "NORMAL", "1190", "10");
+
+        ProductImportResult result = importCsv("""
+                sku;name;priceFinal
+                EXENTO;Exento;1500
+                NETO;Sin IVA;2000
+                NORMAL;Normal;2380
+                """);
+
+        assertThat(result.getUpdated()).isEqualTo(3);
+        assertThat(row("EXENTO")).containsEntry("is_tax_included", false);
+        assertThat((BigDecimal) row("EXENTO").get("tax_percent")).isEqualByComparingTo("0");
+        assertThat((BigDecimal) row("EXENTO").get("price_neto")).isEqualByComparingTo("1500");
+        assertThat(row("NETO")).containsEntry("is_tax_included", false);
+        assertThat((BigDecimal) row("NETO").get("price_neto")).isEqualByComparingTo("2000");
+        assertThat((BigDecimal) row("NORMAL").get("price_neto")).isEqualByComparingTo("2000");
+    }
+
+    @Test
+    void taxOnlyFileRecomputesNetPrice() {
+        createProduct(tenantId, "NORMAL", "2380", "10");
+
+        importCsv("""
+                sku,name,taxPercent
+                NORMAL,Normal,10
+                """);
+
+        // 2380 / 1.10 = 2163.63636...
+        assertThat((BigDecimal) row("NORMAL").get("price_neto")).isEqualByComparingTo("2163.6364");
+        assertThat((BigDecimal) row("NORMAL").get("price_final")).isEqualByComparingTo("2380");
+
+        importCsv("""
+                sku,name,isTaxIncluded
+                NORMAL,Normal,no
+                """);
+
+        assertThat((BigDecimal) row("NORMAL").get("price_neto")).isEqualByComparingTo("2380");
+    }
+
+    @Test
+    void newSkusGetDefaultTaxAndMatchTaxCalculator() {
+        importCsv("""
+                sku,name,priceFinal,stockCurrent
+                NUEVO,Nuevo,1000,5
+                """);
+
+        // Mismo neto que el alta manual: TaxCalculator.DEFAULT.netFromGross(1000) = 840.3361
+        assertThat(row("NUEVO")).containsEntry("is_tax_included", true);
+        assertThat((BigDecimal) row("NUEVO").get("tax_percent")).isEqualByComparingTo("19");
+        assertThat((BigDecimal) row("NUEVO").get("price_neto")).isEqualByComparingTo("840.3361");
+    }
+
+    @Test
+    void priceChangesAreRecordedInHistory() {
+        Product changed = createProduct(tenantId, "SUBE", "1000", "10");
+        Product same = createProduct(tenantId, "IGUAL", "1000", "10");
+        Product unpriced = createProduct(tenantId, "SIN-PRECIO", "1000", "10");
+
+        ProductImportResult result = importCsv("""
+                sku,name,priceFinal
+                SUBE,Sube,1200
+                IGUAL,Igual,1000
+                SIN-PRECIO,Sin precio,
+                """);
+
+        assertThat(result.getUpdated()).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForList("SELECT product_id, old_price, new_price, change_reason, changed_by_user_id, tenant_id " +
+                "FROM product_price_histories WHERE product_id IN (?, ?, ?)", changed.getId(), same.getId(), unpriced.getId()))
+                .singleElement()
+                .satisfies(history -> {
+                    assertThat(history).containsEntry("product_id", changed.getId())
+                            .containsEntry("change_reason", "Carga masiva")
+                            .containsEntry("changed_by_user_id", admin.getId())
+                            .containsEntry("tenant_id", tenantId);
+                    assertThat((BigDecimal) history.get("old_price")).isEqualByComparingTo("1000");
+                    assertThat((BigDecimal) history.get("new_price")).isEqualByComparingTo("1200");
+                });
+    }
+
+    private ProductImportResult importCsv(String csv) {
+        return productImportService.importProducts(tenantId, admin,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private void setTax(UUID productId, String taxPercent, boolean included, String priceNeto) {
+        jdbcTemplate.update("UPDATE products SET tax_percent = ?, is_tax_included = ?, price_neto = ? WHERE id = ?",
+                new BigDecimal(taxPercent), included, new BigDecimal(priceNeto), productId);
+    }
+
+    private Map<String, Object> row(String sku) {
+        return jdbcTemplate.queryForMap("SELECT price_final, price_neto, tax_percent, is_tax_included FROM products " +
+                "WHERE tenant_id = ? AND sku = ?", tenantId, sku);
+    }
+}
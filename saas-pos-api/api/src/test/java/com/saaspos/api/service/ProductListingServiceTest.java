@@ -0,0 +1,119 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.ProductDto;
+import com.saaspos.api.dto.ProductPageDto;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Listado por cursor contra el esquema real: en cada orden, ascendente y descendente, recorrer las páginas entrega
+ * todo el catálogo una sola vez y en orden, aunque la clave de orden se repita justo en el borde de una página.
+ */
+class ProductListingServiceTest extends PostgresTestBase {
+
+    private static final ProductListingService.Filter ALL = new ProductListingService.Filter(null, null, null, null, null);
+    private static final int PRODUCTS = 24;
+    private static final int LIMIT = 5;
+    private static final String[] NAMES = {"Agua", "Cafe", "Te"};
+    // NULL = stock ilimitado, se ordena como el mayor
+    private static final String[] STOCKS = {null, "5", "5.000", "12.500"};
+    // Con microsegundos y en otra zona: el cursor tiene que volver a parsear el mismo instante
+    private static final OffsetDateTime[] CREATED = {
+            OffsetDateTime.of(2024, 3, 1, 9, 30, 0, 123_456_000, ZoneOffset.ofHours(-3)),
+            OffsetDateTime.of(2024, 3, 1, 9, 30, 0, 123_457_000, ZoneOffset.ofHours(-3)),
+            OffsetDateTime.of(2024, 3, 2, 0, 0, 0, 0, ZoneOffset.UTC)};
+
+    @Autowired
+    private ProductListingService productListingService;
+
+    private UUID tenantId;
+    private final List<Row> rows = new ArrayList<>();
+
+    private record Row(UUID id, String name, String sku, BigDecimal stock, OffsetDateTime created) {
+    }
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+        rows.clear();
+        for (int i = 0; i < PRODUCTS; i++) {
+            String sku = String.format("L-%02d", i);
+            String stock = STOCKS[i % STOCKS.length];
+            UUID id = createProduct(tenantId, sku, "1000", stock).getId();
+            String name = NAMES[i % NAMES.length];
+            OffsetDateTime created = CREATED[i % CREATED.length];
+            jdbcTemplate.update("UPDATE products SET name = ?, created_at = ? WHERE id = ?", name, created, id);
+            rows.add(new Row(id, name, sku,
+                    stock != null ? new BigDecimal(stock) : new BigDecimal("999999999"), created));
+        }
+    }
+
+    @Test
+    void everySortWalksTheWholeCatalogOnceInBothDirections() {
+        assertWalk(ProductListingService.Sort.NAME, Row::name);
+        assertWalk(ProductListingService.Sort.SKU, Row::sku);
+        assertWalk(ProductListingService.Sort.STOCK, Row::stock);
+        assertWalk(ProductListingService.Sort.CREATED, r -> r.created().toInstant());
+    }
+
+    @Test
+    void unlimitedStockSortsAfterEveryCountedStock() {
+        List<UUID> ascending = walk(ProductListingService.Sort.STOCK, false);
+        List<UUID> unlimited = rows.stream().filter(r -> r.stock().compareTo(new BigDecimal("999999999")) == 0)
+                .map(Row::id).toList();
+
+        assertThat(ascending.subList(PRODUCTS - unlimited.size(), PRODUCTS)).containsExactlyInAnyOrderElementsOf(unlimited);
+        assertThat(walk(ProductListingService.Sort.STOCK, true).subList(0, unlimited.size()))
+                .containsExactlyInAnyOrderElementsOf(unlimited);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> productListingService.page(tenantId, ALL, ProductListingService.Sort.CREATED, false, "no-es-un-cursor", LIMIT))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cursor inválido");
+    }
+
+    private <K extends Comparable<? super K>> void assertWalk(ProductListingService.Sort sort, Function<Row, K> key) {
+        // Desempate por id como Postgres: bytes sin signo, igual que el texto en hexadecimal
+        Comparator<Row> ascending = Comparator.comparing(key).thenComparing(r -> r.id().toString());
+        List<UUID> expected = rows.stream().sorted(ascending).map(Row::id).toList();
+        List<UUID> expectedDesc = rows.stream().sorted(ascending.reversed()).map(Row::id).toList();
+
+        assertThat(walk(sort, false)).as("%s ASC", sort).containsExactlyElementsOf(expected);
+        assertThat(walk(sort, true)).as("%s DESC", sort).containsExactlyElementsOf(expectedDesc);
+    }
+
+    // Recorre todas las páginas siguiendo nextCursor; falla si una página sale vacía o no termina
+    private List<UUID> walk(ProductListingService.Sort sort, boolean descending) {
+        List<UUID> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        ProductPageDto page;
+        do {
+            page = productListingService.page(tenantId, ALL, sort, descending, cursor, LIMIT);
+            assertThat(page.getItems()).isNotEmpty().hasSizeLessThanOrEqualTo(LIMIT);
+            page.getItems().stream().map(ProductDto::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+            assertThat(++pages).isLessThanOrEqualTo(PRODUCTS);
+        } while (page.isHasMore());
+
+        assertThat(cursor).isNull();
+        assertThat(pages).isEqualTo((PRODUCTS + LIMIT - 1) / LIMIT);
+        return ids;
+    }
+}
@@ -0,0 +1,149 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.PriceChangeRequest;
+import com.saaspos.api.model.PriceChange;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RepricingServiceTest extends PostgresTestBase {
+
+    private static final LocalDateTime FIRST_CHANGE = LocalDateTime.of(2026, 1, 10, 12, 0);
+    private static final LocalDateTime SECOND_CHANGE = LocalDateTime.of(2026, 2, 10, 12, 0);
+
+    @Autowired
+    private RepricingService repricingService;
+
+    private UUID tenantId;
+    private AuthenticatedUser admin;
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+        admin = createUser(tenantId, "TENANT_ADMIN");
+    }
+
+    @Test
+    void priceAtFollowsTheHistoryThenFallsBackToTheCurrentPrice() {
+        // 1000 -> 1200 -> 1500
+        Product product = createProduct(tenantId, "HIST", "1500", "10");
+        history(product.getId(), "1000", "1200", FIRST_CHANGE);
+        history(product.getId(), "1200", "1500", SECOND_CHANGE);
+
+        // Antes del primer cambio: el precio anterior a ese cambio
+        assertThat(priceAt(product, FIRST_CHANGE.minusDays(9))).isEqualByComparingTo("1000");
+        // Justo en el cambio ya rige el nuevo
+        assertThat(priceAt(product, FIRST_CHANGE)).isEqualByComparingTo("1200");
+        assertThat(priceAt(product, SECOND_CHANGE.minusSeconds(1))).isEqualByComparingTo("1200");
+        assertThat(priceAt(product, SECOND_CHANGE.plusDays(20))).isEqualByComparingTo("1500");
+    }
+
+    @Test
+    void priceAtWithoutHistoryIsTheCurrentPriceOfTheTenantProduct() {
+        Product product = createProduct(tenantId, "SIN-HIST", "990", "10");
+
+        assertThat(priceAt(product, FIRST_CHANGE)).isEqualByComparingTo("990");
+
+        // Otro tenant no ve ni el historial ni el precio actual
+        history(product.getId(), "800", "990", FIRST_CHANGE);
+        assertThatThrownBy(() -> repricingService.priceAt(createTenant(), product.getId(), SECOND_CHANGE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Producto no encontrado");
+        assertThatThrownBy(() -> repricingService.priceAt(tenantId, UUID.randomUUID(), SECOND_CHANGE))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Producto no encontrado");
+    }
+
+    @Test
+    void schedulerAppliesDueChangesAndLeavesFutureOnesPending() {
+        Product product = createProduct(tenantId, "PROG", "1000", "10");
+        PriceChange due = repricingService.submit(tenantId, admin, request("PERCENT", "10", product, LocalDateTime.now().plusHours(1)));
+        PriceChange future = repricingService.submit(tenantId, admin, request("PERCENT", "50", product, LocalDateTime.now().plusDays(1)));
+        assertThat(due.getStatus()).isEqualTo("PENDING");
+        assertThat(productPrice(product)).isEqualByComparingTo("1000");
+
+        // Vence el primero
+        jdbcTemplate.update("UPDATE price_changes SET effective_at = ? WHERE id = ?", LocalDateTime.now().minusMinutes(1), due.getId());
+        repricingService.applyDue();
+
+        assertThat(change(due.getId())).containsEntry("status", "APPLIED").containsEntry("affected_count", 1);
+        assertThat(change(due.getId()).get("applied_at")).isNotNull();
+        assertThat(change(future.getId())).containsEntry("status", "PENDING");
+        assertThat(productPrice(product)).isEqualByComparingTo("1100");
+        List<Map<String, Object>> history = jdbcTemplate.queryForList(
+                "SELECT old_price, new_price, price_change_id, changed_by_user_id FROM product_price_histories WHERE product_id = ?",
+                product.getId());
+        assertThat(history).singleElement().satisfies(row -> {
+            assertThat((BigDecimal) row.get("old_price")).isEqualByComparingTo("1000");
+            assertThat((BigDecimal) row.get("new_price")).isEqualByComparingTo("1100");
+            assertThat(row).containsEntry("price_change_id", due.getId()).containsEntry("changed_by_user_id", admin.getId());
+        });
+
+        // Una segunda vuelta no lo vuelve a aplicar
+        repricingService.applyDue();
+        assertThat(productPrice(product)).isEqualByComparingTo("1100");
+    }
+
+    @Test
+    void schedulerMarksBrokenChangesAsFailedAndKeepsGoing() {
+        Product product = createProduct(tenantId, "FALLA", "1000", "10");
+        Long broken = jdbcTemplate.queryForObject("""
+                INSERT INTO price_changes (tenant_id, mode, value, product_ids, status, effective_at)
+                VALUES (?, 'DESCONOCIDO', 10, ARRAY[?]::uuid[], 'PENDING', ?) RETURNING id
+                """, Long.class, tenantId, product.getId(), LocalDateTime.now().minusMinutes(2));
+        PriceChange ok = repricingService.submit(tenantId, admin, request("AMOUNT", "-100", product, LocalDateTime.now().plusHours(1)));
+        jdbcTemplate.update("UPDATE price_changes SET effective_at = ? WHERE id = ?", LocalDateTime.now().minusMinutes(1), ok.getId());
+
+        repricingService.applyDue();
+
+        Map<String, Object> failed = change(broken);
+        assertThat(failed).containsEntry("status", "FAILED").containsEntry("applied_at", null);
+        assertThat((String) failed.get("error_message")).contains("DESCONOCIDO");
+        // El que falló no frena al siguiente vencido
+        assertThat(change(ok.getId())).containsEntry("status", "APPLIED");
+        assertThat(productPrice(product)).isEqualByComparingTo("900");
+
+        // FAILED no se reintenta
+        repricingService.applyDue();
+        assertThat(change(broken)).containsEntry("status", "FAILED");
+    }
+
+    private BigDecimal priceAt(Product product, LocalDateTime at) {
+        return repricingService.priceAt(tenantId, product.getId(), at);
+    }
+
+    private void history(UUID productId, String oldPrice, String newPrice, LocalDateTime at) {
+        jdbcTemplate.update("INSERT INTO product_price_histories (product_id, old_price, new_price, change_date, change_reason, tenant_id) " +
+                        "VALUES (?, ?, ?, ?, 'Prueba', ?)",
+                productId, new BigDecimal(oldPrice), new BigDecimal(newPrice), at, tenantId);
+    }
+
+    private BigDecimal productPrice(Product product) {
+        return jdbcTemplate.queryForObject("SELECT price_final FROM products WHERE id = ?", BigDecimal.class, product.getId());
+    }
+
+    private Map<String, Object> change(Long id) {
+        return jdbcTemplate.queryForMap("SELECT status, applied_at, affected_count, error_message FROM price_changes WHERE id = ?", id);
+    }
+
+    private static PriceChangeRequest request(String mode, String value, Product product, LocalDateTime effectiveAt) {
+        PriceChangeRequest request = new PriceChangeRequest();
+        request.setMode(mode);
+        request.setValue(new BigDecimal(value));
+        request.setProductIds(List.of(product.getId()));
+        request.setEffectiveAt(effectiveAt);
+        return request;
+    }
+}
@@ -0,0 +1,85 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.dto.SaleRequest;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import com.saaspos.api.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * processSale hace un número fijo de viajes a la BD: el mismo para un ticket de 1 línea que para uno de 30
+ * con packs (una consulta de productos, un batch de stock, un SELECT del stock final y los INSERT en batch).
+ */
+class SaleServiceStatementsTest extends PostgresTestBase {
+
+    @Autowired
+    private SaleService saleService;
+
+    private UUID tenantId;
+    private final List<Product> products = new ArrayList<>();
+    private final List<Product> bundles = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        tenantId = createTenant();
+        authenticate(createUser(tenantId, "CASHIER"));
+        for (int i = 0; i < 20; i++) {
+            products.add(createProduct(tenantId, "P-" + i, "1000", "1000"));
+        }
+        // Packs que comparten componentes entre sí y con las líneas sueltas
+        for (int i = 0; i < 10; i++) {
+            bundles.add(createBundle(tenantId, "PACK-" + i, "2500", i % 2 == 0 ? null : "100",
+                    products.get(i), 2, products.get(i + 10), 1));
+        }
+        // Calienta caches de Hibernate y el bloque de folios, que no son parte de lo que se mide
+        saleService.processSale(ticket(List.of(products.get(19)), false), tenantId);
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithTicketLines() {
+        long single = countStatements(ticket(List.of(products.get(0)), false));
+
+        List<Product> lines = new ArrayList<>(products);
+        lines.addAll(bundles);
+        long thirty = countStatements(ticket(lines, true));
+
+        assertThat(lines).hasSize(30);
+        assertThat(thirty).isEqualTo(single);
+        // Productos, batch de stock, stock final, INSERT de venta, batch de ítems y batch del outbox de logs
+        assertThat(single).isLessThanOrEqualTo(6);
+    }
+
+    private long countStatements(SaleRequest request) {
+        StatementCounter.start();
+        saleService.processSale(request, tenantId);
+        return StatementCounter.stop();
+    }
+
+    // withOverride: una línea con precio modificado en caja (agrega un log PRICE_OVERRIDE al mismo batch)
+    private static SaleRequest ticket(List<Product> lines, boolean withOverride) {
+        SaleRequest request = new SaleRequest();
+        request.setItems(new ArrayList<>());
+        BigDecimal total = BigDecimal.ZERO;
+        for (Product product : lines) {
+            SaleRequest.SaleItemRequest item = new SaleRequest.SaleItemRequest();
+            item.setProductId(product.getId());
+            item.setQuantity(BigDecimal.ONE);
+            if (withOverride && request.getItems().isEmpty()) {
+                item.setCustomPrice(new BigDecimal("900"));
+            }
+            request.getItems().add(item);
+            total = total.add(product.getPriceFinal());
+        }
+        request.setTotalAmount(total);
+        return request;
+    }
+}
@@ -0,0 +1,176 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.SaleRequest;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.StockService.StockPlan;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Descuento de stock bajo carga contra el esquema real (Flyway): cientos de hilos venden por SaleService y
+ * aplican planes directo en StockService sobre un producto suelto que además es componente de un pack.
+ * El stock final cuadra con lo que se aceptó, nunca queda negativo y no hay deadlocks ni otros errores.
+ * Corre igual por la fila de products (UPDATE condicional) y por HotStockLedger (tenant habilitado).
+ */
+class StockGuardedUpdateTest extends PostgresTestBase {
+
+    private static final int THREADS = 300;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private HotStockLedger hotStockLedger;
+
+    @ParameterizedTest(name = "ledger={0}")
+    @ValueSource(booleans = {false, true})
+    void concurrentSalesAndPlansNeverOversellOrDeadlock(boolean ledger) throws Exception {
+        UUID tenantId = ledger ? createTenant(LEDGER_TENANT_ID, 100_000) : createTenant();
+        AuthenticatedUser cashier = createUser(tenantId, "CASHIER");
+
+        Product cola = createProduct(tenantId, "COLA-" + UUID.randomUUID(), "1000", "200");
+        Product chips = createProduct(tenantId, "PAPAS-" + UUID.randomUUID(), "1500", "80");
+        Product kilo = createProduct(tenantId, "QUESO-" + UUID.randomUUID(), "9000", "10.000");
+        // Pack virtual (sin stock propio) que comparte la bebida con la venta suelta
+        Product combo = createBundle(tenantId, "COMBO-" + UUID.randomUUID(), "3000", null, cola, 2, chips, 1);
+
+        // Demanda total muy por sobre el stock: los rechazos son parte de la prueba
+        List<Operation> operations = List.of(
+                new Operation("venta suelta", Map.of(cola, BigDecimal.ONE), true),
+                new Operation("pack + suelta en el mismo ticket", ordered(combo, BigDecimal.ONE, cola, BigDecimal.ONE), true),
+                new Operation("pack después de papas", ordered(chips, BigDecimal.ONE, combo, BigDecimal.ONE), true),
+                new Operation("plan directo", ordered(chips, BigDecimal.ONE, cola, BigDecimal.ONE), false),
+                new Operation("fraccionado", Map.of(kilo, new BigDecimal("0.3")), false));
+
+        Map<UUID, BigDecimal> accepted = new ConcurrentHashMap<>();
+        AtomicInteger sales = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> unexpected = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Operation op = operations.get(i % operations.size());
+            results.add(pool.submit(() -> {
+                authenticate(cashier);
+                try {
+                    start.await();
+                    StockPlan plan = op.plan();
+                    if (op.sale()) {
+                        saleService.processSale(op.request(), tenantId);
+                        sales.incrementAndGet();
+                    } else {
+                        stockService.apply(plan);
+                    }
+                    plan.getDeltas().forEach((id, delta) -> accepted.merge(id, delta, BigDecimal::add));
+                } catch (RuntimeException e) {
+                    if (String.valueOf(e.getMessage()).startsWith("Stock insuficiente")) {
+                        rejected.incrementAndGet();
+                    } else {
+                        unexpected.add(e); // Deadlock, timeout de conexión, etc.
+                    }
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(120, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        if (ledger) drainLedger();
+
+        assertThat(unexpected).isEmpty();
+        assertThat(rejected.get()).isPositive();
+        assertThat(countSales(cola, chips)).isEqualTo(sales.get());
+
+        // Sin sobreventa: lo aceptado es exactamente lo que falta, y nunca más de lo que había
+        assertStock(cola, "200", accepted);
+        assertStock(chips, "80", accepted);
+        assertStock(kilo, "10.000", accepted);
+        assertThat(stockOf(combo.getId())).isNull();
+        // 0.3 kg por salida: caben 33 y quedan 0.1
+        assertThat(stockOf(kilo.getId())).isEqualByComparingTo("0.1");
+    }
+
+    private void assertStock(Product product, String initial, Map<UUID, BigDecimal> accepted) {
+        BigDecimal expected = new BigDecimal(initial).add(accepted.getOrDefault(product.getId(), BigDecimal.ZERO));
+        BigDecimal actual = stockOf(product.getId());
+        assertThat(actual).as(product.getSku()).isEqualByComparingTo(expected);
+        assertThat(actual.signum()).as(product.getSku()).isGreaterThanOrEqualTo(0);
+    }
+
+    // El write-behind del ledger se vuelca a products antes de mirar el stock
+    private void drainLedger() {
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_ledger_journal WHERE tenant_id = ?",
+                Long.class, LEDGER_TENANT_ID) > 0) {
+            hotStockLedger.flush();
+        }
+    }
+
+    // Por los productos del test: el tenant del ledger es compartido entre clases
+    private long countSales(Product first, Product second) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT sale_id) FROM sale_items WHERE product_id IN (?, ?)",
+                Long.class, first.getId(), second.getId());
+    }
+
+    private static Map<Product, BigDecimal> ordered(Product first, BigDecimal firstQty, Product second, BigDecimal secondQty) {
+        Map<Product, BigDecimal> lines = new LinkedHashMap<>();
+        lines.put(first, firstQty);
+        lines.put(second, secondQty);
+        return lines;
+    }
+
+    // Una misma operación se arma como ticket (SaleService) o como plan directo (StockService)
+    private record Operation(String name, Map<Product, BigDecimal> lines, boolean sale) {
+
+        StockPlan plan() {
+            StockPlan plan = new StockPlan();
+            lines.forEach(plan::decrease);
+            return plan;
+        }
+
+        SaleRequest request() {
+            SaleRequest request = new SaleRequest();
+            request.setItems(new ArrayList<>());
+            BigDecimal total = BigDecimal.ZERO;
+            for (Map.Entry<Product, BigDecimal> line : lines.entrySet()) {
+                SaleRequest.SaleItemRequest item = new SaleRequest.SaleItemRequest();
+                item.setProductId(line.getKey().getId());
+                item.setQuantity(line.getValue());
+                request.getItems().add(item);
+                total = total.add(line.getKey().getPriceFinal().multiply(line.getValue()));
+            }
+            request.setTotalAmount(total);
+            return request;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.StockService.StockPlan;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StockPlanTest {
+
+    @Test
+    void aggregatesTheSameProductIntoOneDelta() {
+        Product cola = product("00000000-0000-0000-0000-000000000001");
+
+        StockPlan plan = new StockPlan()
+                .decrease(cola, new BigDecimal("2"))
+                .decrease(cola, new BigDecimal("0.5"))
+                .increase(cola, new BigDecimal("1"));
+
+        assertThat(plan.getDeltas()).hasSize(1);
+        assertThat(plan.getDeltas().get(cola.getId())).isEqualByComparingTo("-1.5");
+        assertThat(plan.getProduct(cola.getId())).isSameAs(cola);
+    }
+
+    @Test
+    void expandsBundleIntoComponentsTimesQuantity() {
+        Product beer = product("00000000-0000-0000-0000-000000000001");
+        Product chips = product("00000000-0000-0000-0000-000000000002");
+        Product pack = product("00000000-0000-0000-0000-000000000003");
+        pack.setProductType("BUNDLE");
+        pack.addBundleItem(beer, new BigDecimal("6"));
+        pack.addBundleItem(chips, new BigDecimal("1"));
+
+        // 2 packs + 1 cerveza suelta
+        StockPlan plan = new StockPlan()
+                .decrease(pack, new BigDecimal("2"))
+                .decrease(beer, new BigDecimal("1"));
+
+        assertThat(plan.getDeltas().get(pack.getId())).isEqualByComparingTo("-2");
+        assertThat(plan.getDeltas().get(beer.getId())).isEqualByComparingTo("-13");
+        assertThat(plan.getDeltas().get(chips.getId())).isEqualByComparingTo("-2");
+        assertThat(plan.getBundle(chips.getId())).isSameAs(pack);
+        assertThat(plan.getBundle(pack.getId())).isNull();
+    }
+
+    @Test
+    void ordersByUnsignedUuidLikePostgres() {
+        // UUID.compareTo compara con signo: "8000..." quedaría antes que "0000..."; PostgreSQL lo pone al final
+        Product high = product("80000000-0000-0000-0000-000000000000");
+        Product low = product("00000000-0000-0000-0000-000000000001");
+        Product lowSignedHigh = product("00000000-0000-0000-8000-000000000000");
+        Product mid = product("7fffffff-ffff-ffff-ffff-ffffffffffff");
+
+        StockPlan plan = new StockPlan();
+        for (Product p : new Product[]{high, mid, lowSignedHigh, low}) {
+            plan.decrease(p, BigDecimal.ONE);
+        }
+
+        assertThat(plan.getDeltas().keySet())
+                .containsExactly(low.getId(), lowSignedHigh.getId(), mid.getId(), high.getId());
+    }
+
+    @Test
+    void mergeSumsDeltasAndKeepsOrder() {
+        Product a = product("00000000-0000-0000-0000-00000000000a");
+        Product b = product("00000000-0000-0000-0000-00000000000b");
+
+        StockPlan first = new StockPlan().decrease(b, new BigDecimal("3"));
+        StockPlan second = new StockPlan().decrease(a, new BigDecimal("1")).increase(b, new BigDecimal("1"));
+
+        StockPlan merged = first.merge(second);
+
+        assertThat(merged.getDeltas().keySet()).containsExactly(a.getId(), b.getId());
+        assertThat(merged.getDeltas().get(b.getId())).isEqualByComparingTo("-2");
+        assertThat(merged.getProduct(a.getId())).isSameAs(a);
+    }
+
+    @Test
+    void isEmptyWhenAllDeltasCancelOut() {
+        Product cola = product("00000000-0000-0000-0000-000000000001");
+
+        assertThat(new StockPlan().isEmpty()).isTrue();
+        assertThat(new StockPlan().decrease(cola, BigDecimal.ONE).isEmpty()).isFalse();
+        assertThat(new StockPlan().decrease(cola, BigDecimal.ONE).increase(cola, new BigDecimal("1.000")).isEmpty()).isTrue();
+    }
+
+    static Product product(String id) {
+        Product product = new Product();
+        product.setId(UUID.fromString(id));
+        product.setName("Producto " + id.substring(id.length() - 4));
+        return product;
+    }
+}
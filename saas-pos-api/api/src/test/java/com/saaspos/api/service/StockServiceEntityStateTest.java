@@ -0,0 +1,75 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.model.Product;
+import com.saaspos.api.service.StockService.StockPlan;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Después de apply() las entidades del plan siguen siendo editables en la misma transacción: los cambios
+ * posteriores se guardan y el stock no se vuelve a escribir desde la entidad (ni por la fila ni por el ledger).
+ */
+class StockServiceEntityStateTest extends PostgresTestBase {
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private HotStockLedger hotStockLedger;
+
+    @ParameterizedTest(name = "ledger={0}")
+    @ValueSource(booleans = {false, true})
+    void laterChangesToTheSameEntityArePersisted(boolean ledger) {
+        UUID tenantId = ledger ? createTenant(LEDGER_TENANT_ID, 100_000) : createTenant();
+        UUID productId = createProduct(tenantId, "EDIT-" + UUID.randomUUID(), "1000", "100").getId();
+
+        Product returned = transaction().execute(status -> {
+            Product product = productRepository.findById(productId).orElseThrow();
+            stockService.apply(new StockPlan().decrease(product, new BigDecimal("3")));
+            assertThat(product.getStockCurrent()).isEqualByComparingTo("97");
+
+            // Mismo flujo que una venta que además corrige el precio o el nombre del producto
+            product.setPriceFinal(new BigDecimal("1200"));
+            product.setName("Nombre corregido");
+            return product;
+        });
+        if (ledger) drainLedger(productId);
+
+        assertThat(returned.getStockCurrent()).isEqualByComparingTo("97");
+        assertThat(jdbcTemplate.queryForMap("SELECT name, price_final FROM products WHERE id = ?", productId))
+                .containsEntry("name", "Nombre corregido")
+                .hasEntrySatisfying("price_final", price -> assertThat((BigDecimal) price).isEqualByComparingTo("1200"));
+        assertThat(stockOf(productId)).isEqualByComparingTo("97");
+    }
+
+    @ParameterizedTest(name = "ledger={0}")
+    @ValueSource(booleans = {false, true})
+    void untouchedEntityIsNotWrittenAgain(boolean ledger) {
+        UUID tenantId = ledger ? createTenant(LEDGER_TENANT_ID, 100_000) : createTenant();
+        UUID productId = createProduct(tenantId, "SOLO-" + UUID.randomUUID(), "1000", "100").getId();
+
+        transaction().executeWithoutResult(status -> {
+            Product product = productRepository.findById(productId).orElseThrow();
+            stockService.apply(new StockPlan().decrease(product, new BigDecimal("5")));
+            stockService.apply(new StockPlan().increase(product, new BigDecimal("2")));
+            assertThat(product.getStockCurrent()).isEqualByComparingTo("97");
+        });
+        if (ledger) drainLedger(productId);
+
+        assertThat(stockOf(productId)).isEqualByComparingTo("97");
+    }
+
+    private void drainLedger(UUID productId) {
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_ledger_journal WHERE product_id = ?",
+                Long.class, productId) > 0) {
+            hotStockLedger.flush();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.saaspos.api.service;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.dto.SaleRequest;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.support.PostgresTestBase;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rendimiento del SKU "caliente": todas las cajas venden el mismo producto a la vez, por la fila de products
+ * (UPDATE condicional, lock de fila hasta el commit de la venta) y por HotStockLedger. Mide ventas por segundo
+ * y latencia p50/p99 de processSale. No corre con el build normal: mvn test -Pbenchmark.
+ */
+@Tag("benchmark")
+class StockThroughputBenchmarkTest extends PostgresTestBase {
+
+    private static final int THREADS = 32;
+    private static final int WARM_UP_SALES = 500;
+    private static final int SALES = 4_000;
+
+    @Autowired
+    private SaleService saleService;
+
+    @Autowired
+    private HotStockLedger hotStockLedger;
+
+    @Test
+    void hotProductThroughputRowLockVsLedger() throws Exception {
+        Result rowLock = run(false);
+        Result ledger = run(true);
+
+        System.out.printf("%nSKU caliente, %d cajas, %d ventas de 1 línea%n", THREADS, SALES);
+        System.out.printf("  fila de products : %8.0f ventas/s  p50 %6.2f ms  p99 %6.2f ms%n", rowLock.perSecond, rowLock.p50, rowLock.p99);
+        System.out.printf("  HotStockLedger   : %8.0f ventas/s  p50 %6.2f ms  p99 %6.2f ms%n", ledger.perSecond, ledger.p50, ledger.p99);
+    }
+
+    private Result run(boolean ledger) throws Exception {
+        UUID tenantId = ledger ? createTenant(LEDGER_TENANT_ID, 100_000) : createTenant();
+        AuthenticatedUser cashier = createUser(tenantId, "CASHIER");
+        Product hot = createProduct(tenantId, "PROMO-" + UUID.randomUUID(), "1000", String.valueOf(WARM_UP_SALES + SALES));
+
+        sell(tenantId, cashier, hot, WARM_UP_SALES);
+        long started = System.nanoTime();
+        long[] latencies = sell(tenantId, cashier, hot, SALES);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        if (ledger) {
+            while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_ledger_journal WHERE product_id = ?",
+                    Long.class, hot.getId()) > 0) {
+                hotStockLedger.flush();
+            }
+        }
+        // Todo se vendió: el stock alcanzaba justo
+        assertThat(stockOf(hot.getId())).isEqualByComparingTo("0");
+
+        Arrays.sort(latencies);
+        return new Result(SALES / seconds, percentile(latencies, 0.50), percentile(latencies, 0.99));
+    }
+
+    // Reparte n ventas entre las cajas; devuelve la latencia de cada una en nanosegundos
+    private long[] sell(UUID tenantId, AuthenticatedUser cashier, Product product, int n) throws Exception {
+        long[] latencies = new long[n];
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(pool.submit(() -> {
+                authenticate(cashier);
+                start.await();
+                for (int i = next.getAndIncrement(); i < n; i = next.getAndIncrement()) {
+                    long began = System.nanoTime();
+                    saleService.processSale(ticket(product), tenantId);
+                    latencies[i] = System.nanoTime() - began;
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(5, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return latencies;
+    }
+
+    private static SaleRequest ticket(Product product) {
+        SaleRequest.SaleItemRequest item = new SaleRequest.SaleItemRequest();
+        item.setProductId(product.getId());
+        item.setQuantity(BigDecimal.ONE);
+        SaleRequest request = new SaleRequest();
+        request.setItems(List.of(item));
+        request.setTotalAmount(product.getPriceFinal());
+        return request;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+
+    private record Result(double perSecond, double p50, double p99) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.saaspos.api.support;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Corre los benchmarks JMH (@Benchmark) del árbol de tests, con el perfil de GC para ver bytes asignados por
+ * operación. No corre con el build normal: mvn test -Pbenchmark, y -Djmh.include=JwtUtilBenchmark (regex)
+ * para correr solo algunos.
+ */
+@Tag("benchmark")
+class JmhBenchmarksTest {
+
+    @Test
+    void runBenchmarks() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(System.getProperty("jmh.include", "com\\.saaspos\\.api\\..*Benchmark"))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package com.saaspos.api.support;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import com.saaspos.api.model.Product;
+import com.saaspos.api.repository.ProductRepository;
+import com.saaspos.api.util.Money;
+import com.saaspos.api.util.TaxCalculator;
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Base de los tests contra PostgreSQL real: un contenedor para toda la corrida, esquema completo con Flyway
+ * y el contexto de Spring compartido entre clases. Cada test arma su propio tenant, así no dependen del orden.
+ * Sin Docker se omiten.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+@Import(StatementCounter.Config.class)
+public abstract class PostgresTestBase {
+
+    // Tenant con el ledger de stock en memoria habilitado (app.stock.ledger.tenants)
+    protected static final UUID LEDGER_TENANT_ID = UUID.fromString("00000000-0000-0000-0000-00000000feed");
+
+    protected static final String PASSWORD = "clave-de-prueba";
+
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void postgres(DynamicPropertyRegistry registry) {
+        POSTGRES.start(); // Idempotente: se levanta una vez y Testcontainers lo baja al terminar la JVM
+        String url = POSTGRES.getJdbcUrl();
+        registry.add("spring.datasource.url", () -> url + (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true");
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.flyway.url", () -> url);
+        registry.add("spring.flyway.user", POSTGRES::getUsername);
+        registry.add("spring.flyway.password", POSTGRES::getPassword);
+        // Los tests de concurrencia abren muchas transacciones a la vez
+        registry.add("spring.datasource.hikari.maximum-pool-size", () -> "40");
+        registry.add("app.stock.ledger.tenants", LEDGER_TENANT_ID::toString);
+    }
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    protected ProductRepository productRepository;
+
+    @Autowired
+    protected PasswordEncoder passwordEncoder;
+
+    @Autowired
+    protected PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    protected TransactionTemplate transaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    protected UUID createTenant() {
+        return createTenant(UUID.randomUUID(), 100_000);
+    }
+
+    // Tenant con su propio plan (límite de productos a medida)
+    protected UUID createTenant(UUID tenantId, int maxProducts) {
+        UUID planId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO plans (id, name, price_clp, max_users, max_products) VALUES (?, ?, 0, 100, ?)",
+                planId, "TEST-" + planId, maxProducts);
+        jdbcTemplate.update("INSERT INTO tenants (id, company_name, rut, plan_id) VALUES (?, ?, ?, ?) ON CONFLICT (id) DO NOTHING",
+                tenantId, "Empresa " + tenantId, "76.000.000-0", planId);
+        return tenantId;
+    }
+
+    protected AuthenticatedUser createUser(UUID tenantId, String role) {
+        UUID userId = UUID.randomUUID();
+        String email = userId + "@test.cl";
+        jdbcTemplate.update("INSERT INTO users (id, tenant_id, email, password_hash, full_name, role) VALUES (?, ?, ?, ?, ?, ?)",
+                userId, tenantId, email, passwordEncoder.encode(PASSWORD), "Usuario " + role, role);
+        return new AuthenticatedUser(userId, email, tenantId, role, "Usuario " + role, null);
+    }
+
+    // Deja al usuario como autenticado en el hilo actual (lo que hace JwtAuthenticationFilter por request)
+    protected static void authenticate(AuthenticatedUser user) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    // Producto estándar con precio BRUTO y stock (null = ilimitado)
+    protected Product createProduct(UUID tenantId, String sku, String price, String stock) {
+        return productRepository.save(product(tenantId, sku, price, stock));
+    }
+
+    // Pack: componentes en pares (producto, cantidad por pack)
+    protected Product createBundle(UUID tenantId, String sku, String price, String stock, Object... components) {
+        Product bundle = product(tenantId, sku, price, stock);
+        bundle.setProductType("BUNDLE");
+        for (int i = 0; i < components.length; i += 2) {
+            bundle.addBundleItem((Product) components[i], new BigDecimal(components[i + 1].toString()));
+        }
+        return productRepository.save(bundle);
+    }
+
+    protected BigDecimal stockOf(UUID productId) {
+        return jdbcTemplate.queryForObject("SELECT stock_current FROM products WHERE id = ?", BigDecimal.class, productId);
+    }
+
+    private static Product product(UUID tenantId, String sku, String price, String stock) {
+        Product product = new Product();
+        product.setTenantId(tenantId);
+        product.setSku(sku);
+        product.setName("Producto " + sku);
+        product.setPriceFinal(new BigDecimal(price));
+        product.setPriceNeto(TaxCalculator.DEFAULT.netFromGross(Money.of(new BigDecimal(price))).toBigDecimal());
+        product.setCostPrice(BigDecimal.ZERO);
+        product.setStockCurrent(stock != null ? new BigDecimal(stock) : null);
+        return product;
+    }
+}
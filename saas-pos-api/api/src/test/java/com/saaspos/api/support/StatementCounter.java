@@ -0,0 +1,101 @@
+package com.saaspos.api.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Cuenta los viajes a la BD (execute*, un executeBatch = 1) del hilo actual entre start() y stop().
+ * Solo mide el hilo que llamó a start(): los @Scheduled que corren en paralelo no ensucian la cuenta.
+ */
+public final class StatementCounter {
+
+    private static final ThreadLocal<long[]> COUNT = new ThreadLocal<>();
+
+    private StatementCounter() {
+    }
+
+    public static void start() {
+        COUNT.set(new long[1]);
+    }
+
+    public static long stop() {
+        long[] count = COUNT.get();
+        COUNT.remove();
+        return count != null ? count[0] : 0;
+    }
+
+    private static void increment() {
+        long[] count = COUNT.get();
+        if (count != null) count[0]++;
+    }
+
+    // Envuelve el DataSource principal (el pool de folios queda fuera)
+    @TestConfiguration(proxyBeanMethods = false)
+    public static class Config {
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return "dataSource".equals(beanName) && bean instanceof DataSource ds ? new CountingDataSource(ds) : bean;
+                }
+            };
+        }
+    }
+
+    static final class CountingDataSource extends DelegatingDataSource {
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connection(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return connection(super.getConnection(username, password));
+        }
+
+        private static Connection connection(Connection target) {
+            return proxy(Connection.class, target, (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                // createStatement / prepareStatement / prepareCall
+                if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                    return statement(method.getReturnType(), statement);
+                }
+                return result;
+            });
+        }
+
+        private static Object statement(Class<?> type, Statement target) {
+            return proxy(type, target, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) increment();
+                return invoke(target, method, args);
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type}, handler));
+        }
+
+        private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.saaspos.api.util;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caché de tokens verificados con 8 requests a la vez y tokens ya cacheados (el caso de cada request con sesión):
+ * la caché actual (ConcurrentHashMap, sin lock al leer) contra la anterior (LinkedHashMap en orden de acceso
+ * detrás de synchronized, que serializa hasta las lecturas porque get() reordena la lista).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class JwtUtilBenchmark {
+
+    private static final String SECRET = "ClaveDePruebaSuficientementeLargaParaHS256-0123456789";
+    private static final int TOKENS = 1_000;
+
+    private JwtUtil jwtUtil;
+    private SynchronizedLruCache previous;
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxEntries", 10_000);
+        jwtUtil.init();
+        previous = new SynchronizedLruCache(10_000);
+
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            tokens[i] = jwtUtil.generateToken(new AuthenticatedUser(UUID.randomUUID(), "caja" + i + "@demo.cl",
+                    UUID.randomUUID(), "CASHIER", "Caja " + i, null));
+            jwtUtil.parseToken(tokens[i]);
+            previous.parseToken(tokens[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            next = (next + 1) % TOKENS;
+            return next;
+        }
+    }
+
+    @Benchmark
+    public Claims concurrentHashMap(Cursor cursor) {
+        return jwtUtil.parseToken(tokens[cursor.next()]);
+    }
+
+    @Benchmark
+    public Claims synchronizedLru(Cursor cursor) {
+        return previous.parseToken(tokens[cursor.next()]);
+    }
+
+    // La caché de JwtUtil antes del cambio, tal cual: LRU en orden de acceso con un solo monitor
+    static final class SynchronizedLruCache {
+        private final JwtParser parser = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes())).build();
+        private final Map<String, CachedClaims> verifiedTokens;
+
+        SynchronizedLruCache(int maxEntries) {
+            verifiedTokens = new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedClaims> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        Claims parseToken(String token) {
+            String key = hash(token);
+            long now = System.currentTimeMillis();
+            synchronized (verifiedTokens) {
+                CachedClaims cached = verifiedTokens.get(key);
+                if (cached != null) {
+                    if (cached.expiresAt > now) {
+                        return cached.claims;
+                    }
+                    verifiedTokens.remove(key);
+                }
+            }
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            synchronized (verifiedTokens) {
+                verifiedTokens.put(key, new CachedClaims(claims, claims.getExpiration().getTime()));
+            }
+            return claims;
+        }
+
+        private static String hash(String token) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 no disponible", e);
+            }
+        }
+
+        private record CachedClaims(Claims claims, long expiresAt) {
+        }
+    }
+}
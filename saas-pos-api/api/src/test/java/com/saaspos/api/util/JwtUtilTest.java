@@ -0,0 +1,116 @@
+package com.saaspos.api.util;
+
+import com.saaspos.api.config.AuthenticatedUser;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "ClaveDePruebaSuficientementeLargaParaHS256-0123456789";
+
+    private final AuthenticatedUser user = new AuthenticatedUser(UUID.randomUUID(), "caja@demo.cl",
+            UUID.randomUUID(), "CASHIER", "Caja Uno", null);
+
+    @Test
+    void parsesOnceAndServesFromCache() {
+        JwtUtil jwtUtil = jwtUtil(60_000L);
+        String token = jwtUtil.generateToken(user);
+
+        Claims first = jwtUtil.parseToken(token);
+        Claims second = jwtUtil.parseToken(token);
+
+        assertThat(first.getSubject()).isEqualTo("caja@demo.cl");
+        assertThat(first.get("user_id", String.class)).isEqualTo(user.getId().toString());
+        // Misma instancia: la segunda vez no se verificó la firma ni se parseó el JSON
+        assertThat(second).isSameAs(first);
+        assertThat(jwtUtil.validateToken(second, "caja@demo.cl")).isTrue();
+        assertThat(jwtUtil.validateToken(second, "otra@demo.cl")).isFalse();
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        JwtUtil jwtUtil = jwtUtil(60_000L);
+        String token = jwtUtil.generateToken(user);
+        jwtUtil.parseToken(token);
+
+        // Firma alterada: es otra llave de caché, así que se verifica y falla
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertThatThrownBy(() -> jwtUtil.parseToken(tampered)).isInstanceOf(SignatureException.class);
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        JwtUtil jwtUtil = jwtUtil(-1_000L);
+        String token = jwtUtil.generateToken(user);
+
+        assertThatThrownBy(() -> jwtUtil.parseToken(token)).isInstanceOf(ExpiredJwtException.class);
+        assertThatThrownBy(() -> jwtUtil.parseToken(token)).isInstanceOf(ExpiredJwtException.class);
+    }
+
+    @Test
+    void cacheStaysBoundedUnderManyDistinctTokens() {
+        JwtUtil jwtUtil = jwtUtil(60_000L);
+
+        for (int i = 0; i < 1_000; i++) {
+            jwtUtil.parseToken(jwtUtil.generateToken(otherUser()));
+        }
+
+        assertThat(cache(jwtUtil)).hasSizeLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void expiredEntriesAreEvictedBeforeLiveOnes() throws InterruptedException {
+        // exp del JWT va en segundos: 2 s de vida dejan al menos 1 s para cargarlos
+        JwtUtil jwtUtil = jwtUtil(2_000L);
+        for (int i = 0; i < 50; i++) {
+            jwtUtil.parseToken(jwtUtil.generateToken(otherUser()));
+        }
+        ReflectionTestUtils.setField(jwtUtil, "expiration", 60_000L);
+        List<String> live = new ArrayList<>();
+        Map<String, Claims> parsed = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            String token = jwtUtil.generateToken(otherUser());
+            live.add(token);
+            parsed.put(token, jwtUtil.parseToken(token));
+        }
+        Thread.sleep(2_100);
+
+        // Llena: la poda saca los 50 vencidos y con eso ya queda bajo 3/4 del tope
+        jwtUtil.parseToken(jwtUtil.generateToken(otherUser()));
+
+        assertThat(cache(jwtUtil)).hasSize(51);
+        for (String token : live) {
+            assertThat(jwtUtil.parseToken(token)).isSameAs(parsed.get(token));
+        }
+    }
+
+    private static AuthenticatedUser otherUser() {
+        return new AuthenticatedUser(UUID.randomUUID(), "caja@demo.cl", UUID.randomUUID(), "CASHIER", "Caja", null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> cache(JwtUtil jwtUtil) {
+        return (Map<String, ?>) ReflectionTestUtils.getField(jwtUtil, "verifiedTokens");
+    }
+
+    private static JwtUtil jwtUtil(long expirationMillis) {
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expiration", expirationMillis);
+        ReflectionTestUtils.setField(jwtUtil, "cacheMaxEntries", 100);
+        jwtUtil.init();
+        return jwtUtil;
+    }
+}
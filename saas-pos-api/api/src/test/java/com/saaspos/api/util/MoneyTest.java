@@ -0,0 +1,73 @@
+package com.saaspos.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyTest {
+
+    @Test
+    void divideHalfUpRoundsTiesAwayFromZero() {
+        assertThat(Money.divideHalfUp(14, 10)).isEqualTo(1);
+        assertThat(Money.divideHalfUp(15, 10)).isEqualTo(2);
+        assertThat(Money.divideHalfUp(25, 10)).isEqualTo(3);
+        // Negativos: mismo resultado que BigDecimal HALF_UP (simétrico respecto de cero)
+        assertThat(Money.divideHalfUp(-14, 10)).isEqualTo(-1);
+        assertThat(Money.divideHalfUp(-15, 10)).isEqualTo(-2);
+        assertThat(Money.divideHalfUp(-25, 10)).isEqualTo(-3);
+        assertThat(Money.divideHalfUp(-20, 10)).isEqualTo(-2);
+    }
+
+    @Test
+    void ofRoundsToFourDecimalsHalfUp() {
+        assertThat(Money.of(new BigDecimal("1.00005")).units()).isEqualTo(10_001);
+        assertThat(Money.of(new BigDecimal("1.00004")).units()).isEqualTo(10_000);
+        assertThat(Money.of(new BigDecimal("-1.00005")).units()).isEqualTo(-10_001);
+        assertThat(Money.of(null)).isEqualTo(Money.ZERO);
+    }
+
+    @Test
+    void ofIsExactForAnyScaleUpToFour() {
+        assertThat(Money.of(new BigDecimal("1990")).units()).isEqualTo(19_900_000);
+        assertThat(Money.of(new BigDecimal("840.3361")).units()).isEqualTo(8_403_361);
+        assertThat(Money.of(new BigDecimal("-12.5")).units()).isEqualTo(-125_000);
+        // Escala negativa (1E+3) va por el camino general
+        assertThat(Money.of(new BigDecimal("1E+3")).units()).isEqualTo(10_000_000);
+        assertThat(Money.of(new BigDecimal("99999999999999"))).isEqualTo(Money.ofPesos(99_999_999_999_999L));
+    }
+
+    @Test
+    void timesWithThreeDecimalQuantity() {
+        // 0.125 kg a $1.990 el kilo = 248,75 -> se cobran $249
+        Money line = Money.ofPesos(1990).times(new BigDecimal("0.125"));
+        assertThat(line.toBigDecimal()).isEqualByComparingTo("248.75");
+        assertThat(line.toPesos()).isEqualByComparingTo("249");
+
+        // Más de 3 decimales: la cantidad se redondea primero (0.1235 -> 0.124)
+        assertThat(Money.ofPesos(1990).times(new BigDecimal("0.1235")).toBigDecimal()).isEqualByComparingTo("246.76");
+
+        // El último diez-milésimo también va HALF_UP, con el signo respetado
+        assertThat(new Money(3).times(new BigDecimal("0.5")).units()).isEqualTo(2);
+        assertThat(new Money(-3).times(new BigDecimal("0.5")).units()).isEqualTo(-2);
+
+        // Cantidad entera, con ceros a la derecha o con escala negativa: mismo resultado
+        assertThat(Money.ofPesos(1990).times(new BigDecimal("2"))).isEqualTo(Money.ofPesos(3980));
+        assertThat(Money.ofPesos(1990).times(new BigDecimal("2.000"))).isEqualTo(Money.ofPesos(3980));
+        assertThat(Money.ofPesos(5).times(new BigDecimal("1E+2"))).isEqualTo(Money.ofPesos(500));
+    }
+
+    @Test
+    void roundToPesoAndToPesosUseHalfUp() {
+        assertThat(Money.of(new BigDecimal("10.5")).roundToPeso()).isEqualTo(Money.ofPesos(11));
+        assertThat(Money.of(new BigDecimal("10.4999")).roundToPeso()).isEqualTo(Money.ofPesos(10));
+        assertThat(Money.of(new BigDecimal("-10.5")).toPesos()).isEqualByComparingTo("-11");
+    }
+
+    @Test
+    void marginOverCost() {
+        assertThat(Money.ofPesos(1500).marginOver(Money.ofPesos(1000))).isEqualByComparingTo("50.00");
+        assertThat(Money.ofPesos(1000).marginOver(Money.ofPesos(3000))).isEqualByComparingTo("-66.67");
+    }
+}
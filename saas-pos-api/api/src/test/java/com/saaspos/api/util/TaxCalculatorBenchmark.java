@@ -0,0 +1,80 @@
+package com.saaspos.api.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Desglose de IVA de un ticket de 50 líneas (precios brutos, tasas 19%, 0% y sin tasa, cantidades enteras y
+ * fraccionadas) más la cabecera: TaxCalculator sobre Money contra los divide de BigDecimal a escala 4 que hacía
+ * SaleService antes. Con -Pbenchmark corre con el perfil de GC (gc.alloc.rate.norm = bytes por ticket).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaxCalculatorBenchmark {
+
+    private static final int LINES = 50;
+    private static final String[] PRICES = {"990", "1990", "2490", "12490", "350", "18990", "4500", "790"};
+    private static final String[] QUANTITIES = {"1", "2", "1", "0.250", "3", "1", "1.500", "6"};
+
+    private final BigDecimal[] prices = new BigDecimal[LINES];
+    private final BigDecimal[] taxes = new BigDecimal[LINES];
+    private final BigDecimal[] quantities = new BigDecimal[LINES];
+    private BigDecimal total;
+
+    @Setup
+    public void setUp() {
+        total = BigDecimal.ZERO;
+        for (int i = 0; i < LINES; i++) {
+            prices[i] = new BigDecimal(PRICES[i % PRICES.length]);
+            taxes[i] = i % 10 == 9 ? BigDecimal.ZERO : i % 10 == 4 ? null : new BigDecimal("19.0");
+            quantities[i] = new BigDecimal(QUANTITIES[i % QUANTITIES.length]);
+            total = total.add(prices[i].multiply(quantities[i]));
+        }
+    }
+
+    @Benchmark
+    public void taxCalculator(Blackhole bh) {
+        for (int i = 0; i < LINES; i++) {
+            TaxCalculator.LinePrice line = TaxCalculator.priceLine(prices[i], taxes[i], quantities[i]);
+            bh.consume(line.netUnitPrice());
+            bh.consume(line.unitTax());
+            bh.consume(line.taxAmount());
+            bh.consume(line.total());
+        }
+        bh.consume(TaxCalculator.DEFAULT.netFromGross(Money.of(total)).toPesos());
+    }
+
+    // SaleService.processSale antes de Money/TaxCalculator, tal cual
+    @Benchmark
+    public void bigDecimal(Blackhole bh) {
+        for (int i = 0; i < LINES; i++) {
+            BigDecimal taxPercent = taxes[i] != null ? taxes[i] : new BigDecimal("19.0");
+            BigDecimal taxFactor = taxPercent.divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
+            BigDecimal divisor = BigDecimal.ONE.add(taxFactor);
+            BigDecimal netPrice = prices[i].divide(divisor, 4, RoundingMode.HALF_UP);
+            BigDecimal unitTax = prices[i].subtract(netPrice);
+            bh.consume(netPrice);
+            bh.consume(unitTax);
+            bh.consume(unitTax.multiply(quantities[i]));
+            bh.consume(prices[i].multiply(quantities[i]));
+        }
+        bh.consume(total.divide(new BigDecimal("1.19"), 0, RoundingMode.HALF_UP));
+    }
+}
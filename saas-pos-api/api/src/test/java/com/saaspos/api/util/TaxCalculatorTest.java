@@ -0,0 +1,52 @@
+package com.saaspos.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TaxCalculatorTest {
+
+    @Test
+    void ratesAreCachedByBasisPoints() {
+        assertThat(TaxCalculator.rate(new BigDecimal("19"))).isSameAs(TaxCalculator.DEFAULT);
+        assertThat(TaxCalculator.rate(new BigDecimal("19.00"))).isSameAs(TaxCalculator.DEFAULT);
+        assertThat(TaxCalculator.rate(null)).isSameAs(TaxCalculator.DEFAULT);
+        assertThat(TaxCalculator.rate(new BigDecimal("10.5")).basisPoints()).isEqualTo(1050);
+        assertThat(TaxCalculator.rate(new BigDecimal("1.9E+1"))).isSameAs(TaxCalculator.DEFAULT);
+        // Más de 2 decimales: se redondea HALF_UP a puntos base
+        assertThat(TaxCalculator.rate(new BigDecimal("10.505")).basisPoints()).isEqualTo(1051);
+    }
+
+    @Test
+    void netFromGrossRoundsHalfUpAndRoundTrips() {
+        TaxCalculator.TaxRate iva = TaxCalculator.DEFAULT;
+        assertThat(iva.netFromGross(Money.ofPesos(1190))).isEqualTo(Money.ofPesos(1000));
+
+        // 1000 / 1.19 = 840.33613... -> 840.3361
+        Money net = iva.netFromGross(Money.ofPesos(1000));
+        assertThat(net.toBigDecimal()).isEqualByComparingTo("840.3361");
+        assertThat(iva.grossFromNet(net)).isEqualTo(Money.ofPesos(1000));
+    }
+
+    @Test
+    void priceLineWithWholeQuantity() {
+        TaxCalculator.LinePrice line = TaxCalculator.priceLine(new BigDecimal("1000"), new BigDecimal("19.0"), new BigDecimal("3"));
+
+        assertThat(line.netUnitPrice()).isEqualByComparingTo("840.3361");
+        assertThat(line.unitTax()).isEqualByComparingTo("160");
+        // El IVA de la línea sale del impuesto unitario sin redondear (159.6639 x 3 = 478.9917), no de 160 x 3
+        assertThat(line.taxAmount()).isEqualByComparingTo("479");
+        assertThat(line.total()).isEqualByComparingTo("3000");
+    }
+
+    @Test
+    void priceLineWithWeightedQuantity() {
+        TaxCalculator.LinePrice line = TaxCalculator.priceLine(new BigDecimal("1990"), null, new BigDecimal("0.125"));
+
+        assertThat(line.netUnitPrice()).isEqualByComparingTo("1672.2689");
+        assertThat(line.taxAmount()).isEqualByComparingTo("40");
+        assertThat(line.total()).isEqualByComparingTo("249");
+    }
+}